@@ -157,12 +157,11 @@ public abstract class KuduRecordWriter extends AbstractRecordWriter implements R
             <#elseif minor.class == "VarChar" >
               byte[] bytes = new byte[holder.end - holder.start];
               holder.buffer.getBytes(holder.start, bytes);
-              row.addString(fieldId, new String(bytes));
+              row.addStringUtf8(fieldId, bytes);
             <#elseif minor.class == "VarBinary">
               byte[] bytes = new byte[holder.end - holder.start];
               holder.buffer.getBytes(holder.start, bytes);
               row.addBinary(fieldId, bytes);
-              reader.read(holder);
             <#else>
               throw new UnsupportedOperationException();
             </#if>
@@ -0,0 +1,527 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.kudu;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.drill.exec.exception.SchemaChangeException;
+import org.apache.drill.exec.vector.AllocationHelper;
+import org.apache.drill.exec.vector.BigIntVector;
+import org.apache.drill.exec.vector.BitVector;
+import org.apache.drill.exec.vector.Float4Vector;
+import org.apache.drill.exec.vector.Float8Vector;
+import org.apache.drill.exec.vector.IntVector;
+import org.apache.drill.exec.vector.NullableBigIntVector;
+import org.apache.drill.exec.vector.NullableBitVector;
+import org.apache.drill.exec.vector.NullableFloat4Vector;
+import org.apache.drill.exec.vector.NullableFloat8Vector;
+import org.apache.drill.exec.vector.NullableIntVector;
+import org.apache.drill.exec.vector.NullableTimeStampVector;
+import org.apache.drill.exec.vector.NullableVarBinaryVector;
+import org.apache.drill.exec.vector.NullableVarCharVector;
+import org.apache.drill.exec.vector.TimeStampVector;
+import org.apache.drill.exec.vector.ValueVector;
+import org.apache.drill.exec.vector.VarBinaryVector;
+import org.apache.drill.exec.vector.VarCharVector;
+import org.apache.kudu.ColumnSchema;
+import org.apache.kudu.client.RowResult;
+
+/**
+ * Copies values of one Kudu column into its value vector. Mutator and conversions of the
+ * column are resolved once when columns are defined, not for every value.
+ *
+ * Fixed-width vectors are allocated for {@link KuduRecordReader#MAXIMUM_ROWS_SUPPORTED_IN_BATCH}
+ * values, so their values are set without capacity checks. Nullable values are checked with
+ * {@link RowResult#isNull(int)} before they are read, Kudu rejects reads of nulls.
+ */
+public abstract class KuduColumnCopier {
+  final int index;
+  final ValueVector vv;
+
+  KuduColumnCopier(int index, ValueVector vv) {
+    this.index = index;
+    this.vv = vv;
+  }
+
+  /**
+   * Creates copier of column into vector of its Drill type.
+   * @param col column of rows
+   * @param index index of the column in rows
+   * @param vv vector of the column
+   * @param unsignedINT8 whether INT8 values are unsigned
+   * @param unsignedINT16 whether INT16 values are unsigned
+   * @throws SchemaChangeException when Kudu type of the column is not supported
+   */
+  public static KuduColumnCopier create(ColumnSchema col, int index, ValueVector vv, boolean unsignedINT8,
+      boolean unsignedINT16) throws SchemaChangeException {
+    final boolean nullable = col.isNullable();
+    switch (col.getType()) {
+    case BINARY:
+      return nullable
+          ? new NullableBinaryCopier(index, (NullableVarBinaryVector) vv)
+          : new BinaryCopier(index, (VarBinaryVector) vv);
+    case STRING:
+      return nullable
+          ? new NullableStringCopier(index, (NullableVarCharVector) vv)
+          : new StringCopier(index, (VarCharVector) vv);
+    case BOOL:
+      return nullable
+          ? new NullableBoolCopier(index, (NullableBitVector) vv)
+          : new BoolCopier(index, (BitVector) vv);
+    case DOUBLE:
+      return nullable
+          ? new NullableDoubleCopier(index, (NullableFloat8Vector) vv)
+          : new DoubleCopier(index, (Float8Vector) vv);
+    case FLOAT:
+      return nullable
+          ? new NullableFloatCopier(index, (NullableFloat4Vector) vv)
+          : new FloatCopier(index, (Float4Vector) vv);
+    case INT8:
+      return nullable
+          ? new NullableInt8Copier(index, (NullableIntVector) vv, unsignedINT8)
+          : new Int8Copier(index, (IntVector) vv, unsignedINT8);
+    case INT16:
+      return nullable
+          ? new NullableInt16Copier(index, (NullableIntVector) vv, unsignedINT16)
+          : new Int16Copier(index, (IntVector) vv, unsignedINT16);
+    case INT32:
+      return nullable
+          ? new NullableInt32Copier(index, (NullableIntVector) vv)
+          : new Int32Copier(index, (IntVector) vv);
+    case INT64:
+      return nullable
+          ? new NullableInt64Copier(index, (NullableBigIntVector) vv)
+          : new Int64Copier(index, (BigIntVector) vv);
+    case UNIXTIME_MICROS:
+      return nullable
+          ? new NullableTimestampCopier(index, (NullableTimeStampVector) vv)
+          : new TimestampCopier(index, (TimeStampVector) vv);
+    default:
+      throw new SchemaChangeException("Cannot read column %s of unsupported Kudu type %s", col.getName(), col.getType());
+    }
+  }
+
+  public ValueVector getVector() {
+    return vv;
+  }
+
+  /**
+   * Allocates vector for a full batch, so fixed-width values never need capacity checks.
+   */
+  public void allocate() {
+    AllocationHelper.allocateNew(vv, KuduRecordReader.MAXIMUM_ROWS_SUPPORTED_IN_BATCH);
+  }
+
+  /**
+   * Releases values of the previous batch and allocates vector for the next one.
+   */
+  public void reset() {
+    vv.clear();
+    allocate();
+  }
+
+  public void setValueCount(int valueCount) {
+    vv.getMutator().setValueCount(valueCount);
+  }
+
+  /**
+   * Copies value of the column in result into the vector at rowIndex.
+   */
+  public abstract void copy(RowResult result, int rowIndex);
+
+  /**
+   * Binary values are copied straight from the array backing Kudu row data.
+   */
+  private static final class BinaryCopier extends KuduColumnCopier {
+    private final VarBinaryVector.Mutator mutator;
+
+    BinaryCopier(int index, VarBinaryVector vv) {
+      super(index, vv);
+      this.mutator = vv.getMutator();
+    }
+
+    @Override
+    public void copy(RowResult result, int rowIndex) {
+      ByteBuffer value = result.getBinary(index);
+      mutator.setSafe(rowIndex, value.array(), value.arrayOffset() + value.position(), value.remaining());
+    }
+  }
+
+  private static final class NullableBinaryCopier extends KuduColumnCopier {
+    private final NullableVarBinaryVector.Mutator mutator;
+
+    NullableBinaryCopier(int index, NullableVarBinaryVector vv) {
+      super(index, vv);
+      this.mutator = vv.getMutator();
+    }
+
+    @Override
+    public void copy(RowResult result, int rowIndex) {
+      if (result.isNull(index)) {
+        mutator.setNull(rowIndex);
+      } else {
+        ByteBuffer value = result.getBinary(index);
+        mutator.setSafe(rowIndex, value.array(), value.arrayOffset() + value.position(), value.remaining());
+      }
+    }
+  }
+
+  /**
+   * Kudu client gives strings only as decoded Strings, they are encoded back into a buffer
+   * reused for all values of the column instead of a new array per value.
+   */
+  private static final class Utf8Buffer {
+    private byte[] bytes = new byte[256];
+
+    /**
+     * @return length of UTF-8 encoded value in {@link #bytes}
+     */
+    int encode(String value) {
+      final int length = value.length();
+      if (bytes.length < length) {
+        bytes = new byte[Math.max(length, bytes.length * 2)];
+      }
+      for (int i = 0; i < length; i++) {
+        final char c = value.charAt(i);
+        if (c >= 0x80) {
+          return encodeNonAscii(value);
+        }
+        bytes[i] = (byte) c;
+      }
+      return length;
+    }
+
+    private int encodeNonAscii(String value) {
+      byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+      if (bytes.length < encoded.length) {
+        bytes = encoded;
+      } else {
+        System.arraycopy(encoded, 0, bytes, 0, encoded.length);
+      }
+      return encoded.length;
+    }
+  }
+
+  private static final class StringCopier extends KuduColumnCopier {
+    private final VarCharVector.Mutator mutator;
+    private final Utf8Buffer buffer = new Utf8Buffer();
+
+    StringCopier(int index, VarCharVector vv) {
+      super(index, vv);
+      this.mutator = vv.getMutator();
+    }
+
+    @Override
+    public void copy(RowResult result, int rowIndex) {
+      int length = buffer.encode(result.getString(index));
+      mutator.setSafe(rowIndex, buffer.bytes, 0, length);
+    }
+  }
+
+  private static final class NullableStringCopier extends KuduColumnCopier {
+    private final NullableVarCharVector.Mutator mutator;
+    private final Utf8Buffer buffer = new Utf8Buffer();
+
+    NullableStringCopier(int index, NullableVarCharVector vv) {
+      super(index, vv);
+      this.mutator = vv.getMutator();
+    }
+
+    @Override
+    public void copy(RowResult result, int rowIndex) {
+      if (result.isNull(index)) {
+        mutator.setNull(rowIndex);
+      } else {
+        int length = buffer.encode(result.getString(index));
+        mutator.setSafe(rowIndex, buffer.bytes, 0, length);
+      }
+    }
+  }
+
+  private static final class BoolCopier extends KuduColumnCopier {
+    private final BitVector.Mutator mutator;
+
+    BoolCopier(int index, BitVector vv) {
+      super(index, vv);
+      this.mutator = vv.getMutator();
+    }
+
+    @Override
+    public void copy(RowResult result, int rowIndex) {
+      mutator.set(rowIndex, result.getBoolean(index) ? 1 : 0);
+    }
+  }
+
+  private static final class NullableBoolCopier extends KuduColumnCopier {
+    private final NullableBitVector.Mutator mutator;
+
+    NullableBoolCopier(int index, NullableBitVector vv) {
+      super(index, vv);
+      this.mutator = vv.getMutator();
+    }
+
+    @Override
+    public void copy(RowResult result, int rowIndex) {
+      if (result.isNull(index)) {
+        mutator.setNull(rowIndex);
+      } else {
+        mutator.set(rowIndex, result.getBoolean(index) ? 1 : 0);
+      }
+    }
+  }
+
+  private static final class DoubleCopier extends KuduColumnCopier {
+    private final Float8Vector.Mutator mutator;
+
+    DoubleCopier(int index, Float8Vector vv) {
+      super(index, vv);
+      this.mutator = vv.getMutator();
+    }
+
+    @Override
+    public void copy(RowResult result, int rowIndex) {
+      mutator.set(rowIndex, result.getDouble(index));
+    }
+  }
+
+  private static final class NullableDoubleCopier extends KuduColumnCopier {
+    private final NullableFloat8Vector.Mutator mutator;
+
+    NullableDoubleCopier(int index, NullableFloat8Vector vv) {
+      super(index, vv);
+      this.mutator = vv.getMutator();
+    }
+
+    @Override
+    public void copy(RowResult result, int rowIndex) {
+      if (result.isNull(index)) {
+        mutator.setNull(rowIndex);
+      } else {
+        mutator.set(rowIndex, result.getDouble(index));
+      }
+    }
+  }
+
+  private static final class FloatCopier extends KuduColumnCopier {
+    private final Float4Vector.Mutator mutator;
+
+    FloatCopier(int index, Float4Vector vv) {
+      super(index, vv);
+      this.mutator = vv.getMutator();
+    }
+
+    @Override
+    public void copy(RowResult result, int rowIndex) {
+      mutator.set(rowIndex, result.getFloat(index));
+    }
+  }
+
+  private static final class NullableFloatCopier extends KuduColumnCopier {
+    private final NullableFloat4Vector.Mutator mutator;
+
+    NullableFloatCopier(int index, NullableFloat4Vector vv) {
+      super(index, vv);
+      this.mutator = vv.getMutator();
+    }
+
+    @Override
+    public void copy(RowResult result, int rowIndex) {
+      if (result.isNull(index)) {
+        mutator.setNull(rowIndex);
+      } else {
+        mutator.set(rowIndex, result.getFloat(index));
+      }
+    }
+  }
+
+  private static final class Int8Copier extends KuduColumnCopier {
+    private final IntVector.Mutator mutator;
+    private final boolean unsigned;
+
+    Int8Copier(int index, IntVector vv, boolean unsigned) {
+      super(index, vv);
+      this.mutator = vv.getMutator();
+      this.unsigned = unsigned;
+    }
+
+    @Override
+    public void copy(RowResult result, int rowIndex) {
+      byte value = result.getByte(index);
+      mutator.set(rowIndex, unsigned ? Byte.toUnsignedInt(value) : value);
+    }
+  }
+
+  private static final class NullableInt8Copier extends KuduColumnCopier {
+    private final NullableIntVector.Mutator mutator;
+    private final boolean unsigned;
+
+    NullableInt8Copier(int index, NullableIntVector vv, boolean unsigned) {
+      super(index, vv);
+      this.mutator = vv.getMutator();
+      this.unsigned = unsigned;
+    }
+
+    @Override
+    public void copy(RowResult result, int rowIndex) {
+      if (result.isNull(index)) {
+        mutator.setNull(rowIndex);
+      } else {
+        byte value = result.getByte(index);
+        mutator.set(rowIndex, unsigned ? Byte.toUnsignedInt(value) : value);
+      }
+    }
+  }
+
+  private static final class Int16Copier extends KuduColumnCopier {
+    private final IntVector.Mutator mutator;
+    private final boolean unsigned;
+
+    Int16Copier(int index, IntVector vv, boolean unsigned) {
+      super(index, vv);
+      this.mutator = vv.getMutator();
+      this.unsigned = unsigned;
+    }
+
+    @Override
+    public void copy(RowResult result, int rowIndex) {
+      short value = result.getShort(index);
+      mutator.set(rowIndex, unsigned ? Short.toUnsignedInt(value) : value);
+    }
+  }
+
+  private static final class NullableInt16Copier extends KuduColumnCopier {
+    private final NullableIntVector.Mutator mutator;
+    private final boolean unsigned;
+
+    NullableInt16Copier(int index, NullableIntVector vv, boolean unsigned) {
+      super(index, vv);
+      this.mutator = vv.getMutator();
+      this.unsigned = unsigned;
+    }
+
+    @Override
+    public void copy(RowResult result, int rowIndex) {
+      if (result.isNull(index)) {
+        mutator.setNull(rowIndex);
+      } else {
+        short value = result.getShort(index);
+        mutator.set(rowIndex, unsigned ? Short.toUnsignedInt(value) : value);
+      }
+    }
+  }
+
+  private static final class Int32Copier extends KuduColumnCopier {
+    private final IntVector.Mutator mutator;
+
+    Int32Copier(int index, IntVector vv) {
+      super(index, vv);
+      this.mutator = vv.getMutator();
+    }
+
+    @Override
+    public void copy(RowResult result, int rowIndex) {
+      mutator.set(rowIndex, result.getInt(index));
+    }
+  }
+
+  private static final class NullableInt32Copier extends KuduColumnCopier {
+    private final NullableIntVector.Mutator mutator;
+
+    NullableInt32Copier(int index, NullableIntVector vv) {
+      super(index, vv);
+      this.mutator = vv.getMutator();
+    }
+
+    @Override
+    public void copy(RowResult result, int rowIndex) {
+      if (result.isNull(index)) {
+        mutator.setNull(rowIndex);
+      } else {
+        mutator.set(rowIndex, result.getInt(index));
+      }
+    }
+  }
+
+  private static final class Int64Copier extends KuduColumnCopier {
+    private final BigIntVector.Mutator mutator;
+
+    Int64Copier(int index, BigIntVector vv) {
+      super(index, vv);
+      this.mutator = vv.getMutator();
+    }
+
+    @Override
+    public void copy(RowResult result, int rowIndex) {
+      mutator.set(rowIndex, result.getLong(index));
+    }
+  }
+
+  private static final class NullableInt64Copier extends KuduColumnCopier {
+    private final NullableBigIntVector.Mutator mutator;
+
+    NullableInt64Copier(int index, NullableBigIntVector vv) {
+      super(index, vv);
+      this.mutator = vv.getMutator();
+    }
+
+    @Override
+    public void copy(RowResult result, int rowIndex) {
+      if (result.isNull(index)) {
+        mutator.setNull(rowIndex);
+      } else {
+        mutator.set(rowIndex, result.getLong(index));
+      }
+    }
+  }
+
+  /**
+   * Kudu timestamps are in microseconds, Drill ones in milliseconds.
+   */
+  private static final class TimestampCopier extends KuduColumnCopier {
+    private final TimeStampVector.Mutator mutator;
+
+    TimestampCopier(int index, TimeStampVector vv) {
+      super(index, vv);
+      this.mutator = vv.getMutator();
+    }
+
+    @Override
+    public void copy(RowResult result, int rowIndex) {
+      mutator.set(rowIndex, result.getLong(index) / 1000);
+    }
+  }
+
+  private static final class NullableTimestampCopier extends KuduColumnCopier {
+    private final NullableTimeStampVector.Mutator mutator;
+
+    NullableTimestampCopier(int index, NullableTimeStampVector vv) {
+      super(index, vv);
+      this.mutator = vv.getMutator();
+    }
+
+    @Override
+    public void copy(RowResult result, int rowIndex) {
+      if (result.isNull(index)) {
+        mutator.setNull(rowIndex);
+      } else {
+        mutator.set(rowIndex, result.getLong(index) / 1000);
+      }
+    }
+  }
+}
@@ -23,12 +23,15 @@ import org.apache.drill.common.expression.BooleanOperator;
 import org.apache.drill.common.expression.FunctionCall;
 import org.apache.drill.common.expression.LogicalExpression;
 import org.apache.drill.common.expression.SchemaPath;
+import org.apache.drill.common.expression.ValueExpressions;
 import org.apache.drill.common.expression.visitors.AbstractExprVisitor;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 
+import org.apache.drill.exec.expr.stat.IpSubnetRange;
 import org.apache.drill.exec.store.ischema.Records;
 import org.apache.kudu.ColumnSchema;
 import org.apache.kudu.Schema;
@@ -103,6 +106,9 @@ public class KuduFilterBuilder extends AbstractExprVisitor<KuduScanSpec, Void, R
                         firstScanSpec = nodeScanSpec;
                     }
                     break;
+                case IpSubnetRange.FUNCTION_NAME:
+                    nodeScanSpec = createIpInSubnetScanSpec(args);
+                    break;
             }
         }
 
@@ -143,6 +149,50 @@ public class KuduFilterBuilder extends AbstractExprVisitor<KuduScanSpec, Void, R
         return mergedSpec;
     }
 
+    /**
+     * Converts ip_in_subnet(ip1, ip2, 'cidr') of custom functions into range predicates of ip1 and ip2 columns,
+     * so only tablets and rows of the subnet are scanned.
+     */
+    private KuduScanSpec createIpInSubnetScanSpec(List<LogicalExpression> args) {
+        if (args.size() != 3
+                || !(args.get(0) instanceof SchemaPath)
+                || !(args.get(1) instanceof SchemaPath)
+                || !(args.get(2) instanceof ValueExpressions.QuotedString)) {
+            return null;
+        }
+        IpSubnetRange range = IpSubnetRange.parse(((ValueExpressions.QuotedString) args.get(2)).getString());
+        ColumnSchema ip1Schema = getInt64Column((SchemaPath) args.get(0));
+        ColumnSchema ip2Schema = getInt64Column((SchemaPath) args.get(1));
+        if (range == null || !range.isIp1Bounded() || ip1Schema == null || ip2Schema == null) {
+            return null;
+        }
+
+        List<KuduPredicate> predicates = new ArrayList<>();
+        addRangePredicates(predicates, ip1Schema, range.getIp1Min(), range.getIp1Max());
+        if (range.isIp2Bounded()) {
+            addRangePredicates(predicates, ip2Schema, range.getIp2Min(), range.getIp2Max());
+        }
+        return new KuduScanSpec(groupScan.getTableName(), predicates);
+    }
+
+    private ColumnSchema getInt64Column(SchemaPath path) {
+        String colName = path.getRootSegment().getPath();
+        if (!path.getRootSegment().isLastPath()) {
+            return null;
+        }
+        ColumnSchema colSchema = tableSchema.getColumn(colName);
+        return colSchema.getType() == Type.INT64 ? colSchema : null;
+    }
+
+    private void addRangePredicates(List<KuduPredicate> predicates, ColumnSchema colSchema, long min, long max) {
+        if (min == max) {
+            predicates.add(KuduPredicate.newComparisonPredicate(colSchema, KuduPredicate.ComparisonOp.EQUAL, min));
+        } else {
+            predicates.add(KuduPredicate.newComparisonPredicate(colSchema, KuduPredicate.ComparisonOp.GREATER_EQUAL, min));
+            predicates.add(KuduPredicate.newComparisonPredicate(colSchema, KuduPredicate.ComparisonOp.LESS_EQUAL, max));
+        }
+    }
+
     private KuduScanSpec createKuduScanSpec(FunctionCall call, CompareFunctionsProcessor processor) {
         String functionName = processor.getFunctionName();
         SchemaPath field = processor.getPath();
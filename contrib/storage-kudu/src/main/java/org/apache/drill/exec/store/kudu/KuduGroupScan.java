@@ -20,6 +20,7 @@ package org.apache.drill.exec.store.kudu;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import org.apache.drill.common.exceptions.ExecutionSetupException;
 import org.apache.drill.common.expression.SchemaPath;
 import org.apache.drill.exec.physical.EndpointAffinity;
@@ -46,30 +47,33 @@ import org.apache.drill.exec.store.schedule.CompleteWork;
 import org.apache.drill.exec.store.schedule.EndpointByteMap;
 import org.apache.drill.exec.store.schedule.EndpointByteMapImpl;
 import org.apache.drill.exec.util.Utilities;
+import org.apache.kudu.ColumnSchema;
 import org.apache.kudu.Schema;
 import org.apache.kudu.client.KuduClient;
 import org.apache.kudu.client.KuduTable;
 import org.apache.kudu.client.KuduException;
 import org.apache.kudu.client.KuduPredicate;
 import org.apache.kudu.client.KuduScanToken;
+import org.apache.kudu.client.LocatedTablet;
 import org.apache.kudu.client.LocatedTablet.Replica;
 import org.apache.kudu.client.PartitionSchema;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @JsonTypeName("kudu-scan")
 public class KuduGroupScan extends AbstractGroupScan {
   static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(KuduGroupScan.class);
-  private static final long DEFAULT_TABLET_SIZE = 10000;
 
+  // rows of tablets which are not sized by their tablet servers
   public static final long ESTIMATED_RECORD_COUNT_PER_PARTITION = 50000;
-  private static final long MIN_HASH_BUCKETS = 1;
 
 
   private KuduStoragePluginConfig storagePluginConfig;
@@ -104,8 +108,12 @@ public class KuduGroupScan extends AbstractGroupScan {
     init();
   }
 
-  private List<KuduScanToken> initScanTokens() throws KuduException {
-    ArrayList<KuduScanToken> allScanTokens = new ArrayList<>();
+  private List<KuduWork> initWork(Map<String,DrillbitEndpoint> endpointMap) throws IOException {
+    List<KuduWork> allWork = new ArrayList<>();
+    KuduUtils kuduUtils = new KuduUtils();
+    Set<String> partitionColumns = getPartitionColumns();
+    long rowWidth = estimateRowWidth();
+    KuduKeyRangeSplitter splitter = new KuduKeyRangeSplitter(tableSchema);
 
     KuduScanSpecOptimizer scanSpecOptimizer = new KuduScanSpecOptimizer(storagePluginConfig, kuduScanSpec, tableSchema);
 
@@ -113,41 +121,170 @@ public class KuduGroupScan extends AbstractGroupScan {
     List<List<KuduPredicate>> predicatePermutationSets = scanSpecOptimizer.optimizeScanSpec(kuduScanSpec);
     kuduScanSpec = scanSpecOptimizer.rebuildScanSpec(predicatePermutationSets);
 
+    // tablet servers of all scanned tablets are asked for their sizes at once
+    List<List<KuduScanToken>> scanTokenSets = Lists.newArrayList();
+    Set<String> hosts = Sets.newHashSet();
     for (List<KuduPredicate> predicateSet : predicatePermutationSets) {
-      KuduScanToken.KuduScanTokenBuilder scanTokenBuilder = client.newScanTokenBuilder(table);
+      List<KuduScanToken> scanTokens = newScanTokenBuilder(predicateSet).build();
+      for (KuduScanToken scanToken : scanTokens) {
+        hosts.addAll(getHosts(scanToken.getTablet()));
+      }
+      scanTokenSets.add(scanTokens);
+    }
+    Map<String, KuduTabletStats.TabletSize> tabletSizes =
+        storagePlugin.getTabletStats().getTabletSizes(getTableName(), hosts);
+    long splitSizeBytes = storagePluginConfig.getScanSplitSizeBytes();
+    boolean rangeByLeadingKey = isRangePartitionedByLeadingKey();
 
-      if (!Utilities.isStarQuery(columns)) {
-        List<String> colNames = Lists.newArrayList();
-        for (SchemaPath p : this.getColumns()) {
-          colNames.add(p.getRootSegmentPath());
-        }
+    for (int i = 0; i < predicatePermutationSets.size(); i++) {
+      List<KuduPredicate> predicateSet = predicatePermutationSets.get(i);
+      KuduScanSpec pseudoScanSpec = new KuduScanSpec(getTableName(), predicateSet);
+      logger.info("Generated scan spec: {}", pseudoScanSpec.toString());
+
+      double selectivity = kuduUtils.estimateSelectivity(predicateSet, partitionColumns);
+      // tablets larger than split size are split within their own keys, no tokens are built per range
+      long[] bounds = splitSizeBytes > 0 ? splitter.leadingKeyBounds(predicateSet) : null;
+      for (KuduScanToken scanToken : scanTokenSets.get(i)) {
+        allWork.addAll(newWork(scanToken, splitter, bounds, splitSizeBytes, rangeByLeadingKey, selectivity, rowWidth,
+            tabletSizes, endpointMap));
+      }
+    }
+
+    logger.info("Generated {} scan tokens in total", allWork.size());
+    return allWork;
+  }
 
-        // We must set projected columns in order, otherwise nasty things
-        // related to primary (composite) key columns might happen
-        Collections.sort(colNames, new Comparator<String>() {
-          @Override
-          public int compare(String o1, String o2) {
-            return table.getSchema().getColumnIndex(o1) - table.getSchema().getColumnIndex(o2);
-          }
-        });
+  private KuduScanToken.KuduScanTokenBuilder newScanTokenBuilder(List<KuduPredicate> predicateSet) {
+    KuduScanToken.KuduScanTokenBuilder scanTokenBuilder = client.newScanTokenBuilder(table);
 
-        scanTokenBuilder.setProjectedColumnNames(colNames);
+    if (!Utilities.isStarQuery(columns)) {
+      List<String> colNames = Lists.newArrayList();
+      for (SchemaPath p : this.getColumns()) {
+        colNames.add(p.getRootSegmentPath());
       }
 
-      KuduScanSpec pseudoScanSpec = new KuduScanSpec(getTableName(), predicateSet);
-      logger.info("Generated scan spec: {}", pseudoScanSpec.toString());
+      // We must set projected columns in order, otherwise nasty things
+      // related to primary (composite) key columns might happen
+      Collections.sort(colNames, new Comparator<String>() {
+        @Override
+        public int compare(String o1, String o2) {
+          return table.getSchema().getColumnIndex(o1) - table.getSchema().getColumnIndex(o2);
+        }
+      });
+
+      scanTokenBuilder.setProjectedColumnNames(colNames);
+    }
 
-      for (KuduPredicate pred : predicateSet) {
-        scanTokenBuilder.addPredicate(pred);
+    for (KuduPredicate pred : predicateSet) {
+      scanTokenBuilder.addPredicate(pred);
+    }
+
+    scanTokenBuilder.cacheBlocks(true);
+    return scanTokenBuilder;
+  }
+
+  /**
+   * Sizes work of scan token by size of its tablet. Tablets larger than split size are split into
+   * ranges of primary keys within the tablet, read by several minor fragments, and the size of the
+   * tablet is divided among its ranges evenly. Tablets not sized by their tablet servers are assumed
+   * to hold {@link #ESTIMATED_RECORD_COUNT_PER_PARTITION} rows.
+   * @param bounds bounds of leading primary key column to split tablets within, null when tablets are not split
+   * @param rangeByLeadingKey whether tablets are bounded by the leading primary key column
+   */
+  private List<KuduWork> newWork(KuduScanToken scanToken, KuduKeyRangeSplitter splitter, long[] bounds,
+      long splitSizeBytes, boolean rangeByLeadingKey, double selectivity, long rowWidth,
+      Map<String, KuduTabletStats.TabletSize> tabletSizes, Map<String,DrillbitEndpoint> endpointMap)
+      throws IOException {
+    LocatedTablet tablet = scanToken.getTablet();
+    List<String> hosts = getHosts(tablet);
+    KuduTabletStats.TabletSize size = tabletSizes.get(new String(tablet.getTabletId(), StandardCharsets.UTF_8));
+    long bytes;
+    long rows;
+    if (size == null) {
+      rows = ESTIMATED_RECORD_COUNT_PER_PARTITION;
+      bytes = rows * rowWidth;
+    } else {
+      bytes = size.getBytes();
+      rows = size.getRows() >= 0 ? size.getRows() : bytes / rowWidth;
+    }
+
+    List<byte[]> scanTokens = Collections.singletonList(scanToken.serialize());
+    if (bounds != null && bytes > splitSizeBytes) {
+      long[] tabletBounds = rangeByLeadingKey
+          ? splitter.tabletKeyBounds(bounds, tablet.getPartition().getRangeKeyStart(),
+              tablet.getPartition().getRangeKeyEnd())
+          : bounds;
+      if (tabletBounds != null) {
+        int splits = (int) Math.min(KuduKeyRangeSplitter.MAX_SPLITS, (bytes + splitSizeBytes - 1) / splitSizeBytes);
+        scanTokens = splitter.splitScanToken(scanTokens.get(0), tabletBounds, splits);
+        logger.debug("Splitting scan of tablet {} into {} primary key ranges", tablet, scanTokens.size());
+      }
+    }
+
+    List<KuduWork> work = Lists.newArrayList();
+    for (byte[] serializedScanToken : scanTokens) {
+      KuduWork rangeWork = new KuduWork(serializedScanToken, Math.max(1, bytes / scanTokens.size()),
+          (long) Math.ceil(rows * selectivity / scanTokens.size()));
+      for (String host : hosts) {
+        DrillbitEndpoint ep = endpointMap.get(host);
+        if (ep != null) {
+          rangeWork.getByteMap().add(ep, rangeWork.getTotalBytes());
+        }
       }
+      work.add(rangeWork);
+    }
+    return work;
+  }
+
+  private static List<String> getHosts(LocatedTablet tablet) {
+    List<String> hosts = Lists.newArrayList();
+    for (Replica replica : tablet.getReplicas()) {
+      hosts.add(replica.getRpcHost());
+    }
+    return hosts;
+  }
 
-      scanTokenBuilder.cacheBlocks(true);
+  /**
+   * @return names of columns of hash and range partitions, Kudu prunes tablets by predicates on them
+   */
+  private Set<String> getPartitionColumns() {
+    Set<String> partitionColumns = Sets.newHashSet();
+    if (!tableSchema.hasColumnIds()) {
+      return partitionColumns;
+    }
+    PartitionSchema partitionSchema = table.getPartitionSchema();
+    for (Integer columnId : partitionSchema.getRangeSchema().getColumns()) {
+      partitionColumns.add(tableSchema.getColumnByIndex(tableSchema.getColumnIndex(columnId)).getName());
+    }
+    for (PartitionSchema.HashBucketSchema hashBucketSchema : partitionSchema.getHashBucketSchemas()) {
+      for (Integer columnId : hashBucketSchema.getColumnIds()) {
+        partitionColumns.add(tableSchema.getColumnByIndex(tableSchema.getColumnIndex(columnId)).getName());
+      }
+    }
+    return partitionColumns;
+  }
 
-      allScanTokens.addAll(scanTokenBuilder.build());
+  /**
+   * @return whether range partitions are keyed by the leading primary key column first, so partitions
+   * of tablets bound the keys they hold
+   */
+  private boolean isRangePartitionedByLeadingKey() {
+    if (!tableSchema.hasColumnIds()) {
+      return false;
     }
+    List<Integer> rangeColumns = table.getPartitionSchema().getRangeSchema().getColumns();
+    return !rangeColumns.isEmpty() && tableSchema.getColumnIndex(rangeColumns.get(0)) == 0;
+  }
 
-    logger.info("Generated {} scan tokens in total", allScanTokens.size());
-    return allScanTokens;
+  /**
+   * @return bytes of a row by sizes of column types, variable width values count as their pointers
+   */
+  private long estimateRowWidth() {
+    long rowWidth = 0;
+    for (ColumnSchema column : tableSchema.getColumns()) {
+      rowWidth += column.getTypeSize();
+    }
+    return Math.max(1, rowWidth);
   }
 
   private void initFields() {
@@ -170,20 +307,7 @@ public class KuduGroupScan extends AbstractGroupScan {
     }
 
     try {
-      final List<KuduScanToken> scanTokens = initScanTokens();
-
-      for (KuduScanToken scanToken : scanTokens) {
-        KuduWork work = new KuduWork(scanToken.serialize());
-
-        for (Replica replica : scanToken.getTablet().getReplicas()) {
-          String host = replica.getRpcHost();
-          DrillbitEndpoint ep = endpointMap.get(host);
-          if (ep != null) {
-            work.getByteMap().add(ep, DEFAULT_TABLET_SIZE);
-          }
-        }
-        kuduWorkList.add(work);
-      }
+      kuduWorkList.addAll(initWork(endpointMap));
     } catch (Exception e) {
       throw new RuntimeException(e);
     }
@@ -197,14 +321,22 @@ public class KuduGroupScan extends AbstractGroupScan {
   private static class KuduWork implements CompleteWork {
     private EndpointByteMapImpl byteMap = new EndpointByteMapImpl();
     private byte[] serializedScanToken;
+    private final long totalBytes;
+    private final long estimatedRowCount;
 
-    public KuduWork(byte[] serializedScanToken) {
+    public KuduWork(byte[] serializedScanToken, long totalBytes, long estimatedRowCount) {
       this.serializedScanToken = serializedScanToken;
+      this.totalBytes = totalBytes;
+      this.estimatedRowCount = estimatedRowCount;
     }
 
     @Override
     public long getTotalBytes() {
-      return DEFAULT_TABLET_SIZE;
+      return totalBytes;
+    }
+
+    public long getEstimatedRowCount() {
+      return estimatedRowCount;
     }
 
     @Override
@@ -214,7 +346,7 @@ public class KuduGroupScan extends AbstractGroupScan {
 
     @Override
     public int compareTo(CompleteWork o) {
-      return 0;
+      return Long.compare(totalBytes, o.getTotalBytes());
     }
 
     public byte[] getSerializedScanToken() {
@@ -285,37 +417,22 @@ public class KuduGroupScan extends AbstractGroupScan {
     return new KuduSubScan(storagePlugin, storagePluginConfig, scanSpecList, this.table.getName(), this.columns);
   }
 
-  private long getHashBuckets() {
-    if (table == null) {
-      return MIN_HASH_BUCKETS;
-    }
-    List<PartitionSchema.HashBucketSchema> hbSchema = table.getPartitionSchema().getHashBucketSchemas();
-    if (!hbSchema.isEmpty()) {
-      return Math.max(MIN_HASH_BUCKETS, hbSchema.get(0).getNumBuckets());
-    } else {
-      return MIN_HASH_BUCKETS;
-    }
-  }
-
   @Override
   public ScanStats getScanStats() {
-    // Very naive - we just assume the more constraints the better...
-    int constraintsDenominator = kuduScanSpecSize(0, kuduScanSpec) + 1;
-
-    long recordCount = (getHashBuckets() * ESTIMATED_RECORD_COUNT_PER_PARTITION / constraintsDenominator);
-
-    int columnsNominator = Utilities.isStarQuery(columns) ? this.getTableSchema().getColumns().size() : this.getColumns().size();
-
-    return new ScanStats(GroupScanProperty.NO_EXACT_ROW_COUNT, recordCount, columnsNominator/((float) constraintsDenominator), columnsNominator * recordCount);
-  }
-
-  private int kuduScanSpecSize(int size, KuduScanSpec cur) {
-    size += cur.getPredicates().size();
-    for (KuduScanSpec next : cur.getSubSets()) {
-      size += kuduScanSpecSize(0, next);
+    // Tablets pruned by predicates are not scanned, the remaining ones are sized by their tablet servers
+    long recordCount = 0;
+    long totalBytes = 0;
+    for (KuduWork work : kuduWorkList) {
+      recordCount += work.getEstimatedRowCount();
+      totalBytes += work.getTotalBytes();
     }
 
-    return size;
+    int tableColumns = this.getTableSchema().getColumns().size();
+    int columnsNominator = Utilities.isStarQuery(columns) ? tableColumns : this.getColumns().size();
+
+    // Kudu stores tablets by columns, only projected ones are read
+    float diskCost = totalBytes * columnsNominator / (float) tableColumns;
+    return new ScanStats(GroupScanProperty.NO_EXACT_ROW_COUNT, Math.max(1, recordCount), columnsNominator * (float) recordCount, diskCost);
   }
 
   @Override
@@ -0,0 +1,275 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.kudu;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+import org.apache.kudu.ColumnSchema;
+import org.apache.kudu.Common;
+import org.apache.kudu.Schema;
+import org.apache.kudu.client.Client;
+import org.apache.kudu.client.KuduPredicate;
+import org.apache.kudu.client.PartialRow;
+
+/**
+ * Splits scan tokens of large tablets into ranges of primary keys, so a large tablet can be
+ * read by several minor fragments. The Kudu client can't split scan tokens by size, so tablets
+ * are split by values of the leading primary key column into equally wide ranges. It works for
+ * integer and timestamp leading columns bounded by predicates on both sides, e.g. time ranges
+ * of time series.
+ *
+ * Ranges cover the whole key space of the tablet: the first one has no lower and the last one
+ * no upper bound. Rows out of the bounds of predicates are still filtered by the predicates, so
+ * bounds only affect how evenly rows are split.
+ */
+public class KuduKeyRangeSplitter {
+  // the most ranges a scan is split into
+  static final int MAX_SPLITS = 1024;
+
+  private final Schema schema;
+  private final ColumnSchema leadingColumn;
+
+  public KuduKeyRangeSplitter(Schema schema) {
+    this.schema = schema;
+    this.leadingColumn = schema.getPrimaryKeyColumns().get(0);
+  }
+
+  /**
+   * @return lower (inclusive) and upper (exclusive) bound of leading primary key column by
+   * predicates, null when it is not bounded on both sides or its type can't be split
+   */
+  public long[] leadingKeyBounds(List<KuduPredicate> preds) {
+    int size = valueSize(leadingColumn);
+    if (size == 0) {
+      return null;
+    }
+    Long lower = null;
+    Long upper = null;
+    for (KuduPredicate pred : preds) {
+      Common.ColumnPredicatePB pb = pred.toPB();
+      if (!leadingColumn.getName().equals(pb.getColumn())
+          || pb.getPredicateCase() != Common.ColumnPredicatePB.PredicateCase.RANGE) {
+        continue;
+      }
+      Common.ColumnPredicatePB.Range range = pb.getRange();
+      if (range.hasLower()) {
+        long value = decode(range.getLower().toByteArray(), size);
+        lower = lower == null ? value : Math.max(lower, value);
+      }
+      if (range.hasUpper()) {
+        long value = decode(range.getUpper().toByteArray(), size);
+        upper = upper == null ? value : Math.min(upper, value);
+      }
+    }
+    if (lower == null || upper == null || lower >= upper) {
+      return null;
+    }
+    return new long[] { lower, upper };
+  }
+
+  /**
+   * Narrows bounds of the leading primary key column to the keys of a tablet of a table range
+   * partitioned by the leading column first.
+   * @param bounds bounds of {@link #leadingKeyBounds(List)}
+   * @param rangeKeyStart encoded range key the tablet starts at, empty when unbounded
+   * @param rangeKeyEnd encoded range key the tablet ends before, empty when unbounded
+   * @return lower (inclusive) and upper (exclusive) bound of leading column within the tablet,
+   * null when the tablet holds no keys within bounds
+   */
+  public long[] tabletKeyBounds(long[] bounds, byte[] rangeKeyStart, byte[] rangeKeyEnd) {
+    int size = valueSize(leadingColumn);
+    long lower = bounds[0];
+    long upper = bounds[1];
+    if (rangeKeyStart.length >= size) {
+      lower = Math.max(lower, decodeKey(rangeKeyStart, size));
+    }
+    if (rangeKeyEnd.length >= size) {
+      long end = decodeKey(rangeKeyEnd, size);
+      if (rangeKeyEnd.length > size && end < Long.MAX_VALUE) {
+        // keys of the end value and lesser values of other range columns are in the tablet
+        end++;
+      }
+      upper = Math.min(upper, end);
+    }
+    return lower < upper ? new long[] { lower, upper } : null;
+  }
+
+  /**
+   * Splits scan token of a tablet into tokens of equally wide ranges of the leading primary key
+   * column. Serialized protobuf messages merge when concatenated, later values of fields win, so
+   * bounds are appended to the serialized token instead of building tokens for every range.
+   * @param scanToken serialized scan token of a tablet, without primary key bounds
+   * @param bounds bounds of leading column to split
+   * @param splits the most ranges
+   * @return serialized scan tokens of ranges
+   */
+  public List<byte[]> splitScanToken(byte[] scanToken, long[] bounds, int splits) {
+    long[] points = splitPoints(bounds[0], bounds[1], splits);
+    List<byte[]> scanTokens = Lists.newArrayList();
+    for (int i = 0; i <= points.length; i++) {
+      ByteArrayOutputStream rangeToken = new ByteArrayOutputStream();
+      rangeToken.write(scanToken, 0, scanToken.length);
+      if (i > 0) {
+        writeBytesField(rangeToken, Client.ScanTokenPB.LOWER_BOUND_PRIMARY_KEY_FIELD_NUMBER,
+            keyOf(points[i - 1]).encodePrimaryKey());
+      }
+      if (i < points.length) {
+        writeBytesField(rangeToken, Client.ScanTokenPB.UPPER_BOUND_PRIMARY_KEY_FIELD_NUMBER,
+            keyOf(points[i]).encodePrimaryKey());
+      }
+      scanTokens.add(rangeToken.toByteArray());
+    }
+    return scanTokens;
+  }
+
+  // length delimited field in protobuf wire format
+  private static void writeBytesField(ByteArrayOutputStream out, int fieldNumber, byte[] value) {
+    writeVarint(out, fieldNumber << 3 | 2);
+    writeVarint(out, value.length);
+    out.write(value, 0, value.length);
+  }
+
+  private static void writeVarint(ByteArrayOutputStream out, int value) {
+    while ((value & ~0x7f) != 0) {
+      out.write(value & 0x7f | 0x80);
+      value >>>= 7;
+    }
+    out.write(value);
+  }
+
+  /**
+   * @return values of leading primary key column splitting bounds into the given number of
+   * equally wide ranges, fewer when the bounds hold fewer values
+   */
+  public static long[] splitPoints(long lower, long upper, int splits) {
+    // bounds of predicates on 64-bit columns may be too far apart for a long
+    double width = (double) upper - lower;
+    int count = (int) Math.max(1, Math.min(Math.min(splits, MAX_SPLITS), width));
+    long[] points = new long[count - 1];
+    for (int i = 1; i < count; i++) {
+      points[i - 1] = lower + (long) (width * i / count);
+    }
+    return points;
+  }
+
+  /**
+   * @return primary key starting at the value of leading column, followed by the least values
+   * of the other key columns
+   */
+  public PartialRow keyOf(long leadingValue) {
+    PartialRow key = schema.newPartialRow();
+    List<ColumnSchema> keyColumns = schema.getPrimaryKeyColumns();
+    setValue(key, 0, leadingColumn, leadingValue);
+    for (int i = 1; i < keyColumns.size(); i++) {
+      setMin(key, i, keyColumns.get(i));
+    }
+    return key;
+  }
+
+  private static int valueSize(ColumnSchema column) {
+    switch (column.getType()) {
+    case INT8:
+      return 1;
+    case INT16:
+      return 2;
+    case INT32:
+      return 4;
+    case INT64:
+    case UNIXTIME_MICROS:
+      return 8;
+    default:
+      return 0;
+    }
+  }
+
+  // values of predicates are encoded in little endian
+  private static long decode(byte[] value, int size) {
+    ByteBuffer buffer = ByteBuffer.wrap(value).order(ByteOrder.LITTLE_ENDIAN);
+    switch (size) {
+    case 1:
+      return buffer.get();
+    case 2:
+      return buffer.getShort();
+    case 4:
+      return buffer.getInt();
+    default:
+      return buffer.getLong();
+    }
+  }
+
+  // range keys are encoded in big endian with the sign bit flipped, so they sort as bytes
+  private static long decodeKey(byte[] key, int size) {
+    ByteBuffer buffer = ByteBuffer.wrap(key);
+    switch (size) {
+    case 1:
+      return (byte) (buffer.get() ^ Byte.MIN_VALUE);
+    case 2:
+      return (short) (buffer.getShort() ^ Short.MIN_VALUE);
+    case 4:
+      return buffer.getInt() ^ Integer.MIN_VALUE;
+    default:
+      return buffer.getLong() ^ Long.MIN_VALUE;
+    }
+  }
+
+  private static void setValue(PartialRow row, int index, ColumnSchema column, long value) {
+    switch (column.getType()) {
+    case INT8:
+      row.addByte(index, (byte) value);
+      break;
+    case INT16:
+      row.addShort(index, (short) value);
+      break;
+    case INT32:
+      row.addInt(index, (int) value);
+      break;
+    default:
+      row.addLong(index, value);
+    }
+  }
+
+  private static void setMin(PartialRow row, int index, ColumnSchema column) {
+    switch (column.getType()) {
+    case INT8:
+      row.addByte(index, Byte.MIN_VALUE);
+      break;
+    case INT16:
+      row.addShort(index, Short.MIN_VALUE);
+      break;
+    case INT32:
+      row.addInt(index, Integer.MIN_VALUE);
+      break;
+    case INT64:
+    case UNIXTIME_MICROS:
+      row.addLong(index, Long.MIN_VALUE);
+      break;
+    case STRING:
+      row.addString(index, "");
+      break;
+    case BINARY:
+      row.addBinary(index, new byte[0]);
+      break;
+    default:
+      throw new IllegalArgumentException("Unsupported primary key column " + column.getName());
+    }
+  }
+}
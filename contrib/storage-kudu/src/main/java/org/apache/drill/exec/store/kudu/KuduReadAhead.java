@@ -0,0 +1,200 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.kudu;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+
+import org.apache.kudu.client.KuduScanner;
+import org.apache.kudu.client.RowResultIterator;
+
+/**
+ * Fetches batches of rows of a Kudu scanner on the scan thread pool, so the next round trip
+ * to the tablet server overlaps copying of the current batch into vectors.
+ *
+ * Fetched batches are put into a bounded queue, at most depth batches are fetched ahead of
+ * the reader. The fetching task does not wait for room in the queue: it ends when the queue
+ * is full and is submitted again once the reader takes a batch, so a slow reader does not hold
+ * a thread of the pool shared with other scans. The scanner is used only by the fetching task
+ * while it runs. Failures of fetching are passed to the reader through the queue, after the
+ * batches fetched before them.
+ */
+public class KuduReadAhead {
+  static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(KuduReadAhead.class);
+
+  private static final Fetched END = new Fetched(null, null);
+
+  /**
+   * Source of fetched batches, the Kudu scanner.
+   */
+  public interface Batches {
+    boolean hasMoreRows() throws Exception;
+
+    RowResultIterator nextRows() throws Exception;
+  }
+
+  private final Batches batches;
+  private final int depth;
+  private final BlockingQueue<Fetched> queue;
+  private final Object lock = new Object();
+  private ExecutorService executor;
+  // guarded by lock
+  private boolean running;
+  private boolean finished;
+  private boolean closed;
+  // used by the reader only
+  private boolean done;
+
+  private static class Fetched {
+    final RowResultIterator rows;
+    final Throwable error;
+
+    Fetched(RowResultIterator rows, Throwable error) {
+      this.rows = rows;
+      this.error = error;
+    }
+  }
+
+  public KuduReadAhead(final KuduScanner scanner, int depth) {
+    this(new Batches() {
+      @Override
+      public boolean hasMoreRows() {
+        return scanner.hasMoreRows();
+      }
+
+      @Override
+      public RowResultIterator nextRows() throws Exception {
+        return scanner.nextRows();
+      }
+    }, depth);
+  }
+
+  public KuduReadAhead(Batches batches, int depth) {
+    this.batches = batches;
+    this.depth = depth;
+    this.queue = new ArrayBlockingQueue<>(depth);
+  }
+
+  public void start(ExecutorService executor) {
+    synchronized (lock) {
+      this.executor = executor;
+      resume();
+    }
+  }
+
+  /**
+   * Waits for the next fetched batch.
+   * @return next batch of rows, null when scanner has no more rows
+   * @throws Exception failure of fetching the batch
+   */
+  public RowResultIterator take() throws Exception {
+    if (done) {
+      return null;
+    }
+    Fetched fetched = queue.take();
+    synchronized (lock) {
+      // the batch taken made room for another one
+      resume();
+    }
+    if (fetched == END) {
+      done = true;
+      return null;
+    }
+    if (fetched.error != null) {
+      done = true;
+      if (fetched.error instanceof Error) {
+        throw (Error) fetched.error;
+      }
+      throw (Exception) fetched.error;
+    }
+    return fetched.rows;
+  }
+
+  // called holding lock
+  private void resume() {
+    if (!running && !closed && !finished && queue.size() < depth) {
+      running = true;
+      try {
+        executor.execute(new Runnable() {
+          @Override
+          public void run() {
+            fetch();
+          }
+        });
+      } catch (RuntimeException e) {
+        running = false;
+        throw e;
+      }
+    }
+  }
+
+  private void fetch() {
+    while (hasRoom()) {
+      Fetched fetched;
+      try {
+        fetched = batches.hasMoreRows() ? new Fetched(batches.nextRows(), null) : END;
+      } catch (Throwable e) {
+        fetched = new Fetched(null, e);
+      }
+      synchronized (lock) {
+        finished = fetched.rows == null;
+        queue.add(fetched);
+      }
+    }
+  }
+
+  /**
+   * @return true when the task should fetch another batch, otherwise the task ends and
+   * releases the scanner
+   */
+  private boolean hasRoom() {
+    synchronized (lock) {
+      if (closed || finished || queue.size() >= depth) {
+        running = false;
+        lock.notifyAll();
+        return false;
+      }
+      return true;
+    }
+  }
+
+  /**
+   * Stops fetching and waits for the running task to release the scanner, so it can be closed.
+   * A batch being fetched is waited for even when the thread is interrupted, it is bounded by
+   * the operation timeout of the Kudu client.
+   */
+  public void close() {
+    boolean interrupted = false;
+    synchronized (lock) {
+      closed = true;
+      while (running) {
+        try {
+          lock.wait();
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
+      }
+    }
+    if (interrupted) {
+      logger.debug("Interrupted while waiting for read ahead of Kudu scanner to stop");
+      Thread.currentThread().interrupt();
+    }
+    queue.clear();
+  }
+}
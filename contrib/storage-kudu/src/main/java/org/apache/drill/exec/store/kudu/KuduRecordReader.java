@@ -17,7 +17,6 @@
  */
 package org.apache.drill.exec.store.kudu;
 
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import org.apache.drill.common.exceptions.ExecutionSetupException;
@@ -30,27 +29,12 @@ import org.apache.drill.exec.exception.SchemaChangeException;
 import org.apache.drill.exec.expr.TypeHelper;
 import org.apache.drill.exec.ops.FragmentContext;
 import org.apache.drill.exec.ops.OperatorContext;
+import org.apache.drill.exec.ops.ScanMetrics;
 import org.apache.drill.exec.physical.impl.OutputMutator;
 import org.apache.drill.exec.record.MaterializedField;
 import org.apache.drill.exec.store.AbstractRecordReader;
 import org.apache.drill.exec.store.kudu.KuduSubScan.KuduSubScanSpec;
-import org.apache.drill.exec.vector.BigIntVector;
-import org.apache.drill.exec.vector.BitVector;
-import org.apache.drill.exec.vector.Float4Vector;
-import org.apache.drill.exec.vector.Float8Vector;
-import org.apache.drill.exec.vector.IntVector;
-import org.apache.drill.exec.vector.NullableBigIntVector;
-import org.apache.drill.exec.vector.NullableBitVector;
-import org.apache.drill.exec.vector.NullableFloat4Vector;
-import org.apache.drill.exec.vector.NullableFloat8Vector;
-import org.apache.drill.exec.vector.NullableIntVector;
-import org.apache.drill.exec.vector.NullableTimeStampVector;
-import org.apache.drill.exec.vector.NullableVarBinaryVector;
-import org.apache.drill.exec.vector.NullableVarCharVector;
-import org.apache.drill.exec.vector.TimeStampVector;
 import org.apache.drill.exec.vector.ValueVector;
-import org.apache.drill.exec.vector.VarBinaryVector;
-import org.apache.drill.exec.vector.VarCharVector;
 import org.apache.kudu.ColumnSchema;
 import org.apache.kudu.Schema;
 import org.apache.kudu.Type;
@@ -61,7 +45,6 @@ import org.apache.kudu.client.KuduTable;
 import org.apache.kudu.client.RowResult;
 import org.apache.kudu.client.RowResultIterator;
 
-import java.nio.ByteBuffer;
 import java.util.List;
 import java.util.Map;
 
@@ -74,10 +57,12 @@ public class KuduRecordReader extends AbstractRecordReader {
 
   private final boolean allUnsignedINT8;
   private final boolean allUnsignedINT16;
+  private final int readAheadBatches;
 
   private String tableName;
 
   private KuduScanner scanner;
+  private KuduReadAhead readAhead;
   private RowResultIterator iterator;
 
   private OutputMutator output;
@@ -85,13 +70,7 @@ public class KuduRecordReader extends AbstractRecordReader {
 
   public final static int MAXIMUM_ROWS_SUPPORTED_IN_BATCH = 20000;
 
-  private static class ProjectedColumnInfo {
-    int index;
-    ValueVector vv;
-    ColumnSchema kuduColumn;
-  }
-
-  private ImmutableList<ProjectedColumnInfo> projectedCols;
+  private KuduColumnCopier[] copiers;
 
   public KuduRecordReader(KuduClient client, KuduSubScan.KuduSubScanSpec subScanSpec, KuduStoragePluginConfig pluginConfig,
       List<SchemaPath> projectedColumns, FragmentContext context) {
@@ -102,9 +81,11 @@ public class KuduRecordReader extends AbstractRecordReader {
     if (this.pluginConfig != null) {
       this.allUnsignedINT8 = this.pluginConfig.isAllUnsignedINT8();
       this.allUnsignedINT16 = this.pluginConfig.isAllUnsignedINT16();
+      this.readAheadBatches = this.pluginConfig.getReadAheadBatches();
     } else {
       this.allUnsignedINT8 = false;
       this.allUnsignedINT16 = false;
+      this.readAheadBatches = 0;
     }
 
     setColumns(projectedColumns);
@@ -138,6 +119,10 @@ public class KuduRecordReader extends AbstractRecordReader {
       try {
         if (scanSpec != null) {
           scanner = scanSpec.deserializeIntoScanner(client);
+          if (readAheadBatches > 0) {
+            readAhead = new KuduReadAhead(scanner, readAheadBatches);
+            readAhead.start(context.getScanExecutor());
+          }
         }
       } finally {
         context.getStats().stopWait();
@@ -175,60 +160,79 @@ public class KuduRecordReader extends AbstractRecordReader {
       return rowCount;
     }
 
-    if (projectedCols == null) {
+    if (copiers == null) {
       // First iteration? initCols (called by addRowResult) will handle this.
     }  else {
       // Cleanup target vectors
-      for (ProjectedColumnInfo pci : projectedCols) {
-        pci.vv.clear();
-        pci.vv.allocateNewSafe();
+      for (KuduColumnCopier copier : copiers) {
+        copier.reset();
       }
     }
 
     try {
-        context.getStats().startWait();
-        // Kudu RowResultIterator sometimes returns 0 rows even if it knows that more rows are awaiting.
-        // On the other hand Drill when using KuduRecordReader thinks that 0 rows mean end of iterating.
-        // Ergo we need to make sure that we don't return 0 here if there are more rows awaiting.
-        while (rowCount == 0 && ((iterator != null && iterator.hasNext()) || scanner.hasMoreRows())) {
-          try {
-            if (iterator == null || !iterator.hasNext()) {
-              iterator = scanner.nextRows();
-            }
-
-            context.getStats().stopWait();
-
-            context.getStats().startProcessing();
-            for (; iterator.hasNext() && rowCount < MAXIMUM_ROWS_SUPPORTED_IN_BATCH; rowCount++) {
-              addRowResult(iterator.next(), rowCount);
-            }
-          } finally {
-            context.getStats().stopProcessing();
+      // Kudu RowResultIterator sometimes returns 0 rows even if it knows that more rows are awaiting.
+      // On the other hand Drill when using KuduRecordReader thinks that 0 rows mean end of iterating.
+      // Ergo we need to make sure that we don't return 0 here if there are more rows awaiting.
+      while (rowCount == 0) {
+        if (iterator == null || !iterator.hasNext()) {
+          iterator = fetchRows();
+          if (iterator == null) {
+            break;
           }
         }
+
+        long decodeStart = System.nanoTime();
+        for (; iterator.hasNext() && rowCount < MAXIMUM_ROWS_SUPPORTED_IN_BATCH; rowCount++) {
+          addRowResult(iterator.next(), rowCount);
+        }
+        context.getStats().addLongStat(ScanMetrics.Metric.DECODE_NANOS, System.nanoTime() - decodeStart);
+      }
     } catch (Exception ex) {
       throw new RuntimeException(ex);
-    } finally {
-      context.getStats().stopWait();
     }
 
-    if (projectedCols == null) {
+    if (copiers == null) {
       // That's not great, but...
       if (rowCount > 0) {
         // only then this is nasty and should not really happen
         throw new RuntimeException("No projected cols available but there are " + rowCount + " rows that should have been stored...");
       }
     } else {
-      for (ProjectedColumnInfo pci : projectedCols) {
-        pci.vv.getMutator().setValueCount(rowCount);
+      for (KuduColumnCopier copier : copiers) {
+        copier.setValueCount(rowCount);
       }
     }
 
     return rowCount;
   }
 
+  /**
+   * Takes the next batch of rows, from the read ahead when enabled, otherwise straight from the
+   * scanner. Time spent waiting for it is counted as operator wait time.
+   * @return next batch of rows, null when scanner has no more rows
+   */
+  private RowResultIterator fetchRows() throws Exception {
+    long waitStart = System.nanoTime();
+    context.getStats().startWait();
+    try {
+      RowResultIterator rows;
+      if (readAhead != null) {
+        rows = readAhead.take();
+      } else {
+        rows = scanner.hasMoreRows() ? scanner.nextRows() : null;
+      }
+      if (rows != null) {
+        context.getStats().addLongStat(ScanMetrics.Metric.BATCHES_FETCHED, 1);
+      }
+      return rows;
+    } finally {
+      context.getStats().stopWait();
+      context.getStats().addLongStat(ScanMetrics.Metric.PREFETCH_WAIT_NANOS, System.nanoTime() - waitStart);
+    }
+  }
+
   private void initCols(Schema schema) throws SchemaChangeException {
-    ImmutableList.Builder<ProjectedColumnInfo> pciBuilder = ImmutableList.builder();
+    List<KuduColumnCopier> columnCopiers = Lists.newArrayList();
 
     for (int i = 0; i < schema.getColumnCount(); i++) {
       ColumnSchema col = schema.getColumnByIndex(i);
@@ -260,192 +264,33 @@ public class KuduRecordReader extends AbstractRecordReader {
           minorType, majorType.getMode());
       ValueVector vector = output.addField(field, clazz);
       vector.setInitialCapacity(MAXIMUM_ROWS_SUPPORTED_IN_BATCH);
-      vector.allocateNew();
-
-      ProjectedColumnInfo pci = new ProjectedColumnInfo();
-      pci.vv = vector;
-      pci.kuduColumn = col;
-      pci.index = i;
-      pciBuilder.add(pci);
-    }
 
-    projectedCols = pciBuilder.build();
-  }
-
-  private int transformINT16(short in) {
-    if (allUnsignedINT16) {
-      return Short.toUnsignedInt(in);
-    } else {
-      return in;
+      KuduColumnCopier copier = KuduColumnCopier.create(col, i, vector, allUnsignedINT8, allUnsignedINT16);
+      copier.allocate();
+      columnCopiers.add(copier);
     }
-  }
 
-  private int transformINT8(byte in) {
-    if (allUnsignedINT8) {
-      return Byte.toUnsignedInt(in);
-    } else {
-      return in;
-    }
+    copiers = columnCopiers.toArray(new KuduColumnCopier[columnCopiers.size()]);
   }
 
   private void addRowResult(RowResult result, int rowIndex) throws SchemaChangeException {
-    if (projectedCols == null) {
+    if (copiers == null) {
       // We define the columns with the first known row
       initCols(result.getColumnProjection());
     }
 
-    for (ProjectedColumnInfo pci : projectedCols) {
-      switch (pci.kuduColumn.getType()) {
-      case BINARY: {
-        ByteBuffer value = result.getBinary(pci.index);
-        if (pci.kuduColumn.isNullable()) {
-          if (result.isNull(pci.index)) {
-            ((NullableVarBinaryVector.Mutator) pci.vv.getMutator())
-                    .setNull(rowIndex);
-          } else {
-            ((NullableVarBinaryVector.Mutator) pci.vv.getMutator())
-                    .setSafe(rowIndex, value, 0, value.remaining());
-          }
-        } else {
-          ((VarBinaryVector.Mutator) pci.vv.getMutator())
-              .setSafe(rowIndex, value, 0, value.remaining());
-        }
-        break;
-      }
-      case STRING: {
-        if (pci.kuduColumn.isNullable()) {
-          if (result.isNull(pci.index)) {
-            ((NullableVarCharVector.Mutator) pci.vv.getMutator()).setNull(pci.index);
-          } else {
-            byte[] strBytes = result.getString(pci.index).getBytes();
-            ((NullableVarCharVector.Mutator) pci.vv.getMutator()).setSafe(rowIndex, strBytes, 0, strBytes.length);
-          }
-        } else {
-          ((VarCharVector.Mutator) pci.vv.getMutator()).setSafe(rowIndex, result.getString(pci.index).getBytes());
-        }
-        break;
-      }
-      case BOOL:
-        if (pci.kuduColumn.isNullable()) {
-          if (result.isNull(pci.index)) {
-            ((NullableBitVector.Mutator) pci.vv.getMutator())
-                    .setNull(rowIndex);
-          } else {
-            ((NullableBitVector.Mutator) pci.vv.getMutator())
-                    .setSafe(rowIndex, result.getBoolean(pci.index) ? 1 : 0);
-          }
-        } else {
-          ((BitVector.Mutator) pci.vv.getMutator())
-              .setSafe(rowIndex, result.getBoolean(pci.index) ? 1 : 0);
-        }
-        break;
-      case DOUBLE:
-        if (pci.kuduColumn.isNullable()) {
-          if (result.isNull(pci.index)) {
-            ((NullableFloat8Vector.Mutator) pci.vv.getMutator())
-                    .setNull(rowIndex);
-          } else {
-            ((NullableFloat8Vector.Mutator) pci.vv.getMutator())
-                    .setSafe(rowIndex, result.getDouble(pci.index));
-          }
-        } else {
-          ((Float8Vector.Mutator) pci.vv.getMutator())
-              .setSafe(rowIndex, result.getDouble(pci.index));
-        }
-        break;
-      case FLOAT:
-        if (pci.kuduColumn.isNullable()) {
-          if (result.isNull(pci.index)) {
-            ((NullableFloat4Vector.Mutator) pci.vv.getMutator())
-                    .setNull(rowIndex);
-          } else {
-            ((NullableFloat4Vector.Mutator) pci.vv.getMutator())
-                    .setSafe(rowIndex, result.getFloat(pci.index));
-          }
-        } else {
-          ((Float4Vector.Mutator) pci.vv.getMutator())
-              .setSafe(rowIndex, result.getFloat(pci.index));
-        }
-        break;
-      case INT16:
-        if (pci.kuduColumn.isNullable()) {
-          if (result.isNull(pci.index)) {
-            ((NullableIntVector.Mutator) pci.vv.getMutator())
-                    .setNull(rowIndex);
-          } else {
-            ((NullableIntVector.Mutator) pci.vv.getMutator())
-                    .setSafe(rowIndex, transformINT16(result.getShort(pci.index)));
-          }
-        } else {
-          ((IntVector.Mutator) pci.vv.getMutator())
-                  .setSafe(rowIndex, transformINT16(result.getShort(pci.index)));
-        }
-        break;
-      case INT32:
-        if (pci.kuduColumn.isNullable()) {
-          if (result.isNull(pci.index)) {
-            ((NullableIntVector.Mutator) pci.vv.getMutator())
-                    .setNull(rowIndex);
-          } else {
-            ((NullableIntVector.Mutator) pci.vv.getMutator())
-                    .setSafe(rowIndex, result.getInt(pci.index));
-          }
-        } else {
-          ((IntVector.Mutator) pci.vv.getMutator())
-              .setSafe(rowIndex, result.getInt(pci.index));
-        }
-        break;
-      case INT8:
-        if (pci.kuduColumn.isNullable()) {
-          if (result.isNull(pci.index)) {
-            ((NullableIntVector.Mutator) pci.vv.getMutator())
-                    .setNull(rowIndex);
-          } else {
-            ((NullableIntVector.Mutator) pci.vv.getMutator())
-                    .setSafe(rowIndex, transformINT8(result.getByte(pci.index)));
-          }
-        } else {
-          ((IntVector.Mutator) pci.vv.getMutator())
-              .setSafe(rowIndex, transformINT8(result.getByte(pci.index)));
-        }
-        break;
-      case INT64:
-        if (pci.kuduColumn.isNullable()) {
-          if (result.isNull(pci.index)) {
-            ((NullableBigIntVector.Mutator) pci.vv.getMutator())
-             .setNull(rowIndex);
-          } else {
-            ((NullableBigIntVector.Mutator) pci.vv.getMutator())
-             .setSafe(rowIndex, result.getLong(pci.index));
-          }
-        } else {
-          ((BigIntVector.Mutator) pci.vv.getMutator())
-             .setSafe(rowIndex, result.getLong(pci.index));
-        }
-        break;
-      case UNIXTIME_MICROS:
-        if (pci.kuduColumn.isNullable()) {
-          if (result.isNull(pci.index)) {
-            ((NullableTimeStampVector.Mutator) pci.vv.getMutator())
-              .setNull(rowIndex);
-          } else {
-            ((NullableTimeStampVector.Mutator) pci.vv.getMutator())
-              .setSafe(rowIndex, result.getLong(pci.index) / 1000);
-          }
-        } else {
-          ((TimeStampVector.Mutator) pci.vv.getMutator())
-              .setSafe(rowIndex, result.getLong(pci.index) / 1000);
-        }
-        break;
-      default:
-        throw new SchemaChangeException("unknown type"); // TODO make better
-      }
+    for (KuduColumnCopier copier : copiers) {
+      copier.copy(result, rowIndex);
     }
   }
 
   @Override
   public void close() {
-    if (projectedCols == null) {
+    if (readAhead != null) {
+      readAhead.close();
+    }
+
+    if (copiers == null) {
       try {
         // We must provide any schema or the query will fail. So if no results, lets just get what's available in Kudu schema
         String table = this.scanSpec == null ? tableName : this.scanSpec.getTableName();
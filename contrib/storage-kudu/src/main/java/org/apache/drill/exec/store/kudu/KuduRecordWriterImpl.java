@@ -20,6 +20,7 @@ package org.apache.drill.exec.store.kudu;
 import org.apache.drill.common.exceptions.UserException;
 import org.apache.drill.common.types.TypeProtos.DataMode;
 import org.apache.drill.common.types.TypeProtos.MajorType;
+import org.apache.drill.exec.ops.MetricDef;
 import org.apache.drill.exec.ops.OperatorContext;
 import org.apache.drill.exec.record.BatchSchema;
 import org.apache.drill.exec.record.MaterializedField;
@@ -28,38 +29,76 @@ import org.apache.kudu.ColumnSchema;
 import org.apache.kudu.Schema;
 import org.apache.kudu.Type;
 import org.apache.kudu.client.CreateTableOptions;
-import org.apache.kudu.client.Insert;
 import org.apache.kudu.client.KuduClient;
 import org.apache.kudu.client.KuduSession;
 import org.apache.kudu.client.KuduTable;
+import org.apache.kudu.client.Operation;
 import org.apache.kudu.client.OperationResponse;
+import org.apache.kudu.client.RowError;
+import org.apache.kudu.client.RowErrorsAndOverflowStatus;
 import org.apache.kudu.client.SessionConfiguration.FlushMode;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 public class KuduRecordWriterImpl extends KuduRecordWriter {
   static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(KuduRecordWriterImpl.class);
 
-  private static final int FLUSH_FREQUENCY = 100;
+  private static final int DEFAULT_BUFFER_SIZE = 1000;
+  // row errors quoted in the failure of a writer, all of them are counted
+  private static final int MAX_REPORTED_ERRORS = 10;
+
+  public enum Metric implements MetricDef {
+    ROWS_WRITTEN,      // rows applied to the session
+    FLUSHES,           // flushes the writer waited for
+    FLUSH_NANOS,       // time waiting for flushes
+    APPLY_WAIT_NANOS,  // time waiting for buffer space of background flushes
+    ROW_ERRORS,        // rows rejected by tablet servers
+    ROWS_PER_SECOND;   // rows written per second, from the first row to the last flush
+
+    @Override
+    public int metricId() {
+      return ordinal();
+    }
+  }
 
   private final KuduClient client;
   private final String name;
   private final OperatorContext context;
+  private final boolean backgroundFlush;
+  private final boolean upsert;
+  private final int bufferSize;
   private KuduTable table;
   private KuduSession session;
 
-  private Insert insert;
+  private Operation operation;
   private int recordsSinceFlush;
 
-  public KuduRecordWriterImpl(OperatorContext context, KuduClient client, String name) {
+  private final List<RowError> rowErrors = new ArrayList<>();
+  private long rowErrorCount;
+  private boolean rowErrorsOverflowed;
+
+  private long rowsWritten;
+  private long flushes;
+  private long flushNanos;
+  private long applyWaitNanos;
+  private long firstRecordNanos;
+
+  public KuduRecordWriterImpl(OperatorContext context, KuduClient client, KuduStoragePluginConfig config, String name) {
     this.client = client;
     this.name = name;
     this.context = context;
+    this.backgroundFlush = config.isWriteBackgroundFlush();
+    this.upsert = config.isWriteUpsert();
+    this.bufferSize = config.getWriteBufferSize() > 0 ? config.getWriteBufferSize() : DEFAULT_BUFFER_SIZE;
     session = client.newSession();
-    session.setFlushMode(FlushMode.MANUAL_FLUSH);
+    // Background flushes send buffered rows while the writer fills the next buffer,
+    // manual flushes wait for every buffer to be written
+    session.setFlushMode(backgroundFlush ? FlushMode.AUTO_FLUSH_BACKGROUND : FlushMode.MANUAL_FLUSH);
+    session.setMutationBufferSpace(bufferSize);
   }
 
   @Override
@@ -85,6 +124,8 @@ public class KuduRecordWriterImpl extends KuduRecordWriter {
 
         CreateTableOptions options = new CreateTableOptions();
         table = client.createTable(name, kuduSchema, options);
+      } else {
+        table = client.openTable(name);
       }
     } catch (Exception e) {
       throw new IOException(e);
@@ -131,20 +172,37 @@ public class KuduRecordWriterImpl extends KuduRecordWriter {
 
   @Override
   public void startRecord() throws IOException {
-    insert = table.newInsert();
-    setUp(insert.getRow());
+    if (firstRecordNanos == 0) {
+      firstRecordNanos = System.nanoTime();
+    }
+    operation = upsert ? table.newUpsert() : table.newInsert();
+    setUp(operation.getRow());
   }
 
   @Override
   public void endRecord() throws IOException {
     try {
-      session.apply(insert);
+      if (backgroundFlush) {
+        long start = System.nanoTime();
+        // with background flushes, apply blocks while all buffers are being flushed
+        session.apply(operation);
+        applyWaitNanos += System.nanoTime() - start;
+      } else {
+        // with manual flushes, apply only buffers the row
+        session.apply(operation);
+      }
+      rowsWritten++;
       recordsSinceFlush++;
-      if (recordsSinceFlush == FLUSH_FREQUENCY) {
-        flush();
+      if (recordsSinceFlush == bufferSize) {
+        if (backgroundFlush) {
+          collectPendingErrors();
+        } else {
+          flush();
+        }
         recordsSinceFlush = 0;
+        publishMetrics();
       }
-      insert = null;
+      operation = null;
     } catch (Exception e) {
       throw new IOException(e);
     }
@@ -155,23 +213,75 @@ public class KuduRecordWriterImpl extends KuduRecordWriter {
   }
 
   private void flush() throws IOException {
+    long start = System.nanoTime();
     try {
       context.getStats().startWait();
-      List<OperationResponse> responses = session.flush();
-      for (OperationResponse response : responses) {
-        if (response.hasRowError()) {
-          throw new IOException(response.getRowError().toString());
-        }
-      }
+      collectErrors(session.flush());
     } catch (Exception e) {
       throw new IOException(e);
     } finally {
       context.getStats().stopWait();
+      flushes++;
+      flushNanos += System.nanoTime() - start;
+    }
+  }
+
+  private void collectErrors(List<OperationResponse> responses) {
+    for (OperationResponse response : responses) {
+      if (response.hasRowError()) {
+        collectError(response.getRowError());
+      }
     }
   }
 
+  /**
+   * Collects errors of rows flushed in the background so far, Kudu keeps a bounded number of them.
+   */
+  private void collectPendingErrors() {
+    if (session.countPendingErrors() == 0) {
+      return;
+    }
+    RowErrorsAndOverflowStatus pendingErrors = session.getPendingErrors();
+    for (RowError rowError : pendingErrors.getRowErrors()) {
+      collectError(rowError);
+    }
+    rowErrorsOverflowed |= pendingErrors.isOverflowed();
+  }
+
+  private void collectError(RowError rowError) {
+    rowErrorCount++;
+    if (rowErrors.size() < MAX_REPORTED_ERRORS) {
+      rowErrors.add(rowError);
+    }
+  }
+
+  private void publishMetrics() {
+    context.getStats().setLongStat(Metric.ROWS_WRITTEN, rowsWritten);
+    context.getStats().setLongStat(Metric.FLUSHES, flushes);
+    context.getStats().setLongStat(Metric.FLUSH_NANOS, flushNanos);
+    if (backgroundFlush) {
+      context.getStats().setLongStat(Metric.APPLY_WAIT_NANOS, applyWaitNanos);
+    }
+    context.getStats().setLongStat(Metric.ROW_ERRORS, rowErrorCount);
+  }
+
   @Override
   public void cleanup() throws IOException {
-    flush();
+    try {
+      flush();
+      collectErrors(session.close());
+      collectPendingErrors();
+    } finally {
+      publishMetrics();
+      if (firstRecordNanos != 0) {
+        long elapsedNanos = Math.max(1, System.nanoTime() - firstRecordNanos);
+        context.getStats().setLongStat(Metric.ROWS_PER_SECOND, rowsWritten * TimeUnit.SECONDS.toNanos(1) / elapsedNanos);
+      }
+    }
+
+    if (rowErrorCount > 0) {
+      throw new IOException(String.format("%d rows were not written to Kudu table %s%s, first errors: %s",
+          rowErrorCount, name, rowErrorsOverflowed ? " (more errors were dropped by Kudu client)" : "", rowErrors));
+    }
   }
 }
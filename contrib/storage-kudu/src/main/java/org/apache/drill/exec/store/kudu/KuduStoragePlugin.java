@@ -43,6 +43,7 @@ public class KuduStoragePlugin extends AbstractStoragePlugin {
   @SuppressWarnings("unused")
   private final String name;
   private final KuduClient client;
+  private final KuduTabletStats tabletStats;
 
   public KuduStoragePlugin(KuduStoragePluginConfig configuration, DrillbitContext context, String name)
       throws IOException {
@@ -55,6 +56,8 @@ public class KuduStoragePlugin extends AbstractStoragePlugin {
             .defaultOperationTimeoutMs(configuration.getOperationTimeoutMs())
             .defaultSocketReadTimeoutMs(configuration.getOperationTimeoutMs()/2)
             .build();
+    this.tabletStats = new KuduTabletStats(configuration.getTabletServerWebPort(), configuration.getTabletStatsTtlMs(),
+        configuration.getTabletStatsTimeoutMs(), context.getExecutor());
   }
 
   @Override
@@ -66,6 +69,10 @@ public class KuduStoragePlugin extends AbstractStoragePlugin {
     return client;
   }
 
+  public KuduTabletStats getTabletStats() {
+    return tabletStats;
+  }
+
   @Override
   public void close() throws Exception {
     client.close();
@@ -34,6 +34,14 @@ public class KuduStoragePluginConfig extends StoragePluginConfigBase {
   private final int optimizerMaxNonPrimaryKeyAlternatives;
   private final boolean allUnsignedINT8;
   private final boolean allUnsignedINT16;
+  private final int readAheadBatches;
+  private final int tabletServerWebPort;
+  private final long tabletStatsTtlMs;
+  private final int tabletStatsTimeoutMs;
+  private final long scanSplitSizeBytes;
+  private final boolean writeBackgroundFlush;
+  private final int writeBufferSize;
+  private final boolean writeUpsert;
 
   @JsonCreator
   public KuduStoragePluginConfig(
@@ -41,12 +49,28 @@ public class KuduStoragePluginConfig extends StoragePluginConfigBase {
           @JsonProperty("operationTimeoutMs") long operationTimoutMs,
           @JsonProperty("optimizerMaxNonPrimaryKeyAlternatives") int optimizerMaxNonPrimaryKeyAlternatives,
           @JsonProperty("allUnsignedINT8") boolean allUnsignedINT8,
-          @JsonProperty("allUnsignedINT16") boolean allUnsignedINT16) {
+          @JsonProperty("allUnsignedINT16") boolean allUnsignedINT16,
+          @JsonProperty("readAheadBatches") int readAheadBatches,
+          @JsonProperty("tabletServerWebPort") int tabletServerWebPort,
+          @JsonProperty("tabletStatsTtlMs") long tabletStatsTtlMs,
+          @JsonProperty("tabletStatsTimeoutMs") int tabletStatsTimeoutMs,
+          @JsonProperty("scanSplitSizeBytes") long scanSplitSizeBytes,
+          @JsonProperty("writeBackgroundFlush") boolean writeBackgroundFlush,
+          @JsonProperty("writeBufferSize") int writeBufferSize,
+          @JsonProperty("writeUpsert") boolean writeUpsert) {
     this.masterAddresses = masterAddresses;
     this.operationTimeoutMs = operationTimoutMs;
     this.optimizerMaxNonPrimaryKeyAlternatives = optimizerMaxNonPrimaryKeyAlternatives;
     this.allUnsignedINT8 = allUnsignedINT8;
     this.allUnsignedINT16 = allUnsignedINT16;
+    this.readAheadBatches = readAheadBatches;
+    this.tabletServerWebPort = tabletServerWebPort;
+    this.tabletStatsTtlMs = tabletStatsTtlMs;
+    this.tabletStatsTimeoutMs = tabletStatsTimeoutMs;
+    this.scanSplitSizeBytes = scanSplitSizeBytes;
+    this.writeBackgroundFlush = writeBackgroundFlush;
+    this.writeBufferSize = writeBufferSize;
+    this.writeUpsert = writeUpsert;
   }
 
   public String getMasterAddresses() {
@@ -61,6 +85,49 @@ public class KuduStoragePluginConfig extends StoragePluginConfigBase {
 
   public boolean isAllUnsignedINT16() { return allUnsignedINT16; }
 
+  /**
+   * @return number of batches of rows fetched ahead of the reader, 0 fetches them on demand
+   */
+  public int getReadAheadBatches() { return readAheadBatches; }
+
+  /**
+   * @return port of web servers of tablet servers, tablets are sized from their metrics,
+   * 0 disables sizing of tablets
+   */
+  public int getTabletServerWebPort() { return tabletServerWebPort; }
+
+  /**
+   * @return how long sizes of tablets of a table are cached, 0 for default
+   */
+  public long getTabletStatsTtlMs() { return tabletStatsTtlMs; }
+
+  /**
+   * @return connect and read timeout of requests for metrics of tablet servers, 0 for default
+   */
+  public int getTabletStatsTimeoutMs() { return tabletStatsTimeoutMs; }
+
+  /**
+   * @return target size of scan units, scans of larger tablets are split into ranges of
+   * primary keys, 0 disables splitting
+   */
+  public long getScanSplitSizeBytes() { return scanSplitSizeBytes; }
+
+  /**
+   * @return whether writers flush rows in the background (AUTO_FLUSH_BACKGROUND) instead of
+   * waiting for every flush of buffered rows
+   */
+  public boolean isWriteBackgroundFlush() { return writeBackgroundFlush; }
+
+  /**
+   * @return rows buffered by writers before they are flushed, 0 for default
+   */
+  public int getWriteBufferSize() { return writeBufferSize; }
+
+  /**
+   * @return whether writers upsert rows instead of inserting them
+   */
+  public boolean isWriteUpsert() { return writeUpsert; }
+
   @Override
   public boolean equals(Object o) {
     if (this == o) { return true; }
@@ -72,6 +139,14 @@ public class KuduStoragePluginConfig extends StoragePluginConfigBase {
     if (optimizerMaxNonPrimaryKeyAlternatives != that.optimizerMaxNonPrimaryKeyAlternatives) { return false; }
     if (allUnsignedINT8 != that.allUnsignedINT8) { return false; }
     if (allUnsignedINT16 != that.allUnsignedINT16) { return false; }
+    if (readAheadBatches != that.readAheadBatches) { return false; }
+    if (tabletServerWebPort != that.tabletServerWebPort) { return false; }
+    if (tabletStatsTtlMs != that.tabletStatsTtlMs) { return false; }
+    if (tabletStatsTimeoutMs != that.tabletStatsTimeoutMs) { return false; }
+    if (scanSplitSizeBytes != that.scanSplitSizeBytes) { return false; }
+    if (writeBackgroundFlush != that.writeBackgroundFlush) { return false; }
+    if (writeBufferSize != that.writeBufferSize) { return false; }
+    if (writeUpsert != that.writeUpsert) { return false; }
 
     return masterAddresses != null ? masterAddresses.equals(that.masterAddresses) : that.masterAddresses == null;
   }
@@ -83,6 +158,14 @@ public class KuduStoragePluginConfig extends StoragePluginConfigBase {
     result = 31 * result + optimizerMaxNonPrimaryKeyAlternatives;
     result = 31 * result + (allUnsignedINT8 ? 1 : 0);
     result = 31 * result + (allUnsignedINT16 ? 1 : 0);
+    result = 31 * result + readAheadBatches;
+    result = 31 * result + tabletServerWebPort;
+    result = 31 * result + (int) (tabletStatsTtlMs ^ (tabletStatsTtlMs >>> 32));
+    result = 31 * result + tabletStatsTimeoutMs;
+    result = 31 * result + (int) (scanSplitSizeBytes ^ (scanSplitSizeBytes >>> 32));
+    result = 31 * result + (writeBackgroundFlush ? 1 : 0);
+    result = 31 * result + writeBufferSize;
+    result = 31 * result + (writeUpsert ? 1 : 0);
     return result;
   }
 }
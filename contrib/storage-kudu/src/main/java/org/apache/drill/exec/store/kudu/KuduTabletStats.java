@@ -0,0 +1,224 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.kudu;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+
+/**
+ * Sizes of Kudu tablets, read from tablet metrics published by web servers of tablet servers
+ * (the Kudu client does not expose them). Tablet servers holding tablets of a table are asked
+ * in parallel, each request is bounded by the configured timeout. Sizes of tablets of a table
+ * are cached and refreshed after the configured TTL, so planning queries of the table (and
+ * every group scan created while planning one) does not wait for tablet servers again.
+ *
+ * A tablet server which can't be reached in time is skipped until the sizes expire, its tablets
+ * are then sized from other replicas or left unknown and estimated by rows.
+ */
+public class KuduTabletStats {
+  static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(KuduTabletStats.class);
+
+  private static final String METRICS_PATH = "/metrics?metrics=on_disk_size,live_row_count";
+  private static final int DEFAULT_TIMEOUT_MS = 2000;
+  private static final long DEFAULT_TTL_MS = TimeUnit.MINUTES.toMillis(1);
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  private final int webPort;
+  private final int timeoutMs;
+  private final ExecutorService executor;
+  private final Cache<String, TableSizes> sizesByTable;
+
+  /**
+   * Size of a tablet, rows are -1 when the tablet server does not count them.
+   */
+  public static class TabletSize {
+    private final long bytes;
+    private final long rows;
+
+    public TabletSize(long bytes, long rows) {
+      this.bytes = bytes;
+      this.rows = rows;
+    }
+
+    public long getBytes() {
+      return bytes;
+    }
+
+    public long getRows() {
+      return rows;
+    }
+  }
+
+  /**
+   * Sizes of tablets of a table by tablet id, as reported by the tablet servers asked.
+   */
+  private static class TableSizes {
+    final Set<String> hosts;
+    final Map<String, TabletSize> tablets;
+
+    TableSizes(Set<String> hosts, Map<String, TabletSize> tablets) {
+      this.hosts = hosts;
+      this.tablets = tablets;
+    }
+  }
+
+  /**
+   * @param webPort port of tablet server web servers, 0 disables reading of metrics
+   * @param ttlMs how long sizes of tablets of a table are cached, 0 for default
+   * @param timeoutMs connect and read timeout of a request for metrics, 0 for default
+   * @param executor executor requesting metrics of tablet servers in parallel
+   */
+  public KuduTabletStats(int webPort, long ttlMs, int timeoutMs, ExecutorService executor) {
+    this.webPort = webPort;
+    this.timeoutMs = timeoutMs > 0 ? timeoutMs : DEFAULT_TIMEOUT_MS;
+    this.executor = executor;
+    this.sizesByTable = CacheBuilder.newBuilder()
+        .expireAfterWrite(ttlMs > 0 ? ttlMs : DEFAULT_TTL_MS, TimeUnit.MILLISECONDS)
+        .build();
+  }
+
+  /**
+   * @param tableName name of table
+   * @param hosts tablet servers holding replicas of scanned tablets of the table
+   * @return sizes of tablets of the table by tablet id, tablets of tablet servers which could not
+   * be read are missing
+   */
+  public Map<String, TabletSize> getTabletSizes(String tableName, Collection<String> hosts) {
+    if (webPort <= 0 || hosts.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    TableSizes sizes = sizesByTable.getIfPresent(tableName);
+    if (sizes == null || !sizes.hosts.containsAll(hosts)) {
+      // tablets moved to other hosts since, or scans of other tablets
+      sizes = readSizes(tableName, ImmutableSet.copyOf(hosts));
+      sizesByTable.put(tableName, sizes);
+    }
+    return sizes.tablets;
+  }
+
+  private TableSizes readSizes(final String tableName, Set<String> hosts) {
+    Map<String, Future<Map<String, TabletSize>>> requests = Maps.newLinkedHashMap();
+    for (final String host : hosts) {
+      requests.put(host, executor.submit(new Callable<Map<String, TabletSize>>() {
+        @Override
+        public Map<String, TabletSize> call() throws IOException {
+          return readMetrics(host, tableName);
+        }
+      }));
+    }
+
+    // requests are bounded by their timeouts, the deadline covers a slowly answering server
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(2L * timeoutMs);
+    Map<String, TabletSize> tablets = Maps.newHashMap();
+    for (Map.Entry<String, Future<Map<String, TabletSize>>> hostRequest : requests.entrySet()) {
+      String host = hostRequest.getKey();
+      Future<Map<String, TabletSize>> request = hostRequest.getValue();
+      try {
+        for (Map.Entry<String, TabletSize> tablet : request.get(
+            Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS).entrySet()) {
+          if (!tablets.containsKey(tablet.getKey())) {
+            tablets.put(tablet.getKey(), tablet.getValue());
+          }
+        }
+      } catch (ExecutionException | TimeoutException e) {
+        request.cancel(true);
+        logger.warn("Cannot read tablet metrics of Kudu tablet server {}:{}, its tablets are not sized", host, webPort, e);
+      } catch (InterruptedException e) {
+        request.cancel(true);
+        Thread.currentThread().interrupt();
+        break;
+      }
+    }
+    return new TableSizes(hosts, ImmutableMap.copyOf(tablets));
+  }
+
+  /**
+   * Reads metrics of tablets of table from the web server of a tablet server.
+   */
+  protected Map<String, TabletSize> readMetrics(String host, String tableName) throws IOException {
+    HttpURLConnection connection = (HttpURLConnection) new URL("http", host, webPort, METRICS_PATH).openConnection();
+    connection.setConnectTimeout(timeoutMs);
+    connection.setReadTimeout(timeoutMs);
+    try (InputStream content = connection.getInputStream()) {
+      return parseMetrics(content, tableName);
+    } finally {
+      connection.disconnect();
+    }
+  }
+
+  /**
+   * Parses metrics of a tablet server, in the format of its /metrics page.
+   * @return sizes of tablets by tablet id
+   */
+  public static Map<String, TabletSize> parseMetrics(InputStream content) throws IOException {
+    return parseMetrics(content, null);
+  }
+
+  /**
+   * Parses metrics of a tablet server, in the format of its /metrics page.
+   * @param tableName name of table to parse tablets of, null for all tablets; tablets without
+   * table name are always parsed
+   * @return sizes of tablets by tablet id
+   */
+  public static Map<String, TabletSize> parseMetrics(InputStream content, String tableName) throws IOException {
+    Map<String, TabletSize> tablets = Maps.newHashMap();
+    for (JsonNode entity : MAPPER.readTree(content)) {
+      if (!"tablet".equals(entity.path("type").asText())) {
+        continue;
+      }
+      JsonNode table = entity.path("attributes").path("table_name");
+      if (tableName != null && table.isTextual() && !tableName.equals(table.asText())) {
+        continue;
+      }
+      long bytes = -1;
+      long rows = -1;
+      for (JsonNode metric : entity.path("metrics")) {
+        String name = metric.path("name").asText();
+        if ("on_disk_size".equals(name)) {
+          bytes = metric.path("value").asLong(-1);
+        } else if ("live_row_count".equals(name)) {
+          rows = metric.path("value").asLong(-1);
+        }
+      }
+      if (bytes >= 0) {
+        tablets.put(entity.path("id").asText(), new TabletSize(bytes, rows));
+      }
+    }
+    return tablets;
+  }
+}
@@ -1,12 +1,19 @@
 package org.apache.drill.exec.store.kudu;
 
+import org.apache.kudu.Common;
 import org.apache.kudu.client.KuduPredicate;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 
 public class KuduUtils {
 
+    // Same guesses as Calcite uses for filters it knows nothing about
+    static final double EQUALITY_SELECTIVITY = 0.15;
+    static final double RANGE_BOUND_SELECTIVITY = 0.5;
+    static final double IS_NOT_NULL_SELECTIVITY = 0.9;
+    static final double IS_NULL_SELECTIVITY = 0.1;
+
     public boolean isNone(KuduPredicate pred) {
         // Unfortunately we cannot check KuduPredicate.type because it's hidden...
         return (pred != null && pred.toString().endsWith("NONE"));
@@ -21,4 +28,44 @@ public class KuduUtils {
         return null;
     }
 
+    /**
+     * Estimates fraction of rows of scanned tablets matching a conjunction of predicates.
+     * Predicates on partition columns are skipped: Kudu prunes tablets out of their key range
+     * from the scan, so they are accounted by the size of tablets which are scanned.
+     */
+    public double estimateSelectivity(List<KuduPredicate> preds, Set<String> partitionColumns) {
+        double selectivity = 1.0;
+        for (KuduPredicate pred : preds) {
+            Common.ColumnPredicatePB pb = pred.toPB();
+            if (partitionColumns.contains(pb.getColumn())) {
+                continue;
+            }
+            switch (pb.getPredicateCase()) {
+                case EQUALITY:
+                    selectivity *= EQUALITY_SELECTIVITY;
+                    break;
+                case RANGE:
+                    if (pb.getRange().hasLower()) {
+                        selectivity *= RANGE_BOUND_SELECTIVITY;
+                    }
+                    if (pb.getRange().hasUpper()) {
+                        selectivity *= RANGE_BOUND_SELECTIVITY;
+                    }
+                    break;
+                case IN_LIST:
+                    selectivity *= Math.min(1.0, EQUALITY_SELECTIVITY * pb.getInList().getValuesCount());
+                    break;
+                case IS_NOT_NULL:
+                    selectivity *= IS_NOT_NULL_SELECTIVITY;
+                    break;
+                case IS_NULL:
+                    selectivity *= IS_NULL_SELECTIVITY;
+                    break;
+                default:
+                    break;
+            }
+        }
+        return selectivity;
+    }
+
 }
@@ -35,8 +35,9 @@ public class KuduWriterBatchCreator implements BatchCreator<KuduWriter> {
     assert children != null && children.size() == 1;
 
     return new WriterRecordBatch(config, children.iterator().next(), context, new KuduRecordWriterImpl(
-        null,
+        context.newOperatorContext(config),
         config.getPlugin().getClient(),
+        config.getPlugin().getConfig(),
         config.getName()));
   }
 }
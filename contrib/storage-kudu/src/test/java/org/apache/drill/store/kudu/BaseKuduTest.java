@@ -44,7 +44,10 @@ public class BaseKuduTest extends BaseTestQuery {
         final StoragePluginRegistry pluginRegistry = getDrillbitContext().getStorage();
         storagePlugin = (KuduStoragePlugin) pluginRegistry.getPlugin(KUDU_STORAGE_PLUGIN_NAME);
         storagePluginConfig = storagePlugin.getConfig();
-        storagePluginConfig = new KuduStoragePluginConfig(storagePluginConfig.getMasterAddresses(), storagePluginConfig.getOperationTimeoutMs(), OPTIMIZER_MAX_NON_PRIMARY_KEY_ALTERNATIVES, true, true);
+        storagePluginConfig = new KuduStoragePluginConfig(storagePluginConfig.getMasterAddresses(), storagePluginConfig.getOperationTimeoutMs(), OPTIMIZER_MAX_NON_PRIMARY_KEY_ALTERNATIVES, true, true,
+                storagePluginConfig.getReadAheadBatches(), storagePluginConfig.getTabletServerWebPort(), storagePluginConfig.getTabletStatsTtlMs(),
+                storagePluginConfig.getTabletStatsTimeoutMs(), storagePluginConfig.getScanSplitSizeBytes(),
+                storagePluginConfig.isWriteBackgroundFlush(), storagePluginConfig.getWriteBufferSize(), storagePluginConfig.isWriteUpsert());
         storagePluginConfig.setEnabled(true);
         pluginRegistry.createOrUpdate(KUDU_STORAGE_PLUGIN_NAME, storagePluginConfig, true);
 
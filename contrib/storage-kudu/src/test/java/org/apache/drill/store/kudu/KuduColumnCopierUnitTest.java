@@ -0,0 +1,171 @@
+package org.apache.drill.store.kudu;
+
+import org.apache.drill.common.types.TypeProtos.MajorType;
+import org.apache.drill.common.types.TypeProtos.MinorType;
+import org.apache.drill.common.types.Types;
+import org.apache.drill.exec.expr.TypeHelper;
+import org.apache.drill.exec.memory.BufferAllocator;
+import org.apache.drill.exec.memory.RootAllocatorFactory;
+import org.apache.drill.exec.record.MaterializedField;
+import org.apache.drill.exec.store.kudu.KuduColumnCopier;
+import org.apache.drill.exec.store.kudu.KuduRecordReader;
+import org.apache.drill.exec.vector.ValueVector;
+import org.apache.kudu.ColumnSchema;
+import org.apache.kudu.Type;
+import org.apache.kudu.client.RowResult;
+import org.junit.After;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class KuduColumnCopierUnitTest {
+
+    private final BufferAllocator allocator = RootAllocatorFactory.newRoot(Long.MAX_VALUE);
+    private final List<ValueVector> vectors = new ArrayList<>();
+
+    @After
+    public void close() {
+        for (ValueVector vector : vectors) {
+            vector.clear();
+        }
+        allocator.close();
+    }
+
+    private KuduColumnCopier copier(Type type, boolean nullable, MinorType minorType, boolean unsigned)
+            throws Exception {
+        ColumnSchema column = new ColumnSchema.ColumnSchemaBuilder("c", type).nullable(nullable).build();
+        MajorType majorType = nullable ? Types.optional(minorType) : Types.required(minorType);
+        ValueVector vector = TypeHelper.getNewVector(MaterializedField.create("c", majorType), allocator);
+        vectors.add(vector);
+        KuduColumnCopier copier = KuduColumnCopier.create(column, 0, vector, unsigned, unsigned);
+        copier.allocate();
+        return copier;
+    }
+
+    private static Object value(KuduColumnCopier copier, int rowIndex) {
+        return copier.getVector().getAccessor().getObject(rowIndex);
+    }
+
+    @Test
+    public void widensUnsignedInt8() throws Exception {
+        RowResult row = mock(RowResult.class);
+        when(row.getByte(0)).thenReturn((byte) -1, (byte) 5);
+        KuduColumnCopier unsigned = copier(Type.INT8, false, MinorType.INT, true);
+        unsigned.copy(row, 0);
+        unsigned.copy(row, 1);
+        unsigned.setValueCount(2);
+
+        assertEquals(255, value(unsigned, 0));
+        assertEquals(5, value(unsigned, 1));
+
+        when(row.getByte(0)).thenReturn((byte) -1);
+        KuduColumnCopier signed = copier(Type.INT8, false, MinorType.INT, false);
+        signed.copy(row, 0);
+        signed.setValueCount(1);
+        assertEquals(-1, value(signed, 0));
+    }
+
+    @Test
+    public void widensNullableUnsignedInt16() throws Exception {
+        RowResult row = mock(RowResult.class);
+        when(row.isNull(0)).thenReturn(false, true);
+        when(row.getShort(0)).thenReturn((short) -2);
+        KuduColumnCopier copier = copier(Type.INT16, true, MinorType.INT, true);
+        copier.copy(row, 0);
+        copier.copy(row, 1);
+        copier.setValueCount(2);
+
+        assertEquals(65534, value(copier, 0));
+        assertNull(value(copier, 1));
+    }
+
+    @Test
+    public void copiesNullableBinaryFromBufferPosition() throws Exception {
+        RowResult row = mock(RowResult.class);
+        when(row.isNull(0)).thenReturn(false, true);
+        when(row.getBinary(0)).thenReturn(ByteBuffer.wrap(new byte[] { 9, 1, 2, 3 }, 1, 3));
+        KuduColumnCopier copier = copier(Type.BINARY, true, MinorType.VARBINARY, false);
+        copier.copy(row, 0);
+        copier.copy(row, 1);
+        copier.setValueCount(2);
+
+        assertArrayEquals(new byte[] { 1, 2, 3 }, (byte[]) value(copier, 0));
+        assertNull(value(copier, 1));
+    }
+
+    @Test
+    public void copiesNullableStringWithoutReadingNulls() throws Exception {
+        RowResult row = mock(RowResult.class);
+        when(row.isNull(0)).thenReturn(true);
+        KuduColumnCopier copier = copier(Type.STRING, true, MinorType.VARCHAR, false);
+        copier.copy(row, 0);
+
+        when(row.isNull(0)).thenReturn(false);
+        when(row.getString(0)).thenReturn("zürich", "bern");
+        copier.copy(row, 1);
+        copier.copy(row, 2);
+        copier.setValueCount(3);
+
+        assertNull(value(copier, 0));
+        assertEquals("zürich", value(copier, 1).toString());
+        assertEquals("bern", value(copier, 2).toString());
+    }
+
+    @Test
+    public void neverReadsNullBinary() throws Exception {
+        RowResult row = mock(RowResult.class);
+        when(row.isNull(0)).thenReturn(true);
+        KuduColumnCopier copier = copier(Type.BINARY, true, MinorType.VARBINARY, false);
+        copier.copy(row, 0);
+
+        verify(row, never()).getBinary(0);
+    }
+
+    @Test
+    public void reallocatesVectorsAcrossBatches() throws Exception {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            builder.append((char) ('a' + i % 26));
+        }
+        String longValue = builder.toString();
+        RowResult row = mock(RowResult.class);
+        when(row.getString(0)).thenReturn(longValue);
+        when(row.getLong(0)).thenReturn(7L);
+        KuduColumnCopier strings = copier(Type.STRING, false, MinorType.VARCHAR, false);
+        KuduColumnCopier longs = copier(Type.INT64, false, MinorType.BIGINT, false);
+
+        // values larger than the initial allocation of a full batch
+        int rows = KuduRecordReader.MAXIMUM_ROWS_SUPPORTED_IN_BATCH;
+        for (int i = 0; i < rows; i++) {
+            strings.copy(row, i);
+            longs.copy(row, i);
+        }
+        strings.setValueCount(rows);
+        longs.setValueCount(rows);
+        assertEquals(longValue, value(strings, rows - 1).toString());
+        assertEquals(7L, value(longs, rows - 1));
+
+        // the next batch starts from empty vectors of full batch capacity
+        strings.reset();
+        longs.reset();
+        when(row.getString(0)).thenReturn("next");
+        when(row.getLong(0)).thenReturn(8L);
+        strings.copy(row, 0);
+        longs.copy(row, rows - 1);
+        strings.setValueCount(1);
+        longs.setValueCount(rows);
+
+        assertEquals(1, strings.getVector().getAccessor().getValueCount());
+        assertEquals("next", value(strings, 0).toString());
+        assertEquals(8L, value(longs, rows - 1));
+    }
+
+}
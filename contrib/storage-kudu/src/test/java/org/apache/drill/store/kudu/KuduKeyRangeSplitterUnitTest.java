@@ -0,0 +1,113 @@
+package org.apache.drill.store.kudu;
+
+import org.apache.drill.exec.store.kudu.KuduKeyRangeSplitter;
+import org.apache.kudu.ColumnSchema;
+import org.apache.kudu.Schema;
+import org.apache.kudu.Type;
+import org.apache.kudu.client.Client;
+import org.apache.kudu.client.KuduPredicate;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class KuduKeyRangeSplitterUnitTest {
+
+    private Schema testSchema;
+    private KuduKeyRangeSplitter splitter;
+
+    @Before
+    public void setUp() {
+        List<ColumnSchema> columns = new ArrayList<>();
+        columns.add(new ColumnSchema.ColumnSchemaBuilder("ts", Type.UNIXTIME_MICROS).key(true).build());
+        columns.add(new ColumnSchema.ColumnSchemaBuilder("host", Type.STRING).key(true).build());
+        columns.add(new ColumnSchema.ColumnSchemaBuilder("value", Type.DOUBLE).nullable(true).build());
+        testSchema = new Schema(columns);
+        splitter = new KuduKeyRangeSplitter(testSchema);
+    }
+
+    private KuduPredicate ts(KuduPredicate.ComparisonOp op, long value) {
+        return KuduPredicate.newComparisonPredicate(testSchema.getColumn("ts"), op, value);
+    }
+
+    @Test
+    public void boundsOfLeadingKeyRange() {
+        long[] bounds = splitter.leadingKeyBounds(Arrays.asList(
+                ts(KuduPredicate.ComparisonOp.GREATER_EQUAL, 1000),
+                ts(KuduPredicate.ComparisonOp.LESS, 5000),
+                ts(KuduPredicate.ComparisonOp.LESS, 9000)));
+        assertArrayEquals(new long[] { 1000, 5000 }, bounds);
+    }
+
+    @Test
+    public void noBoundsWithoutUpperBound() {
+        assertNull(splitter.leadingKeyBounds(Collections.singletonList(ts(KuduPredicate.ComparisonOp.GREATER, 1000))));
+    }
+
+    @Test
+    public void noBoundsOnOtherColumns() {
+        assertNull(splitter.leadingKeyBounds(Collections.singletonList(KuduPredicate.newComparisonPredicate(
+                testSchema.getColumn("host"), KuduPredicate.ComparisonOp.EQUAL, "a"))));
+    }
+
+    @Test
+    public void splitsIntoEquallyWideRanges() {
+        assertArrayEquals(new long[] { 250, 500, 750 }, KuduKeyRangeSplitter.splitPoints(0, 1000, 4));
+    }
+
+    @Test
+    public void splitsNoFinerThanValues() {
+        assertArrayEquals(new long[] { 1, 2 }, KuduKeyRangeSplitter.splitPoints(0, 3, 8));
+    }
+
+    @Test
+    public void splitsWholeLongRange() {
+        long[] points = KuduKeyRangeSplitter.splitPoints(Long.MIN_VALUE, Long.MAX_VALUE, 2);
+        assertEquals(1, points.length);
+        assertTrue(Math.abs(points[0]) < 1024);
+    }
+
+    // range key of leading timestamp column, followed by other range columns when tail is set
+    private static byte[] rangeKey(long ts, boolean tail) {
+        ByteBuffer key = ByteBuffer.allocate(tail ? 10 : 8);
+        key.putLong(ts ^ Long.MIN_VALUE);
+        return key.array();
+    }
+
+    @Test
+    public void narrowsBoundsToTablet() {
+        long[] bounds = { 1000, 5000 };
+        assertArrayEquals(new long[] { 2000, 3000 },
+                splitter.tabletKeyBounds(bounds, rangeKey(2000, false), rangeKey(3000, false)));
+        assertArrayEquals(new long[] { -10, 5000 },
+                splitter.tabletKeyBounds(new long[] { -10, 5000 }, rangeKey(-20, false), new byte[0]));
+        // keys of the end value are in the tablet when the range key has more columns
+        assertArrayEquals(new long[] { 1000, 3001 },
+                splitter.tabletKeyBounds(bounds, new byte[0], rangeKey(3000, true)));
+        assertNull(splitter.tabletKeyBounds(bounds, rangeKey(5000, false), new byte[0]));
+    }
+
+    @Test
+    public void splitsScanTokenByAppendedBounds() throws Exception {
+        byte[] scanToken = Client.ScanTokenPB.newBuilder().setTableName("metrics").build().toByteArray();
+        List<byte[]> scanTokens = splitter.splitScanToken(scanToken, new long[] { 0, 1000 }, 2);
+        assertEquals(2, scanTokens.size());
+
+        Client.ScanTokenPB first = Client.ScanTokenPB.parseFrom(scanTokens.get(0));
+        assertEquals("metrics", first.getTableName());
+        assertFalse(first.hasLowerBoundPrimaryKey());
+        assertArrayEquals(splitter.keyOf(500).encodePrimaryKey(), first.getUpperBoundPrimaryKey().toByteArray());
+
+        Client.ScanTokenPB last = Client.ScanTokenPB.parseFrom(scanTokens.get(1));
+        assertEquals("metrics", last.getTableName());
+        assertArrayEquals(splitter.keyOf(500).encodePrimaryKey(), last.getLowerBoundPrimaryKey().toByteArray());
+        assertFalse(last.hasUpperBoundPrimaryKey());
+    }
+
+}
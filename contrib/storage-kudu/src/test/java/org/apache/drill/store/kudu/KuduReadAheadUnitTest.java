@@ -0,0 +1,171 @@
+package org.apache.drill.store.kudu;
+
+import org.apache.drill.exec.store.kudu.KuduReadAhead;
+import org.apache.kudu.client.RowResultIterator;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.mock;
+
+public class KuduReadAheadUnitTest {
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    /**
+     * Batches of a scanner, failing after the last one when failure is set.
+     */
+    private static class TestBatches implements KuduReadAhead.Batches {
+        final List<RowResultIterator> rows = new ArrayList<>();
+        final AtomicInteger fetched = new AtomicInteger();
+        Exception failure;
+
+        TestBatches(int count) {
+            for (int i = 0; i < count; i++) {
+                rows.add(mock(RowResultIterator.class));
+            }
+        }
+
+        @Override
+        public boolean hasMoreRows() {
+            return fetched.get() < rows.size() || failure != null;
+        }
+
+        @Override
+        public RowResultIterator nextRows() throws Exception {
+            if (fetched.get() == rows.size()) {
+                throw failure;
+            }
+            return rows.get(fetched.getAndIncrement());
+        }
+    }
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void takesBatchesInOrderUntilEnd() throws Exception {
+        TestBatches batches = new TestBatches(5);
+        KuduReadAhead readAhead = new KuduReadAhead(batches, 2);
+        readAhead.start(executor);
+
+        for (RowResultIterator rows : batches.rows) {
+            assertSame(rows, readAhead.take());
+        }
+        assertNull(readAhead.take());
+        assertNull(readAhead.take());
+        readAhead.close();
+    }
+
+    @Test
+    public void passesFailureAfterFetchedBatches() throws Exception {
+        TestBatches batches = new TestBatches(2);
+        batches.failure = new IOException("tablet server unavailable");
+        KuduReadAhead readAhead = new KuduReadAhead(batches, 4);
+        readAhead.start(executor);
+
+        assertSame(batches.rows.get(0), readAhead.take());
+        assertSame(batches.rows.get(1), readAhead.take());
+        try {
+            readAhead.take();
+            fail();
+        } catch (IOException e) {
+            assertSame(batches.failure, e);
+        }
+        assertNull(readAhead.take());
+        readAhead.close();
+    }
+
+    @Test
+    public void releasesThreadWhenQueueIsFull() throws Exception {
+        final TestBatches batches = new TestBatches(10);
+        KuduReadAhead readAhead = new KuduReadAhead(batches, 3);
+        readAhead.start(executor);
+
+        // the single thread of the pool is free to run other tasks once the queue is full
+        Future<Integer> other = executor.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return batches.fetched.get();
+            }
+        });
+        assertEquals(3, (int) other.get(1, TimeUnit.MINUTES));
+
+        // taking a batch resumes fetching
+        assertSame(batches.rows.get(0), readAhead.take());
+        for (int i = 1; i < batches.rows.size(); i++) {
+            assertSame(batches.rows.get(i), readAhead.take());
+        }
+        assertNull(readAhead.take());
+        readAhead.close();
+    }
+
+    @Test
+    public void closeWaitsForBatchBeingFetched() throws Exception {
+        final CountDownLatch fetching = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicBoolean inNextRows = new AtomicBoolean();
+        final AtomicInteger fetches = new AtomicInteger();
+        final KuduReadAhead readAhead = new KuduReadAhead(new KuduReadAhead.Batches() {
+            @Override
+            public boolean hasMoreRows() {
+                return true;
+            }
+
+            @Override
+            public RowResultIterator nextRows() throws Exception {
+                fetches.incrementAndGet();
+                inNextRows.set(true);
+                try {
+                    fetching.countDown();
+                    release.await();
+                    return mock(RowResultIterator.class);
+                } finally {
+                    inNextRows.set(false);
+                }
+            }
+        }, 2);
+        readAhead.start(executor);
+        assertTrue(fetching.await(1, TimeUnit.MINUTES));
+
+        ExecutorService closer = Executors.newSingleThreadExecutor();
+        try {
+            Future<Boolean> closed = closer.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    readAhead.close();
+                    // the scanner would be closed now
+                    return inNextRows.get();
+                }
+            });
+            try {
+                closed.get(200, TimeUnit.MILLISECONDS);
+                fail("close returned while the scanner was in use");
+            } catch (TimeoutException e) {
+                // still waiting for the batch being fetched
+            }
+            release.countDown();
+            assertFalse(closed.get(1, TimeUnit.MINUTES));
+            // nothing is fetched after close
+            assertEquals(1, fetches.get());
+        } finally {
+            closer.shutdownNow();
+        }
+    }
+
+}
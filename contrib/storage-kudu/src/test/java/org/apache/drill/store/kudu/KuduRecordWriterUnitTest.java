@@ -0,0 +1,188 @@
+package org.apache.drill.store.kudu;
+
+import org.apache.drill.exec.ops.OperatorContext;
+import org.apache.drill.exec.ops.OperatorStats;
+import org.apache.drill.exec.record.VectorAccessible;
+import org.apache.drill.exec.store.kudu.KuduRecordWriterImpl;
+import org.apache.drill.exec.store.kudu.KuduStoragePluginConfig;
+import org.apache.kudu.client.Insert;
+import org.apache.kudu.client.KuduClient;
+import org.apache.kudu.client.KuduSession;
+import org.apache.kudu.client.KuduTable;
+import org.apache.kudu.client.ListTablesResponse;
+import org.apache.kudu.client.OperationResponse;
+import org.apache.kudu.client.PartialRow;
+import org.apache.kudu.client.RowError;
+import org.apache.kudu.client.RowErrorsAndOverflowStatus;
+import org.apache.kudu.client.Upsert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class KuduRecordWriterUnitTest {
+
+    private static final String TABLE = "events";
+
+    private KuduClient client;
+    private KuduSession session;
+    private KuduTable table;
+    private OperatorStats stats;
+    private OperatorContext context;
+
+    @Before
+    public void setUp() throws Exception {
+        client = mock(KuduClient.class);
+        session = mock(KuduSession.class);
+        table = mock(KuduTable.class);
+        stats = mock(OperatorStats.class);
+        context = mock(OperatorContext.class);
+
+        ListTablesResponse tables = mock(ListTablesResponse.class);
+        when(tables.getTablesList()).thenReturn(Collections.singletonList(TABLE));
+        when(client.getTablesList(TABLE)).thenReturn(tables);
+        when(client.openTable(TABLE)).thenReturn(table);
+        when(client.newSession()).thenReturn(session);
+        when(context.getStats()).thenReturn(stats);
+
+        Insert insert = mock(Insert.class);
+        when(insert.getRow()).thenReturn(mock(PartialRow.class));
+        when(table.newInsert()).thenReturn(insert);
+        Upsert upsert = mock(Upsert.class);
+        when(upsert.getRow()).thenReturn(mock(PartialRow.class));
+        when(table.newUpsert()).thenReturn(upsert);
+    }
+
+    private KuduRecordWriterImpl writer(boolean backgroundFlush, int bufferSize, boolean upsert) throws IOException {
+        KuduStoragePluginConfig config = new KuduStoragePluginConfig("localhost", 0, 0, false, false, 0, 0, 0, 0, 0,
+                backgroundFlush, bufferSize, upsert);
+        KuduRecordWriterImpl writer = new KuduRecordWriterImpl(context, client, config, TABLE);
+        writer.updateSchema(mock(VectorAccessible.class));
+        return writer;
+    }
+
+    private static void write(KuduRecordWriterImpl writer, int records) throws IOException {
+        for (int i = 0; i < records; i++) {
+            writer.startRecord();
+            writer.endRecord();
+        }
+    }
+
+    private static List<OperationResponse> rowErrors(int count) {
+        List<OperationResponse> responses = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            RowError error = mock(RowError.class);
+            when(error.toString()).thenReturn("error " + i);
+            OperationResponse response = mock(OperationResponse.class);
+            when(response.hasRowError()).thenReturn(true);
+            when(response.getRowError()).thenReturn(error);
+            responses.add(response);
+        }
+        return responses;
+    }
+
+    @Test
+    public void insertsAndFlushesEveryBuffer() throws Exception {
+        KuduRecordWriterImpl writer = writer(false, 2, false);
+        write(writer, 5);
+        writer.cleanup();
+
+        verify(table, times(5)).newInsert();
+        verify(table, never()).newUpsert();
+        verify(session, times(5)).apply(any(Insert.class));
+        // two full buffers and the rest on cleanup, each counted as wait time
+        verify(session, times(3)).flush();
+        verify(stats, times(3)).startWait();
+        verify(stats, times(3)).stopWait();
+        verify(stats).setLongStat(KuduRecordWriterImpl.Metric.FLUSHES, 3);
+        verify(stats, never()).setLongStat(eq(KuduRecordWriterImpl.Metric.APPLY_WAIT_NANOS), anyLong());
+        verify(session).close();
+    }
+
+    @Test
+    public void upsertsWhenConfigured() throws Exception {
+        KuduRecordWriterImpl writer = writer(false, 10, true);
+        write(writer, 3);
+        writer.cleanup();
+
+        verify(table, times(3)).newUpsert();
+        verify(table, never()).newInsert();
+        verify(session, times(3)).apply(any(Upsert.class));
+    }
+
+    @Test
+    public void backgroundFlushesRecordApplyWait() throws Exception {
+        KuduRecordWriterImpl writer = writer(true, 2, false);
+        write(writer, 4);
+        writer.cleanup();
+
+        // only the final flush is waited for
+        verify(session).flush();
+        verify(stats, times(3)).setLongStat(eq(KuduRecordWriterImpl.Metric.APPLY_WAIT_NANOS), anyLong());
+    }
+
+    @Test
+    public void failsCleanupWithCollectedRowErrors() throws Exception {
+        when(session.flush()).thenReturn(rowErrors(8), rowErrors(4), Collections.<OperationResponse>emptyList());
+        KuduRecordWriterImpl writer = writer(false, 5, false);
+        write(writer, 10);
+
+        try {
+            writer.cleanup();
+            fail();
+        } catch (IOException e) {
+            // all errors are counted, only the first ones are quoted
+            assertEquals("12 rows were not written to Kudu table events, first errors: "
+                    + "[error 0, error 1, error 2, error 3, error 4, error 5, error 6, error 7, error 0, error 1]",
+                    e.getMessage());
+        }
+        verify(stats, atLeastOnce()).setLongStat(KuduRecordWriterImpl.Metric.ROW_ERRORS, 12);
+        verify(session).close();
+    }
+
+    @Test
+    public void collectsPendingErrorsOfBackgroundFlushes() throws Exception {
+        RowErrorsAndOverflowStatus pendingErrors = mock(RowErrorsAndOverflowStatus.class);
+        RowError error = rowErrors(1).get(0).getRowError();
+        when(pendingErrors.getRowErrors()).thenReturn(new RowError[] { error });
+        when(pendingErrors.isOverflowed()).thenReturn(true);
+        when(session.countPendingErrors()).thenReturn(1, 0);
+        when(session.getPendingErrors()).thenReturn(pendingErrors);
+        KuduRecordWriterImpl writer = writer(true, 1, false);
+        write(writer, 2);
+
+        try {
+            writer.cleanup();
+            fail();
+        } catch (IOException e) {
+            assertEquals("1 rows were not written to Kudu table events (more errors were dropped by Kudu client),"
+                    + " first errors: [error 0]", e.getMessage());
+        }
+    }
+
+    @Test
+    public void succeedsWithoutRowErrors() throws Exception {
+        when(session.flush()).thenReturn(Arrays.<OperationResponse>asList(mock(OperationResponse.class)));
+        KuduRecordWriterImpl writer = writer(false, 1, false);
+        write(writer, 1);
+        writer.cleanup();
+
+        verify(stats, atLeastOnce()).setLongStat(KuduRecordWriterImpl.Metric.ROW_ERRORS, 0);
+    }
+
+}
@@ -0,0 +1,132 @@
+package org.apache.drill.store.kudu;
+
+import com.google.common.collect.ImmutableMap;
+import org.apache.drill.exec.store.kudu.KuduTabletStats;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class KuduTabletStatsUnitTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    /**
+     * Stats of tablet servers answering with given tablets, other servers fail.
+     */
+    private class TestStats extends KuduTabletStats {
+        final Map<String, Map<String, TabletSize>> tabletsByHost = new ConcurrentHashMap<>();
+        final AtomicInteger reads = new AtomicInteger();
+
+        TestStats() {
+            super(8050, 0, 100, executor);
+        }
+
+        @Override
+        protected Map<String, TabletSize> readMetrics(String host, String tableName) throws IOException {
+            reads.incrementAndGet();
+            Map<String, TabletSize> tablets = tabletsByHost.get(host);
+            if (tablets == null) {
+                throw new IOException("connection refused");
+            }
+            return tablets;
+        }
+    }
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static Map<String, KuduTabletStats.TabletSize> parse(String json) throws Exception {
+        return KuduTabletStats.parseMetrics(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void parsesSizesOfTablets() throws Exception {
+        Map<String, KuduTabletStats.TabletSize> tablets = parse("["
+                + "{\"type\": \"server\", \"id\": \"kudu.tabletserver\", \"metrics\": ["
+                + "  {\"name\": \"on_disk_size\", \"value\": 1}]},"
+                + "{\"type\": \"tablet\", \"id\": \"t1\", \"attributes\": {\"table_name\": \"x\"}, \"metrics\": ["
+                + "  {\"name\": \"on_disk_size\", \"value\": 1048576},"
+                + "  {\"name\": \"live_row_count\", \"value\": 1000}]},"
+                + "{\"type\": \"tablet\", \"id\": \"t2\", \"metrics\": ["
+                + "  {\"name\": \"on_disk_size\", \"value\": 2048}]}"
+                + "]");
+
+        assertEquals(2, tablets.size());
+        assertEquals(1048576, tablets.get("t1").getBytes());
+        assertEquals(1000, tablets.get("t1").getRows());
+        assertEquals(2048, tablets.get("t2").getBytes());
+        assertEquals(-1, tablets.get("t2").getRows());
+    }
+
+    @Test
+    public void skipsTabletsWithoutSize() throws Exception {
+        Map<String, KuduTabletStats.TabletSize> tablets = parse("["
+                + "{\"type\": \"tablet\", \"id\": \"t1\", \"metrics\": ["
+                + "  {\"name\": \"live_row_count\", \"value\": 1000}]}"
+                + "]");
+
+        assertTrue(tablets.isEmpty());
+    }
+
+    @Test
+    public void parsesTabletsOfTable() throws Exception {
+        Map<String, KuduTabletStats.TabletSize> tablets = KuduTabletStats.parseMetrics(new ByteArrayInputStream((
+                "[{\"type\": \"tablet\", \"id\": \"t1\", \"attributes\": {\"table_name\": \"x\"}, \"metrics\": ["
+                + "  {\"name\": \"on_disk_size\", \"value\": 1}]},"
+                + "{\"type\": \"tablet\", \"id\": \"t2\", \"attributes\": {\"table_name\": \"y\"}, \"metrics\": ["
+                + "  {\"name\": \"on_disk_size\", \"value\": 2}]}]").getBytes(StandardCharsets.UTF_8)), "x");
+
+        assertEquals(Collections.singleton("t1"), tablets.keySet());
+    }
+
+    @Test
+    public void disabledStatsSizeNothing() {
+        KuduTabletStats stats = new KuduTabletStats(0, 0, 0, executor);
+        assertTrue(stats.getTabletSizes("x", Collections.singletonList("localhost")).isEmpty());
+    }
+
+    @Test
+    public void mergesTabletsOfHostsAndSkipsFailedOnes() {
+        TestStats stats = new TestStats();
+        stats.tabletsByHost.put("a", ImmutableMap.of("t1", new KuduTabletStats.TabletSize(10, 1)));
+        stats.tabletsByHost.put("b", ImmutableMap.of("t1", new KuduTabletStats.TabletSize(10, 1),
+                "t2", new KuduTabletStats.TabletSize(20, 2)));
+
+        Map<String, KuduTabletStats.TabletSize> tablets = stats.getTabletSizes("x", Arrays.asList("a", "b", "c"));
+        assertEquals(2, tablets.size());
+        assertEquals(20, tablets.get("t2").getBytes());
+        assertEquals(3, stats.reads.get());
+    }
+
+    @Test
+    public void cachesSizesOfTable() {
+        TestStats stats = new TestStats();
+        stats.tabletsByHost.put("a", ImmutableMap.of("t1", new KuduTabletStats.TabletSize(10, 1)));
+
+        stats.getTabletSizes("x", Arrays.asList("a", "c"));
+        // failed hosts are not asked again until sizes expire
+        assertEquals(1, stats.getTabletSizes("x", Collections.singletonList("c")).size());
+        assertEquals(2, stats.reads.get());
+
+        // hosts not asked yet, tablets could have moved to them
+        stats.getTabletSizes("x", Arrays.asList("a", "d"));
+        assertEquals(4, stats.reads.get());
+        stats.getTabletSizes("y", Collections.singletonList("a"));
+        assertEquals(5, stats.reads.get());
+    }
+
+}
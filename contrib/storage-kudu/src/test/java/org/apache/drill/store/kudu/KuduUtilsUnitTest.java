@@ -9,6 +9,8 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static org.junit.Assert.*;
@@ -80,4 +82,20 @@ public class KuduUtilsUnitTest {
         assertSame(nonePred, kuduUtils.findFirstNone(permutation));
     }
 
+    @Test
+    public void selectivityMultipliesPredicatesOnOtherColumns() {
+        List<KuduPredicate> preds = Arrays.asList(
+                KuduPredicate.newComparisonPredicate(testSchema.getColumn("x8"), KuduPredicate.ComparisonOp.EQUAL, 1),
+                KuduPredicate.newComparisonPredicate(testSchema.getColumn("key1"), KuduPredicate.ComparisonOp.GREATER, 10));
+        assertEquals(0.15 * 0.5, kuduUtils.estimateSelectivity(preds, Collections.<String>emptySet()), 1e-9);
+    }
+
+    @Test
+    public void selectivitySkipsPartitionColumns() {
+        List<KuduPredicate> preds = Arrays.asList(
+                KuduPredicate.newComparisonPredicate(testSchema.getColumn("x8"), KuduPredicate.ComparisonOp.EQUAL, 1),
+                KuduPredicate.newComparisonPredicate(testSchema.getColumn("key1"), KuduPredicate.ComparisonOp.EQUAL, 10));
+        assertEquals(0.15, kuduUtils.estimateSelectivity(preds, Collections.singleton("key1")), 1e-9);
+    }
+
 }
@@ -53,7 +53,15 @@ public class TestUnsignedInts extends BaseKuduTest {
                 storagePluginConfig.getOperationTimeoutMs(),
                 100,
                 true,
-                true);
+                true,
+                storagePluginConfig.getReadAheadBatches(),
+                storagePluginConfig.getTabletServerWebPort(),
+                storagePluginConfig.getTabletStatsTtlMs(),
+                storagePluginConfig.getTabletStatsTimeoutMs(),
+                storagePluginConfig.getScanSplitSizeBytes(),
+                storagePluginConfig.isWriteBackgroundFlush(),
+                storagePluginConfig.getWriteBufferSize(),
+                storagePluginConfig.isWriteUpsert());
         storagePluginConfig.setEnabled(true);
         pluginRegistry.createOrUpdate(KUDU_STORAGE_PLUGIN_NAME, storagePluginConfig, true);
     }
@@ -0,0 +1,70 @@
+package cs.drill.benchmarks;
+
+import org.apache.drill.exec.store.mock.ColumnDef;
+import org.apache.drill.exec.store.mock.FieldGen;
+import org.apache.drill.exec.vector.BigIntVector;
+import org.apache.drill.exec.vector.IntVector;
+import org.apache.drill.exec.vector.ValueVector;
+
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates columns of {@link Flows} in mock tables, configured by properties of the column:
+ * <ul>
+ *   <li>column: ip1, ip2 or port</li>
+ *   <li>hosts: number of distinct ips</li>
+ *   <li>skew: exponent of Zipf distribution of hosts</li>
+ *   <li>ip6Percentage: percentage of ipv6 hosts</li>
+ * </ul>
+ * Every column is generated on its own. Ip columns draw hosts from the same seed, so ip1 and
+ * ip2 of a row belong to the same host.
+ */
+public class FlowGen implements FieldGen {
+  private static final long HOST_SEED = 0;
+  private static final long PORT_SEED = 1;
+
+  private enum Column { IP1, IP2, PORT }
+
+  private Column column;
+  private Flows flows;
+  private Flows.ZipfSampler sampler;
+  private int[] portOfRank;
+  private Random random;
+
+  @Override
+  public void setup(ColumnDef colDef) {
+    Map<String, Object> props = colDef.mockCol.properties;
+    if (props == null || props.get("column") == null) {
+      throw new IllegalArgumentException("Flow column is undefined for mock field " + colDef.name);
+    }
+    column = Column.valueOf(((String) props.get("column")).toUpperCase());
+    int hosts = ((Number) props.getOrDefault("hosts", 1000000)).intValue();
+    double skew = ((Number) props.getOrDefault("skew", 1.1)).doubleValue();
+    int ip6Percentage = ((Number) props.getOrDefault("ip6Percentage", 20)).intValue();
+    flows = new Flows(0, hosts, ip6Percentage);
+    if (column == Column.PORT) {
+      random = new Random(PORT_SEED);
+      sampler = new Flows.ZipfSampler(Flows.PORTS, 1.0);
+      portOfRank = Flows.portsByRank(new Random(PORT_SEED));
+    } else {
+      random = new Random(HOST_SEED);
+      sampler = new Flows.ZipfSampler(hosts, skew);
+    }
+  }
+
+  @Override
+  public void setValue(ValueVector v, int index) {
+    int rank = sampler.sample(random);
+    switch (column) {
+      case IP1:
+        ((BigIntVector) v).getMutator().set(index, flows.getIp1(rank));
+        break;
+      case IP2:
+        ((BigIntVector) v).getMutator().set(index, flows.getIp2(rank));
+        break;
+      default:
+        ((IntVector) v).getMutator().set(index, portOfRank[rank]);
+    }
+  }
+}
@@ -0,0 +1,175 @@
+package cs.drill.benchmarks;
+
+import cs.drill.util.IpUtil;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Synthetic flows with realistic ip cardinality and skew.
+ *
+ * Hosts and ports are drawn from Zipf distributions, so a few servers and ports take most of
+ * the flows while the long tail is seen rarely. Ips of hosts are scattered over the address
+ * space, popular hosts do not share subnets. Timestamps grow with every flow, as in flows read
+ * in time order.
+ *
+ * Benchmarks process flows in batches of {@link #BATCH_SIZE}, one batch per invocation.
+ * Flows are never modified, so they are shared by all benchmark threads, each thread keeps
+ * offset of its batch.
+ */
+public final class Flows {
+  public static final int BATCH_SIZE = 4096;
+  private static final int BATCHES = 64;
+  private static final long IP6_PREFIX = 0x20010db800000000L;
+  private static final long START_TIME = 1500000000000L;
+  static final int PORTS = 1024;
+  private static final int[] COMMON_PORTS =
+    {443, 80, 53, 123, 22, 8080, 25, 993, 3306, 5432, 8443, 389, 445, 161, 514, 1194};
+
+  public final long[] ip1s;
+  public final long[] ip2s;
+  public final int[] ports;
+  public final long[] timestamps;
+  private final int hosts;
+  private final int ip6Percentage;
+
+  Flows(int size, int hosts, int ip6Percentage) {
+    this.ip1s = new long[size];
+    this.ip2s = new long[size];
+    this.ports = new int[size];
+    this.timestamps = new long[size];
+    this.hosts = hosts;
+    this.ip6Percentage = ip6Percentage;
+  }
+
+  /**
+   * Generates {@value #BATCHES} batches of flows.
+   * @param hosts number of distinct ips
+   * @param skew exponent of Zipf distribution of hosts, 0 for uniform distribution
+   * @param ip6Percentage percentage of ipv6 hosts, the rest are ipv4
+   */
+  public static Flows generate(int hosts, double skew, int ip6Percentage, long seed) {
+    Random random = new Random(seed);
+    Flows flows = new Flows(BATCHES * BATCH_SIZE, hosts, ip6Percentage);
+    ZipfSampler hostSampler = new ZipfSampler(hosts, skew);
+    ZipfSampler portSampler = new ZipfSampler(PORTS, 1.0);
+    int[] portOfRank = portsByRank(random);
+    for (int i = 0; i < flows.ip1s.length; i++) {
+      int host = hostSampler.sample(random);
+      flows.ip1s[i] = flows.getIp1(host);
+      flows.ip2s[i] = flows.getIp2(host);
+      flows.ports[i] = portOfRank[portSampler.sample(random)];
+      flows.timestamps[i] = START_TIME + i * 10L;
+    }
+    return flows;
+  }
+
+  /**
+   * @return ports of {@value #PORTS} popularity ranks, common ports are the most popular
+   */
+  static int[] portsByRank(Random random) {
+    int[] ports = Arrays.copyOf(COMMON_PORTS, PORTS);
+    for (int i = COMMON_PORTS.length; i < PORTS; i++) {
+      // registered ports, below ephemeral range
+      ports[i] = 1024 + random.nextInt(49151 - 1024);
+    }
+    return ports;
+  }
+
+  /**
+   * @return high bits of ip of host with given popularity rank
+   */
+  public long getIp1(int host) {
+    long mixed = mix(host);
+    return isIp6(mixed) ? IP6_PREFIX | mixed >>> 32 : IpUtil.WKP;
+  }
+
+  /**
+   * @return low bits of ip of host with given popularity rank
+   */
+  public long getIp2(int host) {
+    long mixed = mix(host);
+    return isIp6(mixed) ? mix(mixed) : mixed & 0xffffffffL;
+  }
+
+  private boolean isIp6(long mixed) {
+    return (mixed >>> 1) % 100 < ip6Percentage;
+  }
+
+  /**
+   * @return number of distinct ips
+   */
+  public int getHosts() {
+    return hosts;
+  }
+
+  public int size() {
+    return ip1s.length;
+  }
+
+  /**
+   * @return offset of batch following the batch at given offset, batches are read round robin
+   */
+  public int nextBatch(int offset) {
+    return (offset + BATCH_SIZE) % ip1s.length;
+  }
+
+  /**
+   * @return offset of a random batch, threads start at different batches
+   */
+  public int randomBatch() {
+    return ThreadLocalRandom.current().nextInt(BATCHES) * BATCH_SIZE;
+  }
+
+  /**
+   * Gets subnets around hosts picked evenly over popularity ranks, so subnets of both popular
+   * and rare hosts are included.
+   * @param count number of subnets
+   * @param ip4PrefixLength length of prefix of ipv4 subnets, ipv6 subnets are 96 bits longer
+   * @return subnets in CIDR notation
+   */
+  public String[] getSubnets(int count, int ip4PrefixLength) {
+    String[] subnets = new String[count];
+    for (int i = 0; i < count; i++) {
+      int host = (int) ((long) i * hosts / count);
+      long ip1 = getIp1(host);
+      String ip = new IpUtil.IpPair(ip1, getIp2(host)).toString();
+      int prefixLength = ip1 == IpUtil.WKP ? ip4PrefixLength : ip4PrefixLength + 96;
+      subnets[i] = ip + "/" + prefixLength;
+    }
+    return subnets;
+  }
+
+  private static long mix(long value) {
+    long mixed = (value + 1) * 0x9e3779b97f4a7c15L;
+    mixed ^= mixed >>> 31;
+    mixed *= 0xbf58476d1ce4e5b9L;
+    return mixed ^ mixed >>> 29;
+  }
+
+  /**
+   * Draws ranks 0..n-1, rank k with probability proportional to 1 / (k + 1)^skew.
+   */
+  static final class ZipfSampler {
+    private final double[] cumulative;
+
+    ZipfSampler(int n, double skew) {
+      cumulative = new double[n];
+      double sum = 0;
+      for (int k = 0; k < n; k++) {
+        sum += 1 / Math.pow(k + 1, skew);
+        cumulative[k] = sum;
+      }
+      for (int k = 0; k < n; k++) {
+        cumulative[k] /= sum;
+      }
+    }
+
+    int sample(Random random) {
+      int index = Arrays.binarySearch(cumulative, random.nextDouble());
+      int rank = index < 0 ? -index - 1 : index;
+      return Math.min(rank, cumulative.length - 1);
+    }
+  }
+}
@@ -0,0 +1,153 @@
+package cs.drill.benchmarks;
+
+import cs.drill.util.IpFormatter;
+import cs.drill.util.IpMask;
+import cs.drill.util.IpParser;
+import cs.drill.util.IpUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares ip functions working on buffers (ip_to_string, string_to_ip1/2, ip_in_subnet)
+ * with the {@link InetAddress} path used before them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@OperationsPerInvocation(IpConversionBenchmark.IPS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IpConversionBenchmark {
+  static final int IPS = 4096;
+
+  /**
+   * Percentage of ipv4 ips, the rest are ipv6.
+   */
+  @Param({"80"})
+  int ip4Percentage;
+
+  long[] ip1s = new long[IPS];
+  long[] ip2s = new long[IPS];
+  ByteBuf textBuffer;
+  int[] textEnds = new int[IPS];
+  ByteBuf outputBuffer = Unpooled.buffer(IpFormatter.MAX_LENGTH);
+  IpParser parser = new IpParser();
+  // 10.0.0.0/8
+  long subnetMask1 = IpMask.getMask1(IpMask.getPrefixLength(IpUtil.WKP, 8));
+  long subnetMask2 = IpMask.getMask2(IpMask.getPrefixLength(IpUtil.WKP, 8));
+  long subnet1 = IpUtil.WKP;
+  long subnet2 = 0x0a000000L;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(0);
+    textBuffer = Unpooled.buffer(IPS * IpFormatter.MAX_LENGTH);
+    int end = 0;
+    for (int i = 0; i < IPS; i++) {
+      if (random.nextInt(100) < ip4Percentage) {
+        ip1s[i] = IpUtil.WKP;
+        ip2s[i] = random.nextInt() & 0xffffffffL;
+      } else {
+        ip1s[i] = 0x20010db800000000L | random.nextInt(1 << 16);
+        ip2s[i] = random.nextLong();
+      }
+      String ip = new IpUtil.IpPair(ip1s[i], ip2s[i]).toString();
+      byte[] text = ip.getBytes(StandardCharsets.US_ASCII);
+      textBuffer.setBytes(end, text);
+      end += text.length;
+      textEnds[i] = end;
+    }
+  }
+
+  @Benchmark
+  public void formatWithFormatter(Blackhole blackhole) {
+    for (int i = 0; i < IPS; i++) {
+      blackhole.consume(IpFormatter.write(outputBuffer, 0, ip1s[i], ip2s[i]));
+    }
+  }
+
+  @Benchmark
+  public void formatWithInetAddress(Blackhole blackhole) throws UnknownHostException {
+    for (int i = 0; i < IPS; i++) {
+      String ip = getAddress(ip1s[i], ip2s[i]).getHostAddress();
+      byte[] text = ip.getBytes(StandardCharsets.UTF_8);
+      outputBuffer.setBytes(0, text);
+      blackhole.consume(text.length);
+    }
+  }
+
+  @Benchmark
+  public void parseWithParser(Blackhole blackhole) {
+    int start = 0;
+    for (int i = 0; i < IPS; i++) {
+      parser.parseIp(textBuffer, start, textEnds[i]);
+      blackhole.consume(parser.getIp1());
+      blackhole.consume(parser.getIp2());
+      start = textEnds[i];
+    }
+  }
+
+  @Benchmark
+  public void parseWithInetAddress(Blackhole blackhole) {
+    int start = 0;
+    for (int i = 0; i < IPS; i++) {
+      String text = textBuffer.toString(start, textEnds[i] - start, StandardCharsets.UTF_8);
+      IpUtil.IpPair ip = IpUtil.parseIp(text);
+      blackhole.consume(ip.getHighBits());
+      blackhole.consume(ip.getLowBits());
+      start = textEnds[i];
+    }
+  }
+
+  @Benchmark
+  public void containsWithMask(Blackhole blackhole) {
+    for (int i = 0; i < IPS; i++) {
+      blackhole.consume((ip1s[i] & subnetMask1) == subnet1 && (ip2s[i] & subnetMask2) == subnet2);
+    }
+  }
+
+  @Benchmark
+  public void containsWithInetAddress(Blackhole blackhole) throws UnknownHostException {
+    for (int i = 0; i < IPS; i++) {
+      byte[] address = getAddress(ip1s[i], ip2s[i]).getAddress();
+      blackhole.consume(address.length == Integer.BYTES && address[0] == 10);
+    }
+  }
+
+  /**
+   * The same conversion as of GeoIpHelper.getAddressFromIps.
+   */
+  private static InetAddress getAddress(long ip1, long ip2) throws UnknownHostException {
+    ByteBuffer buffer;
+    if (ip1 == IpUtil.WKP) {
+      buffer = ByteBuffer.allocate(Integer.BYTES);
+      buffer.putInt((int) ip2);
+    } else {
+      buffer = ByteBuffer.allocate(Long.BYTES * 2);
+      buffer.putLong(ip1);
+      buffer.putLong(Long.BYTES, ip2);
+    }
+    return InetAddress.getByAddress(buffer.array());
+  }
+}
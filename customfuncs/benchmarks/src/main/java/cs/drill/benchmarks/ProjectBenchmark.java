@@ -0,0 +1,115 @@
+package cs.drill.benchmarks;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import cs.drill.geoip.GeoIpBenchmark;
+import cs.drill.ipfun.appname.ApplicationNameBenchmark;
+import org.apache.drill.common.config.DrillConfig;
+import org.apache.drill.exec.ExecConstants;
+import org.apache.drill.exec.client.DrillClient;
+import org.apache.drill.exec.proto.UserBitShared.QueryType;
+import org.apache.drill.exec.rpc.user.QueryDataBatch;
+import org.apache.drill.exec.server.Drillbit;
+import org.apache.drill.exec.server.RemoteServiceSet;
+import org.apache.drill.exec.store.StoragePluginRegistryImpl;
+import org.apache.drill.exec.store.mock.MockStorageEngine;
+import org.apache.drill.exec.store.mock.MockStorageEngineConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs queries projecting enrichment functions over flows of a mock table in an embedded
+ * Drillbit, so functions are measured in generated projections with their memos, injected
+ * buffers and metrics. The scan query is the baseline, the difference to it is the cost of
+ * the function.
+ *
+ * Flows are generated by {@link FlowGen} as described in flows.json, read by as many minor
+ * fragments as given by width.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ProjectBenchmark {
+  // as in flows.json
+  private static final int HOSTS = 1000000;
+  private static final int IP6_PERCENTAGE = 20;
+  private static final String TABLE = "mock.`flows.json`";
+  private static final Map<String, String> EXPRESSIONS = ImmutableMap.<String, String>builder()
+    .put("scan", "ip2")
+    .put("application_name", "application_name(ip1, ip2, port)")
+    .put("geoip_country", "geoip_country(ip1, ip2)")
+    .put("geoip", "geoip(ip1, ip2)")
+    .build();
+
+  @Param({"scan", "application_name", "geoip_country", "geoip"})
+  String function;
+
+  @Param({"1", "8", "32"})
+  int width;
+
+  Drillbit drillbit;
+  DrillClient client;
+  String query;
+
+  @Setup
+  public void setUp() throws Exception {
+    Properties properties = new Properties();
+    properties.put(ExecConstants.HTTP_ENABLE, false);
+    properties.put(ExecConstants.SYS_STORE_PROVIDER_LOCAL_PATH,
+      Files.createTempDir().getAbsolutePath());
+    // enrichments are populated by the benchmark, not restored from previous runs
+    properties.put("drill.exec.enrichment.snapshot_dir", "");
+    DrillConfig config = DrillConfig.create(properties);
+    RemoteServiceSet serviceSet = RemoteServiceSet.getLocalServiceSet();
+    drillbit = new Drillbit(config, serviceSet);
+    drillbit.run();
+    ((StoragePluginRegistryImpl) drillbit.getContext().getStorage()).definePlugin(
+      MockStorageEngineConfig.NAME, MockStorageEngineConfig.INSTANCE, new MockStorageEngine(
+        MockStorageEngineConfig.INSTANCE, drillbit.getContext(), MockStorageEngineConfig.NAME));
+    client = new DrillClient(config, serviceSet.getCoordinator());
+    client.connect();
+
+    Flows flows = new Flows(0, HOSTS, IP6_PERCENTAGE);
+    ApplicationNameBenchmark.populate(flows, 100000);
+    GeoIpBenchmark.populate(flows, 1000);
+
+    run("ALTER SESSION SET `" + ExecConstants.MAX_WIDTH_PER_NODE_KEY + "` = " + width);
+    // every scan entry gets a minor fragment
+    run("ALTER SESSION SET `" + ExecConstants.SLICE_TARGET + "` = 1");
+    query = "SELECT max(" + EXPRESSIONS.get(function) + ") FROM " + TABLE;
+  }
+
+  @TearDown
+  public void tearDown() {
+    client.close();
+    drillbit.close();
+  }
+
+  @Benchmark
+  public void project() throws Exception {
+    run(query);
+  }
+
+  private void run(String sql) throws Exception {
+    for (QueryDataBatch batch : client.runQuery(QueryType.SQL, sql)) {
+      batch.release();
+    }
+  }
+}
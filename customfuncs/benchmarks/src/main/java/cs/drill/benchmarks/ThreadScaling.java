@@ -0,0 +1,30 @@
+package cs.drill.benchmarks;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs lookup benchmarks at 1, 8 and 32 threads sharing enrichments, as fragments of
+ * concurrent queries do. {@link ProjectBenchmark} sets its parallelism with width instead.
+ *
+ * java -cp target/benchmarks.jar cs.drill.benchmarks.ThreadScaling [benchmark regexps]
+ */
+public final class ThreadScaling {
+  private static final int[] THREADS = {1, 8, 32};
+
+  private ThreadScaling() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    for (int threads : THREADS) {
+      ChainedOptionsBuilder options = new OptionsBuilder()
+        .exclude(ProjectBenchmark.class.getSimpleName())
+        .threads(threads);
+      for (String include : args) {
+        options.include(include);
+      }
+      new Runner(options.build()).run();
+    }
+  }
+}
@@ -0,0 +1,134 @@
+package cs.drill.bitwise;
+
+import cs.drill.benchmarks.Flows;
+import org.apache.drill.exec.expr.holders.BigIntHolder;
+import org.apache.drill.exec.expr.holders.BitHolder;
+import org.apache.drill.exec.expr.holders.IntHolder;
+import org.apache.drill.exec.memory.BufferAllocator;
+import org.apache.drill.exec.memory.RootAllocatorFactory;
+import org.apache.drill.exec.vector.complex.MapVector;
+import org.apache.drill.exec.vector.complex.impl.ComplexWriterImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Evaluates bitwise functions over flag columns of a batch the way generated projections and
+ * filters do, through holders of the function instances.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@OperationsPerInvocation(Flows.BATCH_SIZE)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BitwiseBenchmark {
+  // SYN and ACK of tcp flags
+  private static final int SYN = 1;
+  private static final int ACK = 4;
+
+  /**
+   * Probability of a bit to be set in percent.
+   */
+  @Param({"10", "50"})
+  int bitPercentage;
+
+  long[] numbers = new long[Flows.BATCH_SIZE];
+  BitHolder out = new BitHolder();
+  IsBitSet.IsBitSetOfBigIntsFunction isBitSet = new IsBitSet.IsBitSetOfBigIntsFunction();
+  BitMask.BitMaskAnyOfBigIntsFunction bitMaskAny = new BitMask.BitMaskAnyOfBigIntsFunction();
+  NumberBits.NumberBitsOfBigIntFunction numberBits = new NumberBits.NumberBitsOfBigIntFunction();
+  BufferAllocator allocator;
+  MapVector container;
+  ComplexWriterImpl writer;
+
+  @Setup
+  public void setUp() {
+    Random random = new Random(0);
+    for (int i = 0; i < numbers.length; i++) {
+      for (int bit = 0; bit < Long.SIZE; bit++) {
+        if (random.nextInt(100) < bitPercentage) {
+          numbers[i] |= 1L << bit;
+        }
+      }
+    }
+
+    isBitSet.number = new BigIntHolder();
+    isBitSet.bitIndex = new IntHolder();
+    isBitSet.out = out;
+    bitMaskAny.number = new BigIntHolder();
+    bitMaskAny.mask = new BigIntHolder();
+    bitMaskAny.mask.value = 1L << SYN | 1L << ACK;
+    bitMaskAny.out = out;
+
+    allocator = RootAllocatorFactory.newRoot(Long.MAX_VALUE);
+    container = new MapVector("benchmark", allocator, null);
+    writer = new ComplexWriterImpl("bits", container);
+    numberBits.number = new BigIntHolder();
+    numberBits.out = writer;
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    writer.close();
+    container.close();
+    allocator.close();
+  }
+
+  /**
+   * is_bit_set(flags, 1) OR is_bit_set(flags, 4), as written in queries.
+   */
+  @Benchmark
+  public void isBitSetAny(Blackhole blackhole) {
+    for (int i = 0; i < numbers.length; i++) {
+      isBitSet.number.value = numbers[i];
+      isBitSet.bitIndex.value = SYN;
+      isBitSet.eval();
+      int syn = out.value;
+      isBitSet.bitIndex.value = ACK;
+      isBitSet.eval();
+      blackhole.consume(syn | out.value);
+    }
+  }
+
+  /**
+   * bit_mask_any(flags, 18), the same filter folded by the planner.
+   */
+  @Benchmark
+  public void bitMaskAny(Blackhole blackhole) {
+    for (int i = 0; i < numbers.length; i++) {
+      bitMaskAny.number.value = numbers[i];
+      bitMaskAny.eval();
+      blackhole.consume(out.value);
+    }
+  }
+
+  @Benchmark
+  public void numberBits(Blackhole blackhole) {
+    writer.allocate();
+    writer.reset();
+    for (int i = 0; i < numbers.length; i++) {
+      writer.setPosition(i);
+      numberBits.number.value = numbers[i];
+      numberBits.eval();
+    }
+    writer.setValueCount(numbers.length);
+    blackhole.consume(writer.getValueCapacity());
+    writer.clear();
+  }
+}
@@ -0,0 +1,105 @@
+package cs.drill.de;
+
+import cs.drill.benchmarks.Flows;
+import org.apache.drill.exec.ops.UdfMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves users of flows at their timestamps from {@link UserTimedIpCache} and from the
+ * published {@link UserIndex} through a cursor, as user_name does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@OperationsPerInvocation(Flows.BATCH_SIZE)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserNameBenchmark {
+  private static final long RANGE_MS = TimeUnit.MINUTES.toMillis(10);
+
+  @State(Scope.Benchmark)
+  public static class Users {
+    @Param({"10000", "1000000"})
+    int hosts;
+
+    @Param({"1.1"})
+    double skew;
+
+    /**
+     * Percentage of hosts with users.
+     */
+    @Param({"50"})
+    int namedPercentage;
+
+    Flows flows;
+    UserTimedIpCache cache;
+    UserIndex index;
+
+    @Setup
+    public void setUp() {
+      flows = Flows.generate(hosts, skew, 20, 0);
+      long from = flows.timestamps[0];
+      long to = flows.timestamps[flows.size() - 1] + 1;
+      int named = (int) ((long) hosts * namedPercentage / 100);
+      cache = new UserTimedIpCache(named);
+      UserRecords records = new UserRecords();
+      for (int host = 0; host < named; host++) {
+        long ip1 = flows.getIp1(host);
+        long ip2 = flows.getIp2(host);
+        // users change every few minutes, names come from a small vocabulary
+        for (long start = from - host % RANGE_MS; start < to; start += RANGE_MS) {
+          String user = "user" + (host + start / RANGE_MS) % 10000;
+          cache.put(ip1, ip2, start, start + RANGE_MS, user);
+          records.add(ip1, ip2, start, start + RANGE_MS, user);
+        }
+      }
+      index = UserIndex.build(records, named).index;
+    }
+  }
+
+  Flows flows;
+  int offset;
+  UserTimedIpCache cache;
+  UserCursor cursor;
+
+  @Setup
+  public void setUp(Users users) {
+    flows = users.flows;
+    offset = flows.randomBatch();
+    cache = users.cache;
+    UserIndex index = users.index;
+    cursor = new UserCursor(() -> index, (hits, misses, cursorHits, searches) -> { },
+      new UdfMetrics());
+  }
+
+  @Benchmark
+  public void timedIpCache(Blackhole blackhole) {
+    for (int i = offset, end = offset + Flows.BATCH_SIZE; i < end; i++) {
+      blackhole.consume(cache.get(flows.ip1s[i], flows.ip2s[i], flows.timestamps[i]));
+    }
+    offset = flows.nextBatch(offset);
+  }
+
+  @Benchmark
+  public void cursor(Blackhole blackhole) {
+    for (int i = offset, end = offset + Flows.BATCH_SIZE; i < end; i++) {
+      blackhole.consume(cursor.getUser(flows.ip1s[i], flows.ip2s[i], flows.timestamps[i]));
+    }
+    offset = flows.nextBatch(offset);
+  }
+}
@@ -0,0 +1,93 @@
+package cs.drill.geoip;
+
+import cs.drill.benchmarks.Flows;
+import cs.drill.toucan.JsonGeoIpEnrichments;
+import org.apache.drill.exec.ops.UdfMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves geo records of flows through local subnets, the shared cache and the bundled MaxMind
+ * database, as geoip functions do. Every thread keeps its own memo, like a fragment.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@OperationsPerInvocation(Flows.BATCH_SIZE)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeoIpBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class Enrichment {
+    @Param({"10000", "1000000"})
+    int hosts;
+
+    @Param({"1.1"})
+    double skew;
+
+    @Param({"1000"})
+    int localSubnets;
+
+    Flows flows;
+
+    @Setup
+    public void setUp() {
+      flows = Flows.generate(hosts, skew, 20, 0);
+      populate(flows, localSubnets);
+    }
+  }
+
+  /**
+   * Populates local subnets around hosts of flows.
+   */
+  public static void populate(Flows flows, int localSubnets) {
+    JsonGeoIpEnrichments json = new JsonGeoIpEnrichments();
+    String[] subnets = flows.getSubnets(localSubnets, 24);
+    for (int i = 0; i < subnets.length; i++) {
+      json.add(new JsonGeoIpEnrichments.Entry(subnets[i], "city" + i, "country", 1.0, 2.0));
+    }
+    GeoIpHelper.populateLocalMaps(json);
+  }
+
+  Flows flows;
+  int offset;
+  GeoIpHelper.Memo memo;
+
+  @Setup
+  public void setUp(Enrichment enrichment) {
+    flows = enrichment.flows;
+    offset = flows.randomBatch();
+    memo = new GeoIpHelper.Memo(new UdfMetrics());
+  }
+
+  @Benchmark
+  public void record(Blackhole blackhole) {
+    for (int i = offset, end = offset + Flows.BATCH_SIZE; i < end; i++) {
+      blackhole.consume(GeoIpHelper.getRecord(flows.ip1s[i], flows.ip2s[i], memo));
+    }
+    offset = flows.nextBatch(offset);
+  }
+
+  @Benchmark
+  public void recordWithoutMemo(Blackhole blackhole) {
+    for (int i = offset, end = offset + Flows.BATCH_SIZE; i < end; i++) {
+      blackhole.consume(GeoIpHelper.getRecord(flows.ip1s[i], flows.ip2s[i]));
+    }
+    offset = flows.nextBatch(offset);
+  }
+}
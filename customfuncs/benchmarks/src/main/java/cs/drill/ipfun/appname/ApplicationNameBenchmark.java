@@ -0,0 +1,99 @@
+package cs.drill.ipfun.appname;
+
+import cs.drill.benchmarks.Flows;
+import cs.drill.toucan.JsonAppEnrichment;
+import org.apache.drill.exec.ops.UdfMetrics;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves application names of flows by subnets and ports, with and without the memo kept by
+ * every application_name function instance.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@OperationsPerInvocation(Flows.BATCH_SIZE)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ApplicationNameBenchmark {
+
+  @State(Scope.Benchmark)
+  public static class Enrichment {
+    @Param({"10000", "1000000"})
+    int hosts;
+
+    @Param({"1.1"})
+    double skew;
+
+    @Param({"1000", "100000"})
+    int subnets;
+
+    Flows flows;
+
+    @Setup
+    public void setUp() {
+      flows = Flows.generate(hosts, skew, 20, 0);
+      populate(flows, subnets);
+    }
+  }
+
+  /**
+   * Populates application names of subnets around hosts of flows and names of well known ports.
+   */
+  public static void populate(Flows flows, int subnets) {
+    LinkedHashMap<String, String> names = new LinkedHashMap<>();
+    String[] cidrs = flows.getSubnets(subnets, 24);
+    for (int i = 0; i < cidrs.length; i++) {
+      names.put(cidrs[i], "application" + i % 100);
+    }
+    LinkedHashMap<Integer, String> ports = new LinkedHashMap<>();
+    for (int port = 1; port < 1024; port++) {
+      ports.put(port, "service" + port);
+    }
+    ApplicationNameResolver.populate(new JsonAppEnrichment(names, ports));
+  }
+
+  Flows flows;
+  int offset;
+  ApplicationNameMemo memo;
+
+  @Setup
+  public void setUp(Enrichment enrichment) {
+    flows = enrichment.flows;
+    offset = flows.randomBatch();
+    memo = ApplicationNameResolver.newMemo(new UdfMetrics());
+  }
+
+  @Benchmark
+  public void memo(Blackhole blackhole) {
+    for (int i = offset, end = offset + Flows.BATCH_SIZE; i < end; i++) {
+      blackhole.consume(memo.getApplicationName(flows.ip1s[i], flows.ip2s[i], flows.ports[i]));
+    }
+    offset = flows.nextBatch(offset);
+  }
+
+  @Benchmark
+  public void snapshot(Blackhole blackhole) {
+    for (int i = offset, end = offset + Flows.BATCH_SIZE; i < end; i++) {
+      blackhole.consume(ApplicationNameResolver.getApplicationNameUtf8(
+        flows.ip1s[i], flows.ip2s[i], flows.ports[i]));
+    }
+    offset = flows.nextBatch(offset);
+  }
+}
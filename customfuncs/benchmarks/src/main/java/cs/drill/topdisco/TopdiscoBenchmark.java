@@ -0,0 +1,103 @@
+package cs.drill.topdisco;
+
+import cs.drill.benchmarks.Flows;
+import cs.drill.util.IpUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves ip, router and interface names of flows from Topdisco index, ips without a name are
+ * resolved to nothing as functions format them on their own.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@OperationsPerInvocation(Flows.BATCH_SIZE)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TopdiscoBenchmark {
+  private static final int INTERFACES = 48;
+
+  @State(Scope.Benchmark)
+  public static class Enrichment {
+    @Param({"10000", "1000000"})
+    int hosts;
+
+    @Param({"1.1"})
+    double skew;
+
+    /**
+     * Percentage of hosts with a name.
+     */
+    @Param({"50"})
+    int namedPercentage;
+
+    Flows flows;
+
+    @Setup
+    public void setUp() {
+      flows = Flows.generate(hosts, skew, 20, 0);
+      int named = (int) ((long) hosts * namedPercentage / 100);
+      List<JsonIpEnrichment.Ip> ips = new ArrayList<>(named);
+      List<JsonIpEnrichment.Interface> interfaces = new ArrayList<>(named);
+      for (int host = 0; host < named; host++) {
+        String ip = new IpUtil.IpPair(flows.getIp1(host), flows.getIp2(host)).toString();
+        ips.add(new JsonIpEnrichment.Ip(ip, "host" + host, (short) (host % 4), null));
+        interfaces.add(new JsonIpEnrichment.Interface(
+          "port" + host % INTERFACES, host % INTERFACES, Collections.singleton(ip)));
+      }
+      TopdiscoReader.populate(new JsonIpEnrichment(ips, interfaces));
+    }
+  }
+
+  Flows flows;
+  int offset;
+
+  @Setup
+  public void setUp(Enrichment enrichment) {
+    flows = enrichment.flows;
+    offset = flows.randomBatch();
+  }
+
+  @Benchmark
+  public void ipName(Blackhole blackhole) {
+    for (int i = offset, end = offset + Flows.BATCH_SIZE; i < end; i++) {
+      blackhole.consume(TopdiscoReader.findIpName(flows.ip1s[i], flows.ip2s[i]));
+    }
+    offset = flows.nextBatch(offset);
+  }
+
+  @Benchmark
+  public void routerName(Blackhole blackhole) {
+    for (int i = offset, end = offset + Flows.BATCH_SIZE; i < end; i++) {
+      blackhole.consume(TopdiscoReader.findRouterName(flows.ip1s[i], flows.ip2s[i]));
+    }
+    offset = flows.nextBatch(offset);
+  }
+
+  @Benchmark
+  public void interfaceName(Blackhole blackhole) {
+    for (int i = offset, end = offset + Flows.BATCH_SIZE; i < end; i++) {
+      blackhole.consume(TopdiscoReader.findInterfaceName(
+        flows.ip1s[i], flows.ip2s[i], flows.ports[i] % INTERFACES));
+    }
+    offset = flows.nextBatch(offset);
+  }
+}
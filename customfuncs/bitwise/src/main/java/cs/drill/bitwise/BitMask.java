@@ -0,0 +1,184 @@
+package cs.drill.bitwise;
+
+import org.apache.drill.exec.expr.DrillSimpleFunc;
+import org.apache.drill.exec.expr.annotations.FunctionTemplate;
+import org.apache.drill.exec.expr.annotations.Output;
+import org.apache.drill.exec.expr.annotations.Param;
+import org.apache.drill.exec.expr.holders.*;
+
+/**
+ * Tests several bits at once: bit_mask_any is true when any bit of mask is set in number,
+ * bit_mask_all when all of them are. Filters of is_bit_set on the same column joined by OR/AND
+ * are folded into these by the planner.
+ */
+public final class BitMask {
+    @FunctionTemplate(
+            name = "bit_mask_any",
+            scope = FunctionTemplate.FunctionScope.SIMPLE,
+            nulls = FunctionTemplate.NullHandling.NULL_IF_NULL
+    )
+    public static class BitMaskAnyOfBigIntsFunction implements DrillSimpleFunc {
+        @Param BigIntHolder number;
+        @Param BigIntHolder mask;
+        @Output BitHolder out;
+
+        @Override
+        public void setup() {
+            //NOP
+        }
+
+        @Override
+        public void eval() {
+            out.value = (number.value & mask.value) != 0 ? 1 : 0;
+        }
+    }
+
+    @FunctionTemplate(
+            name = "bit_mask_any",
+            scope = FunctionTemplate.FunctionScope.SIMPLE,
+            nulls = FunctionTemplate.NullHandling.NULL_IF_NULL
+    )
+    public static class BitMaskAnyOfIntsFunction implements DrillSimpleFunc {
+        @Param IntHolder number;
+        @Param IntHolder mask;
+        @Output BitHolder out;
+
+        @Override
+        public void setup() {
+            //NOP
+        }
+
+        @Override
+        public void eval() {
+            out.value = (number.value & mask.value) != 0 ? 1 : 0;
+        }
+    }
+
+    @FunctionTemplate(
+            name = "bit_mask_any",
+            scope = FunctionTemplate.FunctionScope.SIMPLE,
+            nulls = FunctionTemplate.NullHandling.NULL_IF_NULL
+    )
+    public static class BitMaskAnyOfSmallIntsFunction implements DrillSimpleFunc {
+        @Param SmallIntHolder number;
+        @Param IntHolder mask;
+        @Output BitHolder out;
+
+        @Override
+        public void setup() {
+            //NOP
+        }
+
+        @Override
+        public void eval() {
+            out.value = (number.value & 0xffff & mask.value) != 0 ? 1 : 0;
+        }
+    }
+
+    @FunctionTemplate(
+            name = "bit_mask_any",
+            scope = FunctionTemplate.FunctionScope.SIMPLE,
+            nulls = FunctionTemplate.NullHandling.NULL_IF_NULL
+    )
+    public static class BitMaskAnyOfTinyIntsFunction implements DrillSimpleFunc {
+        @Param TinyIntHolder number;
+        @Param IntHolder mask;
+        @Output BitHolder out;
+
+        @Override
+        public void setup() {
+            //NOP
+        }
+
+        @Override
+        public void eval() {
+            out.value = (number.value & 0xff & mask.value) != 0 ? 1 : 0;
+        }
+    }
+
+    @FunctionTemplate(
+            name = "bit_mask_all",
+            scope = FunctionTemplate.FunctionScope.SIMPLE,
+            nulls = FunctionTemplate.NullHandling.NULL_IF_NULL
+    )
+    public static class BitMaskAllOfBigIntsFunction implements DrillSimpleFunc {
+        @Param BigIntHolder number;
+        @Param BigIntHolder mask;
+        @Output BitHolder out;
+
+        @Override
+        public void setup() {
+            //NOP
+        }
+
+        @Override
+        public void eval() {
+            out.value = (number.value & mask.value) == mask.value ? 1 : 0;
+        }
+    }
+
+    @FunctionTemplate(
+            name = "bit_mask_all",
+            scope = FunctionTemplate.FunctionScope.SIMPLE,
+            nulls = FunctionTemplate.NullHandling.NULL_IF_NULL
+    )
+    public static class BitMaskAllOfIntsFunction implements DrillSimpleFunc {
+        @Param IntHolder number;
+        @Param IntHolder mask;
+        @Output BitHolder out;
+
+        @Override
+        public void setup() {
+            //NOP
+        }
+
+        @Override
+        public void eval() {
+            out.value = (number.value & mask.value) == mask.value ? 1 : 0;
+        }
+    }
+
+    @FunctionTemplate(
+            name = "bit_mask_all",
+            scope = FunctionTemplate.FunctionScope.SIMPLE,
+            nulls = FunctionTemplate.NullHandling.NULL_IF_NULL
+    )
+    public static class BitMaskAllOfSmallIntsFunction implements DrillSimpleFunc {
+        @Param SmallIntHolder number;
+        @Param IntHolder mask;
+        @Output BitHolder out;
+
+        @Override
+        public void setup() {
+            //NOP
+        }
+
+        @Override
+        public void eval() {
+            out.value = (number.value & 0xffff & mask.value) == mask.value ? 1 : 0;
+        }
+    }
+
+    @FunctionTemplate(
+            name = "bit_mask_all",
+            scope = FunctionTemplate.FunctionScope.SIMPLE,
+            nulls = FunctionTemplate.NullHandling.NULL_IF_NULL
+    )
+    public static class BitMaskAllOfTinyIntsFunction implements DrillSimpleFunc {
+        @Param TinyIntHolder number;
+        @Param IntHolder mask;
+        @Output BitHolder out;
+
+        @Override
+        public void setup() {
+            //NOP
+        }
+
+        @Override
+        public void eval() {
+            out.value = (number.value & 0xff & mask.value) == mask.value ? 1 : 0;
+        }
+    }
+
+    private BitMask() {}
+}
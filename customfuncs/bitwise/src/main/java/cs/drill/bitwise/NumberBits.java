@@ -32,17 +32,13 @@ public final class NumberBits {
             if (input == 0) {
                 listWriter.writeTinyInt((byte) -1);
             } else {
-                byte i = 0;
-                while (input != 0 && i < 64) {
-                    if ((input & 1) > 0) {
-                        listWriter.writeTinyInt(i);
-                    }
-                    input >>>= 1;
-                    i += 1;
+                // jumps straight to set bits, lowest first
+                while (input != 0) {
+                    listWriter.writeTinyInt((byte) Long.numberOfTrailingZeros(input));
+                    input &= input - 1;
                 }
             }
             list.endList();
-
         }
     }
 
@@ -67,13 +63,10 @@ public final class NumberBits {
             if (input == 0) {
                 listWriter.writeTinyInt((byte) -1);
             } else {
-                byte i = 0;
-                while (input != 0 && i < 32) {
-                    if ((input & 1) > 0) {
-                        listWriter.writeTinyInt(i);
-                    }
-                    input >>>= 1;
-                    i += 1;
+                // jumps straight to set bits, lowest first
+                while (input != 0) {
+                    listWriter.writeTinyInt((byte) Integer.numberOfTrailingZeros(input));
+                    input &= input - 1;
                 }
             }
             list.endList();
@@ -94,20 +87,17 @@ public final class NumberBits {
 
         @Override
         public void eval() {
-            short input = number.value;
+            int input = number.value & 0xffff;
             org.apache.drill.exec.vector.complex.writer.BaseWriter.ListWriter list = out.rootAsList();
             list.startList();
             org.apache.drill.exec.vector.complex.writer.TinyIntWriter listWriter = list.tinyInt();
             if (input == 0) {
                 listWriter.writeTinyInt((byte) -1);
             } else {
-                byte i = 0;
-                while (input != 0 && i < 16) {
-                    if ((input & 1) > 0) {
-                        listWriter.writeTinyInt(i);
-                    }
-                    input >>>= 1;
-                    i += 1;
+                // jumps straight to set bits, lowest first
+                while (input != 0) {
+                    listWriter.writeTinyInt((byte) Integer.numberOfTrailingZeros(input));
+                    input &= input - 1;
                 }
             }
             list.endList();
@@ -128,20 +118,17 @@ public final class NumberBits {
 
         @Override
         public void eval() {
-            byte input = number.value;
+            int input = number.value & 0xff;
             org.apache.drill.exec.vector.complex.writer.BaseWriter.ListWriter list = out.rootAsList();
             list.startList();
             org.apache.drill.exec.vector.complex.writer.TinyIntWriter listWriter = list.tinyInt();
             if (input == 0) {
                 listWriter.writeTinyInt((byte) -1);
             } else {
-                byte i = 0;
-                while (input != 0 && i < 8) {
-                    if ((input & 1) > 0) {
-                        listWriter.writeTinyInt(i);
-                    }
-                    input >>>= 1;
-                    i += 1;
+                // jumps straight to set bits, lowest first
+                while (input != 0) {
+                    listWriter.writeTinyInt((byte) Integer.numberOfTrailingZeros(input));
+                    input &= input - 1;
                 }
             }
             list.endList();
@@ -0,0 +1,136 @@
+package cs.drill.bitwise;
+
+import org.apache.drill.exec.expr.DrillSimpleFunc;
+import org.apache.drill.exec.expr.holders.*;
+import static org.junit.Assert.assertSame;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BitMaskUnitTest {
+    private static final TestCase[] TESTCASES = new TestCase[] {
+            // number, mask, expected any, expected all
+            new TestCase(0, 1, false, false),
+            new TestCase(1, 1, true, true),
+            new TestCase(5, 5, true, true),
+            new TestCase(5, 7, true, false),
+            new TestCase(2, 5, false, false),
+            new TestCase(-1, 0x41, true, true)
+    };
+
+    private static class TestCase {
+        long number;
+        long mask;
+        boolean expectedAny;
+        boolean expectedAll;
+
+        TestCase(long number, long mask, boolean expectedAny, boolean expectedAll) {
+            this.number = number;
+            this.mask = mask;
+            this.expectedAny = expectedAny;
+            this.expectedAll = expectedAll;
+        }
+    }
+
+    BitHolder outHolder;
+
+    @Before
+    public void setUp() {
+        outHolder = new BitHolder();
+    }
+
+    private void testFuncEval(DrillSimpleFunc func, long mask, boolean expected) {
+        func.eval();
+        assertSame("mask " + mask, expected, outHolder.value == 1);
+    }
+
+    @Test
+    public void supportsBigInts() {
+        BitMask.BitMaskAnyOfBigIntsFunction any = new BitMask.BitMaskAnyOfBigIntsFunction();
+        BitMask.BitMaskAllOfBigIntsFunction all = new BitMask.BitMaskAllOfBigIntsFunction();
+        BigIntHolder number = new BigIntHolder();
+        BigIntHolder mask = new BigIntHolder();
+        any.number = all.number = number;
+        any.mask = all.mask = mask;
+        any.out = all.out = outHolder;
+
+        for (TestCase testCase : TESTCASES) {
+            number.value = testCase.number;
+            mask.value = testCase.mask;
+            testFuncEval(any, testCase.mask, testCase.expectedAny);
+            testFuncEval(all, testCase.mask, testCase.expectedAll);
+        }
+        number.value = Long.MIN_VALUE;
+        mask.value = Long.MIN_VALUE | 1;
+        testFuncEval(any, mask.value, true);
+        testFuncEval(all, mask.value, false);
+    }
+
+    @Test
+    public void supportsInts() {
+        BitMask.BitMaskAnyOfIntsFunction any = new BitMask.BitMaskAnyOfIntsFunction();
+        BitMask.BitMaskAllOfIntsFunction all = new BitMask.BitMaskAllOfIntsFunction();
+        IntHolder number = new IntHolder();
+        IntHolder mask = new IntHolder();
+        any.number = all.number = number;
+        any.mask = all.mask = mask;
+        any.out = all.out = outHolder;
+
+        for (TestCase testCase : TESTCASES) {
+            number.value = (int) testCase.number;
+            mask.value = (int) testCase.mask;
+            testFuncEval(any, testCase.mask, testCase.expectedAny);
+            testFuncEval(all, testCase.mask, testCase.expectedAll);
+        }
+        number.value = Integer.MIN_VALUE;
+        mask.value = Integer.MIN_VALUE;
+        testFuncEval(all, mask.value, true);
+    }
+
+    @Test
+    public void supportsSmallInts() {
+        BitMask.BitMaskAnyOfSmallIntsFunction any = new BitMask.BitMaskAnyOfSmallIntsFunction();
+        BitMask.BitMaskAllOfSmallIntsFunction all = new BitMask.BitMaskAllOfSmallIntsFunction();
+        SmallIntHolder number = new SmallIntHolder();
+        IntHolder mask = new IntHolder();
+        any.number = all.number = number;
+        any.mask = all.mask = mask;
+        any.out = all.out = outHolder;
+
+        for (TestCase testCase : TESTCASES) {
+            number.value = (short) testCase.number;
+            mask.value = (int) testCase.mask;
+            testFuncEval(any, testCase.mask, testCase.expectedAny);
+            testFuncEval(all, testCase.mask, testCase.expectedAll);
+        }
+        number.value = Short.MIN_VALUE;
+        mask.value = 1 << 15;
+        testFuncEval(all, mask.value, true);
+        number.value = -1;
+        mask.value = 1 << 16; // out of scope
+        testFuncEval(any, mask.value, false);
+    }
+
+    @Test
+    public void supportsTinyInts() {
+        BitMask.BitMaskAnyOfTinyIntsFunction any = new BitMask.BitMaskAnyOfTinyIntsFunction();
+        BitMask.BitMaskAllOfTinyIntsFunction all = new BitMask.BitMaskAllOfTinyIntsFunction();
+        TinyIntHolder number = new TinyIntHolder();
+        IntHolder mask = new IntHolder();
+        any.number = all.number = number;
+        any.mask = all.mask = mask;
+        any.out = all.out = outHolder;
+
+        for (TestCase testCase : TESTCASES) {
+            number.value = (byte) testCase.number;
+            mask.value = (int) testCase.mask;
+            testFuncEval(any, testCase.mask, testCase.expectedAny);
+            testFuncEval(all, testCase.mask, testCase.expectedAll);
+        }
+        number.value = Byte.MIN_VALUE;
+        mask.value = 1 << 7;
+        testFuncEval(all, mask.value, true);
+        number.value = -1;
+        mask.value = 1 << 8; // out of scope
+        testFuncEval(any, mask.value, false);
+    }
+}
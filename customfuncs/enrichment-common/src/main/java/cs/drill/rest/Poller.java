@@ -0,0 +1,102 @@
+package cs.drill.rest;
+
+import cs.drill.util.EnrichmentConfig;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reloads enrichment sources periodically on a pool of threads shared by all sources
+ * (drill.exec.enrichment.http.poll_threads), so a slow source delays only its own reloads.
+ *
+ * The next reload of a source is scheduled when the previous one completes, reloads of a
+ * source never overlap. Failed reloads are retried sooner, after a backoff doubled by every
+ * failure up to the reload period.
+ */
+public final class Poller {
+  private static final int DEFAULT_THREADS = 2;
+  private static final long DEFAULT_BACKOFF_MS = TimeUnit.SECONDS.toMillis(15);
+  private static final int MAX_BACKOFF_SHIFT = 20;
+
+  private final String name;
+  private final long periodMs;
+  private final long backoffMs;
+  private final Reload reload;
+  private int failures;
+
+  @FunctionalInterface
+  public interface Reload {
+    /**
+     * @return false when source failed and the reload should be retried after backoff
+     */
+    boolean reload();
+  }
+
+  private static class LazyHolder {
+    static final ScheduledExecutorService EXECUTOR = Executors.newScheduledThreadPool(
+        EnrichmentConfig.getInt(RestClient.ROOT + ".poll_threads", DEFAULT_THREADS),
+        new PollerThreadFactory());
+  }
+
+  private Poller(String name, long periodMs, Reload reload) {
+    this.name = name;
+    this.periodMs = periodMs;
+    this.backoffMs = Math.min(periodMs,
+        EnrichmentConfig.getInt(RestClient.ROOT + ".retry_backoff_ms", (int) DEFAULT_BACKOFF_MS));
+    this.reload = reload;
+  }
+
+  /**
+   * Starts reloading source right away and then every period.
+   * @param name name of source for logs
+   * @param period reload period
+   * @param unit unit of period
+   * @param reload reload of source
+   */
+  public static void schedule(String name, long period, TimeUnit unit, Reload reload) {
+    cs.drill.util.Logger.info("Scheduling " + name);
+    new Poller(name, unit.toMillis(period), reload).scheduleNext(0);
+  }
+
+  private void scheduleNext(long delayMs) {
+    LazyHolder.EXECUTOR.schedule(this::run, delayMs, TimeUnit.MILLISECONDS);
+  }
+
+  private void run() {
+    boolean succeeded = false;
+    try {
+      succeeded = reload.reload();
+    } catch (Throwable exc) {
+      // errors too (e.g. OutOfMemoryError of a huge payload), the source is reloaded later
+      cs.drill.util.Logger.warn("Reload of " + name + " failed", exc);
+    } finally {
+      // the next reload is scheduled whatever the outcome, or the source would stop reloading
+      scheduleAfter(succeeded);
+    }
+  }
+
+  private void scheduleAfter(boolean succeeded) {
+    if (succeeded) {
+      failures = 0;
+      scheduleNext(periodMs);
+    } else {
+      long delayMs = Math.min(periodMs, backoffMs << Math.min(failures++, MAX_BACKOFF_SHIFT));
+      cs.drill.util.Logger.debug("Reload of " + name + " is retried in " + delayMs + " ms");
+      scheduleNext(delayMs);
+    }
+  }
+
+  private static class PollerThreadFactory implements ThreadFactory {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+      Thread thread = new Thread(runnable, "enrichment-poller-" + count.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+}
@@ -0,0 +1,202 @@
+package cs.drill.rest;
+
+import cs.drill.util.EnrichmentConfig;
+import lombok.NonNull;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.DefaultHttpClient;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
+import org.apache.http.params.BasicHttpParams;
+import org.apache.http.params.HttpConnectionParams;
+import org.apache.http.params.HttpParams;
+import org.apache.http.util.EntityUtils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Client of enrichment sources. Connections are pooled and kept alive between reloads, shared
+ * by clients of all sources, and bounded by timeouts (drill.exec.enrichment.http namespace),
+ * so a source which does not answer fails its reload instead of hanging it.
+ *
+ * Conditional reads remember validators (ETag, Last-Modified) of the last payload read from
+ * every address, sources answer them with 304 Not Modified and no payload when nothing changed.
+ */
+public class RestClient {
+  public static final String ROOT = EnrichmentConfig.ROOT + ".http";
+  private static final int DEFAULT_CONNECT_TIMEOUT_MS = 5000;
+  private static final int DEFAULT_READ_TIMEOUT_MS = 30000;
+  private static final int DEFAULT_MAX_CONNECTIONS = 8;
+
+  private final Map<String, Validators> validators = new ConcurrentHashMap<>();
+
+  private static class LazyHolder {
+    static final HttpClient HTTP_CLIENT = createHttpClient();
+  }
+
+  private static HttpClient createHttpClient() {
+    int maxConnections = EnrichmentConfig.getInt(ROOT + ".max_connections", DEFAULT_MAX_CONNECTIONS);
+    PoolingClientConnectionManager connections = new PoolingClientConnectionManager();
+    connections.setMaxTotal(maxConnections);
+    connections.setDefaultMaxPerRoute(maxConnections);
+    HttpParams params = new BasicHttpParams();
+    HttpConnectionParams.setConnectionTimeout(params,
+        EnrichmentConfig.getInt(ROOT + ".connect_timeout_ms", DEFAULT_CONNECT_TIMEOUT_MS));
+    HttpConnectionParams.setSoTimeout(params,
+        EnrichmentConfig.getInt(ROOT + ".read_timeout_ms", DEFAULT_READ_TIMEOUT_MS));
+    // for some reason there is need of using obsolete default http client
+    // because drill cannot find newer packages
+    return new DefaultHttpClient(connections, params);
+  }
+
+  /**
+   * Performs GET method on desired address and returns payload as json.
+   * @param address address of service
+   * @return response payload as json
+   * @throws RestClientException in case of error
+   */
+  public String getJson(String address) throws RestClientException {
+    return read(address, this::processResponse);
+  }
+
+  /**
+   * Performs conditional GET method on desired address and returns payload as json, unless it
+   * is the same as payload returned by the last call for the address.
+   * @param address address of service
+   * @return response payload as json or null when it did not change
+   * @throws RestClientException in case of error
+   */
+  public String getJsonIfModified(String address) throws RestClientException {
+    return execute(address, true, this::processResponse);
+  }
+
+  /**
+   * Performs GET method on desired address and passes payload stream to the reader,
+   * so large responses can be processed without keeping them in memory.
+   * @param address address of service
+   * @param reader reader of payload, stream is closed after it returns
+   * @return value returned by reader
+   * @throws RestClientException in case of error
+   */
+  public <T> T read(String address, ContentReader<T> reader) throws RestClientException {
+    return execute(address, false, reader);
+  }
+
+  /**
+   * Forgets the last payload of address, so the next conditional GET returns it even when it
+   * did not change (e.g. when the last one could not be used).
+   */
+  public void forget(String address) {
+    validators.remove(address);
+  }
+
+  private <T> T execute(String address, boolean conditional, ContentReader<T> reader)
+      throws RestClientException {
+    HttpGet httpGet = new HttpGet(address);
+    Validators last = conditional ? validators.get(address) : null;
+    if (last != null) {
+      last.addTo(httpGet);
+    }
+    try {
+      HttpResponse response = LazyHolder.HTTP_CLIENT.execute(httpGet);
+      int status = response.getStatusLine().getStatusCode();
+      HttpEntity entity = response.getEntity();
+      if (status == HttpStatus.SC_NOT_MODIFIED && last != null) {
+        EntityUtils.consume(entity);
+        return null;
+      }
+      if (status != HttpStatus.SC_OK) {
+        EntityUtils.consume(entity);
+        throw new RestClientException("Unexpected response " + response.getStatusLine());
+      }
+      if (entity == null) {
+        throw new RestClientException("Empty response");
+      }
+      T result;
+      try (InputStream content = entity.getContent()) {
+        result = reader.read(content);
+      }
+      if (conditional) {
+        Validators current = Validators.of(response);
+        if (current == null) {
+          validators.remove(address);
+        } else {
+          validators.put(address, current);
+        }
+      }
+      return result;
+    } catch (IOException exc) {
+      // connection with unread payload can't be reused
+      httpGet.abort();
+      throw new RestClientException("Error while fetching data", exc);
+    } catch (RuntimeException exc) {
+      httpGet.abort();
+      throw exc;
+    }
+  }
+
+  @FunctionalInterface
+  public interface ContentReader<T> {
+    T read(InputStream content) throws IOException;
+  }
+
+  /**
+   * Extracts payload from content of {@link HttpEntity}
+   * @param content http entity content
+   * @return content of entity as String
+   * @throws IOException if something went wrong with extracting
+   */
+  private String processResponse(@NonNull InputStream content) throws IOException {
+    BufferedReader rd = new BufferedReader(new InputStreamReader(content, StandardCharsets.UTF_8));
+    StringBuilder result = new StringBuilder();
+    String line;
+    while ((line = rd.readLine()) != null) {
+      result.append(line);
+    }
+
+    return result.toString();
+  }
+
+  /**
+   * Validators of a payload, either may be null.
+   */
+  private static final class Validators {
+    private final String etag;
+    private final String lastModified;
+
+    private Validators(String etag, String lastModified) {
+      this.etag = etag;
+      this.lastModified = lastModified;
+    }
+
+    static Validators of(HttpResponse response) {
+      Header etag = response.getFirstHeader(HttpHeaders.ETAG);
+      Header lastModified = response.getFirstHeader(HttpHeaders.LAST_MODIFIED);
+      if (etag == null && lastModified == null) {
+        return null;
+      }
+      return new Validators(
+          etag == null ? null : etag.getValue(),
+          lastModified == null ? null : lastModified.getValue());
+    }
+
+    void addTo(HttpGet httpGet) {
+      if (etag != null) {
+        httpGet.addHeader(HttpHeaders.IF_NONE_MATCH, etag);
+      }
+      if (lastModified != null) {
+        httpGet.addHeader(HttpHeaders.IF_MODIFIED_SINCE, lastModified);
+      }
+    }
+  }
+}
@@ -0,0 +1,114 @@
+package cs.drill.util;
+
+/**
+ * Bounded {@link IpCache} with CLOCK (second chance) eviction.
+ *
+ * Keys are kept in {@link IpPairIndex} and values as {@link ValueDictionary} ids in a
+ * primitive array, so lookups do not allocate and an entry costs about 30 bytes of heap
+ * regardless of the value type. When cache is full the first entry not read since the clock
+ * hand last passed it is evicted.
+ *
+ * Not thread safe.
+ */
+public class ClockIpCache<T> implements IpCache<T> {
+  private final int capacity;
+  private IpPairIndex index;
+  private ValueDictionary<T> dictionary;
+  private int[] valueIds;
+  private boolean[] referenced;
+  private int hand;
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  public ClockIpCache(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("Cache capacity has to be positive: " + capacity);
+    }
+    this.capacity = capacity;
+    clear();
+  }
+
+  @Override
+  public T get(long ip1, long ip2) {
+    return getOrDefault(ip1, ip2, null);
+  }
+
+  /**
+   * Gets cached value, allows to tell cached nulls apart from missing entries.
+   * @return cached value or given default value when key is not cached
+   */
+  public T getOrDefault(long ip1, long ip2, T defaultValue) {
+    int entry = index.find(ip1, ip2);
+    if (entry < 0) {
+      misses++;
+      return defaultValue;
+    }
+    hits++;
+    referenced[entry] = true;
+    return dictionary.get(valueIds[entry]);
+  }
+
+  @Override
+  public void put(long ip1, long ip2, T value) {
+    int valueId = dictionary.acquire(value);
+    int entry = index.find(ip1, ip2);
+    if (entry >= 0) {
+      dictionary.release(valueIds[entry]);
+      referenced[entry] = true;
+    } else if (index.size() < capacity) {
+      entry = index.add(ip1, ip2);
+    } else {
+      entry = evict();
+      index.replace(entry, ip1, ip2);
+    }
+    valueIds[entry] = valueId;
+  }
+
+  public void clear() {
+    index = new IpPairIndex(Math.min(capacity, 1024));
+    dictionary = new ValueDictionary<>();
+    valueIds = new int[capacity];
+    referenced = new boolean[capacity];
+    hand = 0;
+  }
+
+  private int evict() {
+    while (referenced[hand]) {
+      referenced[hand] = false;
+      hand = (hand + 1) % capacity;
+    }
+    int victim = hand;
+    hand = (hand + 1) % capacity;
+    dictionary.release(valueIds[victim]);
+    evictions++;
+    return victim;
+  }
+
+  public int size() {
+    return index.size();
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public long getHitCount() {
+    return hits;
+  }
+
+  public long getMissCount() {
+    return misses;
+  }
+
+  public long getEvictionCount() {
+    return evictions;
+  }
+
+  /**
+   * Estimated heap size of cache entries in bytes (without dictionary values).
+   */
+  public long getMemorySize() {
+    return index.getMemorySize() + (long) capacity * (Integer.BYTES + 1);
+  }
+}
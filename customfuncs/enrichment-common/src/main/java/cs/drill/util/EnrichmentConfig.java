@@ -0,0 +1,61 @@
+package cs.drill.util;
+
+import org.apache.drill.common.config.DrillConfig;
+
+/**
+ * Access to Drill boot options of enrichment functions (drill.exec.enrichment namespace).
+ *
+ * Functions are not given Drillbit context, so configuration is loaded the same way as
+ * Drillbit loads it (drill-module.conf, drill-override.conf and system properties).
+ * When configuration can't be loaded given default values are used.
+ */
+public final class EnrichmentConfig {
+  public static final String ROOT = "drill.exec.enrichment";
+  public static final String CACHE_ROOT = ROOT + ".cache";
+
+  private static class LazyHolder {
+    static final DrillConfig CONFIG = load();
+  }
+
+  private EnrichmentConfig() {
+  }
+
+  private static DrillConfig load() {
+    try {
+      return DrillConfig.create();
+    } catch (RuntimeException exc) {
+      Logger.warn("Can't load Drill config, enrichment defaults will be used", exc);
+      return null;
+    }
+  }
+
+  private static boolean has(String path) {
+    return LazyHolder.CONFIG != null && LazyHolder.CONFIG.hasPath(path);
+  }
+
+  public static long getBytes(String path, long defaultValue) {
+    return has(path) ? LazyHolder.CONFIG.getBytes(path) : defaultValue;
+  }
+
+  public static int getInt(String path, int defaultValue) {
+    return has(path) ? LazyHolder.CONFIG.getInt(path) : defaultValue;
+  }
+
+  public static String getString(String path, String defaultValue) {
+    return has(path) ? LazyHolder.CONFIG.getString(path) : defaultValue;
+  }
+
+  /**
+   * @return memory budget of named cache in bytes
+   */
+  public static long getCacheBudget(String cacheName, long defaultValue) {
+    return getBytes(CACHE_ROOT + "." + cacheName + ".budget", defaultValue);
+  }
+
+  /**
+   * @return number of segments of named cache
+   */
+  public static int getCacheSegments(String cacheName, int defaultValue) {
+    return getInt(CACHE_ROOT + "." + cacheName + ".segments", defaultValue);
+  }
+}
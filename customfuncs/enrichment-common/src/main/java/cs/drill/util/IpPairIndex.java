@@ -0,0 +1,152 @@
+package cs.drill.util;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash index of (ip1, ip2) keys backed by primitive arrays.
+ *
+ * Every key gets dense entry number (0 to size - 1) which callers use as an index of their
+ * own primitive value arrays, so neither keys nor values are boxed. Collisions are resolved by
+ * linear probing and removed keys are back-shifted, so there are no tombstones.
+ *
+ * Not thread safe.
+ */
+public final class IpPairIndex {
+  private static final int NO_ENTRY = -1;
+  private static final int MIN_CAPACITY = 16;
+
+  private long[] ip1s;
+  private long[] ip2s;
+  /**
+   * Slots of hash table keep entry number increased by one, zero marks empty slot.
+   */
+  private int[] table;
+  private int mask;
+  private int size;
+
+  public IpPairIndex(int expectedSize) {
+    int capacity = Math.max(MIN_CAPACITY, expectedSize);
+    ip1s = new long[capacity];
+    ip2s = new long[capacity];
+    allocateTable(capacity);
+  }
+
+  /**
+   * @return entry number of given key or -1 when key is not indexed
+   */
+  public int find(long ip1, long ip2) {
+    int slot = hash(ip1, ip2) & mask;
+    int entry;
+    while ((entry = table[slot]) != 0) {
+      entry--;
+      if (ip1s[entry] == ip1 && ip2s[entry] == ip2) {
+        return entry;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return NO_ENTRY;
+  }
+
+  /**
+   * Adds key which is not indexed yet.
+   * @return entry number assigned to the key, equal to size of index before adding
+   */
+  public int add(long ip1, long ip2) {
+    int entry = size;
+    if (entry == ip1s.length) {
+      ip1s = Arrays.copyOf(ip1s, entry * 2);
+      ip2s = Arrays.copyOf(ip2s, entry * 2);
+    }
+    ip1s[entry] = ip1;
+    ip2s[entry] = ip2;
+    size++;
+    if (size * 2 > table.length) {
+      allocateTable(size);
+      for (int i = 0; i < size; i++) {
+        insert(i);
+      }
+    } else {
+      insert(entry);
+    }
+    return entry;
+  }
+
+  /**
+   * Reuses entry number of already indexed key for a new key which is not indexed yet.
+   * The old key is removed from index.
+   */
+  public void replace(int entry, long ip1, long ip2) {
+    remove(entry);
+    ip1s[entry] = ip1;
+    ip2s[entry] = ip2;
+    insert(entry);
+  }
+
+  public long getIp1(int entry) {
+    return ip1s[entry];
+  }
+
+  public long getIp2(int entry) {
+    return ip2s[entry];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Estimated heap size of index arrays in bytes.
+   */
+  public long getMemorySize() {
+    return (long) ip1s.length * Long.BYTES * 2 + (long) table.length * Integer.BYTES;
+  }
+
+  static int hash(long ip1, long ip2) {
+    long hash = ip1 * 0x9e3779b97f4a7c15L ^ ip2;
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    return (int) hash;
+  }
+
+  private void allocateTable(int capacity) {
+    int tableSize = Integer.highestOneBit(Math.max(MIN_CAPACITY, capacity) * 2 - 1) << 1;
+    table = new int[tableSize];
+    mask = tableSize - 1;
+  }
+
+  private void insert(int entry) {
+    int slot = hash(ip1s[entry], ip2s[entry]) & mask;
+    while (table[slot] != 0) {
+      slot = (slot + 1) & mask;
+    }
+    table[slot] = entry + 1;
+  }
+
+  private void remove(int entry) {
+    int slot = hash(ip1s[entry], ip2s[entry]) & mask;
+    while (table[slot] != entry + 1) {
+      slot = (slot + 1) & mask;
+    }
+    table[slot] = 0;
+
+    // shift back following entries which would not be reachable anymore
+    int next = slot;
+    while (true) {
+      next = (next + 1) & mask;
+      int moved = table[next];
+      if (moved == 0) {
+        return;
+      }
+      int ideal = hash(ip1s[moved - 1], ip2s[moved - 1]) & mask;
+      boolean reachable = slot <= next
+        ? slot < ideal && ideal <= next
+        : slot < ideal || ideal <= next;
+      if (!reachable) {
+        table[slot] = moved;
+        table[next] = 0;
+        slot = next;
+      }
+    }
+  }
+}
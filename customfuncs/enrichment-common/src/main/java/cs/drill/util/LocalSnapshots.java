@@ -0,0 +1,168 @@
+package cs.drill.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Last good enrichments saved on local disk (drill.exec.enrichment.snapshot_dir), so
+ * a restarted Drillbit resolves names before the first reload completes. Snapshots are not
+ * saved unless the directory is configured.
+ *
+ * Text snapshots (source payloads) are gzipped, binary ones are written as they are and
+ * mapped when read, so readers decode them without copying the whole file first. Readers copy
+ * what they keep onto heap. Files are replaced atomically. Snapshots are only an optimization,
+ * problems with them are logged and treated as missing snapshots.
+ */
+public final class LocalSnapshots {
+  public static final String DIR_PATH = EnrichmentConfig.ROOT + ".snapshot_dir";
+  private static final String TEXT_SUFFIX = ".json.gz";
+  private static final String BINARY_SUFFIX = ".bin";
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  /**
+   * Snapshot directory or null when snapshots are not saved.
+   */
+  private final Path directory;
+
+  @FunctionalInterface
+  public interface Writer {
+    void write(DataOutputStream output) throws IOException;
+  }
+
+  private static class LazyHolder {
+    static final LocalSnapshots INSTANCE = create();
+  }
+
+  public static LocalSnapshots getInstance() {
+    return LazyHolder.INSTANCE;
+  }
+
+  private static LocalSnapshots create() {
+    String path = EnrichmentConfig.getString(DIR_PATH, "");
+    return new LocalSnapshots(path.isEmpty() ? null : Paths.get(path));
+  }
+
+  LocalSnapshots(Path directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * @return payload saved by {@link #write(String, String)} or null when there is none
+   */
+  public String read(String name) {
+    Path file = getFile(name + TEXT_SUFFIX);
+    try {
+      return file == null || !Files.exists(file) ? null : readText(file);
+    } catch (IOException exc) {
+      Logger.warn("Can't read snapshot " + file, exc);
+      return null;
+    }
+  }
+
+  public void write(String name, String payload) {
+    Path file = getFile(name + TEXT_SUFFIX);
+    if (file != null) {
+      try {
+        writeText(file, payload);
+      } catch (IOException exc) {
+        Logger.warn("Can't save snapshot " + file, exc);
+      }
+    }
+  }
+
+  /**
+   * @return read only buffer mapping snapshot saved by {@link #write(String, Writer)} or null
+   * when there is none
+   */
+  public ByteBuffer map(String name) {
+    Path file = getFile(name + BINARY_SUFFIX);
+    if (file == null || !Files.exists(file)) {
+      return null;
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      // mapping stays valid after the channel is closed and the file is replaced
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } catch (IOException exc) {
+      Logger.warn("Can't map snapshot " + file, exc);
+      return null;
+    }
+  }
+
+  /**
+   * Saves binary snapshot, {@link ByteBuffer}s read it in their default (big endian) order.
+   */
+  public void write(String name, Writer writer) {
+    Path file = getFile(name + BINARY_SUFFIX);
+    if (file != null) {
+      try {
+        replace(file, output -> {
+          DataOutputStream data = new DataOutputStream(new BufferedOutputStream(output));
+          writer.write(data);
+          data.flush();
+        });
+      } catch (IOException exc) {
+        Logger.warn("Can't save snapshot " + file, exc);
+      }
+    }
+  }
+
+  private Path getFile(String fileName) {
+    return directory == null ? null : directory.resolve(fileName);
+  }
+
+  static String readText(Path file) throws IOException {
+    try (InputStream input = new GZIPInputStream(Files.newInputStream(file))) {
+      ByteArrayOutputStream payload = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int length;
+      while ((length = input.read(buffer)) > 0) {
+        payload.write(buffer, 0, length);
+      }
+      return new String(payload.toByteArray(), StandardCharsets.UTF_8);
+    }
+  }
+
+  static void writeText(Path file, String payload) throws IOException {
+    replace(file, output -> {
+      GZIPOutputStream gzip = new GZIPOutputStream(output);
+      gzip.write(payload.getBytes(StandardCharsets.UTF_8));
+      gzip.finish();
+    });
+  }
+
+  @FunctionalInterface
+  private interface Content {
+    void write(OutputStream output) throws IOException;
+  }
+
+  /**
+   * Writes content to a temporary file moved over the target one.
+   */
+  private static void replace(Path file, Content content) throws IOException {
+    Files.createDirectories(file.getParent());
+    Path temp = file.resolveSibling(file.getFileName() + "." + UUID.randomUUID() + TEMP_SUFFIX);
+    try {
+      try (OutputStream output = Files.newOutputStream(temp)) {
+        content.write(output);
+      }
+      Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+}
@@ -0,0 +1,237 @@
+package cs.drill.util;
+
+import org.apache.drill.exec.store.sys.EnrichmentCache;
+import org.apache.drill.exec.store.sys.EnrichmentCacheRegistry;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread safe {@link IpCache} bounded by memory budget.
+ *
+ * Keys are spread by hash over independent {@link ClockIpCache} segments, each guarded by its
+ * own lock. Budget is divided evenly between segments and a full segment evicts its entries one
+ * by one, so cache degrades gradually instead of being dropped as a whole. Values are shared
+ * through segment dictionaries and are not counted in the budget.
+ *
+ * Cached results are derived from a source snapshot (e.g. subnets of local enrichments) which
+ * is replaced on reload. {@link #reset(Object)} switches the cache to a new source and puts of
+ * results computed by lookups still running against the old one are ignored.
+ *
+ * Caches created by {@link #create} are listed in sys.enrichment_caches table.
+ */
+public class SegmentedIpCache<T> implements IpCache<T>, EnrichmentCache {
+  /**
+   * Estimated heap size of one entry in bytes, see {@link ClockIpCache#getMemorySize()}.
+   */
+  static final int ENTRY_SIZE = 48;
+
+  private final String name;
+  private final long memoryBudget;
+  private final ClockIpCache<T>[] segments;
+  private volatile Object source;
+  private final AtomicLong reloads = new AtomicLong();
+  private volatile long lastReloadTime = -1;
+
+  @SuppressWarnings("unchecked")
+  public SegmentedIpCache(String name, long memoryBudget, int segmentCount) {
+    if (segmentCount <= 0) {
+      throw new IllegalArgumentException("Number of segments has to be positive: " + segmentCount);
+    }
+    long segmentCapacity = memoryBudget / ENTRY_SIZE / segmentCount;
+    if (segmentCapacity <= 0 || segmentCapacity > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("Memory budget " + memoryBudget + " of cache " + name
+        + " does not fit " + segmentCount + " segments");
+    }
+    this.name = name;
+    this.memoryBudget = memoryBudget;
+    this.segments = new ClockIpCache[segmentCount];
+    for (int i = 0; i < segmentCount; i++) {
+      segments[i] = new ClockIpCache<>((int) segmentCapacity);
+    }
+  }
+
+  /**
+   * Creates cache with budget and number of segments read from boot options
+   * drill.exec.enrichment.cache.[name].{budget,segments} and registers it in sys tables.
+   */
+  public static <T> SegmentedIpCache<T> create(String name, long defaultBudget,
+                                               int defaultSegments) {
+    SegmentedIpCache<T> cache = new SegmentedIpCache<>(
+      name,
+      EnrichmentConfig.getCacheBudget(name, defaultBudget),
+      EnrichmentConfig.getCacheSegments(name, defaultSegments)
+    );
+    EnrichmentCacheRegistry.register(cache);
+    return cache;
+  }
+
+  private ClockIpCache<T> segment(long ip1, long ip2) {
+    // top bits of hash select segment, low bits are used by index of segment
+    long hash = IpPairIndex.hash(ip1, ip2) & 0xffffffffL;
+    return segments[(int) (hash * segments.length >>> Integer.SIZE)];
+  }
+
+  @Override
+  public T get(long ip1, long ip2) {
+    return getOrDefault(ip1, ip2, null);
+  }
+
+  /**
+   * Gets cached value, allows to tell cached nulls apart from missing entries.
+   * @return cached value or given default value when key is not cached
+   */
+  public T getOrDefault(long ip1, long ip2, T defaultValue) {
+    ClockIpCache<T> segment = segment(ip1, ip2);
+    synchronized (segment) {
+      return segment.getOrDefault(ip1, ip2, defaultValue);
+    }
+  }
+
+  @Override
+  public void put(long ip1, long ip2, T value) {
+    ClockIpCache<T> segment = segment(ip1, ip2);
+    synchronized (segment) {
+      segment.put(ip1, ip2, value);
+    }
+  }
+
+  /**
+   * Puts value computed from given source, value is ignored when cache was reset to
+   * another source in the meantime.
+   */
+  public void put(long ip1, long ip2, T value, Object source) {
+    ClockIpCache<T> segment = segment(ip1, ip2);
+    synchronized (segment) {
+      // checked under segment lock, so reset can't clear segment before the put
+      if (this.source == source) {
+        segment.put(ip1, ip2, value);
+      }
+    }
+  }
+
+  /**
+   * Clears cache and accepts only values computed from given source since now.
+   */
+  public void reset(Object source) {
+    this.source = source;
+    clear();
+    reloads.incrementAndGet();
+    lastReloadTime = System.currentTimeMillis();
+  }
+
+  public void clear() {
+    for (ClockIpCache<T> segment : segments) {
+      synchronized (segment) {
+        segment.clear();
+      }
+    }
+  }
+
+  public int getSegmentCount() {
+    return segments.length;
+  }
+
+  @Override
+  public String getName() {
+    return name;
+  }
+
+  @Override
+  public long getEntries() {
+    long entries = 0;
+    for (ClockIpCache<T> segment : segments) {
+      synchronized (segment) {
+        entries += segment.size();
+      }
+    }
+    return entries;
+  }
+
+  @Override
+  public long getCapacity() {
+    return (long) segments[0].getCapacity() * segments.length;
+  }
+
+  @Override
+  public long getMemoryBudget() {
+    return memoryBudget;
+  }
+
+  @Override
+  public long getMemoryUsed() {
+    long memory = 0;
+    for (ClockIpCache<T> segment : segments) {
+      synchronized (segment) {
+        memory += segment.getMemorySize();
+      }
+    }
+    return memory;
+  }
+
+  @Override
+  public long getHits() {
+    long hits = 0;
+    for (ClockIpCache<T> segment : segments) {
+      synchronized (segment) {
+        hits += segment.getHitCount();
+      }
+    }
+    return hits;
+  }
+
+  @Override
+  public long getMisses() {
+    long misses = 0;
+    for (ClockIpCache<T> segment : segments) {
+      synchronized (segment) {
+        misses += segment.getMissCount();
+      }
+    }
+    return misses;
+  }
+
+  @Override
+  public long getEvictions() {
+    long evictions = 0;
+    for (ClockIpCache<T> segment : segments) {
+      synchronized (segment) {
+        evictions += segment.getEvictionCount();
+      }
+    }
+    return evictions;
+  }
+
+  /**
+   * @return number of resets, each reload of the source resets the cache
+   */
+  @Override
+  public long getReloads() {
+    return reloads.get();
+  }
+
+  /**
+   * Cache does not reload anything itself, so it never fails.
+   */
+  @Override
+  public long getReloadFailures() {
+    return 0;
+  }
+
+  @Override
+  public long getLastReloadDuration() {
+    return -1;
+  }
+
+  @Override
+  public long getLastReloadTime() {
+    return lastReloadTime;
+  }
+
+  /**
+   * @return number of resets, cached values are computed from the source of the last one
+   */
+  @Override
+  public long getVersion() {
+    return reloads.get();
+  }
+}
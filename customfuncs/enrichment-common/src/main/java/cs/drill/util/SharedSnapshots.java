@@ -0,0 +1,239 @@
+package cs.drill.util;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.UUID;
+
+/**
+ * Payloads of enrichment sources shared by Drillbits through a directory mounted on all nodes
+ * (drill.exec.enrichment.shared_dir), so every source is fetched by a single node per reload
+ * period instead of by every Drillbit.
+ *
+ * Node which finds the shared payload outdated takes a lock file and fetches the source,
+ * the others keep reading the last shared payload meanwhile. When the source has not changed
+ * the shared payload is kept and only its age is reset. Lock holds a token of its owner, so a node
+ * removes only its own lock. Lock of a node which died is taken over when it gets older than the
+ * lease (drill.exec.enrichment.shared_lock_lease_ms), by renaming it so only one node can take it
+ * over. Ages of shared files are measured by the clock of the file server, not of the node.
+ * Snapshots are gzipped and replaced atomically (see {@link LocalSnapshots}), so readers never see
+ * a partial one.
+ *
+ * Without the directory configured, or when it can't be used, payloads are fetched directly.
+ */
+public final class SharedSnapshots {
+  public static final String DIR_PATH = EnrichmentConfig.ROOT + ".shared_dir";
+  public static final String LOCK_LEASE_PATH = EnrichmentConfig.ROOT + ".shared_lock_lease_ms";
+  private static final int DEFAULT_LOCK_LEASE_MS = 600_000;
+  private static final String SNAPSHOT_SUFFIX = ".snapshot.gz";
+  private static final String LOCK_SUFFIX = ".lock";
+  private static final String STALE_SUFFIX = ".stale";
+  private static final String CLOCK_SUFFIX = ".clock";
+
+  /**
+   * Shared directory or null when snapshots are not shared.
+   */
+  private final Path directory;
+  /**
+   * Age in milliseconds after which lock is taken over, longer than any fetch.
+   */
+  private final long lockLease;
+
+  @FunctionalInterface
+  public interface Fetcher<E extends Exception> {
+    /**
+     * @return payload of source or null when it has not changed since the last fetch of this
+     * node or there is nothing to share
+     */
+    String fetch() throws E;
+  }
+
+  private static class LazyHolder {
+    static final SharedSnapshots INSTANCE = create();
+  }
+
+  public static SharedSnapshots getInstance() {
+    return LazyHolder.INSTANCE;
+  }
+
+  private static SharedSnapshots create() {
+    String path = EnrichmentConfig.getString(DIR_PATH, "");
+    if (path.isEmpty()) {
+      return new SharedSnapshots(null, 0);
+    }
+    Logger.info("Enrichment sources are shared through " + path);
+    return new SharedSnapshots(Paths.get(path),
+      EnrichmentConfig.getInt(LOCK_LEASE_PATH, DEFAULT_LOCK_LEASE_MS));
+  }
+
+  SharedSnapshots(Path directory, long lockLease) {
+    this.directory = directory;
+    this.lockLease = lockLease;
+  }
+
+  /**
+   * Gets payload of named source fetched by any node at most maxAge milliseconds ago.
+   * When there is no such payload it is fetched and shared by this node, unless another node
+   * is fetching it already. Then the last shared payload is returned.
+   * @param name name of source, unique in the shared directory
+   * @param maxAge age of shared payload in milliseconds after which it is fetched again
+   * @param fetcher fetcher of source payload
+   * @return payload or null when fetcher returned null
+   * @throws E exception of fetcher
+   */
+  public <E extends Exception> String get(String name, long maxAge, Fetcher<E> fetcher) throws E {
+    if (directory == null) {
+      return fetcher.fetch();
+    }
+    Path snapshot = directory.resolve(name + SNAPSHOT_SUFFIX);
+    Path lock = directory.resolve(name + LOCK_SUFFIX);
+    String owner;
+    try {
+      long now = sharedTime(name);
+      if (isYounger(snapshot, maxAge, now)) {
+        return LocalSnapshots.readText(snapshot);
+      }
+      owner = tryLock(lock, now);
+      if (owner == null && Files.exists(snapshot)) {
+        Logger.debug("Shared " + name + " is being fetched by another node, using the last one");
+        return LocalSnapshots.readText(snapshot);
+      }
+    } catch (IOException exc) {
+      Logger.warn("Can't read shared " + name + ", fetching it directly", exc);
+      return fetcher.fetch();
+    }
+
+    try {
+      String payload = fetcher.fetch();
+      if (owner != null && payload != null) {
+        write(snapshot, payload);
+      } else if (owner != null) {
+        // source not modified, the shared payload is still current
+        touch(snapshot, name);
+      }
+      return payload;
+    } finally {
+      if (owner != null) {
+        unlock(lock, owner);
+      }
+    }
+  }
+
+  /**
+   * Current time of the shared directory, modification time of a file just created in it.
+   * Clocks of nodes can differ from the clock of the file server setting modification times.
+   */
+  private long sharedTime(String name) throws IOException {
+    Path clock = Files.createTempFile(directory, name, CLOCK_SUFFIX);
+    try {
+      return Files.getLastModifiedTime(clock).toMillis();
+    } finally {
+      Files.deleteIfExists(clock);
+    }
+  }
+
+  private static boolean isYounger(Path file, long maxAge, long now) throws IOException {
+    return Files.exists(file) && now - Files.getLastModifiedTime(file).toMillis() < maxAge;
+  }
+
+  /**
+   * @return owner token of the taken lock or null when another node holds it
+   */
+  private String tryLock(Path lock, long now) throws IOException {
+    String owner = UUID.randomUUID().toString();
+    if (link(lock, owner)) {
+      return owner;
+    }
+    String staleOwner;
+    try {
+      if (now - Files.getLastModifiedTime(lock).toMillis() < lockLease) {
+        return null;
+      }
+      staleOwner = readOwner(lock);
+    } catch (NoSuchFileException exc) {
+      // released meanwhile, the payload was just shared
+      return null;
+    }
+    // lock of a node which died while fetching, moved away atomically so that of the nodes
+    // finding it stale only one takes it over
+    Path stale = lock.resolveSibling(lock.getFileName() + "." + owner + STALE_SUFFIX);
+    try {
+      Files.move(lock, stale, StandardCopyOption.ATOMIC_MOVE);
+    } catch (NoSuchFileException exc) {
+      return null;
+    }
+    try {
+      if (!staleOwner.equals(readOwner(stale))) {
+        // another node took the stale lock over meanwhile, its lock is given back unless yet
+        // another node locked meanwhile, the owner won't remove a lock of another then
+        try {
+          Files.createLink(lock, stale);
+        } catch (FileAlreadyExistsException exc) {
+          Logger.debug("Shared lock " + lock + " was taken over by several nodes");
+        }
+        return null;
+      }
+    } finally {
+      Files.deleteIfExists(stale);
+    }
+    return link(lock, owner) ? owner : null;
+  }
+
+  /**
+   * Takes lock by linking a file holding the owner token, so lock never exists without its owner
+   * and is never replaced.
+   */
+  private static boolean link(Path lock, String owner) throws IOException {
+    Path ownerFile = lock.resolveSibling(lock.getFileName() + "." + owner);
+    Files.write(ownerFile, owner.getBytes(StandardCharsets.UTF_8));
+    try {
+      Files.createLink(lock, ownerFile);
+      return true;
+    } catch (FileAlreadyExistsException exc) {
+      return false;
+    } finally {
+      Files.deleteIfExists(ownerFile);
+    }
+  }
+
+  private static String readOwner(Path lock) throws IOException {
+    return new String(Files.readAllBytes(lock), StandardCharsets.UTF_8);
+  }
+
+  private static void unlock(Path lock, String owner) {
+    try {
+      // lock taken over by another node after the lease ran out is kept
+      if (owner.equals(readOwner(lock))) {
+        Files.delete(lock);
+      }
+    } catch (NoSuchFileException exc) {
+      Logger.debug("Shared lock " + lock + " was released by another node");
+    } catch (IOException exc) {
+      Logger.warn("Can't remove shared lock " + lock, exc);
+    }
+  }
+
+  private void touch(Path snapshot, String name) {
+    try {
+      if (Files.exists(snapshot)) {
+        Files.setLastModifiedTime(snapshot, FileTime.fromMillis(sharedTime(name)));
+      }
+    } catch (IOException exc) {
+      Logger.warn("Can't refresh shared " + snapshot, exc);
+    }
+  }
+
+  private static void write(Path snapshot, String payload) {
+    try {
+      LocalSnapshots.writeText(snapshot, payload);
+    } catch (IOException exc) {
+      Logger.warn("Can't share " + snapshot, exc);
+    }
+  }
+}
@@ -0,0 +1,240 @@
+package cs.drill.util;
+
+import java.net.Inet4Address;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+
+/**
+ * Immutable path-compressed binary trie of subnets with longest prefix match lookups.
+ *
+ * Keys are 128 bit addresses represented by (ip1, ip2) pair of longs. IPv4 subnets are
+ * stored under the 64:ff9b::/96 prefix (IpUtil.WKP of the enrichment functions), so one trie
+ * holds both address families and a lookup costs at most one node visit per bit of the
+ * longest stored prefix.
+ *
+ * Trie is never modified after {@link Builder#build()}, so it can be safely shared between
+ * threads and swapped with a single reference assignment.
+ */
+public final class SubnetTrie<T> {
+  private static final int MAX_LENGTH = 128;
+  private static final int IPV4_PREFIX_LENGTH = 96;
+  private static final long IPV4_HIGH_BITS = 0x0064ff9b00000000L;
+  private static final SubnetTrie<?> EMPTY = new SubnetTrie<>(null, 0);
+
+  private final Node<T> root;
+  private final int size;
+
+  private SubnetTrie(Node<T> root, int size) {
+    this.root = root;
+    this.size = size;
+  }
+
+  @SuppressWarnings("unchecked")
+  public static <T> SubnetTrie<T> empty() {
+    return (SubnetTrie<T>) EMPTY;
+  }
+
+  public static <T> Builder<T> builder() {
+    return new Builder<>();
+  }
+
+  /**
+   * Finds value of the most specific subnet containing given address.
+   * @param ip1 high bits of address
+   * @param ip2 low bits of address
+   * @return value of longest matching prefix or null if no subnet matches
+   */
+  public T lookup(long ip1, long ip2) {
+    T result = null;
+    Node<T> node = root;
+    while (node != null && node.matches(ip1, ip2)) {
+      if (node.value != null) {
+        result = node.value;
+      }
+      if (node.length == MAX_LENGTH) {
+        break;
+      }
+      node = bit(ip1, ip2, node.length) == 0 ? node.zero : node.one;
+    }
+    return result;
+  }
+
+  /**
+   * @return number of subnets stored in trie
+   */
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  static int bit(long high, long low, int index) {
+    return index < Long.SIZE
+      ? (int) (high >>> (Long.SIZE - 1 - index)) & 1
+      : (int) (low >>> (MAX_LENGTH - 1 - index)) & 1;
+  }
+
+  static long highMask(int length) {
+    if (length >= Long.SIZE) {
+      return -1L;
+    }
+    return length == 0 ? 0L : -1L << (Long.SIZE - length);
+  }
+
+  static long lowMask(int length) {
+    if (length <= Long.SIZE) {
+      return 0L;
+    }
+    return length == MAX_LENGTH ? -1L : -1L << (MAX_LENGTH - length);
+  }
+
+  private static final class Node<T> {
+    final long high;
+    final long low;
+    final long maskHigh;
+    final long maskLow;
+    final int length;
+    T value;
+    Node<T> zero;
+    Node<T> one;
+
+    Node(long high, long low, int length, T value) {
+      this.maskHigh = highMask(length);
+      this.maskLow = lowMask(length);
+      this.high = high & maskHigh;
+      this.low = low & maskLow;
+      this.length = length;
+      this.value = value;
+    }
+
+    boolean matches(long ip1, long ip2) {
+      return (ip1 & maskHigh) == high && (ip2 & maskLow) == low;
+    }
+
+    /**
+     * @return length of common prefix of node key and given key (limited by both lengths)
+     */
+    int commonLength(long ip1, long ip2, int keyLength) {
+      int limit = Math.min(length, keyLength);
+      long diff = ip1 ^ high;
+      int common = diff == 0
+        ? Long.SIZE + Long.numberOfLeadingZeros(ip2 ^ low)
+        : Long.numberOfLeadingZeros(diff);
+      return Math.min(common, limit);
+    }
+
+    Node<T> child(int bit) {
+      return bit == 0 ? zero : one;
+    }
+
+    void setChild(int bit, Node<T> child) {
+      if (bit == 0) {
+        zero = child;
+      } else {
+        one = child;
+      }
+    }
+  }
+
+  /**
+   * Single use builder of {@link SubnetTrie}. Not thread safe.
+   */
+  public static final class Builder<T> {
+    private Node<T> root;
+    private int size;
+
+    private Builder() {}
+
+    /**
+     * Adds IPv4 or IPv6 subnet to the trie, see {@link #put(long, long, int, Object)}.
+     * @param address address of subnet, bits past the prefix are ignored
+     * @param length prefix length of the address family
+     */
+    public Builder<T> put(InetAddress address, int length, T value) {
+      ByteBuffer bytes = ByteBuffer.wrap(address.getAddress());
+      if (address instanceof Inet4Address) {
+        if (length < 0 || length > Integer.SIZE) {
+          throw new IllegalArgumentException("Wrong IPv4 prefix length " + length);
+        }
+        return put(IPV4_HIGH_BITS, bytes.getInt() & 0xffffffffL, IPV4_PREFIX_LENGTH + length, value);
+      }
+      if (address instanceof Inet6Address) {
+        return put(bytes.getLong(), bytes.getLong(), length, value);
+      }
+      throw new IllegalArgumentException("Unknown address family of " + address);
+    }
+
+    /**
+     * Adds subnet to the trie. When the same subnet is added more than once the first
+     * value is kept. Null values are ignored.
+     * @param ip1 high bits of subnet address
+     * @param ip2 low bits of subnet address
+     * @param length prefix length in range 0-128
+     * @param value value returned for addresses within subnet
+     * @return this builder
+     */
+    public Builder<T> put(long ip1, long ip2, int length, T value) {
+      if (length < 0 || length > MAX_LENGTH) {
+        throw new IllegalArgumentException("Wrong prefix length " + length);
+      }
+      if (value == null) {
+        return this;
+      }
+      long high = ip1 & highMask(length);
+      long low = ip2 & lowMask(length);
+
+      Node<T> parent = null;
+      Node<T> node = root;
+      while (node != null) {
+        int common = node.commonLength(high, low, length);
+        if (common < node.length) {
+          replace(parent, split(node, high, low, length, common, value));
+          size++;
+          return this;
+        }
+        if (common == length) {
+          if (node.value == null) {
+            node.value = value;
+            size++;
+          }
+          return this;
+        }
+        parent = node;
+        node = node.child(bit(high, low, node.length));
+      }
+      replace(parent, new Node<>(high, low, length, value));
+      size++;
+      return this;
+    }
+
+    private Node<T> split(Node<T> node, long high, long low, int length, int common, T value) {
+      Node<T> inserted = new Node<>(high, low, length, value);
+      if (common == length) {
+        inserted.setChild(bit(node.high, node.low, length), node);
+        return inserted;
+      }
+      Node<T> fork = new Node<>(high, low, common, null);
+      fork.setChild(bit(node.high, node.low, common), node);
+      fork.setChild(bit(high, low, common), inserted);
+      return fork;
+    }
+
+    private void replace(Node<T> parent, Node<T> newChild) {
+      if (parent == null) {
+        root = newChild;
+      } else {
+        parent.setChild(bit(newChild.high, newChild.low, parent.length), newChild);
+      }
+    }
+
+    public SubnetTrie<T> build() {
+      SubnetTrie<T> trie = new SubnetTrie<>(root, size);
+      root = null;
+      size = 0;
+      return trie;
+    }
+  }
+}
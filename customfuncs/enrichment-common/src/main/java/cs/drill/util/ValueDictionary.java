@@ -0,0 +1,73 @@
+package cs.drill.util;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reference counted dictionary of values.
+ *
+ * Enrichment results come from a small vocabulary (application, city or router names),
+ * so caches keep only an int id per entry and resolve it here. Id is freed and reused
+ * when the last entry referencing it releases it. Null is a regular value.
+ *
+ * Not thread safe.
+ */
+public final class ValueDictionary<T> {
+  private static final int INITIAL_CAPACITY = 64;
+
+  private final Map<T, Integer> ids = new HashMap<>();
+  private Object[] values = new Object[INITIAL_CAPACITY];
+  private int[] references = new int[INITIAL_CAPACITY];
+  private int[] freeIds = new int[INITIAL_CAPACITY];
+  private int freeCount;
+  private int nextId;
+
+  /**
+   * Gets id of value (adding value if needed) and increments its reference count.
+   */
+  public int acquire(T value) {
+    Integer id = ids.get(value);
+    if (id == null) {
+      id = freeCount > 0 ? freeIds[--freeCount] : newId();
+      values[id] = value;
+      ids.put(value, id);
+    }
+    references[id]++;
+    return id;
+  }
+
+  /**
+   * Decrements reference count of id, value is removed when it is not referenced anymore.
+   */
+  public void release(int id) {
+    if (--references[id] == 0) {
+      ids.remove(values[id]);
+      values[id] = null;
+      if (freeCount == freeIds.length) {
+        freeIds = Arrays.copyOf(freeIds, freeCount * 2);
+      }
+      freeIds[freeCount++] = id;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  public T get(int id) {
+    return (T) values[id];
+  }
+
+  /**
+   * @return number of distinct values
+   */
+  public int size() {
+    return ids.size();
+  }
+
+  private int newId() {
+    if (nextId == values.length) {
+      values = Arrays.copyOf(values, nextId * 2);
+      references = Arrays.copyOf(references, nextId * 2);
+    }
+    return nextId++;
+  }
+}
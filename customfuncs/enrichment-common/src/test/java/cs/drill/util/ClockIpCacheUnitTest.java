@@ -0,0 +1,105 @@
+package cs.drill.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ClockIpCacheUnitTest {
+  private static final String VALUE = "value";
+  private static final String OTHER_VALUE = "otherValue";
+  private static final String MISSING = "missing";
+
+  public static class Get {
+    ClockIpCache<String> cache = new ClockIpCache<>(16);
+
+    @Test
+    public void returnsNullForMissingKey() {
+      assertNull(cache.get(1L, 2L));
+    }
+
+    @Test
+    public void returnsPutValue() {
+      cache.put(1L, 2L, VALUE);
+      assertEquals(VALUE, cache.get(1L, 2L));
+      assertNull(cache.get(2L, 1L));
+    }
+
+    @Test
+    public void returnsLastPutValue() {
+      cache.put(1L, 2L, VALUE);
+      cache.put(1L, 2L, OTHER_VALUE);
+      assertEquals(OTHER_VALUE, cache.get(1L, 2L));
+      assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void distinguishesCachedNullFromMissingKey() {
+      cache.put(1L, 2L, null);
+      assertNull(cache.getOrDefault(1L, 2L, MISSING));
+      assertSame(MISSING, cache.getOrDefault(1L, 3L, MISSING));
+    }
+
+    @Test
+    public void countsHitsAndMisses() {
+      cache.put(1L, 2L, VALUE);
+      cache.get(1L, 2L);
+      cache.get(1L, 2L);
+      cache.get(1L, 3L);
+      assertEquals(2, cache.getHitCount());
+      assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    public void returnsNothingAfterClear() {
+      cache.put(1L, 2L, VALUE);
+      cache.clear();
+      assertNull(cache.get(1L, 2L));
+      assertEquals(0, cache.size());
+    }
+  }
+
+  public static class Put {
+    private static final int CAPACITY = 4;
+    ClockIpCache<String> cache = new ClockIpCache<>(CAPACITY);
+
+    @Test
+    public void doesNotExceedCapacity() {
+      for (long i = 0; i < 100; i++) {
+        cache.put(i, i, VALUE + i);
+      }
+      assertEquals(CAPACITY, cache.size());
+      assertEquals(100 - CAPACITY, cache.getEvictionCount());
+    }
+
+    @Test
+    public void evictsEntriesNotReadSinceLastPass() {
+      for (long i = 0; i < CAPACITY; i++) {
+        cache.put(i, i, VALUE);
+      }
+      cache.get(0L, 0L);
+
+      cache.put(CAPACITY, CAPACITY, OTHER_VALUE);
+
+      assertEquals(VALUE, cache.getOrDefault(0L, 0L, MISSING));
+      assertSame(MISSING, cache.getOrDefault(1L, 1L, MISSING));
+      assertEquals(OTHER_VALUE, cache.get(CAPACITY, CAPACITY));
+    }
+
+    @Test
+    public void keepsValuesOfRemainingEntriesAfterEviction() {
+      for (long i = 0; i < 1000; i++) {
+        cache.put(i, -i, VALUE + i);
+      }
+      for (long i = 1000 - CAPACITY; i < 1000; i++) {
+        assertEquals(VALUE + i, cache.get(i, -i));
+      }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void throwsOnNonPositiveCapacity() {
+      new ClockIpCache<String>(0);
+    }
+  }
+}
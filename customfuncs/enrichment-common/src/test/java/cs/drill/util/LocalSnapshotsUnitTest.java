@@ -0,0 +1,59 @@
+package cs.drill.util;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class LocalSnapshotsUnitTest {
+  private static final String NAME = "source";
+  private static final String PAYLOAD = "{\"name\": \"Kraków\"}";
+
+  public static class Read {
+    @Rule public TemporaryFolder directory = new TemporaryFolder();
+    LocalSnapshots snapshots;
+
+    @Before
+    public void setUp() {
+      snapshots = new LocalSnapshots(directory.getRoot().toPath().resolve("snapshots"));
+    }
+
+    @Test
+    public void readsWrittenPayload() {
+      snapshots.write(NAME, "old");
+      snapshots.write(NAME, PAYLOAD);
+      assertEquals(PAYLOAD, snapshots.read(NAME));
+    }
+
+    @Test
+    public void readsNothingWhenNotWritten() {
+      assertNull(snapshots.read(NAME));
+      assertNull(snapshots.map(NAME));
+    }
+
+    @Test
+    public void doesNothingWithoutDirectory() {
+      LocalSnapshots disabled = new LocalSnapshots(null);
+      disabled.write(NAME, PAYLOAD);
+      assertNull(disabled.read(NAME));
+      assertNull(disabled.map(NAME));
+    }
+
+    @Test
+    public void mapsWrittenBinarySnapshot() {
+      snapshots.write(NAME, output -> {
+        output.writeInt(42);
+        output.writeLong(-1L);
+      });
+      ByteBuffer buffer = snapshots.map(NAME);
+      assertEquals(12, buffer.remaining());
+      assertEquals(42, buffer.getInt());
+      assertEquals(-1L, buffer.getLong());
+    }
+  }
+}
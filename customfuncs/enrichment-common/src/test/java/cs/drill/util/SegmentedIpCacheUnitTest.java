@@ -0,0 +1,94 @@
+package cs.drill.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class SegmentedIpCacheUnitTest {
+  private static final String VALUE = "value";
+  private static final String MISSING = "missing";
+  private static final int SEGMENTS = 4;
+  private static final int SEGMENT_CAPACITY = 8;
+  private static final long BUDGET = SegmentedIpCache.ENTRY_SIZE * SEGMENTS * SEGMENT_CAPACITY;
+
+  public static class Get {
+    SegmentedIpCache<String> cache = new SegmentedIpCache<>("test", BUDGET, SEGMENTS);
+
+    @Test
+    public void returnsPutValue() {
+      for (long i = 0; i < 10; i++) {
+        cache.put(i, -i, VALUE + i);
+      }
+      for (long i = 0; i < 10; i++) {
+        assertEquals(VALUE + i, cache.get(i, -i));
+      }
+      assertNull(cache.get(11L, -11L));
+    }
+
+    @Test
+    public void distinguishesCachedNullFromMissingKey() {
+      cache.put(1L, 2L, null);
+      assertNull(cache.getOrDefault(1L, 2L, MISSING));
+      assertSame(MISSING, cache.getOrDefault(1L, 3L, MISSING));
+    }
+
+    @Test
+    public void sumsStatisticsOfSegments() {
+      for (long i = 0; i < 10; i++) {
+        cache.put(i, i, VALUE);
+        cache.get(i, i);
+        cache.get(i, i + 1);
+      }
+      assertEquals(10, cache.getEntries());
+      assertEquals(10, cache.getHits());
+      assertEquals(10, cache.getMisses());
+      assertTrue(cache.getMemoryUsed() > 0);
+    }
+
+    @Test
+    public void returnsNothingAfterClear() {
+      cache.put(1L, 2L, VALUE);
+      cache.clear();
+      assertNull(cache.get(1L, 2L));
+      assertEquals(0, cache.getEntries());
+    }
+
+    @Test
+    public void countsResetsAsReloads() {
+      Object source = new Object();
+      cache.reset(source);
+      cache.put(1L, 2L, VALUE, source);
+      cache.reset(new Object());
+      assertNull(cache.get(1L, 2L));
+      assertEquals(2, cache.getReloads());
+    }
+  }
+
+  public static class Put {
+    SegmentedIpCache<String> cache = new SegmentedIpCache<>("test", BUDGET, SEGMENTS);
+
+    @Test
+    public void splitsBudgetBetweenSegments() {
+      assertEquals(SEGMENTS, cache.getSegmentCount());
+      assertEquals(SEGMENTS * SEGMENT_CAPACITY, cache.getCapacity());
+      assertEquals(BUDGET, cache.getMemoryBudget());
+    }
+
+    @Test
+    public void doesNotExceedCapacity() {
+      for (long i = 0; i < 1000; i++) {
+        cache.put(i, i, VALUE + i);
+      }
+      assertTrue(cache.getEntries() <= cache.getCapacity());
+      assertEquals(1000 - cache.getEntries(), cache.getEvictions());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void throwsWhenBudgetDoesNotFitSegments() {
+      new SegmentedIpCache<String>("test", SegmentedIpCache.ENTRY_SIZE, 2);
+    }
+  }
+}
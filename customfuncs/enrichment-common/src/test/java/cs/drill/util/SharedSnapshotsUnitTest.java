@@ -0,0 +1,172 @@
+package cs.drill.util;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SharedSnapshotsUnitTest {
+  private static final String NAME = "source";
+  private static final long MAX_AGE = 60_000;
+  private static final long LEASE = 5 * MAX_AGE;
+  private static final String PAYLOAD = "{\"name\": \"Kraków\"}";
+
+  public static class Get {
+    @Rule public TemporaryFolder directory = new TemporaryFolder();
+    AtomicInteger fetches = new AtomicInteger();
+    SharedSnapshots snapshots;
+    Path snapshot;
+    Path lock;
+
+    @Before
+    public void setUp() {
+      snapshots = new SharedSnapshots(directory.getRoot().toPath(), LEASE);
+      snapshot = directory.getRoot().toPath().resolve(NAME + ".snapshot.gz");
+      lock = directory.getRoot().toPath().resolve(NAME + ".lock");
+    }
+
+    private String fetch() {
+      fetches.incrementAndGet();
+      return PAYLOAD;
+    }
+
+    private void makeOld(Path file) throws IOException {
+      makeOld(file, 2 * MAX_AGE);
+    }
+
+    private void makeOld(Path file, long age) throws IOException {
+      Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - age));
+    }
+
+    @Test
+    public void fetchesDirectlyWithoutDirectory() {
+      SharedSnapshots notShared = new SharedSnapshots(null, LEASE);
+      assertEquals(PAYLOAD, notShared.get(NAME, MAX_AGE, this::fetch));
+      assertEquals(PAYLOAD, notShared.get(NAME, MAX_AGE, this::fetch));
+      assertEquals(2, fetches.get());
+    }
+
+    @Test
+    public void sharesFetchedPayload() {
+      assertEquals(PAYLOAD, snapshots.get(NAME, MAX_AGE, this::fetch));
+      assertEquals(PAYLOAD, new SharedSnapshots(directory.getRoot().toPath(), LEASE).get(NAME, MAX_AGE, this::fetch));
+      assertEquals(1, fetches.get());
+      assertTrue(Files.exists(snapshot));
+      assertFalse(Files.exists(lock));
+    }
+
+    @Test
+    public void fetchesOutdatedPayloadAgain() throws IOException {
+      snapshots.get(NAME, MAX_AGE, this::fetch);
+      makeOld(snapshot);
+      assertEquals(PAYLOAD, snapshots.get(NAME, MAX_AGE, this::fetch));
+      assertEquals(2, fetches.get());
+    }
+
+    @Test
+    public void returnsLastPayloadWhileAnotherNodeFetches() throws IOException {
+      snapshots.get(NAME, MAX_AGE, this::fetch);
+      makeOld(snapshot);
+      Files.createFile(lock);
+      assertEquals(PAYLOAD, snapshots.get(NAME, MAX_AGE, this::fetch));
+      assertEquals(1, fetches.get());
+    }
+
+    @Test
+    public void fetchesWithoutSharingWhenLockedAndNothingShared() throws IOException {
+      Files.createFile(lock);
+      assertEquals(PAYLOAD, snapshots.get(NAME, MAX_AGE, this::fetch));
+      assertEquals(1, fetches.get());
+      assertFalse(Files.exists(snapshot));
+    }
+
+    @Test
+    public void takesOverLockOfDeadNode() throws IOException {
+      Files.createFile(lock);
+      makeOld(lock, 2 * LEASE);
+      assertEquals(PAYLOAD, snapshots.get(NAME, MAX_AGE, this::fetch));
+      assertTrue(Files.exists(snapshot));
+      assertFalse(Files.exists(lock));
+      // the renamed stale lock is removed too
+      try (Stream<Path> files = Files.list(directory.getRoot().toPath())) {
+        assertEquals(1, files.count());
+      }
+    }
+
+    @Test
+    public void keepsFreshLockOfAnotherNode() throws IOException {
+      snapshots.get(NAME, MAX_AGE, this::fetch);
+      makeOld(snapshot);
+      Files.createFile(lock);
+      assertEquals(PAYLOAD, snapshots.get(NAME, MAX_AGE, this::fetch));
+      assertEquals(1, fetches.get());
+      assertTrue(Files.exists(lock));
+    }
+
+    @Test
+    public void keepsLockOlderThanReloadPeriodWithinLease() throws IOException {
+      snapshots.get(NAME, MAX_AGE, this::fetch);
+      makeOld(snapshot);
+      Files.write(lock, "other".getBytes(StandardCharsets.UTF_8));
+      makeOld(lock);
+      assertEquals(PAYLOAD, snapshots.get(NAME, MAX_AGE, this::fetch));
+      assertEquals(1, fetches.get());
+      assertEquals("other", new String(Files.readAllBytes(lock), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void keepsLockTakenOverByAnotherNode() throws IOException {
+      assertEquals(PAYLOAD, snapshots.get(NAME, MAX_AGE, () -> {
+        // lease ran out during the fetch and another node took the lock over
+        Files.write(lock, "other".getBytes(StandardCharsets.UTF_8));
+        return fetch();
+      }));
+      assertTrue(Files.exists(lock));
+    }
+
+    @Test
+    public void refreshesSnapshotOfUnchangedSource() throws IOException {
+      snapshots.get(NAME, MAX_AGE, this::fetch);
+      makeOld(snapshot);
+      assertNull(snapshots.get(NAME, MAX_AGE, () -> null));
+      assertFalse(Files.exists(lock));
+      // other nodes read the kept payload instead of fetching the source themselves
+      assertEquals(PAYLOAD, new SharedSnapshots(directory.getRoot().toPath(), LEASE).get(NAME, MAX_AGE, this::fetch));
+      assertEquals(1, fetches.get());
+    }
+
+    @Test
+    public void doesNotShareNothing() {
+      assertNull(snapshots.get(NAME, MAX_AGE, () -> null));
+      assertFalse(Files.exists(snapshot));
+      assertFalse(Files.exists(lock));
+    }
+
+    @Test
+    public void releasesLockWhenFetchFails() {
+      try {
+        snapshots.get(NAME, MAX_AGE, () -> {
+          throw new IOException("unavailable");
+        });
+        fail();
+      } catch (IOException exc) {
+        assertEquals("unavailable", exc.getMessage());
+      }
+      assertFalse(Files.exists(lock));
+    }
+  }
+}
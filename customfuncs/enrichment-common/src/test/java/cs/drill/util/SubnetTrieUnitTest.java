@@ -0,0 +1,134 @@
+package cs.drill.util;
+
+import org.junit.Test;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SubnetTrieUnitTest {
+  private static final long IPV4_HIGH_BITS = 0x0064ff9b00000000L;
+
+  private static InetAddress address(String ip) {
+    try {
+      return InetAddress.getByName(ip);
+    } catch (UnknownHostException exc) {
+      throw new IllegalArgumentException(exc);
+    }
+  }
+
+  private static String lookup(SubnetTrie<String> trie, String ip) {
+    ByteBuffer bytes = ByteBuffer.wrap(address(ip).getAddress());
+    return bytes.remaining() == 4
+      ? trie.lookup(IPV4_HIGH_BITS, bytes.getInt() & 0xffffffffL)
+      : trie.lookup(bytes.getLong(), bytes.getLong());
+  }
+
+  public static class Lookup {
+    SubnetTrie<String> trie = SubnetTrie.<String>builder()
+      .put(address("10.0.0.0"), 8, "wide")
+      .put(address("10.1.0.0"), 16, "narrow")
+      .put(address("10.1.2.3"), 32, "host")
+      .put(address("192.168.0.0"), 16, "office")
+      .put(address("2001:470:1::"), 48, "v6")
+      .put(address("2001:470:1:5dd::"), 64, "v6narrow")
+      .build();
+
+    @Test
+    public void returnsNullForEmptyTrie() {
+      assertNull(lookup(SubnetTrie.empty(), "10.1.2.3"));
+      assertTrue(SubnetTrie.empty().isEmpty());
+    }
+
+    @Test
+    public void returnsLongestMatchingIp4Prefix() {
+      assertEquals("wide", lookup(trie, "10.200.0.1"));
+      assertEquals("narrow", lookup(trie, "10.1.200.1"));
+      assertEquals("host", lookup(trie, "10.1.2.3"));
+      assertEquals("office", lookup(trie, "192.168.255.255"));
+    }
+
+    @Test
+    public void returnsLongestMatchingIp6Prefix() {
+      assertEquals("v6", lookup(trie, "2001:470:1:1::1"));
+      assertEquals("v6narrow", lookup(trie, "2001:470:1:5dd::1"));
+    }
+
+    @Test
+    public void returnsNullWhenNoSubnetMatches() {
+      assertNull(lookup(trie, "11.0.0.1"));
+      assertNull(lookup(trie, "192.169.0.1"));
+      assertNull(lookup(trie, "2001:470:2::1"));
+    }
+
+    @Test
+    public void doesNotMatchIp4SubnetsForIp6Addresses() {
+      assertNull(trie.lookup(IPV4_HIGH_BITS + 1, 0x0a010203L));
+    }
+
+    @Test
+    public void countsStoredSubnets() {
+      assertEquals(6, trie.size());
+    }
+  }
+
+  public static class Put {
+    @Test
+    public void keepsFirstValueOfDuplicatedSubnet() {
+      SubnetTrie<String> trie = SubnetTrie.<String>builder()
+        .put(address("10.0.0.0"), 8, "first")
+        .put(address("10.1.0.0"), 8, "second")
+        .build();
+
+      assertEquals("first", lookup(trie, "10.2.3.4"));
+      assertEquals(1, trie.size());
+    }
+
+    @Test
+    public void matchesEverythingWithZeroLengthPrefix() {
+      SubnetTrie<String> trie = SubnetTrie.<String>builder()
+        .put(0L, 0L, 0, "default")
+        .put(address("10.0.0.0"), 8, "wide")
+        .build();
+
+      assertEquals("default", lookup(trie, "11.0.0.1"));
+      assertEquals("default", lookup(trie, "2001:470:2::1"));
+      assertEquals("wide", lookup(trie, "10.0.0.1"));
+    }
+
+    @Test
+    public void ignoresNullValues() {
+      SubnetTrie<String> trie = SubnetTrie.<String>builder()
+        .put(address("10.0.0.0"), 8, null)
+        .build();
+
+      assertNull(lookup(trie, "10.0.0.1"));
+      assertTrue(trie.isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void throwsOnWrongPrefixLength() {
+      SubnetTrie.<String>builder().put(0L, 0L, 129, "wrong");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void throwsOnWrongIp4PrefixLength() {
+      SubnetTrie.<String>builder().put(address("10.0.0.0"), 33, "wrong");
+    }
+
+    @Test
+    public void ignoresAddressBitsPastPrefix() {
+      SubnetTrie<String> trie = SubnetTrie.<String>builder()
+        .put(address("10.1.2.3"), 8, "wide")
+        .put(address("2001:470:1:5dd::1"), 48, "v6")
+        .build();
+
+      assertEquals("wide", lookup(trie, "10.200.0.1"));
+      assertEquals("v6", lookup(trie, "2001:470:1:1::1"));
+    }
+  }
+}
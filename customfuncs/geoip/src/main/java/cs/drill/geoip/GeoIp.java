@@ -5,24 +5,32 @@ import org.apache.drill.exec.expr.DrillSimpleFunc;
 import org.apache.drill.exec.expr.annotations.FunctionTemplate;
 import org.apache.drill.exec.expr.annotations.Output;
 import org.apache.drill.exec.expr.annotations.Param;
+import org.apache.drill.exec.expr.annotations.Workspace;
 import org.apache.drill.exec.expr.holders.BigIntHolder;
 import org.apache.drill.exec.expr.holders.NullableBigIntHolder;
 import org.apache.drill.exec.expr.holders.NullableFloat8Holder;
 import org.apache.drill.exec.expr.holders.NullableVarCharHolder;
+import org.apache.drill.exec.ops.UdfMetrics;
+import org.apache.drill.exec.vector.complex.writer.BaseWriter;
 
 import javax.inject.Inject;
 
 public final class GeoIp {
-  public static void write(NullableVarCharHolder out, DrillBuf buffer, String value) {
+  /**
+   * Copies UTF-8 value, buffer is grown when the value does not fit.
+   * @return buffer holding the value, may be reallocated
+   */
+  public static DrillBuf write(NullableVarCharHolder out, DrillBuf buffer, byte[] value) {
     if (value == null) {
-      return;
+      return buffer;
     }
-    byte[] bytes = value.getBytes();
-    out.buffer = buffer;
+    DrillBuf result = buffer.reallocIfNeeded(value.length);
+    result.setBytes(0, value);
+    out.buffer = result;
     out.start = 0;
-    out.end = bytes.length;
+    out.end = value.length;
     out.isSet = 1;
-    buffer.setBytes(0, bytes);
+    return result;
   }
 
   public static void write(NullableFloat8Holder out, Double value) {
@@ -33,6 +41,65 @@ public final class GeoIp {
     out.isSet = 1;
   }
 
+  /**
+   * Writes all values of record as a map, null values are left out.
+   * @return buffer holding written strings, may be reallocated
+   */
+  public static DrillBuf write(BaseWriter.ComplexWriter out, DrillBuf buffer, GeoRecord record) {
+    BaseWriter.MapWriter map = out.rootAsMap();
+    map.start();
+    DrillBuf result = write(map, "city", buffer, record.getCityUtf8());
+    result = write(map, "country", result, record.getCountryUtf8());
+    write(map, "latitude", record.getLatitude());
+    write(map, "longitude", record.getLongitude());
+    map.end();
+    return result;
+  }
+
+  private static DrillBuf write(BaseWriter.MapWriter map, String name, DrillBuf buffer,
+                                byte[] value) {
+    if (value == null) {
+      return buffer;
+    }
+    DrillBuf result = buffer.reallocIfNeeded(value.length);
+    result.setBytes(0, value);
+    map.varChar(name).writeVarChar(0, value.length, result);
+    return result;
+  }
+
+  private static void write(BaseWriter.MapWriter map, String name, Double value) {
+    if (value != null) {
+      map.float8(name).writeFloat8(value);
+    }
+  }
+
+  /**
+   * Resolves all geo values at once, selecting several values of the map costs a single lookup.
+   */
+  @FunctionTemplate(
+      name = "geoip",
+      scope = FunctionTemplate.FunctionScope.SIMPLE,
+      nulls = FunctionTemplate.NullHandling.NULL_IF_NULL
+  )
+  public static class GeoIpRecord implements DrillSimpleFunc {
+    @Param BigIntHolder ip1;
+    @Param BigIntHolder ip2;
+    @Output BaseWriter.ComplexWriter out;
+    @Inject DrillBuf buffer;
+    @Inject UdfMetrics metrics;
+    @Workspace cs.drill.geoip.GeoIpHelper.Memo memo;
+
+    public void setup() {
+      memo = new cs.drill.geoip.GeoIpHelper.Memo(metrics);
+    }
+
+    public void eval() {
+      cs.drill.geoip.GeoRecord record =
+          cs.drill.geoip.GeoIpHelper.getRecord(ip1.value, ip2.value, memo);
+      buffer = cs.drill.geoip.GeoIp.write(out, buffer, record);
+    }
+  }
+
   @FunctionTemplate(
       name = "geoip_country",
       scope = FunctionTemplate.FunctionScope.SIMPLE,
@@ -43,14 +110,17 @@ public final class GeoIp {
     @Param BigIntHolder ip2;
     @Output NullableVarCharHolder out;
     @Inject DrillBuf buffer;
+    @Inject UdfMetrics metrics;
+    @Workspace cs.drill.geoip.GeoIpHelper.Memo memo;
 
     public void setup() {
-      // NOP
+      memo = new cs.drill.geoip.GeoIpHelper.Memo(metrics);
     }
 
     public void eval() {
-      String result = cs.drill.geoip.GeoIpHelper.getCountry(ip1.value, ip2.value);
-      cs.drill.geoip.GeoIp.write(out, buffer, result);
+      byte[] result = cs.drill.geoip.GeoIpHelper.getRecord(ip1.value, ip2.value, memo)
+          .getCountryUtf8();
+      buffer = cs.drill.geoip.GeoIp.write(out, buffer, result);
     }
   }
 
@@ -64,14 +134,17 @@ public final class GeoIp {
     @Param BigIntHolder ip2;
     @Output NullableVarCharHolder out;
     @Inject DrillBuf buffer;
+    @Inject UdfMetrics metrics;
+    @Workspace cs.drill.geoip.GeoIpHelper.Memo memo;
 
     public void setup() {
-      // NOP
+      memo = new cs.drill.geoip.GeoIpHelper.Memo(metrics);
     }
 
     public void eval() {
-      String result = cs.drill.geoip.GeoIpHelper.getCity(ip1.value, ip2.value);
-      cs.drill.geoip.GeoIp.write(out, buffer, result);
+      byte[] result = cs.drill.geoip.GeoIpHelper.getRecord(ip1.value, ip2.value, memo)
+          .getCityUtf8();
+      buffer = cs.drill.geoip.GeoIp.write(out, buffer, result);
     }
   }
 
@@ -84,13 +157,16 @@ public final class GeoIp {
     @Param BigIntHolder ip1;
     @Param BigIntHolder ip2;
     @Output NullableFloat8Holder out;
+    @Inject UdfMetrics metrics;
+    @Workspace cs.drill.geoip.GeoIpHelper.Memo memo;
 
     public void setup() {
-      // NOP
+      memo = new cs.drill.geoip.GeoIpHelper.Memo(metrics);
     }
 
     public void eval() {
-      Double result = cs.drill.geoip.GeoIpHelper.getLatitude(ip1.value, ip2.value);
+      Double result = cs.drill.geoip.GeoIpHelper.getRecord(ip1.value, ip2.value, memo)
+          .getLatitude();
       cs.drill.geoip.GeoIp.write(out, result);
     }
   }
@@ -104,13 +180,16 @@ public final class GeoIp {
     @Param BigIntHolder ip1;
     @Param BigIntHolder ip2;
     @Output NullableFloat8Holder out;
+    @Inject UdfMetrics metrics;
+    @Workspace cs.drill.geoip.GeoIpHelper.Memo memo;
 
     public void setup() {
-      // NOP
+      memo = new cs.drill.geoip.GeoIpHelper.Memo(metrics);
     }
 
     public void eval() {
-      Double result = cs.drill.geoip.GeoIpHelper.getLongitude(ip1.value, ip2.value);
+      Double result = cs.drill.geoip.GeoIpHelper.getRecord(ip1.value, ip2.value, memo)
+          .getLongitude();
       cs.drill.geoip.GeoIp.write(out, result);
     }
   }
@@ -119,6 +198,31 @@ public final class GeoIp {
     return input1.isSet * input2.isSet == 0;
   }
 
+  @FunctionTemplate(
+      name = "geoip",
+      scope = FunctionTemplate.FunctionScope.SIMPLE,
+      nulls = FunctionTemplate.NullHandling.INTERNAL
+  )
+  public static class NullableGeoIpRecord implements DrillSimpleFunc {
+    @Param NullableBigIntHolder ip1;
+    @Param NullableBigIntHolder ip2;
+    @Output BaseWriter.ComplexWriter out;
+    @Inject DrillBuf buffer;
+    @Inject UdfMetrics metrics;
+    @Workspace cs.drill.geoip.GeoIpHelper.Memo memo;
+
+    public void setup() {
+      memo = new cs.drill.geoip.GeoIpHelper.Memo(metrics);
+    }
+
+    public void eval() {
+      cs.drill.geoip.GeoRecord record = cs.drill.geoip.GeoIp.isNullInput(ip1, ip2)
+          ? cs.drill.geoip.GeoRecord.EMPTY
+          : cs.drill.geoip.GeoIpHelper.getRecord(ip1.value, ip2.value, memo);
+      buffer = cs.drill.geoip.GeoIp.write(out, buffer, record);
+    }
+  }
+
   @FunctionTemplate(
       name = "geoip_country",
       scope = FunctionTemplate.FunctionScope.SIMPLE,
@@ -129,17 +233,20 @@ public final class GeoIp {
     @Param NullableBigIntHolder ip2;
     @Output NullableVarCharHolder out;
     @Inject DrillBuf buffer;
+    @Inject UdfMetrics metrics;
+    @Workspace cs.drill.geoip.GeoIpHelper.Memo memo;
 
     public void setup() {
-      // NOP
+      memo = new cs.drill.geoip.GeoIpHelper.Memo(metrics);
     }
 
     public void eval() {
       if (cs.drill.geoip.GeoIp.isNullInput(ip1, ip2)) {
         return;
       }
-      String result = cs.drill.geoip.GeoIpHelper.getCountry(ip1.value, ip2.value);
-      cs.drill.geoip.GeoIp.write(out, buffer, result);
+      byte[] result = cs.drill.geoip.GeoIpHelper.getRecord(ip1.value, ip2.value, memo)
+          .getCountryUtf8();
+      buffer = cs.drill.geoip.GeoIp.write(out, buffer, result);
     }
   }
 
@@ -153,17 +260,20 @@ public final class GeoIp {
     @Param NullableBigIntHolder ip2;
     @Output NullableVarCharHolder out;
     @Inject DrillBuf buffer;
+    @Inject UdfMetrics metrics;
+    @Workspace cs.drill.geoip.GeoIpHelper.Memo memo;
 
     public void setup() {
-      // NOP
+      memo = new cs.drill.geoip.GeoIpHelper.Memo(metrics);
     }
 
     public void eval() {
       if (cs.drill.geoip.GeoIp.isNullInput(ip1, ip2)) {
         return;
       }
-      String result = cs.drill.geoip.GeoIpHelper.getCity(ip1.value, ip2.value);
-      cs.drill.geoip.GeoIp.write(out, buffer, result);
+      byte[] result = cs.drill.geoip.GeoIpHelper.getRecord(ip1.value, ip2.value, memo)
+          .getCityUtf8();
+      buffer = cs.drill.geoip.GeoIp.write(out, buffer, result);
     }
   }
 
@@ -176,16 +286,19 @@ public final class GeoIp {
     @Param NullableBigIntHolder ip1;
     @Param NullableBigIntHolder ip2;
     @Output NullableFloat8Holder out;
+    @Inject UdfMetrics metrics;
+    @Workspace cs.drill.geoip.GeoIpHelper.Memo memo;
 
     public void setup() {
-      // NOP
+      memo = new cs.drill.geoip.GeoIpHelper.Memo(metrics);
     }
 
     public void eval() {
       if (cs.drill.geoip.GeoIp.isNullInput(ip1, ip2)) {
         return;
       }
-      Double result = cs.drill.geoip.GeoIpHelper.getLatitude(ip1.value, ip2.value);
+      Double result = cs.drill.geoip.GeoIpHelper.getRecord(ip1.value, ip2.value, memo)
+          .getLatitude();
       cs.drill.geoip.GeoIp.write(out, result);
     }
   }
@@ -199,16 +312,19 @@ public final class GeoIp {
     @Param NullableBigIntHolder ip1;
     @Param NullableBigIntHolder ip2;
     @Output NullableFloat8Holder out;
+    @Inject UdfMetrics metrics;
+    @Workspace cs.drill.geoip.GeoIpHelper.Memo memo;
 
     public void setup() {
-      // NOP
+      memo = new cs.drill.geoip.GeoIpHelper.Memo(metrics);
     }
 
     public void eval() {
       if (cs.drill.geoip.GeoIp.isNullInput(ip1, ip2)) {
         return;
       }
-      Double result = cs.drill.geoip.GeoIpHelper.getLongitude(ip1.value, ip2.value);
+      Double result = cs.drill.geoip.GeoIpHelper.getRecord(ip1.value, ip2.value, memo)
+          .getLongitude();
       cs.drill.geoip.GeoIp.write(out, result);
     }
   }
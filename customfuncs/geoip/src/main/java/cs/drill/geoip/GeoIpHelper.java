@@ -2,24 +2,23 @@ package cs.drill.geoip;
 
 import com.maxmind.geoip2.DatabaseReader;
 import com.maxmind.geoip2.exception.GeoIp2Exception;
-import cs.drill.geoip.util.SubnetV4;
-import cs.drill.geoip.util.SubnetV6;
+import com.maxmind.geoip2.model.CityResponse;
+import cs.drill.rest.Poller;
 import cs.drill.toucan.JsonGeoIpEnrichments;
 import cs.drill.toucan.ToucanGeoIpEnrichmentManager;
+import cs.drill.util.EnrichmentConfig;
+import cs.drill.util.SegmentedIpCache;
+import cs.drill.util.SubnetTrie;
+import org.apache.drill.exec.ops.UdfMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.lang.ref.SoftReference;
-import java.net.Inet4Address;
-import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
-import java.util.HashMap;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @SuppressWarnings({"PMD.LongVariable", "PMD.TooManyFields"})
 public final class GeoIpHelper {
@@ -27,28 +26,42 @@ public final class GeoIpHelper {
   static final String COUNTRY_MMDB_PATH = "GeoLite2-Country.mmdb";
   static final long WKP = 0x0064ff9b00000000L;
   static final Logger LOGGER = LoggerFactory.getLogger(GeoIpHelper.class);
-  static DatabaseReader cityReader = null;
-  static DatabaseReader countryReader = null;
-  static ResultProvider<String> cityProvider = (inet) ->
-      getCityDatabaseReader().city(inet).getCity().getName();
-  static ResultProvider<String> countryProvider = (inet) ->
-      getCountryDatabaseReader().country(inet).getCountry().getName();
-  static ResultProvider<Double> latitudeProvider = (inet) ->
-      getCityDatabaseReader().city(inet).getLocation().getLatitude();
-  static ResultProvider<Double> longitudeProvider = (inet) ->
-      getCityDatabaseReader().city(inet).getLocation().getLongitude();
-  static SoftCache<String> cityCache = new SoftCache<>();
-  static Map<SubnetV4, String> localCityV4Map = new LinkedHashMap<>();
-  static Map<SubnetV6, String> localCityV6Map = new LinkedHashMap<>();
-  static SoftCache<String> countryCache = new SoftCache<>();
-  static Map<SubnetV4, String> localCountryV4Map = new LinkedHashMap<>();
-  static Map<SubnetV6, String> localCountryV6Map = new LinkedHashMap<>();
-  static SoftCache<Double> latitudeCache = new SoftCache<>();
-  static Map<SubnetV4, Double> localLatitudeV4Map = new LinkedHashMap<>();
-  static Map<SubnetV6, Double> localLatitudeV6Map = new LinkedHashMap<>();
-  static SoftCache<Double> longitudeCache = new SoftCache<>();
-  static Map<SubnetV4, Double> localLongitudeV4Map = new LinkedHashMap<>();
-  static Map<SubnetV6, Double> localLongitudeV6Map = new LinkedHashMap<>();
+  static final String DATABASE_DIRECTORY_KEY = EnrichmentConfig.ROOT + ".geoip.directory";
+  static final String DATABASE_REFRESH_KEY = EnrichmentConfig.ROOT + ".geoip.refresh_seconds";
+  static final String DEFAULT_DATABASE_DIRECTORY = "/usr/share/GeoIP";
+  static final int DEFAULT_DATABASE_REFRESH_SECONDS = 60;
+  static final File DATABASE_DIRECTORY = new File(EnrichmentConfig.getString(
+      DATABASE_DIRECTORY_KEY, DEFAULT_DATABASE_DIRECTORY));
+  static MaxMindDatabase cityDatabase = new MaxMindDatabase(DATABASE_DIRECTORY, CITY_MMDB_PATH);
+  static MaxMindDatabase countryDatabase =
+      new MaxMindDatabase(DATABASE_DIRECTORY, COUNTRY_MMDB_PATH);
+  /**
+   * Resolves ips missing in local subnets, one database lookup fills the whole record.
+   */
+  static RecordProvider maxMindProvider = GeoIpHelper::getMaxMindRecord;
+  static final long CACHE_BUDGET = 48L << 20; // about 1M ips
+  static final int CACHE_SEGMENTS = 16;
+  /**
+   * Records of resolved ips, equal records share single instance.
+   */
+  static SegmentedIpCache<GeoRecord> cache =
+      SegmentedIpCache.create("geoip", CACHE_BUDGET, CACHE_SEGMENTS);
+  /**
+   * Local (toucan) subnets, rebuilt on every change and replaced as a whole,
+   * so lookups never lock.
+   */
+  static volatile SubnetTrie<JsonGeoIpEnrichments.Entry> localSubnets = SubnetTrie.empty();
+  /**
+   * Changed whenever records resolved before could change, memoized records of older generations
+   * are not used.
+   */
+  static volatile int generation;
+  /**
+   * Last record resolved by the thread. Functions of a single row (e.g. geoip_city and
+   * geoip_country of one ip in a projection) are evaluated one after another by the same thread
+   * and share a single lookup this way.
+   */
+  static final ThreadLocal<Memo> LAST_RECORD = ThreadLocal.withInitial(Memo::new);
   static final ToucanGeoIpEnrichmentManager MANAGER =
       ToucanGeoIpEnrichmentManager.getInstance();
   static JsonGeoIpEnrichments lastJson = null;
@@ -56,23 +69,23 @@ public final class GeoIpHelper {
   static {
     clearLocalMaps();
     MANAGER.consumer = GeoIpHelper::populateLocalMaps;
+    MANAGER.restore();
+    int refreshSeconds = EnrichmentConfig.getInt(
+        DATABASE_REFRESH_KEY, DEFAULT_DATABASE_REFRESH_SECONDS);
+    // daemon threads of the poller never keep Drillbit from exiting
+    Poller.schedule("MaxMindDatabases", refreshSeconds, TimeUnit.SECONDS,
+        GeoIpHelper::refreshDatabases);
   }
 
   static void clearLocalMaps() {
-    localCityV4Map.clear();
-    localCountryV4Map.clear();
-    localLatitudeV4Map.clear();
-    localLongitudeV4Map.clear();
-    localCityV6Map.clear();
-    localCountryV6Map.clear();
-    localLatitudeV6Map.clear();
-    localLongitudeV6Map.clear();
-
-    // update of local cache also clears whole cache
-    cityCache.clear();
-    countryCache.clear();
-    latitudeCache.clear();
-    longitudeCache.clear();
+    publishLocalSubnets(SubnetTrie.empty());
+  }
+
+  static void publishLocalSubnets(SubnetTrie<JsonGeoIpEnrichments.Entry> subnets) {
+    localSubnets = subnets;
+    // results cached for previous subnets could change
+    cache.reset(subnets);
+    generation++;
   }
 
   static void populateLocalMaps(JsonGeoIpEnrichments json) {
@@ -85,8 +98,11 @@ public final class GeoIpHelper {
     );
 
     lastJson = json;
-    clearLocalMaps();
+    publishLocalSubnets(buildLocalSubnets(json));
+  }
 
+  static SubnetTrie<JsonGeoIpEnrichments.Entry> buildLocalSubnets(JsonGeoIpEnrichments json) {
+    SubnetTrie.Builder<JsonGeoIpEnrichments.Entry> builder = SubnetTrie.builder();
     for (JsonGeoIpEnrichments.Entry entry : json) {
       int index = entry.getSubnet().indexOf('/');
 
@@ -96,76 +112,85 @@ public final class GeoIpHelper {
       try {
         InetAddress inetAddress = InetAddress.getByName(address);
 
-        if (inetAddress instanceof Inet4Address) {
-          SubnetV4 subnetV4 = new SubnetV4(address, maskLength);
-          localCityV4Map.put(subnetV4, entry.getCity());
-          localCountryV4Map.put(subnetV4, entry.getCountry());
-          localLatitudeV4Map.put(subnetV4, entry.getLat());
-          localLongitudeV4Map.put(subnetV4, entry.getLon());
-        } else if (inetAddress instanceof Inet6Address) {
-          SubnetV6 subnetV6 = new SubnetV6(address, maskLength);
-          localCityV6Map.put(subnetV6, entry.getCity());
-          localCountryV6Map.put(subnetV6, entry.getCountry());
-          localLatitudeV6Map.put(subnetV6, entry.getLat());
-          localLongitudeV6Map.put(subnetV6, entry.getLon());
-        } else {
-          throw new UnknownHostException();
-        }
+        builder.put(inetAddress, maskLength, entry);
       } catch (UnknownHostException exc) {
         LOGGER.trace("Wrong IP address " + address, exc);
       }
     }
+    return builder.build();
   }
 
-  static class SoftCache<T> {
-    // TODO: after longer validation on larger amounts of data and different server configurations,
-    //       this approach can be changed into keeping SoftReferences for inner map keys instead of
-    //       one SoftReference for the whole map
-    SoftReference<Map<Long, Map<Long, T>>> mapRef = new SoftReference<>(null);
+  @FunctionalInterface
+  interface RecordProvider {
+    GeoRecord apply(InetAddress inetAddress) throws GeoIp2Exception, IOException;
+  }
 
-    Map<Long, T> getInnerMap(long ip1) {
-      Map<Long, Map<Long, T>> map = mapRef.get();
-      if (map == null) {
-        map = new HashMap<>();
-        mapRef = new SoftReference<>(map);
-      }
+  /**
+   * Remembers last resolved ip of a function instance, rows of the same ip often come in runs
+   * (e.g. sorted or grouped data) and skip the cache then. Only consecutive rows of one function
+   * hit the memo, other functions of the same row share the lookup by {@link #LAST_RECORD}.
+   *
+   * Lookups are counted into {@link UdfMetrics} of the operator evaluating the function.
+   */
+  public static final class Memo {
+    private final UdfMetrics metrics;
+    private boolean set;
+    private int generation;
+    private long ip1;
+    private long ip2;
+    private GeoRecord record;
 
-      Map<Long, T> inner = map.get(ip1);
-      if (inner == null) {
-        inner = new HashMap<>();
-        map.put(ip1, inner);
-      }
-      return inner;
+    public Memo(UdfMetrics metrics) {
+      this.metrics = metrics;
     }
 
-    void clear() {
-      mapRef.clear();
+    /**
+     * Creates memo counting into metrics which are not published.
+     */
+    public Memo() {
+      this(new UdfMetrics());
     }
-  }
 
-  @FunctionalInterface
-  interface ResultProvider<R> {
-    R apply(InetAddress inetAddress) throws GeoIp2Exception, IOException;
+    boolean holds(long ip1, long ip2, int generation) {
+      return set && this.ip1 == ip1 && this.ip2 == ip2 && this.generation == generation;
+    }
+
+    void set(long ip1, long ip2, int generation, GeoRecord record) {
+      this.ip1 = ip1;
+      this.ip2 = ip2;
+      this.generation = generation;
+      this.record = record;
+      set = true;
+    }
   }
 
-  @SuppressWarnings({"PMD.AvoidThrowingRawExceptionTypes"})
-  static DatabaseReader getDatabaseReader(String path) {
-    InputStream database = Thread.currentThread().getContextClassLoader().getResourceAsStream(path);
-    try {
-      return new DatabaseReader.Builder(database).build();
-    } catch (IOException error) {
-      throw new RuntimeException(error);
+  /**
+   * Swaps in database files changed since they were loaded. Failures are logged by the poller,
+   * which keeps refreshing.
+   * @return always true, files which failed to load are tried again on next refresh
+   */
+  static boolean refreshDatabases() {
+    boolean cityChanged = cityDatabase.refresh();
+    boolean countryChanged = countryDatabase.refresh();
+    if (cityChanged || countryChanged) {
+      // results of previous databases are dropped, a few lookups running during the swap
+      // can still cache results of them
+      cache.reset(localSubnets);
+      generation++;
     }
+    return true;
+  }
+
+  static boolean hasCityDatabase() {
+    return cityDatabase.isAvailable();
   }
 
   static DatabaseReader getCityDatabaseReader() {
-    return cityReader == null ? (cityReader = getDatabaseReader(CITY_MMDB_PATH)) : cityReader;
+    return cityDatabase.getReader();
   }
 
   static DatabaseReader getCountryDatabaseReader() {
-    return countryReader == null
-      ? (countryReader = getDatabaseReader(COUNTRY_MMDB_PATH))
-      : countryReader;
+    return countryDatabase.getReader();
   }
 
   static InetAddress getAddressFromIps(long ip1, long ip2) throws IOException {
@@ -181,68 +206,102 @@ public final class GeoIpHelper {
     return InetAddress.getByAddress(buffer.array());
   }
 
-  @SuppressWarnings({"PMD.EmptyCatchBlock", "PMD.CyclomaticComplexity"})
-  static <R> R getValue(long ip1, long ip2, ResultProvider<R> provider, SoftCache<R> cache,
-                        Map<SubnetV4, R> v4localProvider, Map<SubnetV6, R> v6localProvider) {
-    // check cache
-    Map<Long, R> inner = cache.getInnerMap(ip1);
-    if (inner.containsKey(ip2)) {
-      return inner.get(ip2);
+  /**
+   * City database contains countries as well, country database is used only when city
+   * database is not available.
+   */
+  static GeoRecord getMaxMindRecord(InetAddress address) throws GeoIp2Exception, IOException {
+    if (address.isSiteLocalAddress() || address.isLinkLocalAddress()) {
+      return GeoRecord.EMPTY;
+    }
+    if (hasCityDatabase()) {
+      CityResponse response = getCityDatabaseReader().city(address);
+      return new GeoRecord(
+          response.getCity().getName(),
+          response.getCountry().getName(),
+          response.getLocation().getLatitude(),
+          response.getLocation().getLongitude()
+      );
     }
+    String country = getCountryDatabaseReader().country(address).getCountry().getName();
+    return new GeoRecord(null, country, null, null);
+  }
 
-    R result = null;
+  @SuppressWarnings({"PMD.EmptyCatchBlock"})
+  static GeoRecord getRecord(long ip1, long ip2, RecordProvider provider,
+                             SegmentedIpCache<GeoRecord> cache,
+                             SubnetTrie<JsonGeoIpEnrichments.Entry> subnets) {
+    // check cache
+    GeoRecord record = cache.get(ip1, ip2);
+    if (record != null) {
+      return record;
+    }
 
-    // check local subnets
-    if (ip1 == WKP) {
-      for (Map.Entry<SubnetV4, R> entry : v4localProvider.entrySet()) {
-        SubnetV4 subnet = entry.getKey();
-        if ((subnet.getMask() & ip2) == subnet.getAddress()) {
-          result = entry.getValue();
-          inner.put(ip2, result);
-          return result;
-        }
-      }
+    // check local subnets, the most specific one wins
+    JsonGeoIpEnrichments.Entry localEntry = subnets.lookup(ip1, ip2);
+    if (localEntry != null) {
+      record = GeoRecord.of(localEntry);
     } else {
-      for (Map.Entry<SubnetV6, R> entry : v6localProvider.entrySet()) {
-        SubnetV6 subnet = entry.getKey();
-        if ((subnet.getMaskHighBits() & ip1) == subnet.getAddressHighBits()
-            && (subnet.getMaskLowBits() & ip2) == subnet.getAddressLowBits()) {
-          result = entry.getValue();
-          inner.put(ip2, result);
-          return result;
-        }
+      // check maxmind database
+      record = GeoRecord.EMPTY;
+      try {
+        record = provider.apply(getAddressFromIps(ip1, ip2));
+      } catch (GeoIp2Exception | IOException error) {
+        // NOP
       }
     }
+    cache.put(ip1, ip2, record, subnets);
+    return record;
+  }
+
+  public static GeoRecord getRecord(long ip1, long ip2) {
+    return getRecord(ip1, ip2, maxMindProvider, cache, localSubnets);
+  }
 
-    // check maxmind database
-    try {
-      InetAddress address = getAddressFromIps(ip1, ip2);
-      if (!address.isSiteLocalAddress() && !address.isLinkLocalAddress()) {
-        result = provider.apply(address);
+  /**
+   * Gets record, reusing the last record of given memo or of the thread when ip did not change.
+   * Only records missing in the shared cache are timed as backend calls.
+   */
+  public static GeoRecord getRecord(long ip1, long ip2, Memo memo) {
+    int current = generation;
+    if (memo.holds(ip1, ip2, current)) {
+      memo.metrics.countMemoHit();
+    } else {
+      Memo last = LAST_RECORD.get();
+      if (last.holds(ip1, ip2, current)) {
+        memo.metrics.countMemoHit();
+      } else {
+        GeoRecord record = cache.get(ip1, ip2);
+        if (record != null) {
+          memo.metrics.countBackendCall();
+        } else {
+          // looks the cache up again, which is cheap next to subnets and MaxMind
+          long start = System.nanoTime();
+          record = getRecord(ip1, ip2);
+          memo.metrics.countBackendCall(start);
+        }
+        last.set(ip1, ip2, current, record);
       }
-    } catch (GeoIp2Exception | IOException error) {
-      // NOP
+      memo.set(ip1, ip2, current, last.record);
     }
-    inner.put(ip2, result);
-    return result;
+    memo.metrics.countLookup(!GeoRecord.EMPTY.equals(memo.record));
+    return memo.record;
   }
 
   public static String getCity(long ip1, long ip2) {
-    return getValue(ip1, ip2, cityProvider, cityCache, localCityV4Map, localCityV6Map);
+    return getRecord(ip1, ip2).getCity();
   }
 
   public static String getCountry(long ip1, long ip2) {
-    return getValue(ip1, ip2, countryProvider, countryCache, localCountryV4Map, localCountryV6Map);
+    return getRecord(ip1, ip2).getCountry();
   }
 
   public static Double getLatitude(long ip1, long ip2) {
-    return getValue(ip1, ip2, latitudeProvider, latitudeCache, localLatitudeV4Map,
-      localLatitudeV6Map);
+    return getRecord(ip1, ip2).getLatitude();
   }
 
   public static Double getLongitude(long ip1, long ip2) {
-    return getValue(ip1, ip2, longitudeProvider, longitudeCache, localLongitudeV4Map,
-      localLongitudeV6Map);
+    return getRecord(ip1, ip2).getLongitude();
   }
 
   private GeoIpHelper() {}
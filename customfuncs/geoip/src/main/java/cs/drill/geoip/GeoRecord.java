@@ -0,0 +1,51 @@
+package cs.drill.geoip;
+
+import cs.drill.toucan.JsonGeoIpEnrichments;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Geo location of an ip, all values are resolved at once and any of them can be null.
+ *
+ * Names are encoded to UTF-8 once, when the record is created, records are cached and shared
+ * by all rows of an ip.
+ */
+@Getter
+@ToString(exclude = {"cityUtf8", "countryUtf8"})
+@EqualsAndHashCode(exclude = {"cityUtf8", "countryUtf8"})
+public final class GeoRecord {
+  public static final GeoRecord EMPTY = new GeoRecord(null, null, null, null);
+
+  private final String city;
+  private final String country;
+  private final Double latitude;
+  private final Double longitude;
+  /**
+   * Shared by all readers, must not be modified.
+   */
+  private final byte[] cityUtf8;
+  /**
+   * Shared by all readers, must not be modified.
+   */
+  private final byte[] countryUtf8;
+
+  public GeoRecord(String city, String country, Double latitude, Double longitude) {
+    this.city = city;
+    this.country = country;
+    this.latitude = latitude;
+    this.longitude = longitude;
+    this.cityUtf8 = encode(city);
+    this.countryUtf8 = encode(country);
+  }
+
+  static GeoRecord of(JsonGeoIpEnrichments.Entry entry) {
+    return new GeoRecord(entry.getCity(), entry.getCountry(), entry.getLat(), entry.getLon());
+  }
+
+  private static byte[] encode(String value) {
+    return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,122 @@
+package cs.drill.geoip;
+
+import com.maxmind.db.Reader;
+import com.maxmind.geoip2.DatabaseReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * MaxMind database shared by all fragments of a Drillbit.
+ *
+ * Database file is memory mapped from the configured directory, so it is not copied on heap and
+ * pages are loaded by OS on demand. When the file is not there, database bundled on classpath is
+ * read instead. A changed file is loaded on {@link #refresh()} and swapped in, new files have to
+ * be moved into the directory (not overwritten in place) as the old file stays mapped until its
+ * reader is garbage collected.
+ */
+@SuppressWarnings({"PMD.AvoidThrowingRawExceptionTypes"})
+class MaxMindDatabase {
+  private static final Logger LOGGER = LoggerFactory.getLogger(MaxMindDatabase.class);
+
+  private final File directory;
+  private final String fileName;
+  private volatile DatabaseReader reader;
+  private long lastModified;
+  private long length;
+
+  MaxMindDatabase(File directory, String fileName) {
+    this.directory = directory;
+    this.fileName = fileName;
+  }
+
+  File getFile() {
+    return new File(directory, fileName);
+  }
+
+  /**
+   * @return true when database file or bundled database exists
+   */
+  boolean isAvailable() {
+    return reader != null
+      || getFile().isFile()
+      || Thread.currentThread().getContextClassLoader().getResource(fileName) != null;
+  }
+
+  /**
+   * Gets reader, database is loaded on first use.
+   */
+  DatabaseReader getReader() {
+    DatabaseReader current = reader;
+    if (current == null) {
+      synchronized (this) {
+        current = reader;
+        if (current == null) {
+          current = load();
+          reader = current;
+        }
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Loads database again when its file changed since the last load. Databases not used yet
+   * are left to be loaded on first use.
+   * @return true when new database was swapped in
+   */
+  synchronized boolean refresh() {
+    if (reader == null) {
+      return false;
+    }
+    File file = getFile();
+    if (!file.isFile() || file.lastModified() == lastModified && file.length() == length) {
+      return false;
+    }
+    try {
+      // old reader is not closed, lookups running on other threads can still use it
+      reader = load(file);
+      LOGGER.info("Reloaded MaxMind database " + file);
+      return true;
+    } catch (IOException exc) {
+      LOGGER.warn("Can't reload MaxMind database " + file + ", the previous one is kept", exc);
+      return false;
+    }
+  }
+
+  private DatabaseReader load() {
+    File file = getFile();
+    try {
+      if (file.isFile()) {
+        return load(file);
+      }
+      LOGGER.info("No MaxMind database " + file + ", using bundled " + fileName);
+      lastModified = 0;
+      length = 0;
+      InputStream database =
+          Thread.currentThread().getContextClassLoader().getResourceAsStream(fileName);
+      if (database == null) {
+        throw new RuntimeException("MaxMind database " + fileName + " not found in " + directory
+          + " nor on classpath");
+      }
+      return new DatabaseReader.Builder(database).build();
+    } catch (IOException error) {
+      throw new RuntimeException(error);
+    }
+  }
+
+  private DatabaseReader load(File file) throws IOException {
+    // stamps are taken first, a file changed during load is loaded again on next refresh
+    long fileLastModified = file.lastModified();
+    long fileLength = file.length();
+    DatabaseReader newReader = new DatabaseReader.Builder(file)
+        .fileMode(Reader.FileMode.MEMORY_MAPPED)
+        .build();
+    lastModified = fileLastModified;
+    length = fileLength;
+    return newReader;
+  }
+}
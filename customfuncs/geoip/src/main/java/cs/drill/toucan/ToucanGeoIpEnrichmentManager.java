@@ -2,14 +2,15 @@ package cs.drill.toucan;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import cs.drill.rest.Poller;
 import cs.drill.rest.RestClient;
 import cs.drill.rest.RestClientException;
-import lombok.AccessLevel;
-import lombok.AllArgsConstructor;
+import cs.drill.util.EnrichmentConfig;
+import cs.drill.util.LocalSnapshots;
+import cs.drill.util.SharedSnapshots;
 
 import java.io.IOException;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
@@ -18,16 +19,31 @@ import java.util.function.Consumer;
     "PMD.LongVariable",
     "PMD.AvoidCatchingGenericException"
     })
-@AllArgsConstructor(access = AccessLevel.PACKAGE)
 public class ToucanGeoIpEnrichmentManager {
-  private static final String TOUCAN_ENDPOINT = "http://toucan:3000/config/";
-  private static final String TOUCAN_GEO_IP_USER_ENDPOINT =
-      TOUCAN_ENDPOINT + "drill/geoip_enrichment_user";
+  public static final String TOUCAN_ENDPOINT_PATH = EnrichmentConfig.ROOT + ".toucan.endpoint";
+  private static final String DEFAULT_TOUCAN_ENDPOINT = "http://toucan:3000/config/";
+  private static final String GEO_IP_USER_KEY = "drill/geoip_enrichment_user";
   private static final int RELOAD_PERIOD_MINUTES = 5;
-  private static final ScheduledExecutorService SCHEDULED_THREAD =
-      Executors.newSingleThreadScheduledExecutor();
+  private static final SharedSnapshots SNAPSHOTS = SharedSnapshots.getInstance();
+  private static final LocalSnapshots LOCAL_SNAPSHOTS = LocalSnapshots.getInstance();
+  private static final String SNAPSHOT_NAME = "geoip_enrichment";
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final ObjectReader RESPONSE_READER = new ObjectMapper()
+      .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+      .readerFor(GeoIpEnrichmentToucanResponse.class);
   private final RestClient restClient;
-  public Consumer<JsonGeoIpEnrichments> consumer;
+  private final String userEndpoint;
+  public volatile Consumer<JsonGeoIpEnrichments> consumer;
+  /**
+   * Whether consumer got fetched enrichment, restored one is not passed then.
+   */
+  private boolean updated;
+  /**
+   * The last fetched enrichment and hash of its payload, returned again while the payload does
+   * not change. Accessed by updates only, which never overlap.
+   */
+  private JsonGeoIpEnrichments lastJson;
+  private int lastPayloadHash;
 
   private static class LazyHolder {
     static final ToucanGeoIpEnrichmentManager INSTANCE = new ToucanGeoIpEnrichmentManager();
@@ -37,55 +53,118 @@ public class ToucanGeoIpEnrichmentManager {
     return LazyHolder.INSTANCE;
   }
 
+  ToucanGeoIpEnrichmentManager(
+      RestClient restClient, Consumer<JsonGeoIpEnrichments> consumer) {
+    this.restClient = restClient;
+    this.consumer = consumer;
+    this.userEndpoint = EnrichmentConfig.getString(TOUCAN_ENDPOINT_PATH, DEFAULT_TOUCAN_ENDPOINT)
+        + GEO_IP_USER_KEY;
+  }
+
   private ToucanGeoIpEnrichmentManager() {
-    this.restClient = new RestClient();
-    cs.drill.util.Logger.info("Scheduling ToucanGeoIpEnrichment");
-    SCHEDULED_THREAD.scheduleAtFixedRate(
-        this::update,
-        0,
-        RELOAD_PERIOD_MINUTES,
-        TimeUnit.MINUTES
-    );
+    this(new RestClient(), null);
+    Poller.schedule("ToucanGeoIpEnrichment", RELOAD_PERIOD_MINUTES, TimeUnit.MINUTES,
+        this::update);
+  }
+
+  /**
+   * Passes enrichment saved by the last run to consumer, unless it was updated already,
+   * so local subnets are known before the first fetch completes.
+   */
+  public synchronized void restore() {
+    if (updated || consumer == null) {
+      return;
+    }
+    String json = LOCAL_SNAPSHOTS.read(SNAPSHOT_NAME);
+    if (json == null) {
+      return;
+    }
+    try {
+      consumer.accept(MAPPER.readValue(json, JsonGeoIpEnrichments.class));
+      cs.drill.util.Logger.info("Toucan geoip enrichment restored from snapshot");
+    } catch (IOException exc) {
+      cs.drill.util.Logger.warn("Cannot parse Toucan geoip enrichment snapshot", exc);
+    }
   }
 
-  void update() {
+  /**
+   * @return false when Toucan did not answer, so reload is retried sooner
+   */
+  boolean update() {
     try {
       cs.drill.util.Logger.info("Reloading Toucan geoip enrichment cache");
-      JsonGeoIpEnrichments json = fetchData(TOUCAN_GEO_IP_USER_ENDPOINT);
+      JsonGeoIpEnrichments previous = lastJson;
+      JsonGeoIpEnrichments json = fetchData(userEndpoint);
       if (json == null) {
         cs.drill.util.Logger.debug("GeoIpEnrichment received null from toucan");
-        return;
+        return true;
+      }
+      if (json == previous && updated) {
+        cs.drill.util.Logger.info("No changes in Toucan geoip enrichment found");
+        return true;
       }
       if (consumer != null) {
-        consumer.accept(json);
+        accept(json);
+        LOCAL_SNAPSHOTS.write(SNAPSHOT_NAME, MAPPER.writeValueAsString(json));
       }
+      return true;
     } catch (Exception exc) {
       cs.drill.util.Logger.trace(
           "An exception occurred during Toucan geoip enrichment cache reload", exc
       );
+      return false;
     }
   }
 
+  /**
+   * Passes fetched enrichment to consumer, synchronized with {@link #restore()}.
+   */
+  private synchronized void accept(JsonGeoIpEnrichments json) {
+    updated = true;
+    consumer.accept(json);
+  }
+
+  /**
+   * Fetches enrichment, payload which did not change since the last fetch is neither
+   * downloaded (conditional GET) nor parsed again.
+   * @return enrichment or null when Toucan has none
+   */
   JsonGeoIpEnrichments fetchData(String url) throws IOException, RestClientException {
     String json;
 
     try {
-      json = restClient.getJson(url);
+      json = SNAPSHOTS.get(url.substring(url.lastIndexOf('/') + 1),
+          TimeUnit.MINUTES.toMillis(RELOAD_PERIOD_MINUTES),
+          () -> restClient.getJsonIfModified(url));
     } catch (RestClientException exc) {
       cs.drill.util.Logger.trace("Cannot load `" + url + "`", exc);
       throw exc;
     }
 
-    ObjectMapper objectMapper = new ObjectMapper();
-    objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    if (json == null || lastJson != null && json.hashCode() == lastPayloadHash) {
+      if (lastJson == null) {
+        // nothing to reuse, the next fetch gets the payload
+        restClient.forget(url);
+      }
+      return lastJson;
+    }
+
     GeoIpEnrichmentToucanResponse result;
     try {
-      result = objectMapper.readValue(json, GeoIpEnrichmentToucanResponse.class);
+      result = RESPONSE_READER.readValue(json);
     } catch (IOException exc) {
       cs.drill.util.Logger.trace("Cannot parse `" + url + "`", exc);
+      restClient.forget(url);
       throw exc;
     }
 
-    return result.getValue();
+    JsonGeoIpEnrichments value = result.getValue();
+    if (value == null) {
+      restClient.forget(url);
+    } else {
+      lastJson = value;
+      lastPayloadHash = json.hashCode();
+    }
+    return value;
   }
 }
@@ -2,81 +2,69 @@ package cs.drill.geoip;
 
 import com.maxmind.geoip2.DatabaseReader;
 import com.maxmind.geoip2.exception.GeoIp2Exception;
-import cs.drill.geoip.util.SubnetV4;
-import cs.drill.geoip.util.SubnetV6;
 import cs.drill.toucan.JsonGeoIpEnrichments;
+import cs.drill.util.SegmentedIpCache;
+import cs.drill.util.SubnetTrie;
+import org.apache.drill.exec.ops.UdfMetrics;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
 import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
 import java.io.IOException;
 import java.net.InetAddress;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.WeakHashMap;
 import java.util.concurrent.ThreadLocalRandom;
 
-import static cs.drill.geoip.GeoIpHelper.CITY_MMDB_PATH;
-import static cs.drill.geoip.GeoIpHelper.COUNTRY_MMDB_PATH;
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
 
 @SuppressWarnings({"PMD.TooManyMethods", "PMD.AvoidUsingHardCodedIP"})
 public class GeoIpHelperUnitTest {
-  @RunWith(PowerMockRunner.class)
-  @PrepareForTest({GeoIpHelper.class})
-  public static class GetCityDatabaseReader {
+  public static class GetDatabaseReader {
+    MaxMindDatabase cityDatabase = GeoIpHelper.cityDatabase;
+    MaxMindDatabase countryDatabase = GeoIpHelper.countryDatabase;
     @Mock DatabaseReader reader;
 
-    @After
-    public void clear() {
-      GeoIpHelper.cityReader = null;
+    @Before
+    public void setUp() {
+      MockitoAnnotations.initMocks(this);
+      GeoIpHelper.cityDatabase = mock(MaxMindDatabase.class);
+      GeoIpHelper.countryDatabase = mock(MaxMindDatabase.class);
     }
 
-    @Test
-    public void returnsCityReaderIfExists() {
-      GeoIpHelper.cityReader = reader;
-      assertSame(reader, GeoIpHelper.getCityDatabaseReader());
+    @After
+    public void clear() {
+      GeoIpHelper.cityDatabase = cityDatabase;
+      GeoIpHelper.countryDatabase = countryDatabase;
     }
 
     @Test
-    public void createsNewReader() {
-      PowerMockito.mockStatic(GeoIpHelper.class);
-      PowerMockito.when(GeoIpHelper.getCityDatabaseReader()).thenCallRealMethod();
-      PowerMockito.when(GeoIpHelper.getDatabaseReader(CITY_MMDB_PATH)).thenReturn(reader);
+    public void returnsReaderOfCityDatabase() {
+      when(GeoIpHelper.cityDatabase.getReader()).thenReturn(reader);
       assertSame(reader, GeoIpHelper.getCityDatabaseReader());
-      assertSame(reader, GeoIpHelper.cityReader);
-    }
-  }
-
-  @RunWith(PowerMockRunner.class)
-  @PrepareForTest({GeoIpHelper.class})
-  public static class GetCountryDatabaseReader {
-    @Mock DatabaseReader reader;
-
-    @After
-    public void clear() {
-      GeoIpHelper.countryReader = null;
     }
 
     @Test
-    public void returnsCountryReaderIfExists() {
-      GeoIpHelper.countryReader = reader;
+    public void returnsReaderOfCountryDatabase() {
+      when(GeoIpHelper.countryDatabase.getReader()).thenReturn(reader);
       assertSame(reader, GeoIpHelper.getCountryDatabaseReader());
     }
 
     @Test
-    public void createsNewReader() {
-      PowerMockito.mockStatic(GeoIpHelper.class);
-      PowerMockito.when(GeoIpHelper.getCountryDatabaseReader()).thenCallRealMethod();
-      PowerMockito.when(GeoIpHelper.getDatabaseReader(COUNTRY_MMDB_PATH)).thenReturn(reader);
-      assertSame(reader, GeoIpHelper.getCountryDatabaseReader());
-      assertSame(reader, GeoIpHelper.countryReader);
+    public void resetsCacheWhenDatabaseChanged() {
+      GeoRecord record = new GeoRecord("city", null, null, null);
+      GeoIpHelper.cache.put(1L, 2L, record);
+      GeoIpHelper.refreshDatabases();
+      assertSame(record, GeoIpHelper.cache.get(1L, 2L));
+
+      when(GeoIpHelper.countryDatabase.refresh()).thenReturn(true);
+      GeoIpHelper.refreshDatabases();
+      assertNull(GeoIpHelper.cache.get(1L, 2L));
     }
   }
 
@@ -104,145 +92,206 @@ public class GeoIpHelperUnitTest {
 
   @RunWith(PowerMockRunner.class)
   @PrepareForTest({GeoIpHelper.class})
-  public static class GetValue {
+  public static class GetRecord {
     long ip1 = ThreadLocalRandom.current().nextLong();
     long ip2 = ThreadLocalRandom.current().nextLong();
-    @Mock GeoIpHelper.ResultProvider resultProvider;
-    Map<SubnetV4, String> localV4Provider = spy(new HashMap<SubnetV4, String>());
-    Map<SubnetV6, String> localV6Provider = spy(new HashMap<SubnetV6, String>());
-    GeoIpHelper.SoftCache<String> softCache = spy(new GeoIpHelper.SoftCache<>());
+    @Mock GeoIpHelper.RecordProvider recordProvider;
+    SubnetTrie<JsonGeoIpEnrichments.Entry> localSubnets = SubnetTrie.empty();
+    SegmentedIpCache<GeoRecord> cache = spy(new SegmentedIpCache<GeoRecord>("test", 1 << 10, 1));
     @Mock InetAddress inetAddress;
-    @Mock String result;
+    GeoRecord result = new GeoRecord("city", "country", 1.0, 2.0);
 
     @Before
     public void setUp() throws IOException, GeoIp2Exception {
       PowerMockito.mockStatic(GeoIpHelper.class);
       PowerMockito.when(GeoIpHelper.getAddressFromIps(ip1, ip2)).thenReturn(inetAddress);
-      when(resultProvider.apply(inetAddress)).thenAnswer(inv -> result);
+      when(recordProvider.apply(inetAddress)).thenAnswer(inv -> result);
+      cache.reset(localSubnets);
       PowerMockito
-          .when(GeoIpHelper.getValue(ip1, ip2, resultProvider, softCache, localV4Provider,
-            localV6Provider))
+          .when(GeoIpHelper.getRecord(ip1, ip2, recordProvider, cache, localSubnets))
           .thenCallRealMethod();
-      softCache.getInnerMap(ip1);
     }
 
     @Test
     public void returnsGivenProviderWithGetAddressFromIpsResult() {
-      assertSame(result, GeoIpHelper.getValue(ip1, ip2, resultProvider, softCache, localV4Provider,
-          localV6Provider));
+      assertSame(result, GeoIpHelper.getRecord(ip1, ip2, recordProvider, cache, localSubnets));
     }
 
     @Test
-    public void returnsNullForNullProviderResult() {
-      result = null;
-      assertNull(GeoIpHelper.getValue(ip1, ip2, resultProvider, softCache, localV4Provider,
-          localV6Provider));
+    public void returnsValueFromCache() throws IOException, GeoIp2Exception {
+      cache.put(ip1, ip2, result);
+      assertSame(result, GeoIpHelper.getRecord(ip1, ip2, recordProvider, cache, localSubnets));
+      verify(recordProvider, never()).apply(any());
     }
 
     @Test
-    public void returnsValueFromCache() throws IOException, GeoIp2Exception {
-      softCache.mapRef.get().put(ip1, new WeakHashMap<>());
-      softCache.mapRef.get().get(ip1).put(ip2, result);
-      assertEquals(result, GeoIpHelper.getValue(ip1, ip2, resultProvider, softCache,
-          localV4Provider, localV6Provider));
-      verify(resultProvider, never()).apply(any());
+    public void savesResultIntoCache() {
+      GeoIpHelper.getRecord(ip1, ip2, recordProvider, cache, localSubnets);
+      assertSame(result, cache.get(ip1, ip2));
     }
 
     @Test
-    public void returnsNullValueFromCache() throws IOException, GeoIp2Exception {
-      softCache.mapRef.get().put(ip1, new WeakHashMap<>());
-      softCache.mapRef.get().get(ip1).put(ip2, null);
-      assertNull(GeoIpHelper.getValue(ip1, ip2, resultProvider, softCache, localV4Provider,
-          localV6Provider));
-      verify(resultProvider, never()).apply(any());
+    public void doesNotSaveResultOfReplacedSubnetsIntoCache() {
+      cache.reset(SubnetTrie.<JsonGeoIpEnrichments.Entry>builder().build());
+      GeoIpHelper.getRecord(ip1, ip2, recordProvider, cache, localSubnets);
+      assertNull(cache.get(ip1, ip2));
     }
 
     @Test
-    public void savesResultIntoCache() {
-      GeoIpHelper.getValue(ip1, ip2, resultProvider, softCache, localV4Provider, localV6Provider);
-      assertSame(result, softCache.mapRef.get().get(ip1).get(ip2));
+    public void returnsRecordOfMostSpecificLocalSubnet() throws IOException, GeoIp2Exception {
+      JsonGeoIpEnrichments.Entry wide =
+          new JsonGeoIpEnrichments.Entry("10.0.0.0/8", "wide", "country", 3.0, 4.0);
+      JsonGeoIpEnrichments.Entry narrow =
+          new JsonGeoIpEnrichments.Entry("10.1.0.0/16", "narrow", null, null, null);
+      localSubnets = SubnetTrie.<JsonGeoIpEnrichments.Entry>builder()
+          .put(IpUtil.WKP, 0x0a000000L, 104, wide)
+          .put(IpUtil.WKP, 0x0a010000L, 112, narrow)
+          .build();
+      PowerMockito
+          .when(GeoIpHelper.getRecord(IpUtil.WKP, 0x0a010203L, recordProvider, cache,
+            localSubnets))
+          .thenCallRealMethod();
+      PowerMockito
+          .when(GeoIpHelper.getRecord(IpUtil.WKP, 0x0a020203L, recordProvider, cache,
+            localSubnets))
+          .thenCallRealMethod();
+
+      assertEquals(new GeoRecord("narrow", null, null, null), GeoIpHelper.getRecord(IpUtil.WKP,
+          0x0a010203L, recordProvider, cache, localSubnets));
+      assertEquals(new GeoRecord("wide", "country", 4.0, 3.0), GeoIpHelper.getRecord(IpUtil.WKP,
+          0x0a020203L, recordProvider, cache, localSubnets));
+      verify(recordProvider, never()).apply(any());
     }
 
     @Test
-    public void returnsNullForGeoIp2Exception() throws IOException {
+    public void returnsEmptyRecordForIoException() throws IOException {
       PowerMockito.when(GeoIpHelper.getAddressFromIps(ip1, ip2)).thenThrow(mock(IOException.class));
-      assertNull(GeoIpHelper.getValue(ip1, ip2, resultProvider, softCache, localV4Provider,
-          localV6Provider));
+      assertSame(GeoRecord.EMPTY,
+          GeoIpHelper.getRecord(ip1, ip2, recordProvider, cache, localSubnets));
     }
 
     @Test
-    public void returnsNullForIoException() throws IOException, GeoIp2Exception {
-      when(resultProvider.apply(inetAddress)).thenThrow(mock(GeoIp2Exception.class));
-      assertNull(GeoIpHelper.getValue(ip1, ip2, resultProvider, softCache, localV4Provider,
-          localV6Provider));
+    public void returnsEmptyRecordForGeoIp2Exception() throws IOException, GeoIp2Exception {
+      when(recordProvider.apply(inetAddress)).thenThrow(mock(GeoIp2Exception.class));
+      assertSame(GeoRecord.EMPTY,
+          GeoIpHelper.getRecord(ip1, ip2, recordProvider, cache, localSubnets));
     }
   }
 
   @RunWith(PowerMockRunner.class)
   @PrepareForTest({GeoIpHelper.class})
-  public static class GetCity {
+  public static class GetRecordWithMemo {
     long ip1 = ThreadLocalRandom.current().nextLong();
     long ip2 = ThreadLocalRandom.current().nextLong();
+    UdfMetrics metrics = new UdfMetrics();
+    GeoIpHelper.Memo memo = new GeoIpHelper.Memo(metrics);
+    GeoRecord result = new GeoRecord("city", "country", 1.0, 2.0);
 
-    @Test
-    public void callsGetValueWithCityProvider() {
+    @Before
+    public void setUp() {
       PowerMockito.mockStatic(GeoIpHelper.class);
-      PowerMockito.when(GeoIpHelper.getCity(ip1, ip2)).thenCallRealMethod();
-      GeoIpHelper.getCity(ip1, ip2);
-      PowerMockito.verifyStatic();
-      GeoIpHelper.getValue(ip1, ip2, GeoIpHelper.cityProvider, GeoIpHelper.cityCache,
-          GeoIpHelper.localCityV4Map, GeoIpHelper.localCityV6Map);
+      PowerMockito.when(GeoIpHelper.getRecord(anyLong(), anyLong())).thenReturn(result);
+      PowerMockito.when(GeoIpHelper.getRecord(anyLong(), anyLong(), same(memo)))
+          .thenCallRealMethod();
     }
-  }
 
-  @RunWith(PowerMockRunner.class)
-  @PrepareForTest({GeoIpHelper.class})
-  public static class GetCountry {
-    long ip1 = ThreadLocalRandom.current().nextLong();
-    long ip2 = ThreadLocalRandom.current().nextLong();
+    @Test
+    public void resolvesRepeatedIpOnce() {
+      assertSame(result, GeoIpHelper.getRecord(ip1, ip2, memo));
+      assertSame(result, GeoIpHelper.getRecord(ip1, ip2, memo));
+      PowerMockito.verifyStatic(times(1));
+      GeoIpHelper.getRecord(ip1, ip2);
+    }
 
     @Test
-    public void callsGetValueWithCountryProvider() {
-      PowerMockito.mockStatic(GeoIpHelper.class);
-      PowerMockito.when(GeoIpHelper.getCountry(ip1, ip2)).thenCallRealMethod();
-      GeoIpHelper.getCountry(ip1, ip2);
-      PowerMockito.verifyStatic();
-      GeoIpHelper.getValue(ip1, ip2, GeoIpHelper.countryProvider, GeoIpHelper.countryCache,
-          GeoIpHelper.localCountryV4Map, GeoIpHelper.localCountryV6Map);
+    public void resolvesChangedIp() {
+      GeoIpHelper.getRecord(ip1, ip2, memo);
+      GeoIpHelper.getRecord(ip1, ip2 + 1, memo);
+      PowerMockito.verifyStatic(times(1));
+      GeoIpHelper.getRecord(ip1, ip2 + 1);
     }
-  }
 
-  @RunWith(PowerMockRunner.class)
-  @PrepareForTest({GeoIpHelper.class})
-  public static class GetLatitude {
-    long ip1 = ThreadLocalRandom.current().nextLong();
-    long ip2 = ThreadLocalRandom.current().nextLong();
+    @Test
+    public void countsLookupsIntoMetrics() {
+      GeoIpHelper.getRecord(ip1, ip2, memo);
+      GeoIpHelper.getRecord(ip1, ip2, memo);
+      PowerMockito.when(GeoIpHelper.getRecord(ip1, ip2 + 1)).thenReturn(GeoRecord.EMPTY);
+      GeoIpHelper.getRecord(ip1, ip2 + 1, memo);
+
+      assertEquals(3, metrics.getLookups());
+      assertEquals(2, metrics.getHits());
+      assertEquals(1, metrics.getMisses());
+      assertEquals(1, metrics.getMemoHits());
+      assertEquals(2, metrics.getBackendCalls());
+    }
 
     @Test
-    public void callsGetValueWithLatitudeProvider() {
-      PowerMockito.mockStatic(GeoIpHelper.class);
-      PowerMockito.when(GeoIpHelper.getLatitude(ip1, ip2)).thenCallRealMethod();
-      GeoIpHelper.getLatitude(ip1, ip2);
-      PowerMockito.verifyStatic();
-      GeoIpHelper.getValue(ip1, ip2, GeoIpHelper.latitudeProvider, GeoIpHelper.latitudeCache,
-          GeoIpHelper.localLatitudeV4Map, GeoIpHelper.localLatitudeV6Map);
+    public void timesOnlyRecordsMissingInSharedCache() {
+      GeoIpHelper.cache.put(ip1, ip2, result);
+      assertSame(result, GeoIpHelper.getRecord(ip1, ip2, memo));
+      PowerMockito.verifyStatic(never());
+      GeoIpHelper.getRecord(ip1, ip2);
+      assertEquals(1, metrics.getBackendCalls());
+      assertEquals(0, metrics.getBackendNanos());
+    }
+
+    @Test
+    public void sharesLookupOfRowBetweenFunctions() {
+      GeoIpHelper.Memo other = new GeoIpHelper.Memo(metrics);
+      PowerMockito.when(GeoIpHelper.getRecord(anyLong(), anyLong(), same(other)))
+          .thenCallRealMethod();
+      assertSame(result, GeoIpHelper.getRecord(ip1, ip2, memo));
+      assertSame(result, GeoIpHelper.getRecord(ip1, ip2, other));
+      PowerMockito.verifyStatic(times(1));
+      GeoIpHelper.getRecord(ip1, ip2);
+      assertEquals(1, metrics.getMemoHits());
+    }
+
+    @Test
+    public void resolvesIpAgainAfterChange() {
+      GeoIpHelper.getRecord(ip1, ip2, memo);
+      GeoIpHelper.generation++;
+      GeoIpHelper.getRecord(ip1, ip2, memo);
+      PowerMockito.verifyStatic(times(2));
+      GeoIpHelper.getRecord(ip1, ip2);
     }
   }
 
   @RunWith(PowerMockRunner.class)
   @PrepareForTest({GeoIpHelper.class})
-  public static class GetLongitude {
+  public static class GetValues {
     long ip1 = ThreadLocalRandom.current().nextLong();
     long ip2 = ThreadLocalRandom.current().nextLong();
+    GeoRecord result = new GeoRecord("city", "country", 1.0, 2.0);
 
-    @Test
-    public void callsGetValueWithLongitudeProvider() {
+    @Before
+    public void setUp() {
       PowerMockito.mockStatic(GeoIpHelper.class);
+      PowerMockito.when(GeoIpHelper.getRecord(ip1, ip2)).thenReturn(result);
+    }
+
+    @Test
+    public void returnsCityOfRecord() {
+      PowerMockito.when(GeoIpHelper.getCity(ip1, ip2)).thenCallRealMethod();
+      assertEquals("city", GeoIpHelper.getCity(ip1, ip2));
+    }
+
+    @Test
+    public void returnsCountryOfRecord() {
+      PowerMockito.when(GeoIpHelper.getCountry(ip1, ip2)).thenCallRealMethod();
+      assertEquals("country", GeoIpHelper.getCountry(ip1, ip2));
+    }
+
+    @Test
+    public void returnsLatitudeOfRecord() {
+      PowerMockito.when(GeoIpHelper.getLatitude(ip1, ip2)).thenCallRealMethod();
+      assertEquals(1.0, GeoIpHelper.getLatitude(ip1, ip2), 0.0);
+    }
+
+    @Test
+    public void returnsLongitudeOfRecord() {
       PowerMockito.when(GeoIpHelper.getLongitude(ip1, ip2)).thenCallRealMethod();
-      GeoIpHelper.getLongitude(ip1, ip2);
-      PowerMockito.verifyStatic();
-      GeoIpHelper.getValue(ip1, ip2, GeoIpHelper.longitudeProvider, GeoIpHelper.longitudeCache,
-          GeoIpHelper.localLongitudeV4Map, GeoIpHelper.localLongitudeV6Map);
+      assertEquals(2.0, GeoIpHelper.getLongitude(ip1, ip2), 0.0);
     }
   }
 
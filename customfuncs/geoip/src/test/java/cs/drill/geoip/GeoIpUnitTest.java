@@ -5,6 +5,9 @@ import org.apache.drill.exec.expr.holders.BigIntHolder;
 import org.apache.drill.exec.expr.holders.NullableBigIntHolder;
 import org.apache.drill.exec.expr.holders.NullableFloat8Holder;
 import org.apache.drill.exec.expr.holders.NullableVarCharHolder;
+import org.apache.drill.exec.vector.complex.writer.BaseWriter;
+import org.apache.drill.exec.vector.complex.writer.Float8Writer;
+import org.apache.drill.exec.vector.complex.writer.VarCharWriter;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -13,6 +16,7 @@ import org.powermock.api.mockito.PowerMockito;
 import org.powermock.core.classloader.annotations.PrepareForTest;
 import org.powermock.modules.junit4.PowerMockRunner;
 
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.ThreadLocalRandom;
 
 import static org.junit.Assert.*;
@@ -20,20 +24,26 @@ import static org.mockito.Mockito.*;
 
 public class GeoIpUnitTest {
   @RunWith(PowerMockRunner.class)
-  @PrepareForTest({NullableVarCharHolder.class, DrillBuf.class, String.class})
-  public static class WriteOfString {
+  @PrepareForTest({NullableVarCharHolder.class, DrillBuf.class})
+  public static class WriteOfBytes {
     @Mock NullableVarCharHolder out;
     @Mock DrillBuf buffer;
-    @Mock String value;
+    @Mock DrillBuf reallocatedBuffer;
+    byte[] value = "Krak\u00f3w".getBytes(StandardCharsets.UTF_8);
 
-    private void callMethod() {
-      GeoIp.write(out, buffer, value);
+    @Before
+    public void setUp() {
+      when(buffer.reallocIfNeeded(value.length)).thenReturn(reallocatedBuffer);
+    }
+
+    private DrillBuf callMethod() {
+      return GeoIp.write(out, buffer, value);
     }
 
     @Test
-    public void setsGivenBufferAsHolderBuffer() {
-      callMethod();
-      assertSame(buffer, out.buffer);
+    public void setsReallocatedBufferAsHolderBufferAndReturnsIt() {
+      assertSame(reallocatedBuffer, callMethod());
+      assertSame(reallocatedBuffer, out.buffer);
     }
 
     @Test
@@ -43,10 +53,9 @@ public class GeoIpUnitTest {
     }
 
     @Test
-    public void setsHolderEndToValueBytesLength() {
-      value = "abc123";
+    public void setsHolderEndToValueLength() {
       callMethod();
-      assertEquals(value.getBytes().length, out.end);
+      assertEquals(value.length, out.end);
     }
 
     @Test
@@ -56,16 +65,15 @@ public class GeoIpUnitTest {
     }
 
     @Test
-    public void callsBufferSetBytesWithGivenValueBytes() {
-      value = "debug1";
+    public void callsBufferSetBytesWithGivenValue() {
       callMethod();
-      verify(buffer).setBytes(0, value.getBytes());
+      verify(reallocatedBuffer).setBytes(0, value);
     }
 
     @Test
     public void doesNothingOnNullValueGiven() {
       value = null;
-      callMethod();
+      assertSame(buffer, callMethod());
       assertSame(0, out.isSet);
       verify(buffer, never()).setBytes(anyInt(), any(byte[].class));
     }
@@ -108,14 +116,14 @@ public class GeoIpUnitTest {
       GeoIpHelper.class,
       DrillBuf.class,
       BigIntHolder.class,
-      String.class,
       GeoIp.class})
   public static class GeoIpCountryEval {
     @Mock BigIntHolder ip1;
     @Mock BigIntHolder ip2;
     @Mock NullableVarCharHolder out;
     @Mock DrillBuf buffer;
-    @Mock String result;
+    @Mock DrillBuf reallocatedBuffer;
+    GeoRecord result = new GeoRecord(null, "country", null, null);
     long ip1Value = ThreadLocalRandom.current().nextLong();
     long ip2Value = ThreadLocalRandom.current().nextLong();
     GeoIp.GeoIpCountry geoIpCountry;
@@ -129,17 +137,23 @@ public class GeoIpUnitTest {
       geoIpCountry.ip2 = ip2;
       geoIpCountry.out = out;
       geoIpCountry.buffer = buffer;
+      geoIpCountry.setup();
 
       PowerMockito.mockStatic(GeoIpHelper.class);
-      PowerMockito.when(GeoIpHelper.getCountry(ip1Value, ip2Value)).thenReturn(result);
+      PowerMockito
+          .when(GeoIpHelper.getRecord(eq(ip1Value), eq(ip2Value), any(GeoIpHelper.Memo.class)))
+          .thenReturn(result);
     }
 
     @Test
-    public void callsWriteWithGeoIpHelperGetCountryResult() {
+    public void callsWriteWithGeoIpHelperGetCountryResultAndKeepsReturnedBuffer() {
       PowerMockito.mockStatic(GeoIp.class);
+      PowerMockito.when(GeoIp.write(out, buffer, result.getCountryUtf8()))
+          .thenReturn(reallocatedBuffer);
       geoIpCountry.eval();
       PowerMockito.verifyStatic();
-      GeoIp.write(out, buffer, result);
+      GeoIp.write(out, buffer, result.getCountryUtf8());
+      assertSame(reallocatedBuffer, geoIpCountry.buffer);
     }
   }
 
@@ -149,14 +163,14 @@ public class GeoIpUnitTest {
       GeoIpHelper.class,
       DrillBuf.class,
       BigIntHolder.class,
-      String.class,
       GeoIp.class})
   public static class GeoIpCityEval {
     @Mock BigIntHolder ip1;
     @Mock BigIntHolder ip2;
     @Mock NullableVarCharHolder out;
     @Mock DrillBuf buffer;
-    @Mock String result;
+    @Mock DrillBuf reallocatedBuffer;
+    GeoRecord result = new GeoRecord("city", null, null, null);
     long ip1Value = ThreadLocalRandom.current().nextLong();
     long ip2Value = ThreadLocalRandom.current().nextLong();
     GeoIp.GeoIpCity geoIpCity;
@@ -170,17 +184,23 @@ public class GeoIpUnitTest {
       geoIpCity.ip2 = ip2;
       geoIpCity.out = out;
       geoIpCity.buffer = buffer;
+      geoIpCity.setup();
 
       PowerMockito.mockStatic(GeoIpHelper.class);
-      PowerMockito.when(GeoIpHelper.getCity(ip1Value, ip2Value)).thenReturn(result);
+      PowerMockito
+          .when(GeoIpHelper.getRecord(eq(ip1Value), eq(ip2Value), any(GeoIpHelper.Memo.class)))
+          .thenReturn(result);
     }
 
     @Test
-    public void callsWriteWithGeoIpHelperGetCityResult() {
+    public void callsWriteWithGeoIpHelperGetCityResultAndKeepsReturnedBuffer() {
       PowerMockito.mockStatic(GeoIp.class);
+      PowerMockito.when(GeoIp.write(out, buffer, result.getCityUtf8()))
+          .thenReturn(reallocatedBuffer);
       geoIpCity.eval();
       PowerMockito.verifyStatic();
-      GeoIp.write(out, buffer, result);
+      GeoIp.write(out, buffer, result.getCityUtf8());
+      assertSame(reallocatedBuffer, geoIpCity.buffer);
     }
   }
 
@@ -208,9 +228,12 @@ public class GeoIpUnitTest {
       geoIpLatitude.ip1 = ip1;
       geoIpLatitude.ip2 = ip2;
       geoIpLatitude.out = out;
+      geoIpLatitude.setup();
 
       PowerMockito.mockStatic(GeoIpHelper.class);
-      PowerMockito.when(GeoIpHelper.getLatitude(ip1Value, ip2Value)).thenReturn(result);
+      PowerMockito
+          .when(GeoIpHelper.getRecord(eq(ip1Value), eq(ip2Value), any(GeoIpHelper.Memo.class)))
+          .thenReturn(new GeoRecord(null, null, result, null));
     }
 
     @Test
@@ -246,9 +269,12 @@ public class GeoIpUnitTest {
       geoIpLongitude.ip1 = ip1;
       geoIpLongitude.ip2 = ip2;
       geoIpLongitude.out = out;
+      geoIpLongitude.setup();
 
       PowerMockito.mockStatic(GeoIpHelper.class);
-      PowerMockito.when(GeoIpHelper.getLongitude(ip1Value, ip2Value)).thenReturn(result);
+      PowerMockito
+          .when(GeoIpHelper.getRecord(eq(ip1Value), eq(ip2Value), any(GeoIpHelper.Memo.class)))
+          .thenReturn(new GeoRecord(null, null, null, result));
     }
 
     @Test
@@ -260,6 +286,84 @@ public class GeoIpUnitTest {
     }
   }
 
+  @RunWith(PowerMockRunner.class)
+  @PrepareForTest({GeoIpHelper.class, DrillBuf.class, BigIntHolder.class, GeoIp.class})
+  public static class GeoIpRecordEval {
+    @Mock BigIntHolder ip1;
+    @Mock BigIntHolder ip2;
+    @Mock BaseWriter.ComplexWriter out;
+    @Mock DrillBuf buffer;
+    @Mock DrillBuf reallocatedBuffer;
+    GeoRecord result = new GeoRecord("city", "country", 1.0, 2.0);
+    long ip1Value = ThreadLocalRandom.current().nextLong();
+    long ip2Value = ThreadLocalRandom.current().nextLong();
+    GeoIp.GeoIpRecord geoIpRecord;
+
+    @Before
+    public void setUp() {
+      ip1.value = ip1Value;
+      ip2.value = ip2Value;
+      geoIpRecord = new GeoIp.GeoIpRecord();
+      geoIpRecord.ip1 = ip1;
+      geoIpRecord.ip2 = ip2;
+      geoIpRecord.out = out;
+      geoIpRecord.buffer = buffer;
+      geoIpRecord.setup();
+
+      PowerMockito.mockStatic(GeoIpHelper.class);
+      PowerMockito
+          .when(GeoIpHelper.getRecord(eq(ip1Value), eq(ip2Value), any(GeoIpHelper.Memo.class)))
+          .thenReturn(result);
+    }
+
+    @Test
+    public void writesGeoIpHelperGetRecordResultAndKeepsReturnedBuffer() {
+      PowerMockito.mockStatic(GeoIp.class);
+      PowerMockito.when(GeoIp.write(out, buffer, result)).thenReturn(reallocatedBuffer);
+      geoIpRecord.eval();
+      PowerMockito.verifyStatic();
+      GeoIp.write(out, buffer, result);
+      assertSame(reallocatedBuffer, geoIpRecord.buffer);
+    }
+  }
+
+  @RunWith(PowerMockRunner.class)
+  @PrepareForTest({DrillBuf.class})
+  public static class WriteOfRecord {
+    @Mock BaseWriter.ComplexWriter out;
+    @Mock BaseWriter.MapWriter map;
+    @Mock VarCharWriter cityWriter;
+    @Mock Float8Writer latitudeWriter;
+    @Mock DrillBuf buffer;
+
+    @Before
+    public void setUp() {
+      when(out.rootAsMap()).thenReturn(map);
+      when(map.varChar("city")).thenReturn(cityWriter);
+      when(map.float8("latitude")).thenReturn(latitudeWriter);
+      when(buffer.reallocIfNeeded(anyInt())).thenReturn(buffer);
+    }
+
+    @Test
+    public void writesNotNullValuesIntoMap() {
+      GeoIp.write(out, buffer, new GeoRecord("city", null, 1.5, null));
+      verify(map).start();
+      verify(cityWriter).writeVarChar(0, 4, buffer);
+      verify(latitudeWriter).writeFloat8(1.5);
+      verify(map, never()).varChar("country");
+      verify(map, never()).float8("longitude");
+      verify(map).end();
+    }
+
+    @Test
+    public void writesEmptyMapForEmptyRecord() {
+      GeoIp.write(out, buffer, GeoRecord.EMPTY);
+      verify(map).start();
+      verify(map).end();
+      verifyNoMoreInteractions(map);
+    }
+  }
+
   public static class GeoIpIsNullInput {
     NullableBigIntHolder in1;
     NullableBigIntHolder in2;
@@ -0,0 +1,105 @@
+package cs.drill.geoip;
+
+import com.maxmind.geoip2.DatabaseReader;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MaxMindDatabaseUnitTest {
+  private static final String BUNDLED = GeoIpHelper.COUNTRY_MMDB_PATH;
+
+  static void copyBundledDatabase(File target) throws IOException {
+    try (InputStream database =
+             Thread.currentThread().getContextClassLoader().getResourceAsStream(BUNDLED)) {
+      File temp = new File(target.getParentFile(), target.getName() + ".tmp");
+      Files.copy(database, temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      // new databases are moved into the directory, never overwritten in place
+      Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  public static class GetReader {
+    @Rule public TemporaryFolder directory = new TemporaryFolder();
+
+    @Test
+    public void readsBundledDatabaseWhenFileIsMissing() {
+      MaxMindDatabase database = new MaxMindDatabase(directory.getRoot(), BUNDLED);
+      DatabaseReader reader = database.getReader();
+      assertSame(reader, database.getReader());
+      assertEquals("GeoLite2-Country", reader.getMetadata().getDatabaseType());
+    }
+
+    @Test
+    public void readsDatabaseFile() throws IOException {
+      MaxMindDatabase database = new MaxMindDatabase(directory.getRoot(), "Custom.mmdb");
+      copyBundledDatabase(database.getFile());
+      assertTrue(database.isAvailable());
+      assertEquals("GeoLite2-Country", database.getReader().getMetadata().getDatabaseType());
+    }
+
+    @Test
+    public void isNotAvailableWithoutFileAndBundledDatabase() {
+      assertFalse(new MaxMindDatabase(directory.getRoot(), "Missing.mmdb").isAvailable());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void throwsWithoutFileAndBundledDatabase() {
+      new MaxMindDatabase(directory.getRoot(), "Missing.mmdb").getReader();
+    }
+  }
+
+  public static class Refresh {
+    @Rule public TemporaryFolder directory = new TemporaryFolder();
+    MaxMindDatabase database;
+
+    @Before
+    public void setUp() throws IOException {
+      database = new MaxMindDatabase(directory.getRoot(), "Custom.mmdb");
+      copyBundledDatabase(database.getFile());
+    }
+
+    @Test
+    public void doesNotLoadUnusedDatabase() {
+      assertFalse(database.refresh());
+    }
+
+    @Test
+    public void keepsReaderOfUnchangedFile() {
+      DatabaseReader reader = database.getReader();
+      assertFalse(database.refresh());
+      assertSame(reader, database.getReader());
+    }
+
+    @Test
+    public void swapsReaderOfChangedFile() throws IOException {
+      DatabaseReader reader = database.getReader();
+      copyBundledDatabase(database.getFile());
+      assertTrue(database.getFile().setLastModified(database.getFile().lastModified() - 10000));
+
+      assertTrue(database.refresh());
+      assertNotSame(reader, database.getReader());
+      assertFalse(database.refresh());
+    }
+
+    @Test
+    public void keepsReaderWhenFileIsRemoved() throws IOException {
+      DatabaseReader reader = database.getReader();
+      Files.delete(database.getFile().toPath());
+      assertFalse(database.refresh());
+      assertSame(reader, database.getReader());
+    }
+  }
+}
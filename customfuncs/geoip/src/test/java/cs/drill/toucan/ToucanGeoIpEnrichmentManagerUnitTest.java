@@ -1,11 +1,14 @@
 package cs.drill.toucan;
 
+import cs.drill.rest.RestClient;
 import cs.drill.rest.RestClientException;
 import org.junit.Test;
 
 import java.io.IOException;
 import java.util.function.Consumer;
 
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.doThrow;
@@ -14,6 +17,7 @@ import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class ToucanGeoIpEnrichmentManagerUnitTest {
   public static class Update {
@@ -65,4 +69,34 @@ public class ToucanGeoIpEnrichmentManagerUnitTest {
       verify(manager.consumer, never()).accept(any());
     }
   }
+
+  public static class FetchData {
+    private static final String PAYLOAD =
+        "{\"value\": [{\"subnet\": \"10.3.3.1/24\", \"city\": \"Krakow\"}]}";
+
+    @Test
+    public void returnsLastResultWhenNotModified() throws IOException, RestClientException {
+      RestClient restClient = mock(RestClient.class);
+      when(restClient.getJsonIfModified("url")).thenReturn(PAYLOAD, (String) null);
+      ToucanGeoIpEnrichmentManager manager = new ToucanGeoIpEnrichmentManager(restClient, null);
+
+      JsonGeoIpEnrichments result = manager.fetchData("url");
+
+      assertNotNull(result);
+      assertSame(result, manager.fetchData("url"));
+    }
+
+    @Test
+    public void doesntCallConsumerWhenNotModified() throws RestClientException {
+      RestClient restClient = mock(RestClient.class);
+      when(restClient.getJsonIfModified(any())).thenReturn(PAYLOAD, (String) null);
+      ToucanGeoIpEnrichmentManager manager =
+          new ToucanGeoIpEnrichmentManager(restClient, mock(Consumer.class));
+
+      manager.update();
+      manager.update();
+
+      verify(manager.consumer, times(1)).accept(any());
+    }
+  }
 }
@@ -0,0 +1,95 @@
+package cs.drill.de;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import cs.drill.util.IpUtil;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Streams enriched users out of DataEnrichment response, so the whole response is never
+ * kept in memory as a string or a tree.
+ *
+ * Response example:
+ *
+ * {"Results": [[1507035602958, 1507035901958, 28428538856079360, 168558853, "fake_user4"],
+ * [1507035602958, 1507035901958, 28428538856079360, 168558854, "fake_user5"]]}
+ */
+final class EnrichedUserReader {
+  private static final String RESULTS_FIELD = "Results";
+  private static final int RESULT_SIZE = 5;
+
+  /**
+   * Reads response object starting at current (or next) token of parser.
+   * @throws IllegalArgumentException when response has unexpected structure
+   */
+  static void read(JsonParser parser, Consumer<EnrichedUser> consumer) throws IOException {
+    JsonToken token = parser.getCurrentToken() == null ? parser.nextToken() : parser.getCurrentToken();
+    if (token != JsonToken.START_OBJECT) {
+      throw new IllegalArgumentException("Json is not an object: " + token);
+    }
+    boolean hasResults = false;
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String field = parser.getCurrentName();
+      JsonToken value = parser.nextToken();
+      if (RESULTS_FIELD.equals(field)) {
+        if (value != JsonToken.START_ARRAY) {
+          throw new IllegalArgumentException("JsonResults are not an array: " + value);
+        }
+        readResults(parser, consumer);
+        hasResults = true;
+      } else {
+        parser.skipChildren();
+      }
+    }
+    if (!hasResults) {
+      throw new IllegalArgumentException("Json doesn't have results field");
+    }
+  }
+
+  private static void readResults(JsonParser parser, Consumer<EnrichedUser> consumer) throws IOException {
+    while (parser.nextToken() != JsonToken.END_ARRAY) {
+      if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+        throw new IllegalArgumentException(
+          "Result is not an array: " + parser.getCurrentToken() + " at " + parser.getCurrentLocation());
+      }
+      consumer.accept(readResult(parser));
+    }
+  }
+
+  private static EnrichedUser readResult(JsonParser parser) throws IOException {
+    Long startTs = readNullableLong(parser);
+    Long endTs = readNullableLong(parser);
+    long highBits = nextValue(parser).getValueAsLong();
+    long lowBits = nextValue(parser).getValueAsLong();
+    String user = nextValue(parser).getText();
+    if (parser.nextToken() != JsonToken.END_ARRAY) {
+      throw wrongSize(parser);
+    }
+    return new EnrichedUser(startTs, endTs, new IpUtil.IpPair(highBits, lowBits), user);
+  }
+
+  private static Long readNullableLong(JsonParser parser) throws IOException {
+    return nextValue(parser).getCurrentToken() == JsonToken.VALUE_NULL ? null : parser.getValueAsLong();
+  }
+
+  private static JsonParser nextValue(JsonParser parser) throws IOException {
+    JsonToken token = parser.nextToken();
+    if (token == JsonToken.END_ARRAY) {
+      throw wrongSize(parser);
+    }
+    if (token == null || !token.isScalarValue()) {
+      throw new IllegalArgumentException(
+        "Result value is not a scalar: " + token + " at " + parser.getCurrentLocation());
+    }
+    return parser;
+  }
+
+  private static IllegalArgumentException wrongSize(JsonParser parser) {
+    return new IllegalArgumentException(
+      "Result array has wrong size (expected: " + RESULT_SIZE + ") at " + parser.getCurrentLocation());
+  }
+
+  private EnrichedUserReader() {}
+}
@@ -1,125 +1,236 @@
 package cs.drill.de;
 
-import lombok.NoArgsConstructor;
-
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
- * Cache for time ranges and related to them user names.
+ * Cache for time ranges and related to them user ids (see {@link UserNames}).
+ *
+ * Ranges are kept in primitive arrays: sorted boundaries and ids of users starting at every
+ * boundary, the last boundary always ends a range. A boundary belongs to the range it starts,
+ * only the last one belongs to the range it ends. An ip with a single range costs about 90
+ * bytes of heap.
  */
-@NoArgsConstructor
 public class TimeUserCache {
+  private static final int INITIAL_CAPACITY = 2;
+
   /**
-   * Timestamps contain next timestamps. Corresponding index in users list contains username
-   * which match to time period started by matching timestamp.
+   * Boundaries contain next timestamps. Corresponding index in user ids contains id of user
+   * of time period started by matching boundary.
    */
-  private final List<Long> timestamps = new ArrayList<>();
-  private final List<String> users = new ArrayList<>();
+  private long[] boundaries = new long[INITIAL_CAPACITY];
+  private int[] userIds = new int[INITIAL_CAPACITY];
+  private int size;
+
+  public TimeUserCache() {
+  }
 
   /**
-   * Gets user name for given timestamp.
-   * Underneath if provided time ranges contains given timestamp then username for time
-   * range is returned.
-   * @param timestamp timestamp in millis
-   * @return String username or null if not known/unspecified
+   * Creates cache of restored ranges, arrays are kept without copying.
    */
-  public String getUser(long timestamp) {
-    if (timestamps.isEmpty()) {
-      return null;
-    }
-    if (timestamp > timestamps.get(timestamps.size() - 1)) {
-      return null;
+  TimeUserCache(long[] boundaries, int[] userIds) {
+    if (boundaries.length != userIds.length) {
+      throw new IllegalArgumentException("Got " + boundaries.length + " boundaries and "
+        + userIds.length + " user ids");
     }
-    int index = timestampBisect(timestamp, 0, timestamps.size() - 1);
-    return users.get(index);
+    this.boundaries = boundaries;
+    this.userIds = userIds;
+    this.size = boundaries.length;
   }
 
   /**
-   * Adds user for the specified time bucket.
-   * Can only add to the end of cache (sorted by buckets).
+   * Gets id of user for given timestamp.
+   * @param timestamp timestamp in millis
+   * @return id of user of time range containing timestamp or {@link UserNames#NO_USER}
+   */
+  public int getUserId(long timestamp) {
+    int index = findRange(timestamp);
+    return index < 0 ? UserNames.NO_USER : userIds[index];
+  }
+
+  /**
+   * Adds user for the specified time range.
+   *
+   * Range starting not before the last range is treated as the newest state of an ip:
+   * it ends the last range (provisional ends of open ranges are replaced). Older range is
+   * merged in, it overrides known users in its time range only.
    * @param startTs time range start in millis
    * @param endTs time range end in millis
-   * @param userName username
-   * @throws IllegalArgumentException when trying to add range which is not after last added
+   * @param userId id of user
    */
-  public void addNextUser(long startTs, long endTs, String userName) {
-    if (timestamps.isEmpty()) {
-      addNewRange(startTs, endTs, userName);
+  public void addUser(long startTs, long endTs, int userId) {
+    if (endTs < startTs) {
+      throw new IllegalArgumentException("Range ends before start: " + startTs + " - " + endTs);
+    }
+    if (size == 0) {
+      addNewRange(startTs, endTs, userId);
     } else {
-      int lastTsIndex = timestamps.size() - 1;
-      long lastTimestamp = timestamps.get(lastTsIndex);
+      int lastTsIndex = size - 1;
+      long lastTimestamp = boundaries[lastTsIndex];
       if (lastTimestamp < startTs) {
-        addNewRange(startTs, endTs, userName);
+        addNewRange(startTs, endTs, userId);
       } else if (lastTimestamp == startTs) {
-        addToExistingRange(endTs, userName, lastTsIndex);
-      } else if (lastTimestamp > startTs && startTs >= timestamps.get(lastTsIndex - 1)) {
-        updateLastBucket(startTs, endTs, userName, lastTsIndex);
+        addToExistingRange(endTs, userId, lastTsIndex);
+      } else if (startTs >= boundaries[lastTsIndex - 1]) {
+        updateLastBucket(startTs, endTs, userId, lastTsIndex);
       } else {
-        throw new IllegalArgumentException(
-          "Cache entry is not the newest one. Cannot update cache."
-        );
+        merge(startTs, endTs, userId);
       }
     }
-    verifyLengthOfLists();
   }
 
-  private void addToExistingRange(long endTs, String userName, int lastTsIndex) {
-    timestamps.add(endTs);
-    users.set(lastTsIndex, userName);
-    users.add(null);
+  /**
+   * @return independent copy, used to update users of a published cache
+   */
+  public TimeUserCache copy() {
+    TimeUserCache copy = new TimeUserCache();
+    copy.boundaries = Arrays.copyOf(boundaries, Math.max(size, INITIAL_CAPACITY));
+    copy.userIds = Arrays.copyOf(userIds, copy.boundaries.length);
+    copy.size = size;
+    return copy;
+  }
+
+  /**
+   * @return number of boundaries
+   */
+  public int size() {
+    return size;
   }
 
-  private void updateLastBucket(long startTs, long endTs, String userName, int lastTsIndex) {
-    Long lastStartTs = timestamps.get(lastTsIndex - 1);
-    Long lastEndTs = timestamps.get(lastTsIndex);
+  long getBoundary(int index) {
+    return boundaries[index];
+  }
+
+  int getUserIdAt(int index) {
+    return userIds[index];
+  }
+
+  /**
+   * Estimated heap size in bytes.
+   */
+  public long getMemorySize() {
+    // object and two array headers
+    return 16 + 2 * 16 + (long) boundaries.length * (Long.BYTES + Integer.BYTES);
+  }
+
+  private void addToExistingRange(long endTs, int userId, int lastTsIndex) {
+    userIds[lastTsIndex] = userId;
+    append(endTs, UserNames.NO_USER);
+  }
+
+  private void updateLastBucket(long startTs, long endTs, int userId, int lastTsIndex) {
+    long lastStartTs = boundaries[lastTsIndex - 1];
+    long lastEndTs = boundaries[lastTsIndex];
 
     if (lastStartTs < startTs) {
       // new start is last end now
-      timestamps.set(lastTsIndex, startTs);
+      boundaries[lastTsIndex] = startTs;
       lastEndTs = startTs;
     }
 
     if (lastEndTs < endTs) {
       // if last inserted timestamp is smaller then provided
       // then add next bucket
-      timestamps.add(endTs);
-      users.set(lastTsIndex, userName);
-      users.add(null);
+      userIds[lastTsIndex] = userId;
+      append(endTs, UserNames.NO_USER);
     } else if (lastEndTs > endTs) {
       // if last inserted timestamp is bigger then provided then update entry (e.g. time
       // from future or constant added on the end of last entry)
-      timestamps.set(lastTsIndex, endTs);
-      users.set(lastTsIndex - 1, userName);
-    } else if (lastEndTs == endTs) {
+      boundaries[lastTsIndex] = endTs;
+      userIds[lastTsIndex - 1] = userId;
+    } else {
       // if for some case bucket matches update name
-      users.set(lastTsIndex - 1, userName);
+      userIds[lastTsIndex - 1] = userId;
     }
   }
 
-  private void addNewRange(long startTs, long endTs, String userName) {
-    timestamps.add(startTs);
-    users.add(userName);
-    timestamps.add(endTs);
-    users.add(null);
+  private void addNewRange(long startTs, long endTs, int userId) {
+    append(startTs, userId);
+    append(endTs, UserNames.NO_USER);
   }
 
-  private void verifyLengthOfLists() {
-    if (timestamps.size() != users.size()) {
-      throw new IllegalStateException("Cache lists are not consistent");
+  /**
+   * Replaces boundaries within [startTs, endTs] with the new range, user known at endTs
+   * continues after it.
+   */
+  private void merge(long startTs, long endTs, int userId) {
+    int end = find(endTs);
+    int endUserId = end < 0 ? UserNames.NO_USER : userIds[end];
+    int from = lowerBound(startTs);
+    int to = lowerBound(endTs);
+    if (to < size && boundaries[to] == endTs) {
+      to++;
     }
+    int newSize = size - (to - from) + 2;
+    ensureCapacity(newSize);
+    System.arraycopy(boundaries, to, boundaries, from + 2, size - to);
+    System.arraycopy(userIds, to, userIds, from + 2, size - to);
+    boundaries[from] = startTs;
+    userIds[from] = userId;
+    boundaries[from + 1] = endTs;
+    userIds[from + 1] = endUserId;
+    size = newSize;
+  }
+
+  private void append(long timestamp, int userId) {
+    ensureCapacity(size + 1);
+    boundaries[size] = timestamp;
+    userIds[size] = userId;
+    size++;
   }
 
-  private int timestampBisect(long timestamp, int minIndex, int maxIndex) {
-    if (maxIndex - minIndex <= 1) {
-      return minIndex;
+  private void ensureCapacity(int capacity) {
+    if (capacity > boundaries.length) {
+      int newCapacity = Math.max(capacity, boundaries.length + (boundaries.length >> 1));
+      boundaries = Arrays.copyOf(boundaries, newCapacity);
+      userIds = Arrays.copyOf(userIds, newCapacity);
     }
+  }
 
-    int middleIndex = minIndex + (maxIndex - minIndex) / 2;
-    if (timestamps.get(middleIndex) > timestamp) {
-      return timestampBisect(timestamp, minIndex, middleIndex);
-    } else {
-      return timestampBisect(timestamp, middleIndex, maxIndex);
+  /**
+   * @return index of the last boundary not after timestamp or -1 when timestamp is before
+   * the first boundary
+   */
+  int find(long timestamp) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (boundaries[middle] <= timestamp) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
+    }
+    return low - 1;
+  }
+
+  /**
+   * @return index of the boundary starting range of timestamp, as {@link #find(long)} but the
+   * last boundary belongs to the last range, or -1 when timestamp is before the first boundary
+   */
+  int findRange(long timestamp) {
+    int index = find(timestamp);
+    if (index > 0 && index == size - 1 && boundaries[index] == timestamp) {
+      // the end of the last range is the last time its user was seen
+      index--;
+    }
+    return index;
+  }
+
+  /**
+   * @return index of the first boundary not before timestamp, size when there is no such boundary
+   */
+  private int lowerBound(long timestamp) {
+    int low = 0;
+    int high = size;
+    while (low < high) {
+      int middle = (low + high) >>> 1;
+      if (boundaries[middle] < timestamp) {
+        low = middle + 1;
+      } else {
+        high = middle;
+      }
     }
+    return low;
   }
 }
@@ -1,27 +1,63 @@
 package cs.drill.de;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import cs.drill.rest.Poller;
 import cs.drill.rest.RestClient;
 import cs.drill.rest.RestClientException;
+import cs.drill.util.EnrichmentConfig;
+import cs.drill.util.LocalSnapshots;
+import org.apache.drill.exec.ops.UdfMetrics;
+import org.apache.drill.exec.store.sys.EnrichmentCache;
+import org.apache.drill.exec.store.sys.EnrichmentCacheRegistry;
 
-import java.io.IOException;
-import java.lang.ref.SoftReference;
-import java.util.Comparator;
-import java.util.List;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.nio.ByteBuffer;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 public class UserCacheManager {
   // TODO: When migrate to presto we need to handle that properly.
   // Don't want to lose time with drill resource management
-  private static final String DE_ENDPOINT = "http://data-enrichment:8888/ip-user";
+  public static final String ENDPOINT_PATH = EnrichmentConfig.ROOT + ".data_enrichment.endpoint";
+  private static final String DEFAULT_ENDPOINT = "http://data-enrichment:8888/ip-user";
   private static final int RELOAD_PERIOD_MIN = 5;
-  private static final ScheduledExecutorService SCHEDULED_THREAD = Executors.newSingleThreadScheduledExecutor();
-  private SoftReference<TimedIpCache<String>> cacheInstance = new SoftReference<>(null);
+  private static final String CACHE_NAME = "user_name";
+  private static final String CURSOR_STATS_NAME = "user_name_cursor";
+  private static final int DEFAULT_MAX_IPS = 4_000_000;
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
+  private static final LocalSnapshots SNAPSHOTS = LocalSnapshots.getInstance();
+  private static final String SNAPSHOT_NAME = "user_cache";
+  /**
+   * Minimal time between snapshots saved after updates, full reloads are always saved.
+   */
+  private static final long SNAPSHOT_PERIOD_MS = TimeUnit.HOURS.toMillis(1);
+  /**
+   * Published users, replaced as a whole by reloads and never modified. Index is kept strongly,
+   * its size is limited by number of ips instead.
+   */
+  private volatile UserIndex index;
+  private final int maxIps;
+  private final LongAdder hits = new LongAdder();
+  private final LongAdder misses = new LongAdder();
+  private final LongAdder cursorHits = new LongAdder();
+  private final LongAdder cursorSearches = new LongAdder();
+  private final AtomicLong rejectedIps = new AtomicLong();
+  private final AtomicLong reloads = new AtomicLong();
+  private final AtomicLong reloadFailures = new AtomicLong();
+  private volatile long lastReloadDuration = -1;
+  private volatile long lastReloadTime = -1;
   private final RestClient restClient;
+  private final String endpoint;
+  /**
+   * Serializes reloads, so an update is never applied to an index replaced in the meantime.
+   */
   private final Object cacheInitializationLock = new Object();
-  private long lastUpdateTime = 0;
+  /**
+   * Time users are fetched up to, also the version of published users.
+   */
+  private volatile long lastUpdateTime = 0;
+  private long lastSnapshotTime = 0;
 
   private static class LazyHolder {
     static final UserCacheManager INSTANCE = new UserCacheManager();
@@ -33,23 +69,43 @@ public class UserCacheManager {
 
   private UserCacheManager() {
     this.restClient = new RestClient();
-    cs.drill.util.Logger.info("Scheduling UserCacheReloader");
-    SCHEDULED_THREAD.scheduleAtFixedRate(
-        new UserCacheReloader(this),
-        0,
-        RELOAD_PERIOD_MIN,
-        TimeUnit.MINUTES
-    );
+    this.endpoint = EnrichmentConfig.getString(ENDPOINT_PATH, DEFAULT_ENDPOINT);
+    this.maxIps = EnrichmentConfig.getInt(
+      EnrichmentConfig.ROOT + ".user_cache.max_ips", DEFAULT_MAX_IPS);
+    EnrichmentCacheRegistry.register(new Stats());
+    EnrichmentCacheRegistry.register(new CursorStats());
+    restoreSnapshot();
+    Poller.schedule("UserCacheReloader", RELOAD_PERIOD_MIN, TimeUnit.MINUTES,
+        new UserCacheReloader(this));
   }
 
   public String getUser(long ip1, long ip2, long timestamp) {
-    TimedIpCache<String> cache = cacheInstance.get();
-    if (cache == null) {
+    UserIndex current = index;
+    if (current == null) {
       // Disabled throwing on performance concerns
+      misses.increment();
       return null;
+    }
+    String user = current.get(ip1, ip2, timestamp);
+    if (user == null) {
+      misses.increment();
     } else {
-      return cache.get(ip1, ip2, timestamp);
+      hits.increment();
     }
+    return user;
+  }
+
+  /**
+   * @return new cursor resolving users of published index, to be kept by a single function
+   * instance
+   */
+  public UserCursor newCursor(UdfMetrics metrics) {
+    return new UserCursor(() -> index, this::countCursorRow, metrics);
+  }
+
+  private void countCursorRow(boolean found, boolean fromCursor) {
+    (found ? hits : misses).increment();
+    (fromCursor ? cursorHits : cursorSearches).increment();
   }
 
   /**
@@ -57,7 +113,7 @@ public class UserCacheManager {
    */
   public void fetchCacheIfNotExist() throws CacheException {
     synchronized (cacheInitializationLock) {
-      if (cacheInstance.get() == null) {
+      if (index == null) {
         forceRefreshCacheSync();
         cs.drill.util.Logger.debug("Cache refreshed");
       } else {
@@ -67,82 +123,268 @@ public class UserCacheManager {
   }
 
   boolean doesCacheExist() {
-    return cacheInstance.get() != null;
+    return index != null;
   }
 
+  /**
+   * Builds new index of all users.
+   * @throws CacheException
+   */
   void forceRefreshCacheSync() throws CacheException {
     cs.drill.util.Logger.debug("Cache is refreshing");
-    TimedIpCache<String> newCache = createCache();
-    setCacheInstance(newCache);
-  }
-
-  private void setCacheInstance(TimedIpCache<String> newCache) {
-    cacheInstance = new SoftReference<>(newCache);
+    synchronized (cacheInitializationLock) {
+      reload(null);
+    }
   }
 
   /**
-   * Updates existing cache.
+   * Publishes existing index updated with users changed since last reload.
    * @throws CacheException
    */
   void updateCache() throws CacheException {
-    if (!doesCacheExist()) {
-      throw new CacheException("Cache is not initialized");
+    synchronized (cacheInitializationLock) {
+      if (!doesCacheExist()) {
+        throw new CacheException("Cache is not initialized");
+      }
+      reload(lastUpdateTime);
     }
-    List<EnrichedUser> enrichedUsers = getEnrichedUsers(lastUpdateTime);
-    populateCache(cacheInstance.get(), enrichedUsers);
   }
 
-  private TimedIpCache<String> createCache() throws CacheException {
-    List<EnrichedUser> enrichedUsers = getEnrichedUsers();
-
-    UserTimedIpCache newCache = new UserTimedIpCache();
-    populateCache(newCache, enrichedUsers);
+  private void reload(Long timestamp) throws CacheException {
+    long startTime = System.currentTimeMillis();
+    long start = System.nanoTime();
+    try {
+      UserRecords records = getEnrichedUsers(timestamp);
+      UserIndex.Result result = timestamp == null
+        ? UserIndex.build(records, maxIps)
+        : index.update(records);
+      index = result.index;
+      // users changed during the fetch are fetched again by next update
+      lastUpdateTime = startTime;
+      logReload(records, result);
+    } catch (CacheException | RuntimeException exc) {
+      reloadFailures.incrementAndGet();
+      throw exc;
+    }
+    lastReloadDuration = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    lastReloadTime = System.currentTimeMillis();
+    reloads.incrementAndGet();
+    if (timestamp == null || startTime - lastSnapshotTime >= SNAPSHOT_PERIOD_MS) {
+      saveSnapshot(startTime);
+    }
+  }
 
-    return newCache;
+  /**
+   * Publishes users saved by the last run before anything is fetched, so the first reload only
+   * updates them.
+   */
+  private void restoreSnapshot() {
+    ByteBuffer buffer = SNAPSHOTS.map(SNAPSHOT_NAME);
+    if (buffer == null) {
+      return;
+    }
+    try {
+      UserIndexSnapshot snapshot = UserIndexSnapshot.read(buffer, maxIps);
+      synchronized (cacheInitializationLock) {
+        index = snapshot.index;
+        lastUpdateTime = snapshot.updateTime;
+        lastSnapshotTime = snapshot.updateTime;
+      }
+      cs.drill.util.Logger.info("User cache restored with users of " + snapshot.index.size() + " ips");
+    } catch (IllegalArgumentException exc) {
+      // corrupt snapshot, all users are fetched by the first reload
+      cs.drill.util.Logger.warn("Can't restore user cache snapshot", exc);
+    }
   }
 
-  private void populateCache(TimedIpCache<String> cache, List<EnrichedUser> enrichedUsers) {
-    // that kind of sort can be slow
-    enrichedUsers.sort(Comparator.comparing(EnrichedUser::getStartTs));
+  private void saveSnapshot(long updateTime) {
+    UserIndex current = index;
+    SNAPSHOTS.write(SNAPSHOT_NAME, output -> UserIndexSnapshot.write(current, updateTime, output));
+    lastSnapshotTime = updateTime;
+  }
 
-    for (EnrichedUser enrichedUser : enrichedUsers) {
-      cache.put(
-        enrichedUser.getIp().getHighBits(),
-        enrichedUser.getIp().getLowBits(),
-        enrichedUser.getStartTs(),
-        enrichedUser.getEndTs(),
-        enrichedUser.getUser()
-      );
+  private void logReload(UserRecords records, UserIndex.Result result) {
+    cs.drill.util.Logger.debug("User cache reloaded with " + records.size() + " users of "
+      + records.getIpCount() + " ips");
+    if (result.rejectedCount > 0) {
+      rejectedIps.addAndGet(result.rejectedCount);
+      cs.drill.util.Logger.warn("User cache is limited to " + maxIps + " ips, users of "
+        + result.rejectedCount + " ips were not cached");
+    }
+    if (records.getSkippedCount() > 0) {
+      cs.drill.util.Logger.warn("User cache skipped " + records.getSkippedCount()
+        + " users without start timestamp or with invalid time range");
     }
-
-    lastUpdateTime = System.currentTimeMillis();
   }
 
   /**
-   * Gets user names for ips from DataEnrichment project.
+   * Gets user names for ips from DataEnrichment project, response is parsed while it is read.
    * If timestamp is not provided (null) all records will be fetched.
    * @param timestamp
    * @return
    * @throws CacheException
    */
-  private List<EnrichedUser> getEnrichedUsers(Long timestamp) throws CacheException {
+  private UserRecords getEnrichedUsers(Long timestamp) throws CacheException {
     try {
       String getParams = "";
       if (timestamp != null) {
         getParams = "?ts_from=" + timestamp;
       }
-      String json = restClient.getJson(DE_ENDPOINT + getParams);
-      ObjectMapper objectMapper = new ObjectMapper();
-      JsonResults results = objectMapper.readValue(json, JsonResults.class);
-      return results.getEnrichedUsers();
-    } catch (IOException | RestClientException exc) {
+      return restClient.read(endpoint + getParams, content -> {
+        UserRecords records = new UserRecords();
+        try (JsonParser parser = JSON_FACTORY.createParser(content)) {
+          EnrichedUserReader.read(parser, records::add);
+        }
+        return records;
+      });
+    } catch (IllegalArgumentException | RestClientException exc) {
       throw new CacheException("Cache initialization exception", exc);
     }
   }
 
-  private List<EnrichedUser> getEnrichedUsers() throws CacheException {
-    return getEnrichedUsers(null);
+  /**
+   * Statistics of user cache shown in sys.enrichment_caches table.
+   */
+  private class Stats implements EnrichmentCache {
+    @Override
+    public String getName() {
+      return CACHE_NAME;
+    }
+
+    @Override
+    public long getEntries() {
+      UserIndex current = index;
+      return current == null ? 0 : current.size();
+    }
+
+    @Override
+    public long getCapacity() {
+      return maxIps;
+    }
+
+    @Override
+    public long getMemoryBudget() {
+      return -1;
+    }
+
+    @Override
+    public long getMemoryUsed() {
+      UserIndex current = index;
+      return current == null ? 0 : current.getMemorySize();
+    }
+
+    @Override
+    public long getHits() {
+      return hits.sum();
+    }
+
+    @Override
+    public long getMisses() {
+      return misses.sum();
+    }
+
+    /**
+     * Index does not evict users, ips over the limit are rejected instead.
+     */
+    @Override
+    public long getEvictions() {
+      return rejectedIps.get();
+    }
+
+    @Override
+    public long getReloads() {
+      return reloads.get();
+    }
+
+    @Override
+    public long getReloadFailures() {
+      return reloadFailures.get();
+    }
+
+    @Override
+    public long getLastReloadDuration() {
+      return lastReloadDuration;
+    }
+
+    @Override
+    public long getLastReloadTime() {
+      return lastReloadTime;
+    }
+
+    @Override
+    public long getVersion() {
+      return index == null ? -1 : lastUpdateTime;
+    }
   }
 
+  /**
+   * Statistics of {@link UserCursor}s shown in sys.enrichment_caches table: hits are rows
+   * resolved from remembered time range, misses are rows which needed a lookup.
+   */
+  private class CursorStats implements EnrichmentCache {
+    @Override
+    public String getName() {
+      return CURSOR_STATS_NAME;
+    }
+
+    @Override
+    public long getEntries() {
+      return 0;
+    }
+
+    @Override
+    public long getCapacity() {
+      return -1;
+    }
+
+    @Override
+    public long getMemoryBudget() {
+      return -1;
+    }
+
+    @Override
+    public long getMemoryUsed() {
+      return 0;
+    }
+
+    @Override
+    public long getHits() {
+      return cursorHits.sum();
+    }
 
+    @Override
+    public long getMisses() {
+      return cursorSearches.sum();
+    }
+
+    @Override
+    public long getEvictions() {
+      return 0;
+    }
+
+    @Override
+    public long getReloads() {
+      return reloads.get();
+    }
+
+    @Override
+    public long getReloadFailures() {
+      return reloadFailures.get();
+    }
+
+    @Override
+    public long getLastReloadDuration() {
+      return lastReloadDuration;
+    }
+
+    @Override
+    public long getLastReloadTime() {
+      return lastReloadTime;
+    }
+
+    @Override
+    public long getVersion() {
+      return index == null ? -1 : lastUpdateTime;
+    }
+  }
 }
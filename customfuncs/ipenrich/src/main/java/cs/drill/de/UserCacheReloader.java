@@ -1,13 +1,22 @@
 package cs.drill.de;
 
+import cs.drill.rest.Poller;
 import lombok.AllArgsConstructor;
 
 @AllArgsConstructor
-class UserCacheReloader implements Runnable {
+class UserCacheReloader implements Runnable, Poller.Reload {
   private final UserCacheManager cacheManager;
 
   @Override
   public void run() {
+    reload();
+  }
+
+  /**
+   * @return false when reload failed, so it is retried sooner
+   */
+  @Override
+  public boolean reload() {
     try {
       cs.drill.util.Logger.debug("Reloading cache");
       if (cacheManager.doesCacheExist()) {
@@ -17,8 +26,10 @@ class UserCacheReloader implements Runnable {
         // build new cache
         cacheManager.forceRefreshCacheSync();
       }
+      return true;
     } catch (Exception exc) {
       cs.drill.util.Logger.trace("An exception occurred during cache reload", exc);
+      return false;
     }
   }
 }
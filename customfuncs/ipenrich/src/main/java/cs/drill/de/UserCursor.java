@@ -0,0 +1,92 @@
+package cs.drill.de;
+
+import org.apache.drill.exec.ops.UdfMetrics;
+
+import java.util.function.Supplier;
+
+/**
+ * Resolves users of a single function instance, remembers time range of the last resolved
+ * user. Flows are usually read in timestamp order per ip, so next rows of an ip fall into
+ * the remembered range and are resolved without any lookup.
+ *
+ * Published index is checked on every call, so a reload is visible to the next row.
+ * Every row is counted by {@link StatsConsumer} right away, so nothing is lost when the function
+ * instance is dropped, and into {@link UdfMetrics} of the operator evaluating the function.
+ *
+ * Not thread safe, every function instance keeps its own cursor.
+ */
+public final class UserCursor {
+  private final Supplier<UserIndex> indexes;
+  private final StatsConsumer stats;
+  private final UdfMetrics metrics;
+  private UserIndex index;
+  private boolean positioned;
+  private long ip1;
+  private long ip2;
+  /**
+   * Users of the current ip, null when ip is not indexed.
+   */
+  private TimeUserCache users;
+  /**
+   * Time range [from, to) of the current user.
+   */
+  private long from;
+  private long to;
+  private String user;
+
+  @FunctionalInterface
+  interface StatsConsumer {
+    /**
+     * Counts a resolved row.
+     * @param found whether user of the row is known
+     * @param fromCursor whether the row was resolved from the remembered time range, not by
+     * lookup of ip or time range
+     */
+    void count(boolean found, boolean fromCursor);
+  }
+
+  UserCursor(Supplier<UserIndex> indexes, StatsConsumer stats, UdfMetrics metrics) {
+    this.indexes = indexes;
+    this.stats = stats;
+    this.metrics = metrics;
+  }
+
+  public String getUser(long ip1, long ip2, long timestamp) {
+    UserIndex current = indexes.get();
+    if (current != index) {
+      index = current;
+      positioned = false;
+    }
+    boolean fromCursor =
+        positioned && this.ip1 == ip1 && this.ip2 == ip2 && from <= timestamp && timestamp < to;
+    if (fromCursor) {
+      metrics.countMemoHit();
+    } else {
+      long start = System.nanoTime();
+      seek(ip1, ip2, timestamp);
+      metrics.countBackendCall(start);
+    }
+    stats.count(user != null, fromCursor);
+    metrics.countLookup(user != null);
+    return user;
+  }
+
+  private void seek(long ip1, long ip2, long timestamp) {
+    if (!positioned || this.ip1 != ip1 || this.ip2 != ip2) {
+      users = index == null ? null : index.getUsers(ip1, ip2);
+      this.ip1 = ip1;
+      this.ip2 = ip2;
+      positioned = true;
+    }
+    if (users == null) {
+      from = Long.MIN_VALUE;
+      to = Long.MAX_VALUE;
+      user = null;
+      return;
+    }
+    int range = users.findRange(timestamp);
+    from = range < 0 ? Long.MIN_VALUE : users.getBoundary(range);
+    to = range + 1 < users.size() ? users.getBoundary(range + 1) : Long.MAX_VALUE;
+    user = range < 0 ? null : index.getUserName(users.getUserIdAt(range));
+  }
+}
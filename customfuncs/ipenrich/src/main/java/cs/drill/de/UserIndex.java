@@ -0,0 +1,189 @@
+package cs.drill.de;
+
+/**
+ * Users of ips published to readers, never modified after publication.
+ *
+ * User names are resolved through array of {@link UserNames} captured when index is created,
+ * so readers never see the dictionary being extended by next updates.
+ *
+ * Full reload builds a new base. Incremental updates copy only users of updated ips into
+ * a small delta checked before the base, so an update does not copy the whole index and
+ * readers never see a cache being modified. Delta is merged into a new base when it grows
+ * over a quarter of the base.
+ */
+final class UserIndex {
+  private static final int MIN_MERGED_DELTA = 4096;
+
+  private final UserTimedIpCache base;
+  private final UserTimedIpCache delta;
+  private final String[] userNames;
+  /**
+   * Number of delta ips missing in base.
+   */
+  private final int newIpCount;
+  private final int maxSize;
+
+  private UserIndex(UserTimedIpCache base, UserTimedIpCache delta, int newIpCount, int maxSize) {
+    this.base = base;
+    this.delta = delta;
+    this.userNames = base.getNames().getNames();
+    this.newIpCount = newIpCount;
+    this.maxSize = maxSize;
+  }
+
+  /**
+   * Outcome of building an index, counts what could not be indexed.
+   */
+  static final class Result {
+    final UserIndex index;
+    /**
+     * Number of ips rejected because of the limit.
+     */
+    final long rejectedCount;
+
+    private Result(UserIndex index, long rejectedCount) {
+      this.index = index;
+      this.rejectedCount = rejectedCount;
+    }
+  }
+
+  @FunctionalInterface
+  interface IpUsersConsumer {
+    void accept(long ip1, long ip2, TimeUserCache users);
+  }
+
+  /**
+   * Creates index of restored users.
+   */
+  static UserIndex of(UserTimedIpCache base) {
+    return new UserIndex(base, newDelta(base.getNames()), 0, base.getMaxSize());
+  }
+
+  /**
+   * Builds index of records, at most maxSize ips are indexed.
+   */
+  static Result build(UserRecords records, int maxSize) {
+    UserTimedIpCache base = new UserTimedIpCache(maxSize);
+    UserNames names = base.getNames();
+    records.forEachIp((ip1, ip2, ids, count) -> {
+      TimeUserCache users = new TimeUserCache();
+      addUsers(users, names, records, ids, count);
+      base.putUsers(ip1, ip2, users);
+    });
+    UserIndex index = new UserIndex(base, newDelta(names), 0, maxSize);
+    return new Result(index, base.getRejectedCount());
+  }
+
+  String get(long ip1, long ip2, long timestamp) {
+    TimeUserCache users = getUsers(ip1, ip2);
+    return users == null ? null : getUserName(users.getUserId(timestamp));
+  }
+
+  String getUserName(int userId) {
+    return UserNames.getName(userNames, userId);
+  }
+
+  /**
+   * @return new index with records added to users of this one, this index is not modified
+   */
+  Result update(UserRecords records) {
+    UserNames names = base.getNames();
+    UserTimedIpCache newDelta = newDelta(names);
+    long[] rejectedCount = {0};
+    int[] newIps = {newIpCount};
+    records.forEachIp((ip1, ip2, ids, count) -> {
+      TimeUserCache users = getUsers(ip1, ip2);
+      if (users == null) {
+        if (base.size() + newIps[0] >= maxSize) {
+          rejectedCount[0]++;
+          return;
+        }
+        newIps[0]++;
+        users = new TimeUserCache();
+      } else {
+        users = users.copy();
+      }
+      addUsers(users, names, records, ids, count);
+      newDelta.putUsers(ip1, ip2, users);
+    });
+    for (int entry = 0; entry < delta.size(); entry++) {
+      long ip1 = delta.getIp1(entry);
+      long ip2 = delta.getIp2(entry);
+      if (newDelta.getUsers(ip1, ip2) == null) {
+        newDelta.putUsers(ip1, ip2, delta.getUsers(entry));
+      }
+    }
+
+    UserIndex index = new UserIndex(base, newDelta, newIps[0], maxSize);
+    if (newDelta.size() > Math.max(MIN_MERGED_DELTA, base.size() / 4)) {
+      index = index.merge();
+    }
+    return new Result(index, rejectedCount[0]);
+  }
+
+  /**
+   * Passes users of every indexed ip, users must not be modified.
+   */
+  void forEachIp(IpUsersConsumer consumer) {
+    for (int entry = 0; entry < base.size(); entry++) {
+      long ip1 = base.getIp1(entry);
+      long ip2 = base.getIp2(entry);
+      consumer.accept(ip1, ip2, getUsers(ip1, ip2));
+    }
+    for (int entry = 0; entry < delta.size(); entry++) {
+      long ip1 = delta.getIp1(entry);
+      long ip2 = delta.getIp2(entry);
+      if (base.getUsers(ip1, ip2) == null) {
+        consumer.accept(ip1, ip2, delta.getUsers(entry));
+      }
+    }
+  }
+
+  UserNames getNames() {
+    return base.getNames();
+  }
+
+  /**
+   * @return number of indexed ips
+   */
+  int size() {
+    return base.size() + newIpCount;
+  }
+
+  /**
+   * Estimated heap size of ip indexes in bytes (without users).
+   */
+  long getMemorySize() {
+    return base.getMemorySize() + delta.getMemorySize() + base.getNames().getMemorySize();
+  }
+
+  /**
+   * @return users of ip or null when ip is not indexed, returned users are not modified
+   */
+  TimeUserCache getUsers(long ip1, long ip2) {
+    TimeUserCache users = delta.getUsers(ip1, ip2);
+    return users == null ? base.getUsers(ip1, ip2) : users;
+  }
+
+  /**
+   * Users are shared with this index, they are not modified anymore.
+   */
+  private UserIndex merge() {
+    UserTimedIpCache merged = new UserTimedIpCache(maxSize, base.getNames());
+    forEachIp(merged::putUsers);
+    return new UserIndex(merged, newDelta(merged.getNames()), 0, maxSize);
+  }
+
+  private static UserTimedIpCache newDelta(UserNames names) {
+    return new UserTimedIpCache(Integer.MAX_VALUE, names);
+  }
+
+  private static void addUsers(TimeUserCache users, UserNames names, UserRecords records,
+                               int[] ids, int count) {
+    for (int i = 0; i < count; i++) {
+      int record = ids[i];
+      users.addUser(records.getStartTs(record), records.getEndTs(record),
+        names.getId(records.getUser(record)));
+    }
+  }
+}
@@ -0,0 +1,133 @@
+package cs.drill.de;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Binary snapshot of {@link UserIndex} saved for warm start.
+ *
+ * Numbers are big endian: magic, version, time of the last update, user names (count and
+ * UTF-8 length and bytes of every name in order of ids) and ips (count and ip1, ip2, number
+ * of boundaries, boundaries and user ids of every ip).
+ *
+ * Snapshot is read into heap arrays of a new index, nothing refers to the read buffer afterwards.
+ * Ranges are validated as {@link TimeUserCache} keeps them, so a damaged snapshot is rejected
+ * and the index is fetched again instead of failing later updates.
+ */
+final class UserIndexSnapshot {
+  private static final int MAGIC = 0x55534552; // USER
+  private static final int VERSION = 1;
+
+  final UserIndex index;
+  /**
+   * Time of the last update included in the snapshot, next update fetches users since then.
+   */
+  final long updateTime;
+
+  private UserIndexSnapshot(UserIndex index, long updateTime) {
+    this.index = index;
+    this.updateTime = updateTime;
+  }
+
+  static void write(UserIndex index, long updateTime, DataOutputStream output) throws IOException {
+    output.writeInt(MAGIC);
+    output.writeInt(VERSION);
+    output.writeLong(updateTime);
+    UserNames names = index.getNames();
+    output.writeInt(names.size());
+    for (int id = 0; id < names.size(); id++) {
+      byte[] name = names.getName(id).getBytes(StandardCharsets.UTF_8);
+      output.writeInt(name.length);
+      output.write(name);
+    }
+    output.writeInt(index.size());
+    try {
+      index.forEachIp((ip1, ip2, users) -> {
+        try {
+          output.writeLong(ip1);
+          output.writeLong(ip2);
+          output.writeInt(users.size());
+          for (int i = 0; i < users.size(); i++) {
+            output.writeLong(users.getBoundary(i));
+          }
+          for (int i = 0; i < users.size(); i++) {
+            output.writeInt(users.getUserIdAt(i));
+          }
+        } catch (IOException exc) {
+          throw new UncheckedIOException(exc);
+        }
+      });
+    } catch (UncheckedIOException exc) {
+      throw exc.getCause();
+    }
+  }
+
+  /**
+   * Reads snapshot, at most maxSize ips are restored.
+   * @throws IllegalArgumentException when buffer does not contain a valid snapshot
+   */
+  static UserIndexSnapshot read(ByteBuffer buffer, int maxSize) {
+    try {
+      if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+        throw new IllegalArgumentException("Unknown format of user snapshot");
+      }
+      long updateTime = buffer.getLong();
+      UserTimedIpCache base = new UserTimedIpCache(maxSize);
+      int nameCount = buffer.getInt();
+      for (int id = 0; id < nameCount; id++) {
+        byte[] name = new byte[getLength(buffer, Byte.BYTES)];
+        buffer.get(name);
+        if (base.getNames().getId(new String(name, StandardCharsets.UTF_8)) != id) {
+          throw new IllegalArgumentException("Duplicated user name in snapshot");
+        }
+      }
+      int ipCount = buffer.getInt();
+      for (int ip = 0; ip < ipCount; ip++) {
+        long ip1 = buffer.getLong();
+        long ip2 = buffer.getLong();
+        int size = getLength(buffer, Long.BYTES + Integer.BYTES);
+        if (size < 2) {
+          throw new IllegalArgumentException("User snapshot has " + size + " boundaries of an ip");
+        }
+        long[] boundaries = new long[size];
+        buffer.asLongBuffer().get(boundaries);
+        buffer.position(buffer.position() + size * Long.BYTES);
+        for (int i = 1; i < size; i++) {
+          if (boundaries[i] < boundaries[i - 1]) {
+            throw new IllegalArgumentException("Unsorted boundaries in user snapshot");
+          }
+        }
+        int[] userIds = new int[size];
+        buffer.asIntBuffer().get(userIds);
+        buffer.position(buffer.position() + size * Integer.BYTES);
+        for (int userId : userIds) {
+          if (userId < UserNames.NO_USER || userId >= nameCount) {
+            throw new IllegalArgumentException("Unknown user id in snapshot: " + userId);
+          }
+        }
+        if (userIds[size - 1] != UserNames.NO_USER) {
+          throw new IllegalArgumentException("User snapshot has an ip without end of last range");
+        }
+        base.putUsers(ip1, ip2, new TimeUserCache(boundaries, userIds));
+      }
+      return new UserIndexSnapshot(UserIndex.of(base), updateTime);
+    } catch (BufferUnderflowException exc) {
+      throw new IllegalArgumentException("Truncated user snapshot", exc);
+    }
+  }
+
+  /**
+   * @return length of next array, validated against remaining bytes
+   */
+  private static int getLength(ByteBuffer buffer, int elementSize) {
+    int length = buffer.getInt();
+    if (length < 0 || (long) length * elementSize > buffer.remaining()) {
+      throw new IllegalArgumentException("Truncated user snapshot");
+    }
+    return length;
+  }
+}
@@ -0,0 +1,70 @@
+package cs.drill.de;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Dictionary of user names, time ranges keep int ids of users instead of names.
+ *
+ * Names are only added, so an array returned by {@link #getNames()} keeps resolving ids
+ * assigned before it was returned, also when the dictionary grows later. Names of users
+ * which are not referenced anymore are dropped by full reloads only.
+ *
+ * Not thread safe.
+ */
+final class UserNames {
+  /**
+   * Id of time ranges without user.
+   */
+  static final int NO_USER = -1;
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private final Map<String, Integer> ids = new HashMap<>();
+  private String[] names = new String[INITIAL_CAPACITY];
+
+  /**
+   * @return id of name, new id is assigned to unknown name
+   */
+  int getId(String name) {
+    if (name == null) {
+      return NO_USER;
+    }
+    Integer id = ids.get(name);
+    if (id == null) {
+      id = ids.size();
+      if (id == names.length) {
+        names = Arrays.copyOf(names, id * 2);
+      }
+      names[id] = name;
+      ids.put(name, id);
+    }
+    return id;
+  }
+
+  String getName(int id) {
+    return getName(names, id);
+  }
+
+  static String getName(String[] names, int id) {
+    return id == NO_USER ? null : names[id];
+  }
+
+  /**
+   * @return names indexed by ids, array is shared and must not be modified
+   */
+  String[] getNames() {
+    return names;
+  }
+
+  int size() {
+    return ids.size();
+  }
+
+  /**
+   * Estimated heap size of dictionary in bytes (without names).
+   */
+  long getMemorySize() {
+    return (long) names.length * Integer.BYTES + (long) ids.size() * 48;
+  }
+}
@@ -0,0 +1,161 @@
+package cs.drill.de;
+
+import cs.drill.util.IpPairIndex;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Enriched users of a single response kept in primitive columns instead of objects.
+ *
+ * Records come in any order, {@link #forEachIp} hands them out grouped by ip and sorted by
+ * start timestamp, as {@link TimeUserCache} expects. Equal user names share a single string.
+ *
+ * Not thread safe.
+ */
+final class UserRecords {
+  /**
+   * End of a session which did not end yet.
+   */
+  static final long OPEN_END = Long.MAX_VALUE;
+  private static final int INITIAL_CAPACITY = 1024;
+  private static final int NO_RECORD = -1;
+
+  private final Map<String, String> userNames = new HashMap<>();
+  private final IpPairIndex ips = new IpPairIndex(INITIAL_CAPACITY);
+  /**
+   * Records of an ip are linked from the last added one.
+   */
+  private int[] lastRecords = new int[INITIAL_CAPACITY];
+  private int[] ipCounts = new int[INITIAL_CAPACITY];
+  private int[] previousRecords = new int[INITIAL_CAPACITY];
+  private long[] startTss = new long[INITIAL_CAPACITY];
+  private long[] endTss = new long[INITIAL_CAPACITY];
+  private String[] users = new String[INITIAL_CAPACITY];
+  private int size;
+  private long skippedCount;
+
+  @FunctionalInterface
+  interface IpConsumer {
+    /**
+     * @param records numbers of ip records sorted by start timestamp, valid only during the call
+     * @param count number of ip records
+     */
+    void accept(long ip1, long ip2, int[] records, int count);
+  }
+
+  /**
+   * Adds record, records without start timestamp or ip are skipped.
+   */
+  void add(EnrichedUser user) {
+    if (user.getStartTs() == null || user.getIp() == null) {
+      skippedCount++;
+      return;
+    }
+    long endTs = user.getEndTs() == null ? OPEN_END : user.getEndTs();
+    add(user.getIp().getHighBits(), user.getIp().getLowBits(), user.getStartTs(), endTs, user.getUser());
+  }
+
+  /**
+   * Adds record, records ending before their start are skipped.
+   */
+  void add(long ip1, long ip2, long startTs, long endTs, String user) {
+    if (endTs < startTs) {
+      skippedCount++;
+      return;
+    }
+    if (size == startTss.length) {
+      previousRecords = Arrays.copyOf(previousRecords, size * 2);
+      startTss = Arrays.copyOf(startTss, size * 2);
+      endTss = Arrays.copyOf(endTss, size * 2);
+      users = Arrays.copyOf(users, size * 2);
+    }
+    int ip = ips.find(ip1, ip2);
+    if (ip < 0) {
+      ip = ips.add(ip1, ip2);
+      if (ip == lastRecords.length) {
+        lastRecords = Arrays.copyOf(lastRecords, ip * 2);
+        ipCounts = Arrays.copyOf(ipCounts, ip * 2);
+      }
+      lastRecords[ip] = NO_RECORD;
+    }
+    int record = size++;
+    startTss[record] = startTs;
+    endTss[record] = endTs;
+    users[record] = user == null ? null : userNames.computeIfAbsent(user, name -> name);
+    previousRecords[record] = lastRecords[ip];
+    lastRecords[ip] = record;
+    ipCounts[ip]++;
+  }
+
+  void forEachIp(IpConsumer consumer) {
+    int[] records = new int[16];
+    int[] buffer = new int[16];
+    for (int ip = 0; ip < ips.size(); ip++) {
+      int count = ipCounts[ip];
+      if (count > records.length) {
+        records = new int[Integer.highestOneBit(count) << 1];
+        buffer = new int[records.length];
+      }
+      int position = count;
+      for (int record = lastRecords[ip]; record != NO_RECORD; record = previousRecords[record]) {
+        records[--position] = record;
+      }
+      sortByStart(records, buffer, 0, count);
+      consumer.accept(ips.getIp1(ip), ips.getIp2(ip), records, count);
+    }
+  }
+
+  long getStartTs(int record) {
+    return startTss[record];
+  }
+
+  long getEndTs(int record) {
+    return endTss[record];
+  }
+
+  String getUser(int record) {
+    return users[record];
+  }
+
+  int size() {
+    return size;
+  }
+
+  int getIpCount() {
+    return ips.size();
+  }
+
+  /**
+   * @return number of records skipped because of missing start timestamp, ip or invalid range
+   */
+  long getSkippedCount() {
+    return skippedCount;
+  }
+
+  /**
+   * Stable merge sort, records of equal start keep order in which they were added.
+   */
+  private void sortByStart(int[] records, int[] buffer, int from, int to) {
+    if (to - from < 2) {
+      return;
+    }
+    int middle = (from + to) >>> 1;
+    sortByStart(records, buffer, from, middle);
+    sortByStart(records, buffer, middle, to);
+    if (startTss[records[middle - 1]] <= startTss[records[middle]]) {
+      return; // already ordered, the usual case
+    }
+    System.arraycopy(records, from, buffer, from, to - from);
+    int left = from;
+    int right = middle;
+    for (int i = from; i < to; i++) {
+      if (right == to || (left < middle && startTss[buffer[left]] <= startTss[buffer[right]])) {
+        records[i] = buffer[left++];
+      } else {
+        records[i] = buffer[right++];
+      }
+    }
+  }
+}
@@ -1,31 +1,137 @@
 package cs.drill.de;
 
-import java.util.HashMap;
-import java.util.Map;
+import cs.drill.util.IpPairIndex;
+
+import java.util.Arrays;
 
 /**
  * Cache responsible for storing ip-user relations in time.
+ * Number of ips is limited, users of ips over the limit are rejected.
+ * Time ranges refer to users by ids of {@link UserNames} dictionary which can be shared
+ * by several caches.
  */
 public class UserTimedIpCache implements TimedIpCache<String> {
-  private Map<Long, Map<Long, TimeUserCache>> cache = new HashMap<>();
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private final int maxSize;
+  private final UserNames names;
+  private final IpPairIndex index = new IpPairIndex(INITIAL_CAPACITY);
+  private TimeUserCache[] timeUserCaches = new TimeUserCache[INITIAL_CAPACITY];
+  private long rejectedCount;
+
+  public UserTimedIpCache() {
+    this(Integer.MAX_VALUE);
+  }
+
+  public UserTimedIpCache(int maxSize) {
+    this(maxSize, new UserNames());
+  }
+
+  UserTimedIpCache(int maxSize, UserNames names) {
+    this.maxSize = maxSize;
+    this.names = names;
+  }
 
   @Override
   public String get(long ip1, long ip2, long timestamp) {
-    Map<Long, TimeUserCache> ip1Cache = cache.get(ip1);
-    if (ip1Cache == null) {
-      return null;
-    }
-    TimeUserCache timedUserCache = ip1Cache.get(ip2);
-    if (timedUserCache == null) {
+    int entry = index.find(ip1, ip2);
+    if (entry < 0) {
       return null;
     }
-    return timedUserCache.getUser(timestamp);
+    return names.getName(timeUserCaches[entry].getUserId(timestamp));
   }
 
   @Override
   public void put(long ip1, long ip2, long startTs, long endTs, String userName) {
-    Map<Long, TimeUserCache> ip1Cache = cache.computeIfAbsent(ip1, k -> new HashMap<>());
-    TimeUserCache timedUserCache = ip1Cache.computeIfAbsent(ip2, k -> new TimeUserCache());
-    timedUserCache.addNextUser(startTs, endTs, userName);
+    int entry = index.find(ip1, ip2);
+    if (entry < 0) {
+      entry = add(ip1, ip2, new TimeUserCache());
+      if (entry < 0) {
+        return;
+      }
+    }
+    timeUserCaches[entry].addUser(startTs, endTs, names.getId(userName));
+  }
+
+  /**
+   * @return users of ip or null when ip is not cached
+   */
+  TimeUserCache getUsers(long ip1, long ip2) {
+    int entry = index.find(ip1, ip2);
+    return entry < 0 ? null : timeUserCaches[entry];
+  }
+
+  /**
+   * Sets (or replaces) all users of ip, given users are kept without copying.
+   * @return false when ip was rejected because of the limit
+   */
+  boolean putUsers(long ip1, long ip2, TimeUserCache users) {
+    int entry = index.find(ip1, ip2);
+    if (entry < 0) {
+      return add(ip1, ip2, users) >= 0;
+    }
+    timeUserCaches[entry] = users;
+    return true;
+  }
+
+  /**
+   * Entries are numbered from 0 to {@link #size()} - 1.
+   */
+  long getIp1(int entry) {
+    return index.getIp1(entry);
+  }
+
+  long getIp2(int entry) {
+    return index.getIp2(entry);
+  }
+
+  TimeUserCache getUsers(int entry) {
+    return timeUserCaches[entry];
+  }
+
+  private int add(long ip1, long ip2, TimeUserCache users) {
+    if (index.size() >= maxSize) {
+      rejectedCount++;
+      return -1;
+    }
+    int entry = index.add(ip1, ip2);
+    if (entry == timeUserCaches.length) {
+      timeUserCaches = Arrays.copyOf(timeUserCaches, entry * 2);
+    }
+    timeUserCaches[entry] = users;
+    return entry;
+  }
+
+  /**
+   * @return number of ips with known users
+   */
+  public int size() {
+    return index.size();
+  }
+
+  public int getMaxSize() {
+    return maxSize;
+  }
+
+  /**
+   * @return number of users rejected because of ips over the limit
+   */
+  public long getRejectedCount() {
+    return rejectedCount;
+  }
+
+  UserNames getNames() {
+    return names;
+  }
+
+  /**
+   * Estimated heap size of ip index and time ranges in bytes (without user names).
+   */
+  public long getMemorySize() {
+    long size = index.getMemorySize() + (long) timeUserCaches.length * Integer.BYTES;
+    for (int entry = 0; entry < index.size(); entry++) {
+      size += timeUserCaches[entry].getMemorySize();
+    }
+    return size;
   }
 }
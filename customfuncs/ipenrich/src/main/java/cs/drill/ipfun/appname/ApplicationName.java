@@ -5,7 +5,9 @@ import org.apache.drill.exec.expr.DrillSimpleFunc;
 import org.apache.drill.exec.expr.annotations.FunctionTemplate;
 import org.apache.drill.exec.expr.annotations.Output;
 import org.apache.drill.exec.expr.annotations.Param;
+import org.apache.drill.exec.expr.annotations.Workspace;
 import org.apache.drill.exec.expr.holders.*;
+import org.apache.drill.exec.ops.UdfMetrics;
 
 import javax.inject.Inject;
 
@@ -21,17 +23,21 @@ public final class ApplicationName {
     @Param IntHolder port;
     @Output NullableVarCharHolder out;
     @Inject DrillBuf buffer;
+    @Inject UdfMetrics metrics;
+    @Workspace cs.drill.ipfun.appname.ApplicationNameMemo memo;
 
     @Override
     public void setup() {
-      //NOP
+      // memo keeps names of repeated (ip, port) pairs of this function instance
+      memo = cs.drill.ipfun.appname.ApplicationNameResolver.newMemo(metrics);
     }
 
     @Override
     public void eval() {
       // doesn't check for nulls since NULL_IF_NULL policy
-      String applicationName = cs.drill.ipfun.appname.ApplicationNameResolver.getApplicationName(ip1.value, ip2.value, port.value);
-      cs.drill.util.OutputWriter.write(out, buffer, applicationName);
+      cs.drill.util.Utf8String applicationName =
+        memo.getApplicationName(ip1.value, ip2.value, port.value);
+      buffer = cs.drill.util.OutputWriter.write(out, buffer, applicationName);
     }
   }
 
@@ -57,10 +63,13 @@ public final class ApplicationName {
     @Param NullableIntHolder port;
     @Output NullableVarCharHolder out;
     @Inject DrillBuf buffer;
+    @Inject UdfMetrics metrics;
+    @Workspace cs.drill.ipfun.appname.ApplicationNameMemo memo;
 
     @Override
     public void setup() {
-      //NOP
+      // memo keeps names of repeated (ip, port) pairs of this function instance
+      memo = cs.drill.ipfun.appname.ApplicationNameResolver.newMemo(metrics);
     }
 
     @Override
@@ -69,8 +78,9 @@ public final class ApplicationName {
         return;
       }
 
-      String applicationName = cs.drill.ipfun.appname.ApplicationNameResolver.getApplicationName(ip1.value, ip2.value, port.value);
-      cs.drill.util.OutputWriter.write(out, buffer, applicationName);
+      cs.drill.util.Utf8String applicationName =
+        memo.getApplicationName(ip1.value, ip2.value, port.value);
+      buffer = cs.drill.util.OutputWriter.write(out, buffer, applicationName);
     }
   }
 
@@ -84,17 +94,21 @@ public final class ApplicationName {
     @Param BigIntHolder ip2;
     @Output NullableVarCharHolder out;
     @Inject DrillBuf buffer;
+    @Inject UdfMetrics metrics;
+    @Workspace cs.drill.ipfun.appname.ApplicationNameMemo memo;
 
     @Override
     public void setup() {
-      //NOP
+      // memo keeps names of repeated (ip, port) pairs of this function instance
+      memo = cs.drill.ipfun.appname.ApplicationNameResolver.newMemo(metrics);
     }
 
     @Override
     public void eval() {
       // doesn't check for nulls since NULL_IF_NULL policy
-      String applicationName = cs.drill.ipfun.appname.ApplicationNameResolver.getApplicationName(ip1.value, ip2.value);
-      cs.drill.util.OutputWriter.write(out, buffer, applicationName);
+      cs.drill.util.Utf8String applicationName =
+        memo.getApplicationName(ip1.value, ip2.value);
+      buffer = cs.drill.util.OutputWriter.write(out, buffer, applicationName);
     }
   }
 
@@ -118,10 +132,13 @@ public final class ApplicationName {
     @Param NullableBigIntHolder ip2;
     @Output NullableVarCharHolder out;
     @Inject DrillBuf buffer;
+    @Inject UdfMetrics metrics;
+    @Workspace cs.drill.ipfun.appname.ApplicationNameMemo memo;
 
     @Override
     public void setup() {
-      //NOP
+      // memo keeps names of repeated (ip, port) pairs of this function instance
+      memo = cs.drill.ipfun.appname.ApplicationNameResolver.newMemo(metrics);
     }
 
     @Override
@@ -130,8 +147,9 @@ public final class ApplicationName {
         return;
       }
 
-      String applicationName = cs.drill.ipfun.appname.ApplicationNameResolver.getApplicationName(ip1.value, ip2.value);
-      cs.drill.util.OutputWriter.write(out, buffer, applicationName);
+      cs.drill.util.Utf8String applicationName =
+        memo.getApplicationName(ip1.value, ip2.value);
+      buffer = cs.drill.util.OutputWriter.write(out, buffer, applicationName);
     }
   }
 
@@ -0,0 +1,83 @@
+package cs.drill.ipfun.appname;
+
+import cs.drill.util.Utf8String;
+import org.apache.drill.exec.ops.UdfMetrics;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+
+/**
+ * Direct-mapped memo of application names resolved by a single function instance.
+ *
+ * Flows repeat the same (server ip, port) pair many times, so the last name resolved for
+ * every slot is kept and repeated pairs skip the subnet trie and port table. A pair evicts
+ * whatever was stored in its slot, there is no probing.
+ *
+ * Names are valid for a single {@link ApplicationNameResolver.Snapshot}, memo is emptied
+ * when a new enrichment is published. Lookups, memo hits and resolutions missing the memo are
+ * counted into {@link UdfMetrics} of the operator evaluating the function.
+ *
+ * Not thread safe, every function instance keeps its own memo.
+ */
+public final class ApplicationNameMemo {
+  static final int SLOTS = 1 << 12;
+  private static final int MASK = SLOTS - 1;
+
+  private final Supplier<ApplicationNameResolver.Snapshot> snapshots;
+  private final UdfMetrics metrics;
+  private final long[] ip1s = new long[SLOTS];
+  private final long[] ip2s = new long[SLOTS];
+  private final int[] ports = new int[SLOTS];
+  private final boolean[] filled = new boolean[SLOTS];
+  // names are null for pairs without any name
+  private final Utf8String[] names = new Utf8String[SLOTS];
+  private ApplicationNameResolver.Snapshot snapshot;
+
+  ApplicationNameMemo(Supplier<ApplicationNameResolver.Snapshot> snapshots, UdfMetrics metrics) {
+    this.snapshots = snapshots;
+    this.metrics = metrics;
+  }
+
+  public Utf8String getApplicationName(long ip1, long ip2, int port) {
+    Utf8String name = resolve(ip1, ip2, port);
+    metrics.countLookup(name != null);
+    return name;
+  }
+
+  public Utf8String getApplicationName(long ip1, long ip2) {
+    return getApplicationName(ip1, ip2, -1);
+  }
+
+  private Utf8String resolve(long ip1, long ip2, int port) {
+    ApplicationNameResolver.Snapshot current = snapshots.get();
+    if (current != snapshot) {
+      Arrays.fill(filled, false);
+      Arrays.fill(names, null);
+      snapshot = current;
+    }
+
+    int slot = slot(ip1, ip2, port);
+    if (filled[slot] && ip1s[slot] == ip1 && ip2s[slot] == ip2 && ports[slot] == port) {
+      metrics.countMemoHit();
+      return names[slot];
+    }
+
+    long start = System.nanoTime();
+    Utf8String name = current.getApplicationName(ip1, ip2, port);
+    metrics.countBackendCall(start);
+    ip1s[slot] = ip1;
+    ip2s[slot] = ip2;
+    ports[slot] = port;
+    names[slot] = name;
+    filled[slot] = true;
+    return name;
+  }
+
+  static int slot(long ip1, long ip2, int port) {
+    long hash = (ip1 * 0x9e3779b97f4a7c15L ^ ip2) * 0xff51afd7ed558ccdL + port;
+    hash ^= hash >>> 29;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 32;
+    return (int) hash & MASK;
+  }
+}
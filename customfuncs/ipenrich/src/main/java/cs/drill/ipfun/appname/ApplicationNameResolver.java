@@ -3,39 +3,64 @@ package cs.drill.ipfun.appname;
 import cs.drill.toucan.JsonAppEnrichment;
 import cs.drill.toucan.ToucanAppEnrichmentManager;
 import cs.drill.util.*;
+import org.apache.drill.exec.ops.UdfMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.net.Inet4Address;
-import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
-import java.util.LinkedHashMap;
 import java.util.Map;
 
 public class ApplicationNameResolver {
-  private static final String UNKNOWN_NAME = ""; // empty string is marking ip in cache as not named
-  private static Map<SubnetV4, String> ipv4Subnets = new LinkedHashMap<>();
-  private static Map<SubnetV6, String> ipv6Subnets = new LinkedHashMap<>();
-  private static String[] portNames;
+  private static final int PORT_NAMES_SIZE = 49151; // largest not ephemeral port number
+  /**
+   * Application names of subnets and ports, rebuilt on every populate and replaced as a whole,
+   * so lookups never lock and always see names of a single enrichment. Names are encoded once
+   * per populate.
+   */
+  private static volatile Snapshot snapshot = Snapshot.EMPTY;
   private static final Logger LOGGER = LoggerFactory.getLogger(ApplicationNameResolver.class);
   private static final ToucanAppEnrichmentManager MANAGER = ToucanAppEnrichmentManager.getInstance();
+  static JsonAppEnrichment lastJson = null;
+
   /**
-   * Contains resolved application names for given IP pairs.
+   * Subnet trie and dense port table, name of the most specific subnet wins over port name.
    */
-  private static final SoftIpCache<String> cache = new SoftIpCache<>();
-  static JsonAppEnrichment lastJson = null;
+  static final class Snapshot {
+    static final Snapshot EMPTY =
+      new Snapshot(SubnetTrie.empty(), new Utf8String[PORT_NAMES_SIZE]);
+
+    final SubnetTrie<Utf8String> subnets;
+    final Utf8String[] portNames;
+
+    Snapshot(SubnetTrie<Utf8String> subnets, Utf8String[] portNames) {
+      this.subnets = subnets;
+      this.portNames = portNames;
+    }
+
+    Utf8String getApplicationName(long ip1, long ip2, int port) {
+      Utf8String subnetName = subnets.lookup(ip1, ip2);
+      return subnetName != null ? subnetName : getPortName(port);
+    }
+
+    Utf8String getPortName(int port) {
+      return port > 0 && port < portNames.length ? portNames[port] : null;
+    }
+  }
 
   static {
     clear();
     MANAGER.consumer = ApplicationNameResolver::populate;
+    MANAGER.restore();
   }
 
   static void clear() {
-    ipv4Subnets.clear();
-    ipv6Subnets.clear();
-    portNames = new String[49151]; // largest not ephemeral port number
-    cache.clear();
+    publish(Snapshot.EMPTY);
+  }
+
+  private static void publish(Snapshot newSnapshot) {
+    // memos of functions notice the new snapshot on their next lookup
+    snapshot = newSnapshot;
   }
 
   static void populate(JsonAppEnrichment json) {
@@ -47,15 +72,18 @@ public class ApplicationNameResolver {
       json.getNames().size() + " names and " +
       json.getPorts().size() + " ports");
     lastJson = json;
-    clear();
-    populateNames(json.getNames());
-    populatePortNames(json.getPorts());
+    Utf8String.Pool pool = new Utf8String.Pool();
+    publish(new Snapshot(
+      buildSubnets(json.getNames(), pool),
+      buildPortNames(json.getPorts(), pool)));
   }
 
-  private static void populateNames(Map<String, String> names) {
+  private static SubnetTrie<Utf8String> buildSubnets(Map<String, String> names,
+                                                     Utf8String.Pool pool) {
+    SubnetTrie.Builder<Utf8String> builder = SubnetTrie.builder();
     for (Map.Entry<String, String> entry : names.entrySet()) {
       String subnet = entry.getKey();
-      String applicationName = entry.getValue();
+      Utf8String applicationName = pool.get(entry.getValue());
 
       int index = subnet.indexOf("/");
 
@@ -65,56 +93,25 @@ public class ApplicationNameResolver {
       try {
         InetAddress inetAddress = InetAddress.getByName(address);
 
-        if (inetAddress instanceof Inet4Address) {
-          SubnetV4 subnetV4 = new SubnetV4(address, maskLength);
-          ipv4Subnets.put(subnetV4, applicationName);
-        } else if (inetAddress instanceof Inet6Address) {
-          SubnetV6 subnetV6 = new SubnetV6(address, maskLength);
-          ipv6Subnets.put(subnetV6, applicationName);
-        } else {
-          throw new UnknownHostException();
-        }
+        builder.put(inetAddress, maskLength, applicationName);
       } catch (UnknownHostException exc) {
         LOGGER.trace("Wrong IP address `" + address + "`", exc);
       }
     }
+    return builder.build();
   }
 
-  private static void populatePortNames(Map<Integer, String> ports) {
+  private static Utf8String[] buildPortNames(Map<Integer, String> ports, Utf8String.Pool pool) {
+    Utf8String[] names = new Utf8String[PORT_NAMES_SIZE];
     for (Map.Entry<Integer, String> entry : ports.entrySet()) {
       Integer port = entry.getKey();
-      String applicationName = entry.getValue();
-      portNames[port] = applicationName;
+      names[port] = pool.get(entry.getValue());
     }
+    return names;
   }
 
   public static String getApplicationName(long ip1, long ip2, int port) {
-    String cacheValue = cache.get(ip1, ip2);
-    if (cacheValue != null) {
-      return cacheValue.equals(UNKNOWN_NAME) ? getPortName(port) : cacheValue;
-    }
-
-    if (ip1 == IpUtil.WKP) {
-      for (Map.Entry<SubnetV4, String> entry : ipv4Subnets.entrySet()) {
-        SubnetV4 subnet = entry.getKey();
-        if ((subnet.getMask() & ip2) == subnet.getAddress()) {
-          cache.put(ip1, ip2, entry.getValue());
-          return entry.getValue();
-        }
-      }
-    } else {
-      for (Map.Entry<SubnetV6, String> entry : ipv6Subnets.entrySet()) {
-        SubnetV6 subnet = entry.getKey();
-        if ((subnet.getMaskHighBits() & ip1) == subnet.getAddressHighBits()
-          && (subnet.getMaskLowBits() & ip2) == subnet.getAddressLowBits()) {
-          cache.put(ip1, ip2, entry.getValue());
-          return entry.getValue();
-        }
-      }
-    }
-
-    cache.put(ip1, ip2, UNKNOWN_NAME);
-    return getPortName(port);
+    return toString(getApplicationNameUtf8(ip1, ip2, port));
   }
 
   public static String getApplicationName(long ip1, long ip2) {
@@ -122,6 +119,29 @@ public class ApplicationNameResolver {
   }
 
   public static String getPortName(int port) {
-    return port > 0 && port < portNames.length ? portNames[port] : null;
+    return toString(snapshot.getPortName(port));
+  }
+
+  /**
+   * {@link #getApplicationName(long, long, int)} with name encoded when enrichment was populated.
+   */
+  public static Utf8String getApplicationNameUtf8(long ip1, long ip2, int port) {
+    return snapshot.getApplicationName(ip1, ip2, port);
+  }
+
+  public static Utf8String getApplicationNameUtf8(long ip1, long ip2) {
+    return getApplicationNameUtf8(ip1, ip2, -1);
+  }
+
+  /**
+   * Creates memo of names resolved by a single function instance.
+   * @param metrics counters of the operator evaluating the function
+   */
+  public static ApplicationNameMemo newMemo(UdfMetrics metrics) {
+    return new ApplicationNameMemo(() -> snapshot, metrics);
+  }
+
+  private static String toString(Utf8String name) {
+    return name == null ? null : name.toString();
   }
 }
@@ -0,0 +1,52 @@
+package cs.drill.ipfun.ipconv;
+
+import org.apache.drill.exec.expr.DrillSimpleFunc;
+import org.apache.drill.exec.expr.annotations.FunctionTemplate;
+import org.apache.drill.exec.expr.annotations.Output;
+import org.apache.drill.exec.expr.annotations.Param;
+import org.apache.drill.exec.expr.annotations.Workspace;
+import org.apache.drill.exec.expr.holders.BigIntHolder;
+import org.apache.drill.exec.expr.holders.BitHolder;
+import org.apache.drill.exec.expr.holders.VarCharHolder;
+
+/**
+ * Checks if ip is in subnet given in CIDR notation (e.g. 10.0.0.0/8 or 2001:db8::/32),
+ * the subnet is parsed once per function instance.
+ */
+public final class IpInSubnet {
+  @FunctionTemplate(
+    name = "ip_in_subnet",
+    scope = FunctionTemplate.FunctionScope.SIMPLE,
+    nulls = FunctionTemplate.NullHandling.NULL_IF_NULL
+  )
+  public static class IpInSubnetFunction implements DrillSimpleFunc {
+    @Param BigIntHolder ip1;
+    @Param BigIntHolder ip2;
+    @Param(constant = true) VarCharHolder subnet;
+    @Output BitHolder out;
+    @Workspace long mask1;
+    @Workspace long mask2;
+    @Workspace long network1;
+    @Workspace long network2;
+
+    @Override
+    public void setup() {
+      cs.drill.util.IpParser parser = new cs.drill.util.IpParser();
+      if (!parser.parseSubnet(subnet.buffer, subnet.start, subnet.end)) {
+        throw new IllegalArgumentException("Invalid subnet: "
+          + org.apache.drill.exec.expr.fn.impl.StringFunctionHelpers.getStringFromVarCharHolder(subnet));
+      }
+      mask1 = cs.drill.util.IpMask.getMask1(parser.getPrefixLength());
+      mask2 = cs.drill.util.IpMask.getMask2(parser.getPrefixLength());
+      network1 = parser.getIp1() & mask1;
+      network2 = parser.getIp2() & mask2;
+    }
+
+    @Override
+    public void eval() {
+      out.value = (ip1.value & mask1) == network1 && (ip2.value & mask2) == network2 ? 1 : 0;
+    }
+  }
+
+  private IpInSubnet() {}
+}
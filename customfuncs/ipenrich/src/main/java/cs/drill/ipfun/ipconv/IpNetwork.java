@@ -0,0 +1,62 @@
+package cs.drill.ipfun.ipconv;
+
+import org.apache.drill.exec.expr.DrillSimpleFunc;
+import org.apache.drill.exec.expr.annotations.FunctionTemplate;
+import org.apache.drill.exec.expr.annotations.Output;
+import org.apache.drill.exec.expr.annotations.Param;
+import org.apache.drill.exec.expr.holders.BigIntHolder;
+import org.apache.drill.exec.expr.holders.IntHolder;
+
+/**
+ * Halves of network address of ip for given prefix length, counted over 32 bits for ipv4
+ * and 128 bits for ipv6, e.g. ip_network2(ip1, ip2, 24) of 10.1.2.3 is ip2 of 10.1.2.0.
+ */
+public final class IpNetwork {
+  @FunctionTemplate(
+    name = "ip_network1",
+    scope = FunctionTemplate.FunctionScope.SIMPLE,
+    nulls = FunctionTemplate.NullHandling.NULL_IF_NULL
+  )
+  public static class IpNetwork1Function implements DrillSimpleFunc {
+    @Param BigIntHolder ip1;
+    @Param BigIntHolder ip2;
+    @Param IntHolder prefixLength;
+    @Output BigIntHolder out;
+
+    @Override
+    public void setup() {
+      //NOP
+    }
+
+    @Override
+    public void eval() {
+      out.value = ip1.value & cs.drill.util.IpMask.getMask1(
+        cs.drill.util.IpMask.getPrefixLength(ip1.value, prefixLength.value));
+    }
+  }
+
+  @FunctionTemplate(
+    name = "ip_network2",
+    scope = FunctionTemplate.FunctionScope.SIMPLE,
+    nulls = FunctionTemplate.NullHandling.NULL_IF_NULL
+  )
+  public static class IpNetwork2Function implements DrillSimpleFunc {
+    @Param BigIntHolder ip1;
+    @Param BigIntHolder ip2;
+    @Param IntHolder prefixLength;
+    @Output BigIntHolder out;
+
+    @Override
+    public void setup() {
+      //NOP
+    }
+
+    @Override
+    public void eval() {
+      out.value = ip2.value & cs.drill.util.IpMask.getMask2(
+        cs.drill.util.IpMask.getPrefixLength(ip1.value, prefixLength.value));
+    }
+  }
+
+  private IpNetwork() {}
+}
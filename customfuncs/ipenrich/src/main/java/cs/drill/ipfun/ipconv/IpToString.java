@@ -0,0 +1,37 @@
+package cs.drill.ipfun.ipconv;
+
+import io.netty.buffer.DrillBuf;
+import org.apache.drill.exec.expr.DrillSimpleFunc;
+import org.apache.drill.exec.expr.annotations.FunctionTemplate;
+import org.apache.drill.exec.expr.annotations.Output;
+import org.apache.drill.exec.expr.annotations.Param;
+import org.apache.drill.exec.expr.holders.BigIntHolder;
+import org.apache.drill.exec.expr.holders.VarCharHolder;
+
+import javax.inject.Inject;
+
+public final class IpToString {
+  @FunctionTemplate(
+    name = "ip_to_string",
+    scope = FunctionTemplate.FunctionScope.SIMPLE,
+    nulls = FunctionTemplate.NullHandling.NULL_IF_NULL
+  )
+  public static class IpToStringFunction implements DrillSimpleFunc {
+    @Param BigIntHolder ip1;
+    @Param BigIntHolder ip2;
+    @Output VarCharHolder out;
+    @Inject DrillBuf buffer;
+
+    @Override
+    public void setup() {
+      //NOP
+    }
+
+    @Override
+    public void eval() {
+      buffer = cs.drill.util.OutputWriter.writeIp(out, buffer, ip1.value, ip2.value);
+    }
+  }
+
+  private IpToString() {}
+}
@@ -0,0 +1,68 @@
+package cs.drill.ipfun.ipconv;
+
+import org.apache.drill.exec.expr.DrillSimpleFunc;
+import org.apache.drill.exec.expr.annotations.FunctionTemplate;
+import org.apache.drill.exec.expr.annotations.Output;
+import org.apache.drill.exec.expr.annotations.Param;
+import org.apache.drill.exec.expr.annotations.Workspace;
+import org.apache.drill.exec.expr.holders.NullableBigIntHolder;
+import org.apache.drill.exec.expr.holders.NullableVarCharHolder;
+
+/**
+ * Halves of ip text as used in ip1 and ip2 columns, null for texts which are not ips.
+ */
+public final class StringToIp {
+  @FunctionTemplate(
+    name = "string_to_ip1",
+    scope = FunctionTemplate.FunctionScope.SIMPLE,
+    nulls = FunctionTemplate.NullHandling.INTERNAL
+  )
+  public static class StringToIp1Function implements DrillSimpleFunc {
+    @Param NullableVarCharHolder ip;
+    @Output NullableBigIntHolder out;
+    @Workspace cs.drill.util.IpParser parser;
+
+    @Override
+    public void setup() {
+      parser = new cs.drill.util.IpParser();
+    }
+
+    @Override
+    public void eval() {
+      if (ip.isSet == 1 && parser.parseIp(ip.buffer, ip.start, ip.end)) {
+        out.value = parser.getIp1();
+        out.isSet = 1;
+      } else {
+        out.isSet = 0;
+      }
+    }
+  }
+
+  @FunctionTemplate(
+    name = "string_to_ip2",
+    scope = FunctionTemplate.FunctionScope.SIMPLE,
+    nulls = FunctionTemplate.NullHandling.INTERNAL
+  )
+  public static class StringToIp2Function implements DrillSimpleFunc {
+    @Param NullableVarCharHolder ip;
+    @Output NullableBigIntHolder out;
+    @Workspace cs.drill.util.IpParser parser;
+
+    @Override
+    public void setup() {
+      parser = new cs.drill.util.IpParser();
+    }
+
+    @Override
+    public void eval() {
+      if (ip.isSet == 1 && parser.parseIp(ip.buffer, ip.start, ip.end)) {
+        out.value = parser.getIp2();
+        out.isSet = 1;
+      } else {
+        out.isSet = 0;
+      }
+    }
+  }
+
+  private StringToIp() {}
+}
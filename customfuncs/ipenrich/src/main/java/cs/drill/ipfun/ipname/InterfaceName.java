@@ -6,6 +6,7 @@ import org.apache.drill.exec.expr.annotations.FunctionTemplate;
 import org.apache.drill.exec.expr.annotations.Output;
 import org.apache.drill.exec.expr.annotations.Param;
 import org.apache.drill.exec.expr.holders.*;
+import org.apache.drill.exec.ops.UdfMetrics;
 
 import javax.inject.Inject;
 
@@ -21,6 +22,7 @@ public final class InterfaceName {
     @Param NullableIntHolder interfaceNumber;
     @Output NullableVarCharHolder out;
     @Inject DrillBuf buffer;
+    @Inject UdfMetrics metrics;
 
     @Override
     public void setup() {
@@ -33,8 +35,12 @@ public final class InterfaceName {
         return;
       }
 
-      String interfaceName = cs.drill.topdisco.TopdiscoReader.getInterfaceName(ip1.value, ip2.value, interfaceNumber.value);
-      cs.drill.util.OutputWriter.write(out, buffer, interfaceName);
+      cs.drill.util.Utf8String interfaceName =
+        cs.drill.topdisco.TopdiscoReader.findInterfaceName(ip1.value, ip2.value, interfaceNumber.value);
+      metrics.countLookup(interfaceName != null);
+      buffer = interfaceName == null
+        ? cs.drill.util.OutputWriter.writeDecimal(out, buffer, interfaceNumber.value)
+        : cs.drill.util.OutputWriter.write(out, buffer, interfaceName);
     }
   }
 }
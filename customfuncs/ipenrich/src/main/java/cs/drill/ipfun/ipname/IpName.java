@@ -9,6 +9,7 @@ import org.apache.drill.exec.expr.holders.BigIntHolder;
 import org.apache.drill.exec.expr.holders.NullableBigIntHolder;
 import org.apache.drill.exec.expr.holders.NullableVarCharHolder;
 import org.apache.drill.exec.expr.holders.VarCharHolder;
+import org.apache.drill.exec.ops.UdfMetrics;
 
 import javax.inject.Inject;
 
@@ -23,6 +24,7 @@ public final class IpName {
     @Param BigIntHolder ip2;
     @Output VarCharHolder out;
     @Inject DrillBuf buffer;
+    @Inject UdfMetrics metrics;
 
     @Override
     public void setup() {
@@ -31,8 +33,11 @@ public final class IpName {
 
     @Override
     public void eval() {
-      String ipName = cs.drill.topdisco.TopdiscoReader.getIpName(ip1.value, ip2.value);
-      cs.drill.util.OutputWriter.write(out, buffer, ipName);
+      cs.drill.util.Utf8String ipName = cs.drill.topdisco.TopdiscoReader.findIpName(ip1.value, ip2.value);
+      metrics.countLookup(ipName != null);
+      buffer = ipName == null
+        ? cs.drill.util.OutputWriter.writeIp(out, buffer, ip1.value, ip2.value)
+        : cs.drill.util.OutputWriter.write(out, buffer, ipName);
     }
   }
 
@@ -46,6 +51,7 @@ public final class IpName {
     @Param NullableBigIntHolder ip2;
     @Output NullableVarCharHolder out;
     @Inject DrillBuf buffer;
+    @Inject UdfMetrics metrics;
 
     @Override
     public void setup() {
@@ -55,8 +61,11 @@ public final class IpName {
     @Override
     public void eval() {
       if (ip1.isSet * ip2.isSet == 0) return;
-      String ipName = cs.drill.topdisco.TopdiscoReader.getIpName(ip1.value, ip2.value);
-      cs.drill.util.OutputWriter.write(out, buffer, ipName);
+      cs.drill.util.Utf8String ipName = cs.drill.topdisco.TopdiscoReader.findIpName(ip1.value, ip2.value);
+      metrics.countLookup(ipName != null);
+      buffer = ipName == null
+        ? cs.drill.util.OutputWriter.writeIp(out, buffer, ip1.value, ip2.value)
+        : cs.drill.util.OutputWriter.write(out, buffer, ipName);
     }
   }
 }
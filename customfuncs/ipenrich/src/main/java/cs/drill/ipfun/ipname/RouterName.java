@@ -7,6 +7,7 @@ import org.apache.drill.exec.expr.annotations.Output;
 import org.apache.drill.exec.expr.annotations.Param;
 import org.apache.drill.exec.expr.holders.BigIntHolder;
 import org.apache.drill.exec.expr.holders.VarCharHolder;
+import org.apache.drill.exec.ops.UdfMetrics;
 
 import javax.inject.Inject;
 
@@ -21,6 +22,7 @@ public final class RouterName {
     @Param BigIntHolder ip2;
     @Output VarCharHolder out;
     @Inject DrillBuf buffer;
+    @Inject UdfMetrics metrics;
 
     @Override
     public void setup() {
@@ -29,8 +31,11 @@ public final class RouterName {
 
     @Override
     public void eval() {
-      String routerName = cs.drill.topdisco.TopdiscoReader.getRouterName(ip1.value, ip2.value);
-      cs.drill.util.OutputWriter.write(out, buffer, routerName);
+      cs.drill.util.Utf8String routerName = cs.drill.topdisco.TopdiscoReader.findRouterName(ip1.value, ip2.value);
+      metrics.countLookup(routerName != null);
+      buffer = routerName == null
+        ? cs.drill.util.OutputWriter.writeIp(out, buffer, ip1.value, ip2.value)
+        : cs.drill.util.OutputWriter.write(out, buffer, routerName);
     }
   }
 }
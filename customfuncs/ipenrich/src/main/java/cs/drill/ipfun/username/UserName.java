@@ -5,23 +5,20 @@ import org.apache.drill.exec.expr.DrillSimpleFunc;
 import org.apache.drill.exec.expr.annotations.FunctionTemplate;
 import org.apache.drill.exec.expr.annotations.Output;
 import org.apache.drill.exec.expr.annotations.Param;
+import org.apache.drill.exec.expr.annotations.Workspace;
 import org.apache.drill.exec.expr.holders.BigIntHolder;
 import org.apache.drill.exec.expr.holders.NullableVarCharHolder;
+import org.apache.drill.exec.ops.UdfMetrics;
 
 import javax.inject.Inject;
 
 public class UserName {
 
-  public static void write(NullableVarCharHolder out, DrillBuf buffer, String value) {
-    if (value == null) {
-      return;
-    }
-    byte[] bytes = value.getBytes();
-    out.buffer = buffer;
-    out.start = 0;
-    out.end = bytes.length;
-    out.isSet = 1;
-    buffer.setBytes(0, bytes);
+  /**
+   * @return buffer holding the value, may be reallocated
+   */
+  public static DrillBuf write(NullableVarCharHolder out, DrillBuf buffer, String value) {
+    return cs.drill.util.OutputWriter.write(out, buffer, value);
   }
 
   public static cs.drill.de.UserCacheManager cache = cs.drill.de.UserCacheManager.getInstance();
@@ -37,18 +34,20 @@ public class UserName {
     @Param BigIntHolder timestamp;
     @Output NullableVarCharHolder out;
     @Inject DrillBuf buffer;
+    @Inject UdfMetrics metrics;
+    @Workspace cs.drill.de.UserCursor cursor;
 
     @Override
     public void setup() {
-      // We are not using this method because it's called more than once and gives us nothing more
-      // than static initialization of property
+      // cursor remembers last resolved time range, rows are usually ordered by timestamp per ip
+      cursor = cs.drill.ipfun.username.UserName.cache.newCursor(metrics);
     }
 
     @Override
     public void eval() {
       // doesn't check for nulls since NULL_IF_NULL policy
-      String userName = cs.drill.ipfun.username.UserName.cache.getUser(ip1.value, ip2.value, timestamp.value);
-      cs.drill.ipfun.username.UserName.write(out, buffer, userName);
+      String userName = cursor.getUser(ip1.value, ip2.value, timestamp.value);
+      buffer = cs.drill.ipfun.username.UserName.write(out, buffer, userName);
     }
   }
 
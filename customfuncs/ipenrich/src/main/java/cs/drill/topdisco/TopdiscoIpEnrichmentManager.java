@@ -2,11 +2,12 @@ package cs.drill.topdisco;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import cs.drill.rest.Poller;
+import cs.drill.util.LocalSnapshots;
+import cs.drill.util.SharedSnapshots;
 
 import java.io.IOException;
 import java.sql.*;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
@@ -44,8 +45,10 @@ public class TopdiscoIpEnrichmentManager {
     "      FROM ips,\n" +
     "           interfaces) r";
   private static final int RELOAD_PERIOD_MINUTES = 15;
-  private static final ScheduledExecutorService SCHEDULED_THREAD = Executors.newSingleThreadScheduledExecutor();
-  public Consumer<JsonIpEnrichment> consumer;
+  private static final String SNAPSHOT_NAME = "topdisco_ip_enrichment";
+  private static final SharedSnapshots SNAPSHOTS = SharedSnapshots.getInstance();
+  private static final LocalSnapshots LOCAL_SNAPSHOTS = LocalSnapshots.getInstance();
+  public volatile Consumer<JsonIpEnrichment> consumer;
   private int lastResponseHash = 0;
 
   static {
@@ -76,39 +79,68 @@ public class TopdiscoIpEnrichmentManager {
   }
 
   void scheduleUpdates() {
-    cs.drill.util.Logger.info("Scheduling TopdiscoIpEnrichment");
-    SCHEDULED_THREAD.scheduleWithFixedDelay(
-      this::update,
-      0,
-      RELOAD_PERIOD_MINUTES,
-      TimeUnit.MINUTES
-    );
+    Poller.schedule("TopdiscoIpEnrichment", RELOAD_PERIOD_MINUTES, TimeUnit.MINUTES, this::update);
   }
 
-  void update() {
+  /**
+   * Passes enrichment saved by the last run to consumer, unless it was updated already.
+   * Names are known before the first fetch completes, unchanged response is not passed again.
+   */
+  public synchronized void restore() {
+    if (lastResponseHash != 0 || consumer == null) {
+      return;
+    }
+    String response = LOCAL_SNAPSHOTS.read(SNAPSHOT_NAME);
+    JsonIpEnrichment json = response == null ? null : parseData(response);
+    if (json != null) {
+      cs.drill.util.Logger.info("Topdisco ip enrichment restored from snapshot");
+      lastResponseHash = response.hashCode();
+      consumer.accept(json);
+    }
+  }
+
+  /**
+   * @return false when Postgres did not answer, so reload is retried sooner
+   */
+  boolean update() {
     try {
       cs.drill.util.Logger.info("Reloading Topdisco ip enrichment cache");
-      String response = fetchData();
+      String response = SNAPSHOTS.get(SNAPSHOT_NAME,
+        TimeUnit.MINUTES.toMillis(RELOAD_PERIOD_MINUTES), this::fetchData);
       if (response == null) {
         cs.drill.util.Logger.warn("Cannot reload Topdisco ip enrichment - no response from Postgres received");
-        return;
+        return false;
       }
-      if (response.hashCode() == lastResponseHash) {
-        cs.drill.util.Logger.info("No changes in Topdisco ip enrichment found");
-        return;
-      }
-      lastResponseHash = response.hashCode();
-      JsonIpEnrichment json = parseData(response);
-      if (json != null && consumer != null) {
-        int ipsLength = json.getIps() == null ? 0 : json.getIps().size();
-        int interfacesLength = json.getInterfaces() == null ? 0 : json.getInterfaces().size();
-        cs.drill.util.Logger.info("Topdisco ip enrichment updated: " +
-            ipsLength + " ips and " + interfacesLength + " interfaces");
-        consumer.accept(json);
+      if (accept(response)) {
+        LOCAL_SNAPSHOTS.write(SNAPSHOT_NAME, response);
       }
+      return true;
     } catch (Exception exc) {
       cs.drill.util.Logger.error("An exception occurred during Topdisco ip enrichment cache reload", exc);
+      return false;
+    }
+  }
+
+  /**
+   * Passes changed response to consumer, synchronized with {@link #restore()}.
+   * @return true when response was passed to consumer
+   */
+  private synchronized boolean accept(String response) {
+    if (response.hashCode() == lastResponseHash) {
+      cs.drill.util.Logger.info("No changes in Topdisco ip enrichment found");
+      return false;
+    }
+    lastResponseHash = response.hashCode();
+    JsonIpEnrichment json = parseData(response);
+    if (json != null && consumer != null) {
+      int ipsLength = json.getIps() == null ? 0 : json.getIps().size();
+      int interfacesLength = json.getInterfaces() == null ? 0 : json.getInterfaces().size();
+      cs.drill.util.Logger.info("Topdisco ip enrichment updated: " +
+          ipsLength + " ips and " + interfacesLength + " interfaces");
+      consumer.accept(json);
+      return true;
     }
+    return false;
   }
 
   String fetchData() throws SQLException {
@@ -1,176 +1,252 @@
 package cs.drill.topdisco;
 
+import cs.drill.util.IpPairIndex;
 import cs.drill.util.IpUtil;
-import cs.drill.util.SoftIpCache;
+import cs.drill.util.Utf8String;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+/**
+ * Names of ips, routers and interfaces known by Topdisco.
+ *
+ * Find methods return null for unknown ips, functions format ips (and interface numbers)
+ * straight into their output then. Get methods return text of ip instead.
+ */
 public final class TopdiscoReader {
   private static final Logger LOGGER = LoggerFactory.getLogger(TopdiscoReader.class);
-  private static final Map<Long, String> IP4_NAMES = new HashMap<>();
-  private static final Map<Long, Map<Long, String>> IP6_NAMES = new HashMap<>();
-  private static final Map<Long, String> IP4_ROUTER_NAMES = new HashMap<>();
-  private static final Map<Long, Map<Long, String>> IP6_ROUTER_NAMES = new HashMap<>();
-  private static final Map<Long, Map<Integer, String>> IP4_INTERFACE_NAMES = new HashMap<>();
-  private static final Map<Long, Map<Long, Map<Integer, String>>> IP6_INTERFACE_NAMES = new HashMap<>();
-  private static final SoftIpCache<String> IP_STRS = new SoftIpCache<>();
-  private static SoftReference<Map<Integer, String>> INTERFACE_STRS = new SoftReference<>(null);
+  /**
+   * Names of current enrichment, rebuilt on every populate and replaced as a whole,
+   * so lookups never lock.
+   */
+  private static volatile Index index = new Index.Builder().build();
 
   static {
     TopdiscoIpEnrichmentManager.getInstance().consumer = TopdiscoReader::populate;
+    TopdiscoIpEnrichmentManager.getInstance().restore();
+  }
+
+  /**
+   * Flattened name index, not modified after it is published.
+   *
+   * Every ip gets entry of {@link #ips} used as index of its name ids. Interfaces are indexed
+   * by (ip entry, interface number) keys. Names are encoded once and referred by ids.
+   */
+  static final class Index {
+    static final int NO_NAME = -1;
+
+    final Utf8String[] names;
+    final IpPairIndex ips;
+    final int[] ipNameIds;
+    final int[] routerNameIds;
+    final IpPairIndex interfaces;
+    final int[] interfaceNameIds;
+
+    private Index(Builder builder) {
+      this.names = builder.names.toArray(new Utf8String[0]);
+      this.ips = builder.ips;
+      this.ipNameIds = builder.ipNameIds;
+      this.routerNameIds = builder.routerNameIds;
+      this.interfaces = builder.interfaces;
+      this.interfaceNameIds = builder.interfaceNameIds;
+    }
+
+    Utf8String findIpName(long ip1, long ip2) {
+      int ip = ips.find(ip1, ip2);
+      return ip < 0 ? null : getName(ipNameIds[ip]);
+    }
+
+    Utf8String findRouterName(long ip1, long ip2) {
+      int ip = ips.find(ip1, ip2);
+      return ip < 0 ? null : getName(routerNameIds[ip]);
+    }
+
+    Utf8String findInterfaceName(long ip1, long ip2, int interfaceNumber) {
+      int ip = ips.find(ip1, ip2);
+      if (ip < 0) {
+        return null;
+      }
+      int entry = interfaces.find(ip, interfaceNumber);
+      return entry < 0 ? null : getName(interfaceNameIds[entry]);
+    }
+
+    private Utf8String getName(int id) {
+      return id == NO_NAME ? null : names[id];
+    }
+
+    /**
+     * Not thread safe, later names of the same key replace earlier ones.
+     */
+    static final class Builder {
+      private static final int INITIAL_CAPACITY = 1024;
+
+      private final List<Utf8String> names = new ArrayList<>();
+      private final Map<String, Integer> nameIds = new HashMap<>();
+      private final IpPairIndex ips = new IpPairIndex(INITIAL_CAPACITY);
+      private int[] ipNameIds = newIds(INITIAL_CAPACITY);
+      private int[] routerNameIds = newIds(INITIAL_CAPACITY);
+      private final IpPairIndex interfaces = new IpPairIndex(INITIAL_CAPACITY);
+      private int[] interfaceNameIds = newIds(INITIAL_CAPACITY);
+
+      void putIpName(IpUtil.IpPair ip, String name) {
+        int entry = getIp(ip);
+        ipNameIds[entry] = getNameId(name);
+      }
+
+      void putRouterName(IpUtil.IpPair ip, String name) {
+        int entry = getIp(ip);
+        routerNameIds[entry] = getNameId(name);
+      }
+
+      void putInterfaceName(IpUtil.IpPair ip, int interfaceNumber, String name) {
+        int ipEntry = getIp(ip);
+        int entry = interfaces.find(ipEntry, interfaceNumber);
+        if (entry < 0) {
+          entry = interfaces.add(ipEntry, interfaceNumber);
+          if (entry == interfaceNameIds.length) {
+            interfaceNameIds = grow(interfaceNameIds);
+          }
+        }
+        interfaceNameIds[entry] = getNameId(name);
+      }
+
+      Index build() {
+        return new Index(this);
+      }
+
+      private int getIp(IpUtil.IpPair ip) {
+        int entry = ips.find(ip.getHighBits(), ip.getLowBits());
+        if (entry < 0) {
+          entry = ips.add(ip.getHighBits(), ip.getLowBits());
+          if (entry == ipNameIds.length) {
+            ipNameIds = grow(ipNameIds);
+            routerNameIds = grow(routerNameIds);
+          }
+        }
+        return entry;
+      }
+
+      private int getNameId(String name) {
+        if (name == null) {
+          return NO_NAME;
+        }
+        return nameIds.computeIfAbsent(name, key -> {
+          names.add(Utf8String.of(key));
+          return names.size() - 1;
+        });
+      }
+
+      private static int[] newIds(int capacity) {
+        int[] ids = new int[capacity];
+        Arrays.fill(ids, NO_NAME);
+        return ids;
+      }
+
+      private static int[] grow(int[] ids) {
+        int[] grown = Arrays.copyOf(ids, ids.length * 2);
+        Arrays.fill(grown, ids.length, grown.length, NO_NAME);
+        return grown;
+      }
+    }
   }
 
   static void clear() {
-    IP4_NAMES.clear();
-    IP6_NAMES.clear();
-    IP4_ROUTER_NAMES.clear();
-    IP6_ROUTER_NAMES.clear();
-    IP4_INTERFACE_NAMES.clear();
-    IP6_INTERFACE_NAMES.clear();
+    index = new Index.Builder().build();
   }
 
   static void populate(JsonIpEnrichment json) {
-    clear();
+    Index.Builder builder = new Index.Builder();
 
     if (json.getIps() != null) {
       for (JsonIpEnrichment.Ip entity : json.getIps()) {
-        populateIpEntity(entity);
+        populateIpEntity(builder, entity);
       }
     }
 
     if (json.getInterfaces() != null) {
       for (JsonIpEnrichment.Interface entity : json.getInterfaces()) {
-        populateInterfaceEntity(entity);
+        populateInterfaceEntity(builder, entity);
       }
     }
+
+    index = builder.build();
   }
 
-  static void populateIpEntity(JsonIpEnrichment.Ip entity) {
-    populateIpEntity(entity, entity.getIp());
+  static void populateIpEntity(Index.Builder builder, JsonIpEnrichment.Ip entity) {
+    populateIpEntity(builder, entity, entity.getIp());
     Set<String> ips = entity.getAliases();
     if (ips != null) {
       for (String ip : ips) {
-        populateIpEntity(entity, ip);
+        populateIpEntity(builder, entity, ip);
       }
     }
   }
 
-  static void populateIpEntity(JsonIpEnrichment.Ip entity, String ip) {
+  static void populateIpEntity(Index.Builder builder, JsonIpEnrichment.Ip entity, String ip) {
     IpUtil.IpPair ipPair = IpUtil.parseIp(ip);
     if (ipPair == null) {
       LOGGER.warn("Unknown ip from Topdisco ip enrichment received: " + ip);
       return;
     }
-    populateIpEntityName(entity, ipPair);
-    populateIpEntityRouterName(entity, ipPair);
-  }
-
-  static void populateIpEntityName(JsonIpEnrichment.Ip entity, IpUtil.IpPair ip) {
-    if (ip.isIp4()) {
-      IP4_NAMES.put(ip.getLowBits(), entity.getName());
-    } else {
-      Map<Long, String> submap = IP6_NAMES.computeIfAbsent(ip.getHighBits(), k -> new HashMap<>());
-      submap.put(ip.getLowBits(), entity.getName());
-    }
-  }
-
-  static void populateIpEntityRouterName(JsonIpEnrichment.Ip entity, IpUtil.IpPair ip) {
+    builder.putIpName(ipPair, entity.getName());
     // only entryType 0 (snmp from device table) and 1 (dns names) are taken
-    if (entity.getEntryType() >= 2) return;
-
-    if (ip.isIp4()) {
-      IP4_ROUTER_NAMES.put(ip.getLowBits(), entity.getName());
-    } else {
-      Map<Long, String> submap = IP6_ROUTER_NAMES.computeIfAbsent(ip.getHighBits(), k -> new HashMap<>());
-      submap.put(ip.getLowBits(), entity.getName());
+    if (entity.getEntryType() < 2) {
+      builder.putRouterName(ipPair, entity.getName());
     }
   }
 
-  static void populateInterfaceEntity(JsonIpEnrichment.Interface entity) {
+  static void populateInterfaceEntity(Index.Builder builder, JsonIpEnrichment.Interface entity) {
     String port = entity.getPort();
-    int index = entity.getIndex();
+    int interfaceIndex = entity.getIndex();
     for (String ip : entity.getIps()) {
-      populateInterface(port, index, ip);
+      IpUtil.IpPair ipPair = IpUtil.parseIp(ip);
+      if (ipPair == null) {
+        LOGGER.warn("Unknown ip from Topdisco ip enrichment received: " + ip);
+        continue;
+      }
+      builder.putInterfaceName(ipPair, interfaceIndex, port);
     }
   }
 
-  static void populateInterface(String port, int index, String ip) {
-    IpUtil.IpPair ipPair = IpUtil.parseIp(ip);
-    if (ipPair == null) {
-      LOGGER.warn("Unknown ip from Topdisco ip enrichment received: " + ip);
-      return;
-    }
-
-    Map<Long, Map<Integer, String>> lowBitsMap;
-    if (ipPair.isIp4()) {
-      lowBitsMap = IP4_INTERFACE_NAMES;
-    } else {
-      lowBitsMap = IP6_INTERFACE_NAMES.computeIfAbsent(ipPair.getHighBits(), k -> new HashMap<>());
-    }
-
-    Map<Integer, String> interfacesMap = lowBitsMap.computeIfAbsent(ipPair.getLowBits(), k -> new HashMap<>());
-    interfacesMap.put(index, port);
+  public static String getIpName(long ip1, long ip2) {
+    Utf8String name = findIpName(ip1, ip2);
+    return name == null ? new IpUtil.IpPair(ip1, ip2).toString() : name.toString();
   }
 
-  private static String getIpStr(long ip1, long ip2) {
-    String str = IP_STRS.get(ip1, ip2);
-    if (str == null) {
-      str = new IpUtil.IpPair(ip1, ip2).toString();
-      IP_STRS.put(ip1, ip2, str);
-    }
-    return str;
+  public static String getRouterName(long ip1, long ip2) {
+    Utf8String name = findRouterName(ip1, ip2);
+    return name == null ? new IpUtil.IpPair(ip1, ip2).toString() : name.toString();
   }
 
-  private static String getInterfaceStr(int interfaceNumber) {
-    Map<Integer, String> ref = INTERFACE_STRS.get();
-    if (ref == null) {
-      ref = new HashMap<>();
-      INTERFACE_STRS = new SoftReference<>(ref);
-    }
-    String str = ref.get(interfaceNumber);
-    if (str == null) {
-      str = Integer.toString(interfaceNumber);
-      ref.put(interfaceNumber, str);
-    }
-    return str;
+  public static String getInterfaceName(long ip1, long ip2, int interfaceNumber) {
+    Utf8String name = findInterfaceName(ip1, ip2, interfaceNumber);
+    return name == null ? Integer.toString(interfaceNumber) : name.toString();
   }
 
-  public static String getIpName(long ip1, long ip2) {
-    String name;
-    if (ip1 == IpUtil.WKP) {
-      name = IP4_NAMES.get(ip2);
-    } else {
-      Map<Long, String> submap = IP6_NAMES.get(ip1);
-      name = submap == null ? null : submap.get(ip2);
-    }
-    return name == null ? getIpStr(ip1, ip2) : name;
+  /**
+   * @return name of ip or null when ip is not known
+   */
+  public static Utf8String findIpName(long ip1, long ip2) {
+    return index.findIpName(ip1, ip2);
   }
 
-  public static String getRouterName(long ip1, long ip2) {
-    String name;
-    if (ip1 == IpUtil.WKP) {
-      name = IP4_ROUTER_NAMES.get(ip2);
-    } else {
-      Map<Long, String> submap = IP6_ROUTER_NAMES.get(ip1);
-      name = submap == null ? null : submap.get(ip2);
-    }
-    return name == null ? getIpStr(ip1, ip2) : name;
+  /**
+   * @return router name of ip or null when ip is not known
+   */
+  public static Utf8String findRouterName(long ip1, long ip2) {
+    return index.findRouterName(ip1, ip2);
   }
 
-  public static String getInterfaceName(long ip1, long ip2, int interfaceNumber) {
-    String name = null;
-    Map<Long, Map<Integer, String>> ip4Map = ip1 == IpUtil.WKP ? IP4_INTERFACE_NAMES : IP6_INTERFACE_NAMES.get(ip1);
-    if (ip4Map != null) {
-      Map<Integer, String> interfacesMap = ip4Map.get(ip2);
-      if (interfacesMap != null) {
-        name = interfacesMap.get(interfaceNumber);
-      }
-    }
-    return name == null ? getInterfaceStr(interfaceNumber) : name;
+  /**
+   * @return name of interface or null when interface is not known
+   */
+  public static Utf8String findInterfaceName(long ip1, long ip2, int interfaceNumber) {
+    return index.findInterfaceName(ip1, ip2, interfaceNumber);
   }
 }
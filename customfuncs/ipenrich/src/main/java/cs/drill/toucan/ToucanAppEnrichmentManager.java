@@ -2,28 +2,61 @@ package cs.drill.toucan;
 
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import cs.drill.rest.Poller;
 import cs.drill.rest.RestClient;
 import cs.drill.rest.RestClientException;
-import lombok.AccessLevel;
-import lombok.AllArgsConstructor;
+import cs.drill.util.EnrichmentConfig;
+import cs.drill.util.LocalSnapshots;
+import cs.drill.util.SharedSnapshots;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
-@AllArgsConstructor(access = AccessLevel.PACKAGE)
 public class ToucanAppEnrichmentManager {
-  private static final String TOUCAN_ENDPOINT = "http://toucan:3000/config/";
-  private static final String TOUCAN_APP_GLOBAL_ENDPOINT = TOUCAN_ENDPOINT + "drill/app_enrichment_global";
-  private static final String TOUCAN_APP_USER_ENDPOINT = TOUCAN_ENDPOINT + "drill/app_enrichment_user";
+  public static final String TOUCAN_ENDPOINT_PATH = EnrichmentConfig.ROOT + ".toucan.endpoint";
+  private static final String DEFAULT_TOUCAN_ENDPOINT = "http://toucan:3000/config/";
+  private static final String APP_GLOBAL_KEY = "drill/app_enrichment_global";
+  private static final String APP_USER_KEY = "drill/app_enrichment_user";
   private static final int RELOAD_PERIOD_MINUTES = 5;
-  private static final ScheduledExecutorService SCHEDULED_THREAD = Executors.newSingleThreadScheduledExecutor();
+  private static final SharedSnapshots SNAPSHOTS = SharedSnapshots.getInstance();
+  private static final LocalSnapshots LOCAL_SNAPSHOTS = LocalSnapshots.getInstance();
+  private static final String SNAPSHOT_NAME = "app_enrichment";
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+  private static final ObjectReader RESPONSE_READER = new ObjectMapper()
+      .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+      .readerFor(AppEnrichmentToucanResponse.class);
   private final RestClient restClient;
-  public Consumer<JsonAppEnrichment> consumer;
+  private final String userEndpoint;
+  private final String globalEndpoint;
+  public volatile Consumer<JsonAppEnrichment> consumer;
+  /**
+   * Whether consumer got fetched enrichment, restored one is not passed then.
+   */
+  private boolean updated;
+  /**
+   * Enrichments of endpoints merged by the last update, unchanged ones are not merged again.
+   */
+  private JsonAppEnrichment[] lastJsons;
+  /**
+   * The last enrichment of every endpoint, returned again while its payload does not change.
+   */
+  private final Map<String, Fetched> lastFetched = new ConcurrentHashMap<>();
+
+  private static final class Fetched {
+    final int payloadHash;
+    final JsonAppEnrichment json;
+
+    Fetched(int payloadHash, JsonAppEnrichment json) {
+      this.payloadHash = payloadHash;
+      this.json = json;
+    }
+  }
 
   private static class LazyHolder {
     static final ToucanAppEnrichmentManager INSTANCE = new ToucanAppEnrichmentManager();
@@ -33,53 +66,120 @@ public class ToucanAppEnrichmentManager {
     return LazyHolder.INSTANCE;
   }
 
+  ToucanAppEnrichmentManager(RestClient restClient, Consumer<JsonAppEnrichment> consumer) {
+    String endpoint = EnrichmentConfig.getString(TOUCAN_ENDPOINT_PATH, DEFAULT_TOUCAN_ENDPOINT);
+    this.restClient = restClient;
+    this.consumer = consumer;
+    this.userEndpoint = endpoint + APP_USER_KEY;
+    this.globalEndpoint = endpoint + APP_GLOBAL_KEY;
+  }
+
   private ToucanAppEnrichmentManager() {
-    this.restClient = new RestClient();
-    cs.drill.util.Logger.info("Scheduling ToucanAppEnrichment");
-    SCHEDULED_THREAD.scheduleAtFixedRate(
-        this::update,
-        0,
-        RELOAD_PERIOD_MINUTES,
-        TimeUnit.MINUTES
-    );
+    this(new RestClient(), null);
+    Poller.schedule("ToucanAppEnrichment", RELOAD_PERIOD_MINUTES, TimeUnit.MINUTES, this::update);
+  }
+
+  /**
+   * Passes enrichment saved by the last run to consumer, unless it was updated already,
+   * so names are known before the first fetch completes.
+   */
+  public synchronized void restore() {
+    if (updated || consumer == null) {
+      return;
+    }
+    String json = LOCAL_SNAPSHOTS.read(SNAPSHOT_NAME);
+    if (json == null) {
+      return;
+    }
+    try {
+      consumer.accept(MAPPER.readValue(json, JsonAppEnrichment.class));
+      cs.drill.util.Logger.info("Toucan app enrichment restored from snapshot");
+    } catch (IOException exc) {
+      cs.drill.util.Logger.warn("Cannot parse Toucan app enrichment snapshot", exc);
+    }
   }
 
-  void update() {
+  /**
+   * @return false when no endpoint answered, so reload is retried sooner
+   */
+  boolean update() {
     try {
       cs.drill.util.Logger.info("Reloading Toucan app enrichment cache");
       JsonAppEnrichment[] jsons = new JsonAppEnrichment[] {
-          fetchData(TOUCAN_APP_USER_ENDPOINT),
-          fetchData(TOUCAN_APP_GLOBAL_ENDPOINT)
+          fetchData(userEndpoint),
+          fetchData(globalEndpoint)
       };
+      boolean fetched = jsons[0] != null || jsons[1] != null;
+      if (lastJsons != null && Arrays.equals(jsons, lastJsons)) {
+        cs.drill.util.Logger.info("No changes in Toucan app enrichment found");
+        return fetched;
+      }
       if (consumer != null) {
-        consumer.accept(mergeJsons(jsons));
+        JsonAppEnrichment json = mergeJsons(jsons);
+        accept(json);
+        lastJsons = jsons;
+        if (fetched) {
+          // enrichment merged of failed fetches only is not worth restoring
+          LOCAL_SNAPSHOTS.write(SNAPSHOT_NAME, MAPPER.writeValueAsString(json));
+        }
       }
+      return fetched;
     } catch (Exception exc) {
       cs.drill.util.Logger.trace("An exception occurred during Toucan app enrichment cache reload", exc);
+      return false;
     }
   }
 
+  /**
+   * Passes fetched enrichment to consumer, synchronized with {@link #restore()}.
+   */
+  private synchronized void accept(JsonAppEnrichment json) {
+    updated = true;
+    consumer.accept(json);
+  }
+
+  /**
+   * Fetches enrichment of endpoint, payload which did not change since the last fetch is
+   * neither downloaded (conditional GET) nor parsed again.
+   * @return enrichment or null when it can't be fetched
+   */
   JsonAppEnrichment fetchData(String url) {
     String json;
 
     try {
-      json = restClient.getJson(url);
+      json = SNAPSHOTS.get(url.substring(url.lastIndexOf('/') + 1),
+          TimeUnit.MINUTES.toMillis(RELOAD_PERIOD_MINUTES), () -> restClient.getJsonIfModified(url));
     } catch (RestClientException exc) {
       cs.drill.util.Logger.trace("Cannot load `" + url + "`", exc);
       return null;
     }
 
-    ObjectMapper objectMapper = new ObjectMapper();
-    objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    Fetched last = lastFetched.get(url);
+    if (json == null || last != null && json.hashCode() == last.payloadHash) {
+      if (last == null) {
+        // nothing to reuse, the next fetch gets the payload
+        restClient.forget(url);
+        return null;
+      }
+      return last.json;
+    }
+
     AppEnrichmentToucanResponse result;
     try {
-      result = objectMapper.readValue(json, AppEnrichmentToucanResponse.class);
+      result = RESPONSE_READER.readValue(json);
     } catch (IOException exc) {
       cs.drill.util.Logger.trace("Cannot parse `" + url + "`", exc);
+      restClient.forget(url);
       return null;
     }
 
-    return result.getValue();
+    JsonAppEnrichment value = result.getValue();
+    if (value == null) {
+      restClient.forget(url);
+    } else {
+      lastFetched.put(url, new Fetched(json.hashCode(), value));
+    }
+    return value;
   }
 
   JsonAppEnrichment mergeJsons(JsonAppEnrichment[] jsons) {
@@ -1,18 +1,33 @@
 package cs.drill.util;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Arrays;
 
+/**
+ * Unbounded {@link IpCache}, values are kept as {@link ValueDictionary} ids.
+ */
 public class HardIpCache<T> implements IpCache<T> {
-  private Map<Long, Map<Long, T>> map = new HashMap<>();
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private final IpPairIndex index = new IpPairIndex(INITIAL_CAPACITY);
+  private final ValueDictionary<T> dictionary = new ValueDictionary<>();
+  private int[] valueIds = new int[INITIAL_CAPACITY];
 
   public T get(long ip1, long ip2) {
-    Map<Long, T> inner = map.get(ip1);
-    return inner == null ? null : inner.get(ip2);
+    int entry = index.find(ip1, ip2);
+    return entry < 0 ? null : dictionary.get(valueIds[entry]);
   }
 
   public void put(long ip1, long ip2, T value) {
-    Map<Long, T> inner = map.computeIfAbsent(ip1, k -> new HashMap<>());
-    inner.put(ip2, value);
+    int valueId = dictionary.acquire(value);
+    int entry = index.find(ip1, ip2);
+    if (entry >= 0) {
+      dictionary.release(valueIds[entry]);
+    } else {
+      entry = index.add(ip1, ip2);
+      if (entry == valueIds.length) {
+        valueIds = Arrays.copyOf(valueIds, entry * 2);
+      }
+    }
+    valueIds[entry] = valueId;
   }
 }
@@ -0,0 +1,117 @@
+package cs.drill.util;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Formats ips and numbers as ASCII text straight into buffers, no strings are created.
+ *
+ * Ip text is the same as of {@link IpUtil.IpPair#toString()}: dotted ipv4 for ips with
+ * {@link IpUtil#WKP} prefix, otherwise ipv6 groups in hex without leading zeros, with the first
+ * run of at least two zero groups compressed to "::".
+ */
+public final class IpFormatter {
+  /**
+   * Maximal length of ip text.
+   */
+  public static final int MAX_LENGTH = 39;
+  /**
+   * Maximal length of int text.
+   */
+  public static final int MAX_DECIMAL_LENGTH = 11;
+  private static final int GROUPS = 8;
+  private static final byte[] HEX_DIGITS = {
+    '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'
+  };
+
+  private IpFormatter() {
+  }
+
+  /**
+   * Writes text of ip at index, buffer must have at least {@link #MAX_LENGTH} bytes from index.
+   * @return number of written bytes
+   */
+  public static int write(ByteBuf buffer, int index, long ip1, long ip2) {
+    return ip1 == IpUtil.WKP ? writeIp4(buffer, index, ip2) : writeIp6(buffer, index, ip1, ip2);
+  }
+
+  /**
+   * Writes decimal text of value at index, buffer must have at least
+   * {@link #MAX_DECIMAL_LENGTH} bytes from index.
+   * @return number of written bytes
+   */
+  public static int writeDecimal(ByteBuf buffer, int index, int value) {
+    long rest = Math.abs((long) value);
+    int length = value < 0 ? 2 : 1;
+    for (long bound = 10; bound <= rest; bound *= 10) {
+      length++;
+    }
+    if (value < 0) {
+      buffer.setByte(index, '-');
+    }
+    int position = index + length;
+    do {
+      buffer.setByte(--position, (int) ('0' + rest % 10));
+      rest /= 10;
+    } while (rest > 0);
+    return length;
+  }
+
+  private static int writeIp4(ByteBuf buffer, int index, long ip) {
+    int position = index;
+    for (int shift = 24; shift >= 0; shift -= 8) {
+      position += writeDecimal(buffer, position, (int) ((ip >>> shift) & 0xff));
+      if (shift > 0) {
+        buffer.setByte(position++, '.');
+      }
+    }
+    return position - index;
+  }
+
+  private static int writeIp6(ByteBuf buffer, int index, long ip1, long ip2) {
+    // the first run of at least two zero groups
+    int zerosStart = GROUPS;
+    int zerosEnd = GROUPS;
+    for (int group = 0; group < GROUPS - 1; group++) {
+      if (getGroup(ip1, ip2, group) == 0 && getGroup(ip1, ip2, group + 1) == 0) {
+        zerosStart = group;
+        zerosEnd = group + 2;
+        while (zerosEnd < GROUPS && getGroup(ip1, ip2, zerosEnd) == 0) {
+          zerosEnd++;
+        }
+        break;
+      }
+    }
+
+    int position = index;
+    for (int group = 0; group < zerosStart; group++) {
+      if (group > 0) {
+        buffer.setByte(position++, ':');
+      }
+      position += writeHex(buffer, position, getGroup(ip1, ip2, group));
+    }
+    if (zerosStart < GROUPS) {
+      buffer.setByte(position++, ':');
+      buffer.setByte(position++, ':');
+    }
+    for (int group = zerosEnd; group < GROUPS; group++) {
+      if (group > zerosEnd) {
+        buffer.setByte(position++, ':');
+      }
+      position += writeHex(buffer, position, getGroup(ip1, ip2, group));
+    }
+    return position - index;
+  }
+
+  private static int getGroup(long ip1, long ip2, int group) {
+    long bits = group < GROUPS / 2 ? ip1 : ip2;
+    return (int) (bits >>> (16 * (3 - group % 4))) & 0xffff;
+  }
+
+  private static int writeHex(ByteBuf buffer, int index, int group) {
+    int length = Math.max(1, (Integer.SIZE - Integer.numberOfLeadingZeros(group) + 3) / 4);
+    for (int digit = 0; digit < length; digit++) {
+      buffer.setByte(index + digit, HEX_DIGITS[(group >>> (4 * (length - 1 - digit))) & 0xf]);
+    }
+    return length;
+  }
+}
@@ -0,0 +1,33 @@
+package cs.drill.util;
+
+/**
+ * Masks of (ip1, ip2) pairs for prefix lengths counted over all 128 bits of the pair,
+ * see {@link IpParser#getPrefixLength()}.
+ */
+public final class IpMask {
+  private IpMask() {
+  }
+
+  /**
+   * @return mask of ip1 for prefix length from 0 to 128
+   */
+  public static long getMask1(int prefixLength) {
+    return prefixLength == 0 ? 0L : -1L << (Long.SIZE - Math.min(prefixLength, Long.SIZE));
+  }
+
+  /**
+   * @return mask of ip2 for prefix length from 0 to 128
+   */
+  public static long getMask2(int prefixLength) {
+    return prefixLength <= Long.SIZE ? 0L : -1L << (2 * Long.SIZE - prefixLength);
+  }
+
+  /**
+   * Gets prefix length over all bits of the pair for prefix length of the ip given by user,
+   * counted over 32 bits for ipv4 and 128 bits for ipv6. Lengths out of range are clamped.
+   */
+  public static int getPrefixLength(long ip1, int ipPrefixLength) {
+    int offset = ip1 == IpUtil.WKP ? IpParser.MAX_PREFIX_LENGTH - Integer.SIZE : 0;
+    return offset + Math.max(0, Math.min(ipPrefixLength, IpParser.MAX_PREFIX_LENGTH - offset));
+  }
+}
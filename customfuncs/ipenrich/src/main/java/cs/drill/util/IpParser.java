@@ -0,0 +1,226 @@
+package cs.drill.util;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * Parses ASCII text of ips and subnets straight from buffers into (ip1, ip2) pairs,
+ * ipv4 ips get {@link IpUtil#WKP} prefix.
+ *
+ * Accepts dotted ipv4 (a.b.c.d) and ipv6 in any RFC 4291 text form, including "::" and
+ * embedded ipv4 in the last two groups. Unlike {@link IpUtil#parseIp(String)} it does not
+ * resolve host names. Results of the last parse are kept in the parser, which is not thread
+ * safe then, but parses without allocations.
+ */
+public final class IpParser {
+  /**
+   * Prefix length of a single ip, prefix lengths of ipv4 subnets are counted from the start
+   * of {@link IpUtil#WKP} too, so ipv4 /24 is 120 here.
+   */
+  public static final int MAX_PREFIX_LENGTH = 128;
+  private static final int GROUPS = 8;
+  private static final int MAX_GROUP_DIGITS = 4;
+  private static final int OCTETS = 4;
+
+  private final int[] groups = new int[GROUPS];
+  private long ip1;
+  private long ip2;
+  private int prefixLength;
+
+  public long getIp1() {
+    return ip1;
+  }
+
+  public long getIp2() {
+    return ip2;
+  }
+
+  public int getPrefixLength() {
+    return prefixLength;
+  }
+
+  /**
+   * Parses ip from start (inclusive) to end (exclusive) index.
+   * @return false when the bytes are not an ip, results are not valid then
+   */
+  public boolean parseIp(ByteBuf buffer, int start, int end) {
+    if (parseAddress(buffer, start, end) < 0) {
+      return false;
+    }
+    prefixLength = MAX_PREFIX_LENGTH;
+    return true;
+  }
+
+  /**
+   * Parses subnet in CIDR notation (ip/prefix length) from start (inclusive) to end
+   * (exclusive) index. Single ip is parsed as subnet of the ip only. Host bits of the ip
+   * are kept, see {@link IpMask} to clear them.
+   * @return false when the bytes are not a subnet, results are not valid then
+   */
+  public boolean parseSubnet(ByteBuf buffer, int start, int end) {
+    int slash = buffer.indexOf(start, end, (byte) '/');
+    if (slash < 0) {
+      return parseIp(buffer, start, end);
+    }
+    // at most 3 digits
+    if (slash == end - 1 || end - slash > 4) {
+      return false;
+    }
+    int length = 0;
+    for (int i = slash + 1; i < end; i++) {
+      int digit = buffer.getByte(i) - '0';
+      if (digit < 0 || digit > 9) {
+        return false;
+      }
+      length = length * 10 + digit;
+    }
+    int maxLength = parseAddress(buffer, start, slash);
+    if (length > maxLength) {
+      return false;
+    }
+    prefixLength = MAX_PREFIX_LENGTH - maxLength + length;
+    return true;
+  }
+
+  /**
+   * @return number of bits of the parsed ip text (32 or 128) or -1 when the bytes are not an ip
+   */
+  private int parseAddress(ByteBuf buffer, int start, int end) {
+    if (start >= end) {
+      return -1;
+    }
+    if (buffer.indexOf(start, end, (byte) ':') < 0) {
+      long ip = parseIp4(buffer, start, end);
+      if (ip < 0) {
+        return -1;
+      }
+      ip1 = IpUtil.WKP;
+      ip2 = ip;
+      return Integer.SIZE;
+    }
+    return parseIp6(buffer, start, end) ? MAX_PREFIX_LENGTH : -1;
+  }
+
+  /**
+   * @return ipv4 as unsigned int or -1 when the bytes are not dotted ipv4
+   */
+  private static long parseIp4(ByteBuf buffer, int start, int end) {
+    long ip = 0;
+    int octets = 0;
+    int index = start;
+    while (octets < OCTETS) {
+      int octet = 0;
+      int digits = 0;
+      while (index < end && digits < 4) {
+        int digit = buffer.getByte(index) - '0';
+        if (digit < 0 || digit > 9) {
+          break;
+        }
+        octet = octet * 10 + digit;
+        digits++;
+        index++;
+      }
+      if (digits == 0 || digits > 3 || octet > 255) {
+        return -1;
+      }
+      ip = ip << 8 | octet;
+      octets++;
+      if (octets < OCTETS) {
+        if (index == end || buffer.getByte(index) != '.') {
+          return -1;
+        }
+        index++;
+      }
+    }
+    return index == end ? ip : -1;
+  }
+
+  private boolean parseIp6(ByteBuf buffer, int start, int end) {
+    int count = 0;
+    // number of groups before "::" or -1
+    int gap = -1;
+    int index = start;
+    if (buffer.getByte(index) == ':') {
+      if (end - index < 2 || buffer.getByte(index + 1) != ':') {
+        return false;
+      }
+      gap = 0;
+      index += 2;
+    }
+    while (index < end) {
+      if (count == GROUPS) {
+        return false;
+      }
+      int groupStart = index;
+      int group = 0;
+      int digits = 0;
+      int digit;
+      while (index < end && digits <= MAX_GROUP_DIGITS
+          && (digit = hexDigit(buffer.getByte(index))) >= 0) {
+        group = group << 4 | digit;
+        digits++;
+        index++;
+      }
+      if (index < end && buffer.getByte(index) == '.') {
+        // embedded ipv4 takes the last two groups
+        long ip4 = count > GROUPS - 2 ? -1 : parseIp4(buffer, groupStart, end);
+        if (ip4 < 0) {
+          return false;
+        }
+        groups[count++] = (int) (ip4 >>> 16);
+        groups[count++] = (int) (ip4 & 0xffff);
+        break;
+      }
+      if (digits == 0 || digits > MAX_GROUP_DIGITS) {
+        return false;
+      }
+      groups[count++] = group;
+      if (index == end) {
+        break;
+      }
+      if (buffer.getByte(index) != ':' || ++index == end) {
+        return false;
+      }
+      if (buffer.getByte(index) == ':') {
+        if (gap >= 0) {
+          return false;
+        }
+        gap = count;
+        index++;
+      }
+    }
+    if (gap < 0 ? count != GROUPS : count == GROUPS) {
+      return false;
+    }
+
+    long high = 0;
+    long low = 0;
+    int source = 0;
+    for (int group = 0; group < GROUPS; group++) {
+      int value = 0;
+      if (gap < 0 || group < gap || group >= gap + GROUPS - count) {
+        value = groups[source++];
+      }
+      if (group < GROUPS / 2) {
+        high = high << 16 | value;
+      } else {
+        low = low << 16 | value;
+      }
+    }
+    ip1 = high;
+    ip2 = low;
+    return true;
+  }
+
+  private static int hexDigit(byte character) {
+    if (character >= '0' && character <= '9') {
+      return character - '0';
+    }
+    if (character >= 'a' && character <= 'f') {
+      return character - 'a' + 10;
+    }
+    if (character >= 'A' && character <= 'F') {
+      return character - 'A' + 10;
+    }
+    return -1;
+  }
+}
@@ -4,24 +4,97 @@ import io.netty.buffer.DrillBuf;
 import org.apache.drill.exec.expr.holders.NullableVarCharHolder;
 import org.apache.drill.exec.expr.holders.VarCharHolder;
 
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Copies UTF-8 values to output holders. Injected buffer is grown when a value does not fit,
+ * so functions have to keep the returned buffer for next rows.
+ */
 public class OutputWriter {
-  public static void write(NullableVarCharHolder out, DrillBuf buffer, String value) {
+  /**
+   * @return buffer holding the value, may be reallocated
+   */
+  public static DrillBuf write(NullableVarCharHolder out, DrillBuf buffer, Utf8String value) {
+    if (value == null) {
+      return buffer;
+    }
+    return write(out, buffer, value.getBytes());
+  }
+
+  /**
+   * Encodes value for every call, {@link #write(NullableVarCharHolder, DrillBuf, Utf8String)}
+   * should be used for values of an index.
+   * @return buffer holding the value, may be reallocated
+   */
+  public static DrillBuf write(NullableVarCharHolder out, DrillBuf buffer, String value) {
     if (value == null) {
-      return;
+      return buffer;
     }
+    return write(out, buffer, value.getBytes(StandardCharsets.UTF_8));
+  }
+
+  /**
+   * @return buffer holding the value, may be reallocated
+   */
+  public static DrillBuf write(VarCharHolder out, DrillBuf buffer, Utf8String value) {
     byte[] bytes = value.getBytes();
-    out.buffer = buffer;
+    DrillBuf result = copy(buffer, bytes);
+    out.buffer = result;
     out.start = 0;
     out.end = bytes.length;
+    return result;
+  }
+
+  /**
+   * Formats ip straight into the buffer, see {@link IpFormatter}.
+   * @return buffer holding the value, may be reallocated
+   */
+  public static DrillBuf writeIp(VarCharHolder out, DrillBuf buffer, long ip1, long ip2) {
+    DrillBuf result = buffer.reallocIfNeeded(IpFormatter.MAX_LENGTH);
+    out.buffer = result;
+    out.start = 0;
+    out.end = IpFormatter.write(result, 0, ip1, ip2);
+    return result;
+  }
+
+  /**
+   * Formats ip straight into the buffer, see {@link IpFormatter}.
+   * @return buffer holding the value, may be reallocated
+   */
+  public static DrillBuf writeIp(NullableVarCharHolder out, DrillBuf buffer, long ip1, long ip2) {
+    DrillBuf result = buffer.reallocIfNeeded(IpFormatter.MAX_LENGTH);
+    out.buffer = result;
+    out.start = 0;
+    out.end = IpFormatter.write(result, 0, ip1, ip2);
     out.isSet = 1;
-    buffer.setBytes(0, bytes);
+    return result;
   }
 
-  public static void write(VarCharHolder out, DrillBuf buffer, String value) {
-    byte[] bytes = value.getBytes();
-    out.buffer = buffer;
+  /**
+   * Formats decimal text of value straight into the buffer.
+   * @return buffer holding the value, may be reallocated
+   */
+  public static DrillBuf writeDecimal(NullableVarCharHolder out, DrillBuf buffer, int value) {
+    DrillBuf result = buffer.reallocIfNeeded(IpFormatter.MAX_DECIMAL_LENGTH);
+    out.buffer = result;
+    out.start = 0;
+    out.end = IpFormatter.writeDecimal(result, 0, value);
+    out.isSet = 1;
+    return result;
+  }
+
+  private static DrillBuf write(NullableVarCharHolder out, DrillBuf buffer, byte[] bytes) {
+    DrillBuf result = copy(buffer, bytes);
+    out.buffer = result;
     out.start = 0;
     out.end = bytes.length;
-    buffer.setBytes(0, bytes);
+    out.isSet = 1;
+    return result;
+  }
+
+  private static DrillBuf copy(DrillBuf buffer, byte[] bytes) {
+    DrillBuf result = buffer.reallocIfNeeded(bytes.length);
+    result.setBytes(0, bytes);
+    return result;
   }
 }
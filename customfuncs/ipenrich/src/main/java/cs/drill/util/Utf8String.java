@@ -0,0 +1,63 @@
+package cs.drill.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * String together with its UTF-8 encoding.
+ *
+ * Enrichment names come from a small vocabulary, so they are encoded once when an index is
+ * built and functions only copy the prepared bytes to their output.
+ */
+public final class Utf8String {
+  private final String string;
+  private final byte[] bytes;
+
+  private Utf8String(String string) {
+    this.string = string;
+    this.bytes = string.getBytes(StandardCharsets.UTF_8);
+  }
+
+  /**
+   * @return encoded string or null for null string
+   */
+  public static Utf8String of(String string) {
+    return string == null ? null : new Utf8String(string);
+  }
+
+  /**
+   * @return UTF-8 bytes shared by all readers, must not be modified
+   */
+  public byte[] getBytes() {
+    return bytes;
+  }
+
+  @Override
+  public String toString() {
+    return string;
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    return other instanceof Utf8String && string.equals(((Utf8String) other).string);
+  }
+
+  @Override
+  public int hashCode() {
+    return string.hashCode();
+  }
+
+  /**
+   * Encodes every distinct string once, used while an index is being built.
+   *
+   * Not thread safe.
+   */
+  public static final class Pool {
+    private final Map<String, Utf8String> strings = new HashMap<>();
+
+    public Utf8String get(String string) {
+      return string == null ? null : strings.computeIfAbsent(string, Utf8String::new);
+    }
+  }
+}
@@ -1,174 +1,203 @@
 package cs.drill.de;
 
 import org.junit.Test;
-import org.mockito.internal.util.reflection.Whitebox;
 
-import java.util.Arrays;
-import java.util.List;
-
-import static junit.framework.TestCase.assertNull;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
-import static org.junit.Assert.assertTrue;
 
 public class TimeUserCacheUnitTest {
-  static final String USER_0 = "user0";
-  static final String USER_1 = "user1";
-  static final String USER_2 = "user2";
-
-  public static class GetUser {
+  static final int USER_0 = 0;
+  static final int USER_1 = 1;
+  static final int USER_2 = 2;
+  static final int NO_USER = UserNames.NO_USER;
+
+  /**
+   * Ranges of boundaries 100, 120, 140, 180, 250 and users USER_0, none, USER_1, USER_2, none.
+   */
+  static TimeUserCache populatedCache() {
     TimeUserCache timeUserCache = new TimeUserCache();
+    timeUserCache.addUser(100L, 120L, USER_0);
+    timeUserCache.addUser(140L, 180L, USER_1);
+    timeUserCache.addUser(180L, 250L, USER_2);
+    return timeUserCache;
+  }
 
-    @Test
-    public void returnsNullIfNotPopulated() {
-      assertNull(timeUserCache.getUser(1L));
+  static long[] getBoundaries(TimeUserCache timeUserCache) {
+    long[] boundaries = new long[timeUserCache.size()];
+    for (int i = 0; i < boundaries.length; i++) {
+      boundaries[i] = timeUserCache.getBoundary(i);
     }
+    return boundaries;
+  }
 
-    private void populateCache() {
-      List<Long> timestamps = (List) Whitebox.getInternalState(timeUserCache, "timestamps");
-      List<String> users = (List)Whitebox.getInternalState(timeUserCache, "users");
-      timestamps.addAll(Arrays.asList(
-          100L, 120L, 140L, 180L, 250L
-      ));
-      users.addAll(Arrays.asList(
-          USER_0, null, USER_1, USER_2, null
-      ));
+  static int[] getUserIds(TimeUserCache timeUserCache) {
+    int[] userIds = new int[timeUserCache.size()];
+    for (int i = 0; i < userIds.length; i++) {
+      userIds[i] = timeUserCache.getUserIdAt(i);
     }
+    return userIds;
+  }
+
+  public static class GetUserId {
+    TimeUserCache timeUserCache = populatedCache();
 
     @Test
-    public void returnsCorrectNonNullUserForTimestamp() {
-      populateCache();
+    public void returnsNoUserIfNotPopulated() {
+      assertEquals(NO_USER, new TimeUserCache().getUserId(1L));
+    }
 
-      String actualUser = timeUserCache.getUser(100L);
+    @Test
+    public void returnsCorrectUserForTimestamp() {
+      assertEquals(USER_0, timeUserCache.getUserId(100L));
+      assertEquals(USER_0, timeUserCache.getUserId(119L));
+      assertEquals(USER_1, timeUserCache.getUserId(140L));
+      assertEquals(USER_2, timeUserCache.getUserId(249L));
+    }
 
-      assertEquals(USER_0, actualUser);
+    @Test
+    public void returnsNoUserForTimestampWhenNoUser() {
+      assertEquals(NO_USER, timeUserCache.getUserId(120L));
     }
 
     @Test
-    public void returnsCorrectNullUserForTimestampWhenNoUser() {
-      populateCache();
+    public void returnsNoUserForTimestampBeforeFirstAdded() {
+      assertEquals(NO_USER, timeUserCache.getUserId(99L));
+    }
 
-      String actualUser = timeUserCache.getUser(120L);
+    @Test
+    public void returnsNoUserForTimestampAfterLastAdded() {
+      assertEquals(NO_USER, timeUserCache.getUserId(251L));
+      assertEquals(NO_USER, timeUserCache.getUserId(300L));
+    }
 
-      assertNull(actualUser);
+    @Test
+    public void returnsLastUserAtEndOfLastRange() {
+      assertEquals(USER_2, timeUserCache.getUserId(250L));
+      // ends of other ranges belong to the next range
+      assertEquals(NO_USER, timeUserCache.getUserId(120L));
+      assertEquals(USER_2, timeUserCache.getUserId(180L));
     }
 
     @Test
-    public void returnsNullUserForTimestampAfterLastAdded() {
-      populateCache();
+    public void findsUsersOfManyRanges() {
+      TimeUserCache manyRanges = new TimeUserCache();
+      for (int i = 0; i < 10000; i++) {
+        manyRanges.addUser(i * 10L, i * 10L + 5, i);
+      }
+      for (int i = 0; i < 10000; i++) {
+        assertEquals(i, manyRanges.getUserId(i * 10L + 3));
+        assertEquals(NO_USER, manyRanges.getUserId(i * 10L + 7));
+      }
+    }
+  }
 
-      String actualUser = timeUserCache.getUser(300L);
+  public static class AddUser {
+    private static final int NEW_USER = 3;
+    TimeUserCache timeUserCache = populatedCache();
 
-      assertNull(actualUser);
+    @Test
+    public void initializesEmptyCache() {
+      assertEquals(0, new TimeUserCache().size());
     }
 
-  }
-
-  public static class AddNextUser {
-    private static final String NEW_USER = "someUser";
-    TimeUserCache timeUserCache = new TimeUserCache();
+    @Test
+    public void mergesRangeOlderThanLastOne() {
+      timeUserCache.addUser(80L, 110L, NEW_USER);
 
-    private List<Long> getCacheTimestamps() {
-      return (List) Whitebox.getInternalState(timeUserCache, "timestamps");
+      assertArrayEquals(new long[] {80L, 110L, 120L, 140L, 180L, 250L}, getBoundaries(timeUserCache));
+      assertArrayEquals(new int[] {NEW_USER, USER_0, NO_USER, USER_1, USER_2, NO_USER},
+        getUserIds(timeUserCache));
     }
 
-    private List<String> getCacheUsers() {
-      return (List)Whitebox.getInternalState(timeUserCache, "users");
+    @Test
+    public void mergesRangeIntoGapBetweenRanges() {
+      timeUserCache.addUser(125L, 130L, NEW_USER);
+
+      assertArrayEquals(new long[] {100L, 120L, 125L, 130L, 140L, 180L, 250L},
+        getBoundaries(timeUserCache));
+      assertArrayEquals(new int[] {USER_0, NO_USER, NEW_USER, NO_USER, USER_1, USER_2, NO_USER},
+        getUserIds(timeUserCache));
     }
 
-    private void populateCache() {
-      getCacheTimestamps().addAll(Arrays.asList(
-          100L, 120L, 140L, 180L, 250L
-      ));
-      getCacheUsers().addAll(Arrays.asList(
-          USER_0, null, USER_1, USER_2, null
-      ));
+    @Test
+    public void mergesRangeCoveringSeveralRanges() {
+      timeUserCache.addUser(110L, 200L, NEW_USER);
+
+      assertArrayEquals(new long[] {100L, 110L, 200L, 250L}, getBoundaries(timeUserCache));
+      assertArrayEquals(new int[] {USER_0, NEW_USER, USER_2, NO_USER}, getUserIds(timeUserCache));
     }
 
     @Test
-    public void initializesEmptyCache() {
-      assertTrue(getCacheTimestamps().isEmpty());
-      assertTrue(getCacheUsers().isEmpty());
+    public void mergesRangeCoveringAllRanges() {
+      timeUserCache.addUser(50L, 300L, NEW_USER);
+
+      assertArrayEquals(new long[] {50L, 300L}, getBoundaries(timeUserCache));
+      assertArrayEquals(new int[] {NEW_USER, NO_USER}, getUserIds(timeUserCache));
     }
 
     @Test(expected = IllegalArgumentException.class)
-    public void throwsWhenAddingNotToTheEnd() {
-      populateCache();
-      timeUserCache.addNextUser(80L, 110L, NEW_USER);
+    public void throwsWhenRangeEndsBeforeStart() {
+      timeUserCache.addUser(300L, 280L, NEW_USER);
     }
 
     @Test
     public void addsMiniBucketWhenWiderWithSameStartTsProvided() {
-      populateCache();
-      timeUserCache.addNextUser(180L, 270L, NEW_USER);
+      timeUserCache.addUser(180L, 270L, NEW_USER);
 
-      assertEquals(
-        Arrays.asList(100L, 120L, 140L, 180L, 250L, 270L),
-        getCacheTimestamps()
-      );
-      assertEquals(
-        Arrays.asList(USER_0, null, USER_1, USER_2, NEW_USER, null),
-        getCacheUsers()
-      );
+      assertArrayEquals(new long[] {100L, 120L, 140L, 180L, 250L, 270L}, getBoundaries(timeUserCache));
+      assertArrayEquals(new int[] {USER_0, NO_USER, USER_1, USER_2, NEW_USER, NO_USER},
+        getUserIds(timeUserCache));
     }
 
     @Test
     public void updatesBucketWhenShorterWithSameStartTsProvided() {
-      populateCache();
-      timeUserCache.addNextUser(180L, 230L, NEW_USER);
+      timeUserCache.addUser(180L, 230L, NEW_USER);
 
-      assertEquals(
-        Arrays.asList(100L, 120L, 140L, 180L, 230L),
-        getCacheTimestamps()
-      );
-      assertEquals(
-        Arrays.asList(USER_0, null, USER_1, NEW_USER, null),
-        getCacheUsers()
-      );
+      assertArrayEquals(new long[] {100L, 120L, 140L, 180L, 230L}, getBoundaries(timeUserCache));
+      assertArrayEquals(new int[] {USER_0, NO_USER, USER_1, NEW_USER, NO_USER},
+        getUserIds(timeUserCache));
     }
 
     @Test
     public void splitsBucketWhenNewerStartTsProvided() {
-      populateCache();
-      timeUserCache.addNextUser(190L, 230L, NEW_USER);
+      timeUserCache.addUser(190L, 230L, NEW_USER);
 
-      assertEquals(
-        Arrays.asList(100L, 120L, 140L, 180L, 190L, 230L),
-        getCacheTimestamps()
-      );
-      assertEquals(
-        Arrays.asList(USER_0, null, USER_1, USER_2, NEW_USER, null),
-        getCacheUsers()
-      );
+      assertArrayEquals(new long[] {100L, 120L, 140L, 180L, 190L, 230L}, getBoundaries(timeUserCache));
+      assertArrayEquals(new int[] {USER_0, NO_USER, USER_1, USER_2, NEW_USER, NO_USER},
+        getUserIds(timeUserCache));
     }
 
     @Test
     public void addsNextEntryWhenTimeRangeCatchOnLastOne() {
-      populateCache();
-      timeUserCache.addNextUser(250L, 280L, NEW_USER);
+      timeUserCache.addUser(250L, 280L, NEW_USER);
 
-      assertEquals(
-          Arrays.asList(100L, 120L, 140L, 180L, 250L, 280L),
-          getCacheTimestamps()
-      );
-      assertEquals(
-          Arrays.asList(USER_0, null, USER_1, USER_2, NEW_USER, null),
-          getCacheUsers()
-      );
+      assertArrayEquals(new long[] {100L, 120L, 140L, 180L, 250L, 280L}, getBoundaries(timeUserCache));
+      assertArrayEquals(new int[] {USER_0, NO_USER, USER_1, USER_2, NEW_USER, NO_USER},
+        getUserIds(timeUserCache));
     }
 
     @Test
     public void addsNextEntryWhenTimeRangeIsWithDelayToLastOne() {
-      populateCache();
-      timeUserCache.addNextUser(260L, 280L, NEW_USER);
-
-      assertEquals(
-          Arrays.asList(100L, 120L, 140L, 180L, 250L, 260L, 280L),
-          getCacheTimestamps()
-      );
-      assertEquals(
-          Arrays.asList(USER_0, null, USER_1, USER_2, null, NEW_USER, null),
-          getCacheUsers()
-      );
+      timeUserCache.addUser(260L, 280L, NEW_USER);
+
+      assertArrayEquals(new long[] {100L, 120L, 140L, 180L, 250L, 260L, 280L},
+        getBoundaries(timeUserCache));
+      assertArrayEquals(new int[] {USER_0, NO_USER, USER_1, USER_2, NO_USER, NEW_USER, NO_USER},
+        getUserIds(timeUserCache));
+    }
+  }
+
+  public static class Copy {
+    @Test
+    public void copiesRangesIndependently() {
+      TimeUserCache original = populatedCache();
+      TimeUserCache copy = original.copy();
+      copy.addUser(260L, 280L, USER_0);
+
+      assertEquals(5, original.size());
+      assertEquals(7, copy.size());
+      assertEquals(USER_0, copy.getUserId(270L));
+      assertEquals(NO_USER, original.getUserId(270L));
     }
   }
 }
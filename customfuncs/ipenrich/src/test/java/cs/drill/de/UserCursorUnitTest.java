@@ -0,0 +1,121 @@
+package cs.drill.de;
+
+import org.apache.drill.exec.ops.UdfMetrics;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class UserCursorUnitTest {
+  private static final int MAX_SIZE = 10;
+
+  public static class GetUser {
+    private UserIndex index;
+    private long[] stats = new long[4];
+    private UdfMetrics metrics = new UdfMetrics();
+    private UserCursor cursor;
+
+    @Before
+    public void setUp() {
+      UserRecords records = new UserRecords();
+      records.add(1L, 1L, 10L, 20L, "first");
+      records.add(1L, 1L, 20L, 30L, "second");
+      records.add(2L, 2L, 10L, 20L, "other");
+      index = UserIndex.build(records, MAX_SIZE).index;
+      cursor = new UserCursor(() -> index, (found, fromCursor) -> {
+        stats[found ? 0 : 1]++;
+        stats[fromCursor ? 2 : 3]++;
+      }, metrics);
+    }
+
+    @Test
+    public void resolvesUsersOfOrderedTimestampsFromRange() {
+      for (long timestamp = 10L; timestamp < 20L; timestamp++) {
+        assertEquals("first", cursor.getUser(1L, 1L, timestamp));
+      }
+      for (long timestamp = 20L; timestamp < 30L; timestamp++) {
+        assertEquals("second", cursor.getUser(1L, 1L, timestamp));
+      }
+
+      assertEquals(20, stats[0]);
+      assertEquals(0, stats[1]);
+      assertEquals(18, stats[2]);
+      assertEquals(2, stats[3]);
+    }
+
+    @Test
+    public void resolvesUsersOfUnorderedTimestamps() {
+      assertEquals("second", cursor.getUser(1L, 1L, 25L));
+      assertEquals("first", cursor.getUser(1L, 1L, 15L));
+      assertNull(cursor.getUser(1L, 1L, 5L));
+      assertNull(cursor.getUser(1L, 1L, 35L));
+      assertEquals("second", cursor.getUser(1L, 1L, 29L));
+    }
+
+    @Test
+    public void resolvesLastUserAtEndOfLastRange() {
+      assertEquals("second", cursor.getUser(1L, 1L, 29L));
+      assertEquals("second", cursor.getUser(1L, 1L, 30L));
+      assertNull(cursor.getUser(1L, 1L, 31L));
+    }
+
+    @Test
+    public void resolvesUsersOfChangedIp() {
+      assertEquals("first", cursor.getUser(1L, 1L, 15L));
+      assertEquals("other", cursor.getUser(2L, 2L, 15L));
+      assertNull(cursor.getUser(3L, 3L, 15L));
+      assertNull(cursor.getUser(3L, 3L, 16L));
+      assertEquals("first", cursor.getUser(1L, 1L, 16L));
+
+      assertEquals(3, stats[0]);
+      assertEquals(2, stats[1]);
+      assertEquals(1, stats[2]);
+      assertEquals(4, stats[3]);
+    }
+
+    @Test
+    public void countsRowsIntoMetrics() {
+      assertEquals("first", cursor.getUser(1L, 1L, 15L));
+      assertEquals("first", cursor.getUser(1L, 1L, 16L));
+      assertNull(cursor.getUser(3L, 3L, 15L));
+
+      assertEquals(3, metrics.getLookups());
+      assertEquals(2, metrics.getHits());
+      assertEquals(1, metrics.getMisses());
+      assertEquals(1, metrics.getMemoHits());
+      assertEquals(2, metrics.getBackendCalls());
+    }
+
+    @Test
+    public void resolvesUsersOfReloadedIndex() {
+      assertEquals("first", cursor.getUser(1L, 1L, 15L));
+
+      UserRecords records = new UserRecords();
+      records.add(1L, 1L, 15L, 20L, "reloaded");
+      index = index.update(records).index;
+
+      assertEquals("reloaded", cursor.getUser(1L, 1L, 16L));
+    }
+
+    @Test
+    public void returnsNothingWithoutIndex() {
+      index = null;
+
+      assertNull(cursor.getUser(1L, 1L, 15L));
+    }
+
+    @Test
+    public void countsStatsOfEveryRow() {
+      cursor.getUser(1L, 1L, 15L);
+      cursor.getUser(1L, 1L, 16L);
+      cursor.getUser(3L, 3L, 15L);
+
+      // nothing is held back by the cursor
+      assertEquals(2, stats[0]);
+      assertEquals(1, stats[1]);
+      assertEquals(1, stats[2]);
+      assertEquals(2, stats[3]);
+    }
+  }
+}
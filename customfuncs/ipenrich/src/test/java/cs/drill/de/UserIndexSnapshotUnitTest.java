@@ -0,0 +1,144 @@
+package cs.drill.de;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class UserIndexSnapshotUnitTest {
+  private static final int MAX_SIZE = 10;
+  private static final long UPDATE_TIME = 1234L;
+
+  static ByteBuffer write(UserIndex index) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream output = new DataOutputStream(bytes)) {
+      UserIndexSnapshot.write(index, UPDATE_TIME, output);
+    }
+    return ByteBuffer.wrap(bytes.toByteArray());
+  }
+
+  /**
+   * Snapshot of a single ip with given ranges and user "first" of id 0.
+   */
+  static ByteBuffer write(long[] boundaries, int[] userIds) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream output = new DataOutputStream(bytes)) {
+      output.writeInt(0x55534552);
+      output.writeInt(1);
+      output.writeLong(UPDATE_TIME);
+      output.writeInt(1);
+      output.writeInt(5);
+      output.writeBytes("first");
+      output.writeInt(1);
+      output.writeLong(1L);
+      output.writeLong(1L);
+      output.writeInt(boundaries.length);
+      for (long boundary : boundaries) {
+        output.writeLong(boundary);
+      }
+      for (int userId : userIds) {
+        output.writeInt(userId);
+      }
+    }
+    return ByteBuffer.wrap(bytes.toByteArray());
+  }
+
+  public static class Read {
+    private UserIndex index;
+
+    @Before
+    public void setUp() {
+      UserRecords records = new UserRecords();
+      records.add(1L, 1L, 10L, 20L, "first");
+      records.add(1L, 1L, 20L, 30L, "Łukasz");
+      records.add(2L, 2L, 10L, UserRecords.OPEN_END, "first");
+      index = UserIndex.build(records, MAX_SIZE).index;
+    }
+
+    @Test
+    public void restoresWrittenIndex() throws IOException {
+      UserIndexSnapshot snapshot = UserIndexSnapshot.read(write(index), MAX_SIZE);
+
+      assertEquals(UPDATE_TIME, snapshot.updateTime);
+      assertEquals(2, snapshot.index.size());
+      assertEquals("first", snapshot.index.get(1L, 1L, 15L));
+      assertEquals("Łukasz", snapshot.index.get(1L, 1L, 25L));
+      assertNull(snapshot.index.get(1L, 1L, 35L));
+      assertEquals("first", snapshot.index.get(2L, 2L, Long.MAX_VALUE - 1));
+    }
+
+    @Test
+    public void restoresUpdatedUsers() throws IOException {
+      UserRecords records = new UserRecords();
+      records.add(1L, 1L, 30L, 40L, "updated");
+      records.add(3L, 3L, 10L, 20L, "new");
+      index = index.update(records).index;
+
+      UserIndexSnapshot snapshot = UserIndexSnapshot.read(write(index), MAX_SIZE);
+
+      assertEquals(3, snapshot.index.size());
+      assertEquals("Łukasz", snapshot.index.get(1L, 1L, 25L));
+      assertEquals("updated", snapshot.index.get(1L, 1L, 35L));
+      assertEquals("new", snapshot.index.get(3L, 3L, 15L));
+    }
+
+    @Test
+    public void updatesRestoredIndex() throws IOException {
+      UserIndex restored = UserIndexSnapshot.read(write(index), MAX_SIZE).index;
+      UserRecords records = new UserRecords();
+      records.add(1L, 1L, 30L, 40L, "updated");
+
+      UserIndex updated = restored.update(records).index;
+
+      assertEquals("updated", updated.get(1L, 1L, 35L));
+      assertNull(restored.get(1L, 1L, 35L));
+    }
+
+    @Test
+    public void limitsRestoredIps() throws IOException {
+      assertEquals(1, UserIndexSnapshot.read(write(index), 1).index.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void throwsOnUnknownFormat() {
+      UserIndexSnapshot.read(ByteBuffer.wrap(new byte[] {1, 2, 3, 4, 5, 6, 7, 8}), MAX_SIZE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void throwsOnTruncatedSnapshot() throws IOException {
+      ByteBuffer buffer = write(index);
+      UserIndexSnapshot.read(ByteBuffer.wrap(Arrays.copyOf(buffer.array(), buffer.limit() - 1)), MAX_SIZE);
+    }
+
+    @Test
+    public void readsValidRanges() throws IOException {
+      UserIndex restored = UserIndexSnapshot.read(
+          write(new long[] {10L, 20L}, new int[] {0, UserNames.NO_USER}), MAX_SIZE).index;
+      assertEquals("first", restored.get(1L, 1L, 15L));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void throwsOnSingleBoundary() throws IOException {
+      // would break the next update of the ip
+      UserIndexSnapshot.read(write(new long[] {10L}, new int[] {0}), MAX_SIZE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void throwsOnUnsortedBoundaries() throws IOException {
+      UserIndexSnapshot.read(
+          write(new long[] {20L, 10L, 30L}, new int[] {0, 0, UserNames.NO_USER}), MAX_SIZE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void throwsOnOpenLastRange() throws IOException {
+      UserIndexSnapshot.read(write(new long[] {10L, 20L}, new int[] {0, 0}), MAX_SIZE);
+    }
+  }
+}
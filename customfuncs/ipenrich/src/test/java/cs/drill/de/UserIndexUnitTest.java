@@ -0,0 +1,120 @@
+package cs.drill.de;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class UserIndexUnitTest {
+  private static final int MAX_SIZE = 2;
+
+  public static class Build {
+    private UserRecords records = new UserRecords();
+
+    @Test
+    public void indexesUsersOfRecords() {
+      records.add(1L, 1L, 10L, 20L, "later");
+      records.add(1L, 1L, 0L, 5L, "earlier");
+
+      UserIndex index = UserIndex.build(records, MAX_SIZE).index;
+
+      assertEquals("earlier", index.get(1L, 1L, 3L));
+      assertEquals("later", index.get(1L, 1L, 15L));
+      assertNull(index.get(1L, 1L, 25L));
+      assertNull(index.get(2L, 2L, 15L));
+    }
+
+    @Test
+    public void rejectsIpsOverLimit() {
+      records.add(1L, 1L, 10L, 20L, "a");
+      records.add(2L, 2L, 10L, 20L, "b");
+      records.add(3L, 3L, 10L, 20L, "c");
+
+      UserIndex.Result result = UserIndex.build(records, MAX_SIZE);
+
+      assertEquals(1, result.rejectedCount);
+      assertEquals(MAX_SIZE, result.index.size());
+      assertNull(result.index.get(3L, 3L, 15L));
+    }
+  }
+
+  public static class Update {
+    private UserIndex index;
+
+    @Before
+    public void setUp() {
+      UserRecords records = new UserRecords();
+      records.add(1L, 1L, 10L, 20L, "user");
+      index = UserIndex.build(records, MAX_SIZE).index;
+    }
+
+    @Test
+    public void addsRecordsToNewIndexOnly() {
+      UserRecords records = new UserRecords();
+      records.add(1L, 1L, 30L, 40L, "next");
+      records.add(2L, 2L, 30L, 40L, "other");
+
+      UserIndex updated = index.update(records).index;
+
+      assertEquals("user", updated.get(1L, 1L, 15L));
+      assertEquals("next", updated.get(1L, 1L, 35L));
+      assertEquals("other", updated.get(2L, 2L, 35L));
+      assertEquals(2, updated.size());
+      assertNull(index.get(1L, 1L, 35L));
+      assertNull(index.get(2L, 2L, 35L));
+    }
+
+    @Test
+    public void keepsUsersOfPreviousUpdates() {
+      UserRecords first = new UserRecords();
+      first.add(2L, 2L, 30L, 40L, "first");
+      UserRecords second = new UserRecords();
+      second.add(1L, 1L, 30L, 40L, "second");
+
+      UserIndex updated = index.update(first).index.update(second).index;
+
+      assertEquals("first", updated.get(2L, 2L, 35L));
+      assertEquals("second", updated.get(1L, 1L, 35L));
+    }
+
+    @Test
+    public void mergesRecordsOlderThanKnownUsers() {
+      UserRecords records = new UserRecords();
+      records.add(1L, 1L, 0L, 5L, "old");
+
+      UserIndex updated = index.update(records).index;
+
+      assertEquals("old", updated.get(1L, 1L, 3L));
+      assertEquals("user", updated.get(1L, 1L, 15L));
+    }
+
+    @Test
+    public void rejectsNewIpsOverLimit() {
+      UserRecords records = new UserRecords();
+      records.add(2L, 2L, 30L, 40L, "a");
+      records.add(3L, 3L, 30L, 40L, "b");
+
+      UserIndex.Result result = index.update(records);
+
+      assertEquals(1, result.rejectedCount);
+      assertEquals(MAX_SIZE, result.index.size());
+    }
+
+    @Test
+    public void mergesLargeDeltaIntoBase() {
+      UserIndex large = UserIndex.build(new UserRecords(), Integer.MAX_VALUE).index;
+      for (int update = 0; update < 3; update++) {
+        UserRecords records = new UserRecords();
+        for (long ip = 0; ip < 3000; ip++) {
+          records.add(update, ip, 10L, 20L, "user" + update);
+        }
+        large = large.update(records).index;
+      }
+
+      assertEquals(9000, large.size());
+      assertEquals("user0", large.get(0L, 0L, 15L));
+      assertEquals("user2", large.get(2L, 2999L, 15L));
+    }
+  }
+}
@@ -0,0 +1,88 @@
+package cs.drill.de;
+
+import cs.drill.util.IpUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class UserRecordsUnitTest {
+  public static class ForEachIp {
+    private UserRecords records = new UserRecords();
+
+    private List<String> collect() {
+      List<String> result = new ArrayList<>();
+      records.forEachIp((ip1, ip2, ids, count) -> {
+        for (int i = 0; i < count; i++) {
+          int record = ids[i];
+          result.add(ip1 + "/" + ip2 + "@" + records.getStartTs(record) + ":" + records.getUser(record));
+        }
+      });
+      return result;
+    }
+
+    @Test
+    public void groupsRecordsByIpSortedByStart() {
+      records.add(1L, 1L, 30L, 40L, "c");
+      records.add(2L, 2L, 10L, 20L, "x");
+      records.add(1L, 1L, 10L, 20L, "a");
+      records.add(1L, 1L, 20L, 30L, "b");
+
+      assertEquals(Arrays.asList("1/1@10:a", "1/1@20:b", "1/1@30:c", "2/2@10:x"), collect());
+    }
+
+    @Test
+    public void keepsOrderOfRecordsWithEqualStart() {
+      records.add(1L, 1L, 10L, 20L, "first");
+      records.add(1L, 1L, 10L, 20L, "second");
+
+      assertEquals(Arrays.asList("1/1@10:first", "1/1@10:second"), collect());
+    }
+
+    @Test
+    public void sortsManyRecordsOfIp() {
+      for (long startTs = 5000; startTs > 0; startTs--) {
+        records.add(1L, 1L, startTs, startTs + 1, "user");
+      }
+      long[] previous = {0};
+      records.forEachIp((ip1, ip2, ids, count) -> {
+        assertEquals(5000, count);
+        for (int i = 0; i < count; i++) {
+          assertEquals(previous[0] + 1, records.getStartTs(ids[i]));
+          previous[0]++;
+        }
+      });
+    }
+  }
+
+  public static class Add {
+    private UserRecords records = new UserRecords();
+
+    @Test
+    public void sharesEqualUserNames() {
+      records.add(1L, 1L, 10L, 20L, new String("user"));
+      records.add(2L, 2L, 10L, 20L, new String("user"));
+
+      assertSame(records.getUser(0), records.getUser(1));
+    }
+
+    @Test
+    public void treatsMissingEndAsOpenEnd() {
+      records.add(new EnrichedUser(10L, null, new IpUtil.IpPair(1L, 1L), "user"));
+
+      assertEquals(UserRecords.OPEN_END, records.getEndTs(0));
+    }
+
+    @Test
+    public void skipsUsersWithoutStart() {
+      records.add(new EnrichedUser(null, 20L, new IpUtil.IpPair(1L, 1L), "user"));
+
+      assertEquals(0, records.size());
+      assertEquals(1, records.getSkippedCount());
+    }
+  }
+}
@@ -2,37 +2,26 @@ package cs.drill.de;
 
 import org.junit.Before;
 import org.junit.Test;
-import org.mockito.internal.util.reflection.Whitebox;
-
-import java.util.HashMap;
-import java.util.Map;
 
 import static junit.framework.TestCase.assertNull;
 import static org.junit.Assert.assertEquals;
-import static org.mockito.Mockito.mock;
-import static org.mockito.Mockito.when;
 
 public class UserTimedIpCacheUnitTest {
   public static class Get {
-    private static final Long IP_1 = 1L;
-    private static final Long IP_2 = 2L;
-    private static final Long TIMESTAMP = 3L;
+    private static final long IP_1 = 1L;
+    private static final long IP_2 = 2L;
+    private static final long START_TS = 3L;
+    private static final long TIMESTAMP = 4L;
+    private static final long END_TS = 5L;
     private static final String USER = "someUser";
-    private static final Long NON_EXISTING_IP_1 = 5L;
-    private static final Long NON_EXISTING_IP_2 = 6L;
+    private static final long NON_EXISTING_IP_1 = 5L;
+    private static final long NON_EXISTING_IP_2 = 6L;
 
     private UserTimedIpCache userTimedIpCache = new UserTimedIpCache();
-    private Map<Long, Map<Long, TimeUserCache>> internalCache = new HashMap<>();
 
     @Before
     public void setUp() {
-      TimeUserCache timeUserCache = mock(TimeUserCache.class);
-      when(timeUserCache.getUser(TIMESTAMP)).thenReturn(USER);
-      Map<Long, TimeUserCache> ip2TimeUserInternalCache = new HashMap<>();
-      ip2TimeUserInternalCache.put(IP_2, timeUserCache);
-      internalCache.put(IP_1, ip2TimeUserInternalCache);
-
-      Whitebox.setInternalState(userTimedIpCache, "cache", internalCache);
+      userTimedIpCache.put(IP_1, IP_2, START_TS, END_TS, USER);
     }
 
     @Test
@@ -52,5 +41,41 @@ public class UserTimedIpCacheUnitTest {
       String result = userTimedIpCache.get(IP_1, IP_2, TIMESTAMP);
       assertEquals(USER, result);
     }
+
+    @Test
+    public void returnsNullOutsideOfTimeRange() {
+      String result = userTimedIpCache.get(IP_1, IP_2, END_TS + 1);
+      assertNull(result);
+    }
+  }
+
+  public static class Put {
+    private UserTimedIpCache userTimedIpCache = new UserTimedIpCache();
+
+    @Test
+    public void keepsUsersOfManyIps() {
+      for (long ip2 = 0; ip2 < 5000; ip2++) {
+        userTimedIpCache.put(1L, ip2, 10L, 20L, "user" + ip2);
+      }
+
+      assertEquals(5000, userTimedIpCache.size());
+      for (long ip2 = 0; ip2 < 5000; ip2++) {
+        assertEquals("user" + ip2, userTimedIpCache.get(1L, ip2, 15L));
+      }
+    }
+
+    @Test
+    public void rejectsUsersOfIpsOverLimit() {
+      UserTimedIpCache limitedCache = new UserTimedIpCache(2);
+      limitedCache.put(1L, 1L, 10L, 20L, "user1");
+      limitedCache.put(1L, 2L, 10L, 20L, "user2");
+      limitedCache.put(1L, 3L, 10L, 20L, "user3");
+      limitedCache.put(1L, 1L, 20L, 30L, "user4");
+
+      assertEquals(2, limitedCache.size());
+      assertEquals(1, limitedCache.getRejectedCount());
+      assertNull(limitedCache.get(1L, 3L, 15L));
+      assertEquals("user4", limitedCache.get(1L, 1L, 25L));
+    }
   }
 }
@@ -0,0 +1,81 @@
+package cs.drill.ipfun.appname;
+
+import cs.drill.toucan.JsonAppEnrichment;
+import cs.drill.util.IpUtil;
+import cs.drill.util.Utf8String;
+import org.apache.drill.exec.ops.UdfMetrics;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ApplicationNameMemoUnitTest {
+  private static final long NAMED_IP = 0x0a000001L; // 10.0.0.1
+  private static final long UNNAMED_IP = 0x0b000001L; // 11.0.0.1
+  private static final int PORT = 80;
+
+  private final UdfMetrics metrics = new UdfMetrics();
+
+  private static JsonAppEnrichment enrichment(String suffix) {
+    LinkedHashMap<String, String> names = new LinkedHashMap<>();
+    names.put("10.0.0.0/8", "subnet" + suffix);
+    LinkedHashMap<Integer, String> ports = new LinkedHashMap<>();
+    ports.put(PORT, "port" + suffix);
+    return new JsonAppEnrichment(names, ports);
+  }
+
+  private static String toString(Utf8String name) {
+    return name == null ? null : name.toString();
+  }
+
+  @After
+  public void clear() {
+    ApplicationNameResolver.clear();
+    ApplicationNameResolver.lastJson = null;
+  }
+
+  @Test
+  public void resolvesSubnetNameBeforePortName() {
+    ApplicationNameResolver.populate(enrichment("A"));
+    ApplicationNameMemo memo = ApplicationNameResolver.newMemo(metrics);
+
+    assertEquals("subnetA", toString(memo.getApplicationName(IpUtil.WKP, NAMED_IP, PORT)));
+    assertEquals("portA", toString(memo.getApplicationName(IpUtil.WKP, UNNAMED_IP, PORT)));
+    assertNull(memo.getApplicationName(IpUtil.WKP, UNNAMED_IP, PORT + 1));
+    assertNull(memo.getApplicationName(IpUtil.WKP, UNNAMED_IP));
+  }
+
+  @Test
+  public void countsHitsOfRepeatedPairs() {
+    ApplicationNameResolver.populate(enrichment("A"));
+    ApplicationNameMemo memo = ApplicationNameResolver.newMemo(metrics);
+
+    for (int i = 0; i < 10; i++) {
+      assertEquals("portA", toString(memo.getApplicationName(IpUtil.WKP, UNNAMED_IP, PORT)));
+      assertNull(memo.getApplicationName(IpUtil.WKP, UNNAMED_IP, PORT + 1));
+    }
+
+    assertEquals(20, metrics.getLookups());
+    assertEquals(10, metrics.getHits());
+    assertEquals(10, metrics.getMisses());
+    assertEquals(18, metrics.getMemoHits());
+    assertEquals(2, metrics.getBackendCalls());
+  }
+
+  @Test
+  public void forgetsNamesOfReplacedEnrichment() {
+    ApplicationNameResolver.populate(enrichment("A"));
+    ApplicationNameMemo memo = ApplicationNameResolver.newMemo(metrics);
+    assertEquals("subnetA", toString(memo.getApplicationName(IpUtil.WKP, NAMED_IP, PORT)));
+    assertEquals("portA", toString(memo.getApplicationName(IpUtil.WKP, UNNAMED_IP, PORT)));
+
+    ApplicationNameResolver.populate(enrichment("B"));
+
+    assertEquals("subnetB", toString(memo.getApplicationName(IpUtil.WKP, NAMED_IP, PORT)));
+    assertEquals("portB", toString(memo.getApplicationName(IpUtil.WKP, UNNAMED_IP, PORT)));
+    assertEquals(0, metrics.getMemoHits());
+  }
+}
@@ -0,0 +1,120 @@
+package cs.drill.ipfun.appname;
+
+import cs.drill.toucan.JsonAppEnrichment;
+import cs.drill.util.IpUtil;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Many fragments resolve names while enrichment is reloaded.
+ */
+public class ApplicationNameResolverConcurrencyTest {
+  private static final int FRAGMENTS = 8;
+  // lookups every fragment does while enrichment is reloaded
+  private static final int LOOKUPS = 1000;
+  private static final long TIMEOUT_MS = TimeUnit.MINUTES.toMillis(1);
+  private static final int PORT = 80;
+  private static final long NAMED_SUBNET = 0x0a000000L; // 10.0.0.0/8
+  private static final long UNNAMED_SUBNET = 0x0b000000L; // 11.0.0.0/8
+  private static final int HOSTS = 1 << 12;
+
+  private final AtomicBoolean reloading = new AtomicBoolean(true);
+  private final AtomicIntegerArray lookups = new AtomicIntegerArray(FRAGMENTS);
+  private final CyclicBarrier start = new CyclicBarrier(FRAGMENTS + 1);
+
+  private static JsonAppEnrichment enrichment(String suffix) {
+    LinkedHashMap<String, String> names = new LinkedHashMap<>();
+    names.put("10.0.0.0/8", "subnet" + suffix);
+    LinkedHashMap<Integer, String> ports = new LinkedHashMap<>();
+    ports.put(PORT, "port" + suffix);
+    return new JsonAppEnrichment(names, ports);
+  }
+
+  @After
+  public void clear() {
+    ApplicationNameResolver.clear();
+    ApplicationNameResolver.lastJson = null;
+  }
+
+  private Void resolve(int fragment) throws Exception {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    start.await();
+    while (reloading.get()) {
+      long host = random.nextInt(HOSTS);
+      String named =
+        ApplicationNameResolver.getApplicationName(IpUtil.WKP, NAMED_SUBNET | host, PORT);
+      assertTrue("Unexpected name " + named, "subnetA".equals(named) || "subnetB".equals(named));
+      String unnamed =
+        ApplicationNameResolver.getApplicationName(IpUtil.WKP, UNNAMED_SUBNET | host, PORT);
+      assertTrue("Unexpected name " + unnamed, "portA".equals(unnamed) || "portB".equals(unnamed));
+      lookups.incrementAndGet(fragment);
+    }
+    return null;
+  }
+
+  private boolean allFragmentsLookedUp() {
+    for (int i = 0; i < FRAGMENTS; i++) {
+      if (lookups.get(i) < LOOKUPS) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Test
+  public void resolvesNamesOfLastEnrichmentAfterConcurrentReloads() throws Exception {
+    JsonAppEnrichment first = enrichment("A");
+    JsonAppEnrichment second = enrichment("B");
+    ApplicationNameResolver.populate(first);
+
+    ExecutorService executor = Executors.newFixedThreadPool(FRAGMENTS);
+    List<Future<Void>> fragments = new ArrayList<>();
+    try {
+      for (int i = 0; i < FRAGMENTS; i++) {
+        final int fragment = i;
+        fragments.add(executor.submit(() -> resolve(fragment)));
+      }
+      // reloads start together with lookups and go on until every fragment did its lookups
+      start.await(1, TimeUnit.MINUTES);
+      long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+      for (int i = 0; !allFragmentsLookedUp() && System.currentTimeMillis() < deadline; i++) {
+        ApplicationNameResolver.populate(i % 2 == 0 ? second : first);
+      }
+      ApplicationNameResolver.populate(second);
+    } finally {
+      reloading.set(false);
+      executor.shutdown();
+    }
+    for (Future<Void> fragment : fragments) {
+      // rethrows assertion errors of fragments
+      fragment.get(1, TimeUnit.MINUTES);
+    }
+    for (int i = 0; i < FRAGMENTS; i++) {
+      assertTrue("Fragment " + i + " resolved " + lookups.get(i) + " names during reloads",
+        lookups.get(i) >= LOOKUPS);
+    }
+
+    // results cached from replaced enrichments are gone
+    for (long host = 0; host < HOSTS; host++) {
+      assertEquals("subnetB",
+        ApplicationNameResolver.getApplicationName(IpUtil.WKP, NAMED_SUBNET | host, PORT));
+      assertEquals("portB",
+        ApplicationNameResolver.getApplicationName(IpUtil.WKP, UNNAMED_SUBNET | host, PORT));
+    }
+  }
+}
@@ -52,6 +52,19 @@ public class ToucanAppEnrichmentManagerUnitTest {
       doThrow(Exception.class).when(manager).mergeJsons(any());
       manager.update();
     }
+
+    @Test
+    public void doesNotCallConsumerAgainWhenNothingChanged() {
+      doReturn(elem).when(manager).fetchData(any());
+      manager.update();
+      manager.update();
+      verify(consumer, times(1)).accept(any());
+    }
+
+    @Test
+    public void returnsFalseWhenNothingFetched() {
+      assertFalse(manager.update());
+    }
   }
 
   @RunWith(MockitoJUnitRunner.class)
@@ -70,13 +83,13 @@ public class ToucanAppEnrichmentManagerUnitTest {
 
     @Test
     public void returnsNullWhenRestClientThrows() throws RestClientException {
-      when(restClient.getJson(any())).thenThrow(RestClientException.class);
+      when(restClient.getJsonIfModified(any())).thenThrow(RestClientException.class);
       assertNull(manager.fetchData(url));
     }
 
     @Test
     public void returnsDeserializedJson() throws RestClientException {
-      when(restClient.getJson(url)).thenReturn(
+      when(restClient.getJsonIfModified(url)).thenReturn(
           "{\"value\": {\"names\": {\"a\": \"b\"}, \"ports\": {\"2\": \"port2\"}}}"
       );
 
@@ -89,7 +102,7 @@ public class ToucanAppEnrichmentManagerUnitTest {
 
     @Test
     public void returnsDeserializedJsonWithMissedNames() throws RestClientException {
-      when(restClient.getJson(url)).thenReturn(
+      when(restClient.getJsonIfModified(url)).thenReturn(
           "{\"value\": {\"ports\": {\"2\": \"port2\"}}}"
       );
 
@@ -102,7 +115,7 @@ public class ToucanAppEnrichmentManagerUnitTest {
 
     @Test
     public void returnsDeserializedJsonWithMissedPorts() throws RestClientException {
-      when(restClient.getJson(url)).thenReturn(
+      when(restClient.getJsonIfModified(url)).thenReturn(
           "{\"value\": {\"names\": {\"a\": \"b\"}}}"
       );
 
@@ -115,8 +128,36 @@ public class ToucanAppEnrichmentManagerUnitTest {
 
     @Test
     public void returnsNullOnWrongJson() throws RestClientException {
-      when(restClient.getJson(url)).thenReturn("{pancakes}");
+      when(restClient.getJsonIfModified(url)).thenReturn("{pancakes}");
+      assertNull(manager.fetchData(url));
+      verify(restClient).forget(url);
+    }
+
+    @Test
+    public void returnsLastJsonWhenNotModified() throws RestClientException {
+      when(restClient.getJsonIfModified(url)).thenReturn(
+          "{\"value\": {\"names\": {\"a\": \"b\"}}}", (String) null
+      );
+
+      JsonAppEnrichment result = manager.fetchData(url);
+      assertSame(result, manager.fetchData(url));
+    }
+
+    @Test
+    public void doesNotParseUnchangedPayload() throws RestClientException {
+      when(restClient.getJsonIfModified(url)).thenReturn(
+          "{\"value\": {\"names\": {\"a\": \"b\"}}}"
+      );
+
+      JsonAppEnrichment result = manager.fetchData(url);
+      assertSame(result, manager.fetchData(url));
+    }
+
+    @Test
+    public void returnsNullWhenNotModifiedWithoutLastJson() throws RestClientException {
+      when(restClient.getJsonIfModified(url)).thenReturn(null);
       assertNull(manager.fetchData(url));
+      verify(restClient).forget(url);
     }
   }
 
@@ -0,0 +1,67 @@
+package cs.drill.util;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+
+public class IpFormatterUnitTest {
+  private static String format(long ip1, long ip2) {
+    ByteBuf buffer = Unpooled.buffer(IpFormatter.MAX_LENGTH);
+    int length = IpFormatter.write(buffer, 0, ip1, ip2);
+    return buffer.toString(0, length, StandardCharsets.US_ASCII);
+  }
+
+  private static String formatDecimal(int value) {
+    ByteBuf buffer = Unpooled.buffer(IpFormatter.MAX_DECIMAL_LENGTH);
+    int length = IpFormatter.writeDecimal(buffer, 0, value);
+    return buffer.toString(0, length, StandardCharsets.US_ASCII);
+  }
+
+  private static void assertSameAsIpPair(String ip) {
+    IpUtil.IpPair ipPair = IpUtil.parseIp(ip);
+    assertEquals(ipPair.toString(), format(ipPair.getHighBits(), ipPair.getLowBits()));
+  }
+
+  public static class Write {
+    @Test
+    public void formatsIp4() {
+      assertSameAsIpPair("0.0.0.0");
+      assertSameAsIpPair("10.0.12.1");
+      assertSameAsIpPair("255.255.255.255");
+    }
+
+    @Test
+    public void formatsIp6() {
+      assertSameAsIpPair("2001:db8:0:0:1:0:0:1");
+      assertSameAsIpPair("2001:db8::ff00:42:8329");
+      assertSameAsIpPair("fe80::1");
+      assertSameAsIpPair("::1");
+      assertSameAsIpPair("1::");
+      assertSameAsIpPair("1:0:2:0:3:0:4:0");
+      assertSameAsIpPair("ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff");
+    }
+
+    @Test
+    public void writesAtIndex() {
+      ByteBuf buffer = Unpooled.buffer(IpFormatter.MAX_LENGTH + 2);
+      int length = IpFormatter.write(buffer, 2, IpUtil.WKP, 0x0a000001L);
+      assertEquals("10.0.0.1", buffer.toString(2, length, StandardCharsets.US_ASCII));
+    }
+  }
+
+  public static class WriteDecimal {
+    @Test
+    public void formatsNumbers() {
+      assertEquals("0", formatDecimal(0));
+      assertEquals("7", formatDecimal(7));
+      assertEquals("10", formatDecimal(10));
+      assertEquals("-42", formatDecimal(-42));
+      assertEquals(Integer.toString(Integer.MAX_VALUE), formatDecimal(Integer.MAX_VALUE));
+      assertEquals(Integer.toString(Integer.MIN_VALUE), formatDecimal(Integer.MIN_VALUE));
+    }
+  }
+}
@@ -0,0 +1,38 @@
+package cs.drill.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class IpMaskUnitTest {
+  public static class GetMask {
+    @Test
+    public void masksHighBitsFirst() {
+      assertEquals(0L, IpMask.getMask1(0));
+      assertEquals(0L, IpMask.getMask2(0));
+      assertEquals(0xffff000000000000L, IpMask.getMask1(16));
+      assertEquals(0L, IpMask.getMask2(16));
+      assertEquals(-1L, IpMask.getMask1(64));
+      assertEquals(0L, IpMask.getMask2(64));
+      assertEquals(-1L, IpMask.getMask1(120));
+      assertEquals(0xffffffffffffff00L, IpMask.getMask2(120));
+      assertEquals(-1L, IpMask.getMask2(128));
+    }
+  }
+
+  public static class GetPrefixLength {
+    @Test
+    public void countsIp4PrefixFromStartOfPair() {
+      assertEquals(120, IpMask.getPrefixLength(IpUtil.WKP, 24));
+      assertEquals(24, IpMask.getPrefixLength(0x20010db800000000L, 24));
+    }
+
+    @Test
+    public void clampsPrefixLength() {
+      assertEquals(96, IpMask.getPrefixLength(IpUtil.WKP, -1));
+      assertEquals(128, IpMask.getPrefixLength(IpUtil.WKP, 40));
+      assertEquals(0, IpMask.getPrefixLength(0L, -1));
+      assertEquals(128, IpMask.getPrefixLength(0L, 200));
+    }
+  }
+}
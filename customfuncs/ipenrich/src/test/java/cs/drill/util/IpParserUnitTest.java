@@ -0,0 +1,115 @@
+package cs.drill.util;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class IpParserUnitTest {
+  private static final String PADDING = "##";
+
+  /**
+   * Parses text surrounded by other bytes, so parser must keep to the given range.
+   */
+  private static boolean parseIp(IpParser parser, String text) {
+    ByteBuf buffer = Unpooled.copiedBuffer(PADDING + text + PADDING, StandardCharsets.US_ASCII);
+    return parser.parseIp(buffer, PADDING.length(), PADDING.length() + text.length());
+  }
+
+  private static boolean parseSubnet(IpParser parser, String text) {
+    ByteBuf buffer = Unpooled.copiedBuffer(PADDING + text + PADDING, StandardCharsets.US_ASCII);
+    return parser.parseSubnet(buffer, PADDING.length(), PADDING.length() + text.length());
+  }
+
+  private static void assertParsedAsIpPair(String text) {
+    IpParser parser = new IpParser();
+    assertTrue(text, parseIp(parser, text));
+    IpUtil.IpPair expected = IpUtil.parseIp(text);
+    assertEquals(text, expected.getHighBits(), parser.getIp1());
+    assertEquals(text, expected.getLowBits(), parser.getIp2());
+    assertEquals(IpParser.MAX_PREFIX_LENGTH, parser.getPrefixLength());
+  }
+
+  public static class ParseIp {
+    @Test
+    public void parsesIp4() {
+      assertParsedAsIpPair("0.0.0.0");
+      assertParsedAsIpPair("10.0.12.1");
+      assertParsedAsIpPair("255.255.255.255");
+    }
+
+    @Test
+    public void parsesIp6() {
+      assertParsedAsIpPair("2001:db8:0:0:1:0:0:1");
+      assertParsedAsIpPair("2001:DB8::FF00:42:8329");
+      assertParsedAsIpPair("fe80::1");
+      assertParsedAsIpPair("::1");
+      assertParsedAsIpPair("1::");
+      assertParsedAsIpPair("::");
+      assertParsedAsIpPair("1:2:3:4:5:6:7::");
+      assertParsedAsIpPair("ffff:ffff:ffff:ffff:ffff:ffff:ffff:ffff");
+    }
+
+    @Test
+    public void parsesEmbeddedIp4() {
+      IpParser parser = new IpParser();
+      assertTrue(parseIp(parser, "64:ff9b::10.0.0.1"));
+      assertEquals(IpUtil.WKP, parser.getIp1());
+      assertEquals(0x0a000001L, parser.getIp2());
+    }
+
+    @Test
+    public void rejectsInvalidIps() {
+      IpParser parser = new IpParser();
+      String[] invalid = {
+        "", "localhost", "1.2.3", "1.2.3.4.5", "256.0.0.1", "1..2.3", "1.2.3.4 ", "1.2.3.-4",
+        ":", ":1::", "1:", "1:2:3:4:5:6:7:8:9", "1:2:3:4:5:6:7", "1::2::3", "12345::", "1:::2",
+        "::1.2.3", "1:2:3:4:5:6:7:1.2.3.4", "g::1"
+      };
+      for (String text : invalid) {
+        assertFalse(text, parseIp(parser, text));
+      }
+    }
+  }
+
+  public static class ParseSubnet {
+    IpParser parser = new IpParser();
+
+    @Test
+    public void countsIp4PrefixFromStartOfPair() {
+      assertTrue(parseSubnet(parser, "10.1.0.0/16"));
+      assertEquals(IpUtil.WKP, parser.getIp1());
+      assertEquals(0x0a010000L, parser.getIp2());
+      assertEquals(112, parser.getPrefixLength());
+    }
+
+    @Test
+    public void parsesIp6Subnet() {
+      assertTrue(parseSubnet(parser, "2001:db8::/32"));
+      assertEquals(0x20010db800000000L, parser.getIp1());
+      assertEquals(0L, parser.getIp2());
+      assertEquals(32, parser.getPrefixLength());
+    }
+
+    @Test
+    public void parsesIpAsSubnetOfSingleIp() {
+      assertTrue(parseSubnet(parser, "10.0.0.1"));
+      assertEquals(IpParser.MAX_PREFIX_LENGTH, parser.getPrefixLength());
+    }
+
+    @Test
+    public void rejectsInvalidPrefixLengths() {
+      assertFalse(parseSubnet(parser, "10.0.0.0/33"));
+      assertFalse(parseSubnet(parser, "10.0.0.0/"));
+      assertFalse(parseSubnet(parser, "10.0.0.0/a"));
+      assertFalse(parseSubnet(parser, "::/129"));
+      assertFalse(parseSubnet(parser, "::/0128"));
+      assertFalse(parseSubnet(parser, "/8"));
+    }
+  }
+}
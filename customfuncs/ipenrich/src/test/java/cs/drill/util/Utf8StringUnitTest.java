@@ -0,0 +1,48 @@
+package cs.drill.util;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class Utf8StringUnitTest {
+  private static final String VALUE = "Kraków";
+
+  public static class Of {
+    @Test
+    public void encodesStringToUtf8() {
+      Utf8String string = Utf8String.of(VALUE);
+      assertArrayEquals(VALUE.getBytes(StandardCharsets.UTF_8), string.getBytes());
+      assertEquals(VALUE, string.toString());
+    }
+
+    @Test
+    public void returnsNullForNull() {
+      assertNull(Utf8String.of(null));
+    }
+
+    @Test
+    public void equalsStringWithSameValue() {
+      assertEquals(Utf8String.of(VALUE), Utf8String.of(VALUE));
+      assertEquals(Utf8String.of(VALUE).hashCode(), Utf8String.of(VALUE).hashCode());
+    }
+  }
+
+  public static class Pool {
+    Utf8String.Pool pool = new Utf8String.Pool();
+
+    @Test
+    public void encodesEqualStringsOnce() {
+      assertSame(pool.get(VALUE), pool.get(new String(VALUE)));
+    }
+
+    @Test
+    public void returnsNullForNull() {
+      assertNull(pool.get(null));
+    }
+  }
+}
@@ -291,6 +291,14 @@ public class FunctionImplementationRegistry implements FunctionLookupContext, Au
     return false;
   }
 
+  /**
+   * @param name function name, case insensitive
+   * @return true when at least one implementation of the function is registered locally
+   */
+  public boolean hasFunction(String name) {
+    return !localFunctionRegistry.getMethods(name).isEmpty();
+  }
+
   public RemoteFunctionRegistry getRemoteFunctionRegistry() {
     return remoteFunctionRegistry;
   }
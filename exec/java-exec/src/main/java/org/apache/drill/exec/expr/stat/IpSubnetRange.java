@@ -0,0 +1,120 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.expr.stat;
+
+import com.google.common.net.InetAddresses;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Ranges of the (ip1, ip2) BIGINT column pair covered by a subnet, used to push
+ * ip_in_subnet(ip1, ip2, 'cidr') filters of custom functions down to scans as range predicates.
+ *
+ * Ipv4 ips are stored with the 64:ff9b::/96 prefix in ip1. A subnet covers a contiguous range
+ * of ip1 and, for prefixes longer than 64 bits, a single ip1 and a contiguous range of ip2.
+ * Ranges are aligned blocks, so they are contiguous in signed BIGINT order as well.
+ */
+public final class IpSubnetRange {
+  public static final String FUNCTION_NAME = "ip_in_subnet";
+  private static final long WKP = 0x0064ff9b00000000L;
+  private static final long IP4_MAPPED = 0x0000ffff00000000L;
+  private static final int MAX_PREFIX_LENGTH = 128;
+  private static final int IP4_PREFIX_OFFSET = 96;
+
+  private final long ip1Min;
+  private final long ip1Max;
+  private final long ip2Min;
+  private final long ip2Max;
+  private final int prefixLength;
+
+  private IpSubnetRange(long ip1, long ip2, int prefixLength) {
+    long mask1 = prefixLength == 0 ? 0L : -1L << (Long.SIZE - Math.min(prefixLength, Long.SIZE));
+    long mask2 = prefixLength <= Long.SIZE ? 0L : -1L << (MAX_PREFIX_LENGTH - prefixLength);
+    this.ip1Min = ip1 & mask1;
+    this.ip1Max = ip1Min | ~mask1;
+    this.ip2Min = ip2 & mask2;
+    this.ip2Max = ip2Min | ~mask2;
+    this.prefixLength = prefixLength;
+  }
+
+  /**
+   * Parses subnet in CIDR notation (ip/prefix length), single ip is a subnet of the ip only.
+   * @return range of subnet or null when text is not a subnet
+   */
+  public static IpSubnetRange parse(String subnet) {
+    int slash = subnet.indexOf('/');
+    String address = slash < 0 ? subnet : subnet.substring(0, slash);
+    if (!InetAddresses.isInetAddress(address)) {
+      return null;
+    }
+    // literal only, host names are never resolved
+    byte[] bytes = InetAddresses.forString(address).getAddress();
+    boolean ip4 = address.indexOf(':') < 0;
+    int maxLength = ip4 ? Integer.SIZE : MAX_PREFIX_LENGTH;
+    int length = maxLength;
+    if (slash >= 0) {
+      try {
+        length = Integer.parseInt(subnet.substring(slash + 1));
+      } catch (NumberFormatException exc) {
+        return null;
+      }
+      if (length < 0 || length > maxLength) {
+        return null;
+      }
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    if (ip4) {
+      return new IpSubnetRange(WKP, buffer.getInt() & 0xffffffffL, IP4_PREFIX_OFFSET + length);
+    }
+    if (bytes.length == Integer.BYTES) {
+      // ::ffff:a.b.c.d is converted to ipv4 by InetAddress, but custom functions keep it as is
+      return new IpSubnetRange(0L, IP4_MAPPED | (buffer.getInt() & 0xffffffffL), length);
+    }
+    return new IpSubnetRange(buffer.getLong(), buffer.getLong(), length);
+  }
+
+  public long getIp1Min() {
+    return ip1Min;
+  }
+
+  public long getIp1Max() {
+    return ip1Max;
+  }
+
+  public long getIp2Min() {
+    return ip2Min;
+  }
+
+  public long getIp2Max() {
+    return ip2Max;
+  }
+
+  /**
+   * @return false when subnet covers all ips, ranges do not filter anything then
+   */
+  public boolean isIp1Bounded() {
+    return prefixLength > 0;
+  }
+
+  /**
+   * @return true when subnet fixes some bits of ip2, ip1 is a single value then
+   */
+  public boolean isIp2Bounded() {
+    return prefixLength > Long.SIZE;
+  }
+}
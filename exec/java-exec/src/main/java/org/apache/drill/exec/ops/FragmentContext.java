@@ -108,6 +108,8 @@ public class FragmentContext extends BaseFragmentContext implements AutoCloseabl
   private final AccountingUserConnection accountingUserConnection;
   /** Stores constants and their holders by type */
   private final Map<String, Map<MinorType, ValueHolder>> constantValueHolderCache;
+  /** Counters injected into functions, replaced by operators publishing them */
+  private UdfMetrics udfMetrics = new UdfMetrics();
 
   /**
    * Create a FragmentContext instance for non-root fragment.
@@ -423,6 +425,23 @@ public class FragmentContext extends BaseFragmentContext implements AutoCloseabl
     }
   }
 
+  @Override
+  public UdfMetrics getUdfMetrics() {
+    return udfMetrics;
+  }
+
+  /**
+   * Sets counters injected into functions set up from now on, operators set their own
+   * counters while setting up generated code.
+   *
+   * @return counters set before
+   */
+  public UdfMetrics setUdfMetrics(UdfMetrics udfMetrics) {
+    final UdfMetrics previous = this.udfMetrics;
+    this.udfMetrics = udfMetrics;
+    return previous;
+  }
+
   @Override
   public PartitionExplorer getPartitionExplorer() {
     throw new UnsupportedOperationException(String.format("The partition explorer interface can only be used " +
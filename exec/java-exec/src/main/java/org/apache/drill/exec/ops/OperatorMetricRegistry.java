@@ -49,6 +49,9 @@ public class OperatorMetricRegistry {
     register(CoreOperatorType.HASH_JOIN_VALUE, HashJoinBatch.Metric.class);
     register(CoreOperatorType.EXTERNAL_SORT_VALUE, ExternalSortBatch.Metric.class);
     register(CoreOperatorType.PARQUET_ROW_GROUP_SCAN_VALUE, ParquetRecordReader.Metric.class);
+    register(CoreOperatorType.PROJECT_VALUE, UdfMetrics.Metric.class);
+    register(CoreOperatorType.FILTER_VALUE, UdfMetrics.Metric.class);
+    register(CoreOperatorType.HBASE_SUB_SCAN_VALUE, ScanMetrics.Metric.class);
   }
 
   private static void register(final int operatorType, final Class<? extends MetricDef> metricDef) {
@@ -279,6 +279,12 @@ public class QueryContext implements AutoCloseable, OptimizerRulesContext, Schem
     return bufferManager.getManagedBuffer();
   }
 
+  @Override
+  public UdfMetrics getUdfMetrics() {
+    // functions evaluated at planning time are not reported
+    return new UdfMetrics();
+  }
+
   @Override
   public PartitionExplorer getPartitionExplorer() {
     return new PartitionExplorerImpl(getRootSchema());
@@ -0,0 +1,40 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.ops;
+
+/**
+ * Metrics of scans fetching batches of rows from remote servers, e.g. Kudu scans (which are
+ * reported as HBase sub scans).
+ */
+public class ScanMetrics {
+
+  public enum Metric implements MetricDef {
+    BATCHES_FETCHED,      // batches of rows fetched from servers
+    PREFETCH_WAIT_NANOS,  // time the operator waited for fetched batches
+    DECODE_NANOS;         // time spent copying fetched rows into value vectors
+
+    @Override
+    public int metricId() {
+      return ordinal();
+    }
+  }
+
+  // to prevent instantiation
+  private ScanMetrics() {
+  }
+}
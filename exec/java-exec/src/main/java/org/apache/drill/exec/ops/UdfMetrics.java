@@ -0,0 +1,118 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.ops;
+
+/**
+ * Counters of custom functions, available to functions through {@link javax.inject.Inject}.
+ *
+ * Functions evaluated by project and filter operators count into metrics of the operator,
+ * which are published to its stats after every batch and shown in the query profile.
+ * Counters are plain fields as an operator and its functions run in a single thread, so
+ * counting does not allocate nor synchronize. Functions evaluated elsewhere (e.g. at planning
+ * time) count into metrics never published.
+ *
+ * All functions of an operator share its counters, e.g. lookups of geoip and application_name
+ * in one projection are summed up.
+ */
+public class UdfMetrics {
+
+  public enum Metric implements MetricDef {
+    LOOKUPS,        // lookups of enrichment functions
+    HITS,           // lookups resolved to a value
+    MISSES,         // lookups without any value
+    MEMO_HITS,      // lookups answered by per operator memos of functions
+    BACKEND_CALLS,  // lookups passed to backends (shared caches, subnet tries, MaxMind, ...)
+    BACKEND_NANOS;  // time spent in backend calls missing in shared caches
+
+    @Override
+    public int metricId() {
+      return ordinal();
+    }
+  }
+
+  private long lookups;
+  private long hits;
+  private long misses;
+  private long memoHits;
+  private long backendCalls;
+  private long backendNanos;
+
+  /**
+   * @param found whether lookup resolved to a value
+   */
+  public void countLookup(boolean found) {
+    lookups++;
+    if (found) {
+      hits++;
+    } else {
+      misses++;
+    }
+  }
+
+  public void countMemoHit() {
+    memoHits++;
+  }
+
+  /**
+   * Counts backend call answered by a shared cache, which is not timed.
+   */
+  public void countBackendCall() {
+    backendCalls++;
+  }
+
+  /**
+   * @param startNanos {@link System#nanoTime()} taken before the call
+   */
+  public void countBackendCall(long startNanos) {
+    backendCalls++;
+    backendNanos += System.nanoTime() - startNanos;
+  }
+
+  public long getLookups() {
+    return lookups;
+  }
+
+  public long getHits() {
+    return hits;
+  }
+
+  public long getMisses() {
+    return misses;
+  }
+
+  public long getMemoHits() {
+    return memoHits;
+  }
+
+  public long getBackendCalls() {
+    return backendCalls;
+  }
+
+  public long getBackendNanos() {
+    return backendNanos;
+  }
+
+  public void publish(OperatorStats stats) {
+    stats.setLongStat(Metric.LOOKUPS, lookups);
+    stats.setLongStat(Metric.HITS, hits);
+    stats.setLongStat(Metric.MISSES, misses);
+    stats.setLongStat(Metric.MEMO_HITS, memoHits);
+    stats.setLongStat(Metric.BACKEND_CALLS, backendCalls);
+    stats.setLongStat(Metric.BACKEND_NANOS, backendNanos);
+  }
+}
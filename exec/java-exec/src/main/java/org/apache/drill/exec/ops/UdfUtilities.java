@@ -41,6 +41,7 @@ public interface UdfUtilities {
           .put(DrillBuf.class, "getManagedBuffer")
           .put(PartitionExplorer.class, "getPartitionExplorer")
           .put(ContextInformation.class, "getContextInformation")
+          .put(UdfMetrics.class, "getUdfMetrics")
           .build();
 
 
@@ -88,6 +89,14 @@ public interface UdfUtilities {
    */
   PartitionExplorer getPartitionExplorer();
 
+  /**
+   * Counters of UDFs set up by the current operator. Project and filter operators
+   * publish them in their stats, so they are shown in the query profile.
+   *
+   * @return - counters of the operator evaluating the function
+   */
+  UdfMetrics getUdfMetrics();
+
   /**
    * Works with value holders cache which holds constant value and its wrapper by type.
    * If value is absent uses holderInitializer to create holder and adds it to cache.
@@ -30,6 +30,7 @@ import org.apache.drill.exec.expr.ClassGenerator;
 import org.apache.drill.exec.expr.CodeGenerator;
 import org.apache.drill.exec.expr.ExpressionTreeMaterializer;
 import org.apache.drill.exec.ops.FragmentContext;
+import org.apache.drill.exec.ops.UdfMetrics;
 import org.apache.drill.exec.physical.config.Filter;
 import org.apache.drill.exec.record.AbstractSingleRecordBatch;
 import org.apache.drill.exec.record.BatchSchema.SelectionVectorMode;
@@ -48,6 +49,7 @@ public class FilterRecordBatch extends AbstractSingleRecordBatch<Filter>{
   private SelectionVector2 sv2;
   private SelectionVector4 sv4;
   private Filterer filter;
+  private final UdfMetrics udfMetrics = new UdfMetrics();
 
   public FilterRecordBatch(Filter pop, RecordBatch incoming, FragmentContext context) throws OutOfMemoryException {
     super(pop, context, incoming);
@@ -79,6 +81,7 @@ public class FilterRecordBatch extends AbstractSingleRecordBatch<Filter>{
     int recordCount = incoming.getRecordCount();
     try {
       filter.filterBatch(recordCount);
+      udfMetrics.publish(stats);
     } catch (SchemaChangeException e) {
       throw new UnsupportedOperationException(e);
     }
@@ -167,7 +170,7 @@ public class FilterRecordBatch extends AbstractSingleRecordBatch<Filter>{
     try {
       final TransferPair[] tx = transfers.toArray(new TransferPair[transfers.size()]);
       final Filterer filter = context.getImplementationClass(cg);
-      filter.setup(context, incoming, this, tx);
+      setup(filter, tx);
       return filter;
     } catch (ClassTransformationException | IOException e) {
       throw new SchemaChangeException("Failure while attempting to load generated class", e);
@@ -200,10 +203,19 @@ public class FilterRecordBatch extends AbstractSingleRecordBatch<Filter>{
       // Uncomment out this line to debug the generated code.
 //    cg.saveCodeForDebugging(true);
       final Filterer filter = context.getImplementationClass(codeGen);
-      filter.setup(context, incoming, this, tx);
+      setup(filter, tx);
       return filter;
     } catch (ClassTransformationException | IOException e) {
       throw new SchemaChangeException("Failure while attempting to load generated class", e);
     }
   }
+
+  private void setup(Filterer filter, TransferPair[] tx) throws SchemaChangeException {
+    final UdfMetrics previous = context.setUdfMetrics(udfMetrics);
+    try {
+      filter.setup(context, incoming, this, tx);
+    } finally {
+      context.setUdfMetrics(previous);
+    }
+  }
 }
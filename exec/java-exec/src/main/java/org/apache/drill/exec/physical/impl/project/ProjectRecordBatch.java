@@ -48,6 +48,7 @@ import org.apache.drill.exec.expr.ExpressionTreeMaterializer;
 import org.apache.drill.exec.expr.ValueVectorReadExpression;
 import org.apache.drill.exec.expr.ValueVectorWriteExpression;
 import org.apache.drill.exec.ops.FragmentContext;
+import org.apache.drill.exec.ops.UdfMetrics;
 import org.apache.drill.exec.physical.config.Project;
 import org.apache.drill.exec.planner.StarColumnHelper;
 import org.apache.drill.exec.record.AbstractSingleRecordBatch;
@@ -74,6 +75,7 @@ import java.util.List;
 public class ProjectRecordBatch extends AbstractSingleRecordBatch<Project> {
   static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(ProjectRecordBatch.class);
   private Projector projector;
+  private final UdfMetrics udfMetrics = new UdfMetrics();
   private List<ValueVector> allocationVectors;
   private List<ComplexWriter> complexWriters;
   private List<FieldReference> complexFieldReferencesList;
@@ -196,6 +198,7 @@ public class ProjectRecordBatch extends AbstractSingleRecordBatch<Project> {
     }
 
     final int outputRecords = projector.projectRecords(0, incomingRecordCount, 0);
+    udfMetrics.publish(stats);
     if (outputRecords < incomingRecordCount) {
       setValueCount(outputRecords);
       hasRemainder = true;
@@ -224,6 +227,7 @@ public class ProjectRecordBatch extends AbstractSingleRecordBatch<Project> {
       return;
     }
     final int projRecords = projector.projectRecords(remainderIndex, remainingRecordCount, 0);
+    udfMetrics.publish(stats);
     if (projRecords < remainingRecordCount) {
       setValueCount(projRecords);
       this.recordCount = projRecords;
@@ -487,7 +491,12 @@ public class ProjectRecordBatch extends AbstractSingleRecordBatch<Project> {
       // Uncomment out this line to debug the generated code.
       // codeGen.saveCodeForDebugging(true);
       this.projector = context.getImplementationClass(codeGen);
-      projector.setup(context, incomingBatch, this, transfers);
+      final UdfMetrics previous = context.setUdfMetrics(udfMetrics);
+      try {
+        projector.setup(context, incomingBatch, this, transfers);
+      } finally {
+        context.setUdfMetrics(previous);
+      }
     } catch (ClassTransformationException | IOException e) {
       throw new SchemaChangeException("Failure while attempting to load generated class", e);
     }
@@ -43,6 +43,7 @@ import org.apache.drill.exec.planner.logical.DrillAggregateRule;
 import org.apache.drill.exec.planner.logical.DrillFilterAggregateTransposeRule;
 import org.apache.drill.exec.planner.logical.DrillFilterJoinRules;
 import org.apache.drill.exec.planner.logical.DrillFilterRule;
+import org.apache.drill.exec.planner.logical.DrillFoldBitSetRule;
 import org.apache.drill.exec.planner.logical.DrillJoinRel;
 import org.apache.drill.exec.planner.logical.DrillJoinRule;
 import org.apache.drill.exec.planner.logical.DrillLimitRule;
@@ -142,10 +143,15 @@ public enum PlannerPhase {
 
   SUM_CONVERSION("Convert SUM to $SUM0") {
     public RuleSet getRules(OptimizerRulesContext context, Collection<StoragePlugin> plugins) {
+      List<RelOptRule> rules = Lists.newArrayList();
+      rules.add(DrillReduceAggregatesRule.INSTANCE_SUM);
+      rules.add(DrillReduceAggregatesRule.INSTANCE_WINDOW_SUM);
+      if (DrillFoldBitSetRule.isApplicable(context.getFunctionRegistry())) {
+        // rewrite, not a costed alternative, so it belongs to this always applied phase
+        rules.add(DrillFoldBitSetRule.INSTANCE);
+      }
       return PlannerPhase.mergedRuleSets(
-          RuleSets.ofList(
-              DrillReduceAggregatesRule.INSTANCE_SUM,
-              DrillReduceAggregatesRule.INSTANCE_WINDOW_SUM),
+          RuleSets.ofList(rules),
           getStorageRules(context, plugins, this)
           );
     }
@@ -0,0 +1,215 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.planner.logical;
+
+import com.google.common.collect.Lists;
+import org.apache.calcite.plan.RelOptRule;
+import org.apache.calcite.plan.RelOptRuleCall;
+import org.apache.calcite.rel.core.Filter;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexCall;
+import org.apache.calcite.rex.RexLiteral;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.rex.RexShuttle;
+import org.apache.calcite.rex.RexUtil;
+import org.apache.calcite.sql.SqlFunction;
+import org.apache.calcite.sql.SqlFunctionCategory;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.type.OperandTypes;
+import org.apache.calcite.sql.type.ReturnTypes;
+import org.apache.drill.exec.expr.fn.FunctionImplementationRegistry;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Folds is_bit_set tests of the same expression with constant bit indexes, combined by AND
+ * or OR, into a single mask test of the bitwise custom functions:
+ * is_bit_set(flags, 1) AND is_bit_set(flags, 4) becomes bit_mask_all(flags, 18) and
+ * is_bit_set(flags, 1) OR is_bit_set(flags, 4) becomes bit_mask_any(flags, 18).
+ *
+ * Both forms return the same values (including nulls), the folded one evaluates the
+ * expression once and tests all bits with a single AND. Expressions which are not
+ * deterministic are never folded, each of their tests can see another value.
+ *
+ * The mask functions are not built in, see {@link #isApplicable(FunctionImplementationRegistry)}.
+ */
+public class DrillFoldBitSetRule extends RelOptRule {
+  public static final DrillFoldBitSetRule INSTANCE = new DrillFoldBitSetRule();
+
+  static final String IS_BIT_SET = "is_bit_set";
+  static final SqlFunction BIT_MASK_ALL = createMaskFunction("bit_mask_all");
+  static final SqlFunction BIT_MASK_ANY = createMaskFunction("bit_mask_any");
+
+  private DrillFoldBitSetRule() {
+    super(operand(Filter.class, any()), "DrillFoldBitSetRule");
+  }
+
+  /**
+   * @return true when the mask functions the rule folds into are registered
+   * (the bitwise custom functions are deployed)
+   */
+  public static boolean isApplicable(FunctionImplementationRegistry functionRegistry) {
+    return functionRegistry.hasFunction(BIT_MASK_ALL.getName())
+        && functionRegistry.hasFunction(BIT_MASK_ANY.getName());
+  }
+
+  private static SqlFunction createMaskFunction(String name) {
+    return new SqlFunction(name, SqlKind.OTHER_FUNCTION, ReturnTypes.BOOLEAN_NULLABLE, null,
+        OperandTypes.NUMERIC_NUMERIC, SqlFunctionCategory.USER_DEFINED_FUNCTION);
+  }
+
+  @Override
+  public void onMatch(RelOptRuleCall call) {
+    final Filter filter = call.rel(0);
+    final RexNode condition = fold(filter.getCondition(), filter.getCluster().getRexBuilder());
+    if (condition != filter.getCondition()) {
+      call.transformTo(filter.copy(filter.getTraitSet(), filter.getInput(), condition));
+    }
+  }
+
+  /**
+   * @return folded expression or the same instance when there is nothing to fold
+   */
+  static RexNode fold(RexNode node, final RexBuilder rexBuilder) {
+    return node.accept(new RexShuttle() {
+      @Override
+      public RexNode visitCall(RexCall call) {
+        final RexNode visited = super.visitCall(call);
+        if (visited.getKind() != SqlKind.AND && visited.getKind() != SqlKind.OR) {
+          return visited;
+        }
+        return foldOperands((RexCall) visited, rexBuilder);
+      }
+    });
+  }
+
+  /**
+   * Tests of a single expression.
+   */
+  private static class Group {
+    final RexNode value;
+    long mask;
+    int count;
+    boolean replaced;
+
+    Group(RexNode value) {
+      this.value = value;
+    }
+  }
+
+  private static RexNode foldOperands(RexCall call, RexBuilder rexBuilder) {
+    final List<Group> groups = Lists.newArrayList();
+    boolean foldable = false;
+    for (RexNode operand : call.getOperands()) {
+      final int bit = getBitIndex(operand);
+      if (bit >= 0) {
+        final Group group = getGroup(groups, ((RexCall) operand).getOperands().get(0));
+        group.mask |= 1L << bit;
+        foldable |= ++group.count > 1;
+      }
+    }
+    if (!foldable) {
+      return call;
+    }
+
+    final SqlFunction maskFunction = call.getKind() == SqlKind.AND ? BIT_MASK_ALL : BIT_MASK_ANY;
+    final List<RexNode> operands = Lists.newArrayList();
+    for (RexNode operand : call.getOperands()) {
+      final int bit = getBitIndex(operand);
+      if (bit < 0) {
+        operands.add(operand);
+        continue;
+      }
+      final Group group = getGroup(groups, ((RexCall) operand).getOperands().get(0));
+      if (group.count == 1) {
+        operands.add(operand);
+      } else if (!group.replaced) {
+        // the first test of the expression is replaced, the others are dropped
+        group.replaced = true;
+        operands.add(rexBuilder.makeCall(maskFunction, group.value,
+            makeMask(rexBuilder, group.value, group.mask)));
+      }
+    }
+    return operands.size() == 1 ? operands.get(0) : rexBuilder.makeCall(call.getOperator(), operands);
+  }
+
+  /**
+   * Finds or adds group of equal expressions (RexCall has no equals, equal calls have equal digests).
+   */
+  private static Group getGroup(List<Group> groups, RexNode value) {
+    for (Group group : groups) {
+      if (group.value.equals(value)
+          || group.value.getType().equals(value.getType()) && group.value.toString().equals(value.toString())) {
+        return group;
+      }
+    }
+    final Group group = new Group(value);
+    groups.add(group);
+    return group;
+  }
+
+  /**
+   * @return bit index tested by is_bit_set call of deterministic expression with constant index
+   * or -1 for other expressions and indexes out of the tested type, which is_bit_set treats as
+   * unset bits
+   */
+  private static int getBitIndex(RexNode node) {
+    if (!(node instanceof RexCall)) {
+      return -1;
+    }
+    final RexCall call = (RexCall) node;
+    if (!IS_BIT_SET.equalsIgnoreCase(call.getOperator().getName()) || call.getOperands().size() != 2
+        || !(call.getOperands().get(1) instanceof RexLiteral)
+        || !RexUtil.isDeterministic(call.getOperands().get(0))) {
+      return -1;
+    }
+    final Comparable index = ((RexLiteral) call.getOperands().get(1)).getValue();
+    if (!(index instanceof BigDecimal)) {
+      return -1;
+    }
+    final int bit = ((BigDecimal) index).intValue();
+    return bit >= 0 && bit < getBitWidth(call.getOperands().get(0)) ? bit : -1;
+  }
+
+  private static int getBitWidth(RexNode value) {
+    switch (value.getType().getSqlTypeName()) {
+      case BIGINT:
+        return Long.SIZE;
+      case INTEGER:
+        return Integer.SIZE;
+      case SMALLINT:
+        return Short.SIZE;
+      case TINYINT:
+        return Byte.SIZE;
+      default:
+        return 0;
+    }
+  }
+
+  /**
+   * Mask literal of the tested type, masks of types narrower than BIGINT are INT
+   * (bitwise functions take INT masks for them).
+   */
+  private static RexNode makeMask(RexBuilder rexBuilder, RexNode value, long mask) {
+    if (getBitWidth(value) == Long.SIZE) {
+      return rexBuilder.makeBigintLiteral(BigDecimal.valueOf(mask));
+    }
+    return rexBuilder.makeExactLiteral(BigDecimal.valueOf((int) mask));
+  }
+}
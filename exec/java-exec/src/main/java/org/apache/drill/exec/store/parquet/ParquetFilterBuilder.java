@@ -37,6 +37,7 @@ import org.apache.drill.exec.expr.holders.IntHolder;
 import org.apache.drill.exec.expr.holders.TimeHolder;
 import org.apache.drill.exec.expr.holders.TimeStampHolder;
 import org.apache.drill.exec.expr.holders.ValueHolder;
+import org.apache.drill.exec.expr.stat.IpSubnetRange;
 import org.apache.drill.exec.expr.stat.ParquetPredicates;
 import org.apache.drill.exec.expr.stat.TypedFieldExpr;
 import org.apache.drill.exec.ops.UdfUtilities;
@@ -214,6 +215,10 @@ public class ParquetFilterBuilder extends AbstractExprVisitor<LogicalExpression,
       return handleCompareFunction(funcHolderExpr, value);
     }
 
+    if (IpSubnetRange.FUNCTION_NAME.equals(funcName)) {
+      return handleIpInSubnetFunction(funcHolderExpr, value);
+    }
+
     if (CastFunctions.isCastFunction(funcName)) {
       List<LogicalExpression> newArgs = new ArrayList();
       for (LogicalExpression arg : funcHolderExpr.args) {
@@ -261,6 +266,35 @@ public class ParquetFilterBuilder extends AbstractExprVisitor<LogicalExpression,
     }
   }
 
+  /**
+   * Converts ip_in_subnet(ip1, ip2, 'cidr') of custom functions into range predicates of ip1
+   * and ip2 columns.
+   */
+  private LogicalExpression handleIpInSubnetFunction(FunctionHolderExpression functionHolderExpression, Set<LogicalExpression> value) {
+    List<LogicalExpression> args = functionHolderExpression.args;
+    if (args.size() != 3 || !(args.get(2) instanceof ValueExpressions.QuotedString)) {
+      return null;
+    }
+    IpSubnetRange range = IpSubnetRange.parse(((ValueExpressions.QuotedString) args.get(2)).getString());
+    if (range == null || !range.isIp1Bounded()) {
+      return null;
+    }
+    LogicalExpression ip1 = args.get(0).accept(this, value);
+    LogicalExpression ip2 = args.get(1).accept(this, value);
+    if (ip1 == null || ip2 == null) {
+      return null;
+    }
+
+    List<LogicalExpression> rangePredicates = new ArrayList<>();
+    rangePredicates.add(new ParquetPredicates.GEPredicate(ip1, ValueExpressions.getBigInt(range.getIp1Min())));
+    rangePredicates.add(new ParquetPredicates.LEPredicate(ip1, ValueExpressions.getBigInt(range.getIp1Max())));
+    if (range.isIp2Bounded()) {
+      rangePredicates.add(new ParquetPredicates.GEPredicate(ip2, ValueExpressions.getBigInt(range.getIp2Min())));
+      rangePredicates.add(new ParquetPredicates.LEPredicate(ip2, ValueExpressions.getBigInt(range.getIp2Max())));
+    }
+    return new ParquetPredicates.AndPredicate("booleanAnd", rangePredicates, functionHolderExpression.getPosition());
+  }
+
   private LogicalExpression handleCastFunction(FunctionHolderExpression functionHolderExpression, Set<LogicalExpression> value) {
     for (LogicalExpression arg : functionHolderExpression.args) {
       LogicalExpression newArg = arg.accept(this, value);
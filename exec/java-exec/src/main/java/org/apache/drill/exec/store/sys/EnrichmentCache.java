@@ -0,0 +1,85 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.sys;
+
+/**
+ * Cache kept in Drillbit memory by custom functions (e.g. ip enrichment UDFs).
+ * Registered instances are listed in sys.enrichment_caches table.
+ *
+ * Implementations are read concurrently with queries using them, so returned
+ * values may be approximate.
+ */
+public interface EnrichmentCache {
+
+  /**
+   * @return unique name of the cache
+   */
+  String getName();
+
+  /**
+   * @return number of cached entries
+   */
+  long getEntries();
+
+  /**
+   * @return maximum number of entries or -1 when cache is not bounded by number of entries
+   */
+  long getCapacity();
+
+  /**
+   * @return configured memory budget in bytes or -1 when not configured
+   */
+  long getMemoryBudget();
+
+  /**
+   * @return estimated memory used by the cache in bytes
+   */
+  long getMemoryUsed();
+
+  long getHits();
+
+  long getMisses();
+
+  long getEvictions();
+
+  /**
+   * @return number of completed reloads of cached data (enrichment updates)
+   */
+  long getReloads();
+
+  /**
+   * @return number of failed reloads
+   */
+  long getReloadFailures();
+
+  /**
+   * @return duration of last completed reload in milliseconds or -1 when not known
+   */
+  long getLastReloadDuration();
+
+  /**
+   * @return time of last completed reload in milliseconds since epoch or -1 when never reloaded
+   */
+  long getLastReloadTime();
+
+  /**
+   * @return version of cached data increasing with every change of it (e.g. generation or
+   * update time of source data), -1 when not known
+   */
+  long getVersion();
+}
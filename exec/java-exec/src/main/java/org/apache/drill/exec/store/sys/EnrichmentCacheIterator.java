@@ -0,0 +1,89 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.sys;
+
+import java.sql.Timestamp;
+import java.util.Iterator;
+
+import org.apache.drill.exec.ops.FragmentContext;
+import org.apache.drill.exec.proto.CoordinationProtos.DrillbitEndpoint;
+
+/**
+ * Lists caches registered in {@link EnrichmentCacheRegistry} of the local Drillbit.
+ */
+public class EnrichmentCacheIterator implements Iterator<Object> {
+
+  private final DrillbitEndpoint endpoint;
+  private final Iterator<EnrichmentCache> caches;
+
+  public EnrichmentCacheIterator(final FragmentContext context) {
+    this.endpoint = context.getIdentity();
+    this.caches = EnrichmentCacheRegistry.getCaches().iterator();
+  }
+
+  @Override
+  public boolean hasNext() {
+    return caches.hasNext();
+  }
+
+  @Override
+  public Object next() {
+    final EnrichmentCache cache = caches.next();
+    final EnrichmentCacheInfo info = new EnrichmentCacheInfo();
+    info.hostname = endpoint.getAddress();
+    info.user_port = endpoint.getUserPort();
+    info.name = cache.getName();
+    info.entries = cache.getEntries();
+    info.capacity = cache.getCapacity();
+    info.memory_budget = cache.getMemoryBudget();
+    info.memory_used = cache.getMemoryUsed();
+    info.hits = cache.getHits();
+    info.misses = cache.getMisses();
+    info.evictions = cache.getEvictions();
+    info.reloads = cache.getReloads();
+    info.reload_failures = cache.getReloadFailures();
+    info.last_reload_duration_ms = cache.getLastReloadDuration();
+    final long lastReloadTime = cache.getLastReloadTime();
+    info.last_reload_time = lastReloadTime < 0 ? null : new Timestamp(lastReloadTime);
+    info.version = cache.getVersion();
+    return info;
+  }
+
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException();
+  }
+
+  public static class EnrichmentCacheInfo {
+    public String hostname;
+    public long user_port;
+    public String name;
+    public long entries;
+    public long capacity;
+    public long memory_budget;
+    public long memory_used;
+    public long hits;
+    public long misses;
+    public long evictions;
+    public long reloads;
+    public long reload_failures;
+    public long last_reload_duration_ms;
+    public Timestamp last_reload_time;
+    public long version;
+  }
+}
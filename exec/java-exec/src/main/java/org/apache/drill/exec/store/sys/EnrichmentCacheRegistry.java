@@ -0,0 +1,52 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.store.sys;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Drillbit wide registry of {@link EnrichmentCache}s. Custom functions live in their own
+ * jars and are not managed by Drill, so their caches register themselves here statically.
+ */
+public final class EnrichmentCacheRegistry {
+  private static final ConcurrentMap<String, EnrichmentCache> CACHES = new ConcurrentSkipListMap<>();
+
+  private EnrichmentCacheRegistry() {
+  }
+
+  /**
+   * Registers cache, replacing previously registered cache of the same name.
+   */
+  public static void register(final EnrichmentCache cache) {
+    CACHES.put(cache.getName(), cache);
+  }
+
+  public static void unregister(final String name) {
+    CACHES.remove(name);
+  }
+
+  /**
+   * @return registered caches ordered by name
+   */
+  public static List<EnrichmentCache> getCaches() {
+    return new ArrayList<>(CACHES.values());
+  }
+}
@@ -27,7 +27,8 @@ import org.apache.drill.exec.store.sys.OptionIterator.OptionValueWrapper;
  * <p>
  *   OPTION, DRILLBITS and VERSION are local tables available on every Drillbit.
  *   MEMORY and THREADS are distributed tables with one record on every
- *   Drillbit.
+ *   Drillbit. ENRICHMENT_CACHES is a distributed table with one record per
+ *   cache registered in {@link EnrichmentCacheRegistry} on every Drillbit.
  * </p>
  */
 public enum SystemTable {
@@ -92,6 +93,13 @@ public enum SystemTable {
   public Iterator<Object> getIterator(final FragmentContext context) {
       return new ThreadsIterator(context);
     }
+  },
+
+  ENRICHMENT_CACHES("enrichment_caches", true, EnrichmentCacheIterator.EnrichmentCacheInfo.class) {
+    @Override
+    public Iterator<Object> getIterator(final FragmentContext context) {
+      return new EnrichmentCacheIterator(context);
+    }
   };
 
 //  private static final org.slf4j.Logger logger = org.slf4j.LoggerFactory.getLogger(SystemTable.class);
@@ -0,0 +1,97 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.expr.stat;
+
+import org.apache.drill.categories.PlannerTest;
+import org.apache.drill.test.DrillTest;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@Category(PlannerTest.class)
+public class TestIpSubnetRange extends DrillTest {
+  private static final long WKP = 0x0064ff9b00000000L;
+
+  @Test
+  public void testIp4Subnet() {
+    IpSubnetRange range = IpSubnetRange.parse("10.1.0.0/16");
+    assertTrue(range.isIp1Bounded());
+    assertTrue(range.isIp2Bounded());
+    assertEquals(WKP, range.getIp1Min());
+    assertEquals(WKP, range.getIp1Max());
+    assertEquals(0x0a010000L, range.getIp2Min());
+    assertEquals(0x0a01ffffL, range.getIp2Max());
+  }
+
+  @Test
+  public void testHostBitsAreCleared() {
+    IpSubnetRange range = IpSubnetRange.parse("10.1.2.3/8");
+    assertEquals(0x0a000000L, range.getIp2Min());
+    assertEquals(0x0affffffL, range.getIp2Max());
+  }
+
+  @Test
+  public void testSingleIp() {
+    IpSubnetRange range = IpSubnetRange.parse("10.1.2.3");
+    assertEquals(0x0a010203L, range.getIp2Min());
+    assertEquals(0x0a010203L, range.getIp2Max());
+  }
+
+  @Test
+  public void testIp6Subnet() {
+    IpSubnetRange range = IpSubnetRange.parse("2001:db8::/32");
+    assertTrue(range.isIp1Bounded());
+    assertFalse(range.isIp2Bounded());
+    assertEquals(0x20010db800000000L, range.getIp1Min());
+    assertEquals(0x20010db8ffffffffL, range.getIp1Max());
+  }
+
+  @Test
+  public void testRangeCrossingSignBit() {
+    IpSubnetRange range = IpSubnetRange.parse("ff00::/8");
+    assertEquals(0xff00000000000000L, range.getIp1Min());
+    assertEquals(-1L, range.getIp1Max());
+    assertTrue(range.getIp1Min() <= range.getIp1Max());
+  }
+
+  @Test
+  public void testWholeSpaceIsNotBounded() {
+    assertFalse(IpSubnetRange.parse("::/0").isIp1Bounded());
+  }
+
+  @Test
+  public void testIp4MappedIp6IsKept() {
+    IpSubnetRange range = IpSubnetRange.parse("::ffff:10.0.0.0/104");
+    assertEquals(0L, range.getIp1Min());
+    assertEquals(0x0000ffff0a000000L, range.getIp2Min());
+    assertEquals(0x0000ffff0affffffL, range.getIp2Max());
+  }
+
+  @Test
+  public void testInvalidSubnets() {
+    assertNull(IpSubnetRange.parse("localhost"));
+    assertNull(IpSubnetRange.parse("10.0.0.0/33"));
+    assertNull(IpSubnetRange.parse("10.0.0.0/"));
+    assertNull(IpSubnetRange.parse("::/129"));
+    assertNull(IpSubnetRange.parse("10.0.0.0/-1"));
+  }
+}
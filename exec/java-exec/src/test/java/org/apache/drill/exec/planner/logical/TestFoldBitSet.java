@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.drill.exec.planner.logical;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.math.BigDecimal;
+
+import org.apache.calcite.adapter.java.JavaTypeFactory;
+import org.apache.calcite.jdbc.JavaTypeFactoryImpl;
+import org.apache.calcite.rel.type.RelDataType;
+import org.apache.calcite.rex.RexBuilder;
+import org.apache.calcite.rex.RexNode;
+import org.apache.calcite.sql.SqlFunction;
+import org.apache.calcite.sql.SqlFunctionCategory;
+import org.apache.calcite.sql.SqlKind;
+import org.apache.calcite.sql.fun.SqlStdOperatorTable;
+import org.apache.calcite.sql.type.OperandTypes;
+import org.apache.calcite.sql.type.ReturnTypes;
+import org.apache.calcite.sql.type.SqlTypeName;
+import org.apache.drill.categories.PlannerTest;
+import org.apache.drill.exec.expr.fn.FunctionImplementationRegistry;
+import org.apache.drill.test.DrillTest;
+import org.junit.Test;
+import org.junit.experimental.categories.Category;
+
+@Category(PlannerTest.class)
+public class TestFoldBitSet extends DrillTest {
+  private static final SqlFunction IS_BIT_SET = new SqlFunction("is_bit_set", SqlKind.OTHER_FUNCTION,
+      ReturnTypes.BOOLEAN_NULLABLE, null, OperandTypes.NUMERIC_NUMERIC, SqlFunctionCategory.USER_DEFINED_FUNCTION);
+  private static final SqlFunction RANDOM_FLAGS = new SqlFunction("random_flags", SqlKind.OTHER_FUNCTION,
+      ReturnTypes.BIGINT, null, OperandTypes.NILADIC, SqlFunctionCategory.USER_DEFINED_FUNCTION) {
+    @Override
+    public boolean isDeterministic() {
+      return false;
+    }
+  };
+
+  private final JavaTypeFactory t = new JavaTypeFactoryImpl();
+  private final RexBuilder builder = new RexBuilder(t);
+  private final RelDataType bigIntType = t.createSqlType(SqlTypeName.BIGINT);
+  private final RelDataType intType = t.createSqlType(SqlTypeName.INTEGER);
+
+  @Test
+  public void foldsConjunction() {
+    RexNode n = builder.makeCall(SqlStdOperatorTable.AND,
+        bit(c(0, bigIntType), 1), bit(c(0, bigIntType), 4), bit(c(0, bigIntType), 63));
+    assertEquals("bit_mask_all($0, -9223372036854775790)", DrillFoldBitSetRule.fold(n, builder).toString());
+  }
+
+  @Test
+  public void foldsDisjunctionKeepingOtherTests() {
+    RexNode other = builder.makeCall(SqlStdOperatorTable.EQUALS, c(1, intType), lit(2));
+    RexNode n = builder.makeCall(SqlStdOperatorTable.OR,
+        bit(c(0, intType), 0), other, bit(c(1, intType), 3), bit(c(0, intType), 2));
+    assertEquals("OR(bit_mask_any($0, 5), =($1, 2), is_bit_set($1, 3))",
+        DrillFoldBitSetRule.fold(n, builder).toString());
+  }
+
+  @Test
+  public void keepsSingleAndOutOfScopeTests() {
+    RexNode n = builder.makeCall(SqlStdOperatorTable.AND,
+        bit(c(0, intType), 1), bit(c(0, intType), 32), bit(c(1, intType), 1));
+    assertSame(n, DrillFoldBitSetRule.fold(n, builder));
+  }
+
+  @Test
+  public void foldsEqualCalls() {
+    RexNode n = builder.makeCall(SqlStdOperatorTable.AND,
+        bit(plus(c(0, intType), c(1, intType)), 1), bit(plus(c(0, intType), c(1, intType)), 2));
+    assertEquals("bit_mask_all(+($0, $1), 6)", DrillFoldBitSetRule.fold(n, builder).toString());
+  }
+
+  @Test
+  public void keepsTestsOfNonDeterministicExpressions() {
+    RexNode n = builder.makeCall(SqlStdOperatorTable.AND,
+        bit(builder.makeCall(RANDOM_FLAGS), 1), bit(builder.makeCall(RANDOM_FLAGS), 2));
+    assertSame(n, DrillFoldBitSetRule.fold(n, builder));
+  }
+
+  @Test
+  public void appliesOnlyWithMaskFunctions() {
+    FunctionImplementationRegistry registry = mock(FunctionImplementationRegistry.class);
+    when(registry.hasFunction("bit_mask_all")).thenReturn(true);
+    assertFalse(DrillFoldBitSetRule.isApplicable(registry));
+    when(registry.hasFunction("bit_mask_any")).thenReturn(true);
+    assertTrue(DrillFoldBitSetRule.isApplicable(registry));
+  }
+
+  private RexNode plus(RexNode left, RexNode right) {
+    return builder.makeCall(SqlStdOperatorTable.PLUS, left, right);
+  }
+
+  private RexNode bit(RexNode value, int index) {
+    return builder.makeCall(IS_BIT_SET, value, lit(index));
+  }
+
+  private RexNode c(int index, RelDataType type) {
+    return builder.makeInputRef(type, index);
+  }
+
+  private RexNode lit(int value) {
+    return builder.makeExactLiteral(new BigDecimal(value), intType);
+  }
+}
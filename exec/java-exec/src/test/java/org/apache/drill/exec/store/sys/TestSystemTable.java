@@ -69,4 +69,114 @@ public class TestSystemTable extends BaseTestQuery {
   public void memoryTable() throws Exception {
     test("select * from sys.memory");
   }
+
+  @Test
+  public void enrichmentCachesTable() throws Exception {
+    test("select * from sys.enrichment_caches");
+  }
+
+  /**
+   * Cache with fixed counters, reloaded once by {@link #reload()}.
+   */
+  private static class TestEnrichmentCache implements EnrichmentCache {
+    private volatile long lastReloadTime = -1;
+    private volatile long reloads;
+
+    void reload() {
+      lastReloadTime = System.currentTimeMillis();
+      reloads++;
+    }
+
+    @Override
+    public String getName() {
+      return "test_cache";
+    }
+
+    @Override
+    public long getEntries() {
+      return 42;
+    }
+
+    @Override
+    public long getCapacity() {
+      return 100;
+    }
+
+    @Override
+    public long getMemoryBudget() {
+      return -1;
+    }
+
+    @Override
+    public long getMemoryUsed() {
+      return 4096;
+    }
+
+    @Override
+    public long getHits() {
+      return 7;
+    }
+
+    @Override
+    public long getMisses() {
+      return 3;
+    }
+
+    @Override
+    public long getEvictions() {
+      return 0;
+    }
+
+    @Override
+    public long getReloads() {
+      return reloads;
+    }
+
+    @Override
+    public long getReloadFailures() {
+      return 0;
+    }
+
+    @Override
+    public long getLastReloadDuration() {
+      return -1;
+    }
+
+    @Override
+    public long getLastReloadTime() {
+      return lastReloadTime;
+    }
+
+    @Override
+    public long getVersion() {
+      return -1;
+    }
+  }
+
+  @Test
+  public void enrichmentCachesTableListsRegisteredCache() throws Exception {
+    final TestEnrichmentCache cache = new TestEnrichmentCache();
+    EnrichmentCacheRegistry.register(cache);
+    try {
+      // every Drillbit of the cluster lists the cache of their shared registry
+      final String query = "select distinct name, entries, capacity, memory_used, hits, misses, reloads, "
+          + "last_reload_time is null as never_reloaded from sys.enrichment_caches where name = 'test_cache'";
+      testBuilder()
+        .sqlQuery(query)
+        .unOrdered()
+        .baselineColumns("name", "entries", "capacity", "memory_used", "hits", "misses", "reloads", "never_reloaded")
+        .baselineValues("test_cache", 42L, 100L, 4096L, 7L, 3L, 0L, true)
+        .go();
+
+      cache.reload();
+      testBuilder()
+        .sqlQuery(query)
+        .unOrdered()
+        .baselineColumns("name", "entries", "capacity", "memory_used", "hits", "misses", "reloads", "never_reloaded")
+        .baselineValues("test_cache", 42L, 100L, 4096L, 7L, 3L, 1L, false)
+        .go();
+    } finally {
+      EnrichmentCacheRegistry.unregister(cache.getName());
+    }
+  }
 }
@@ -149,7 +149,7 @@ public class TestMetadataProvider extends BaseTestQuery {
 
     assertEquals(RequestStatus.OK, resp.getStatus());
     List<TableMetadata> tables = resp.getTablesList();
-    assertEquals(14, tables.size());
+    assertEquals(15, tables.size());
 
     verifyTable("INFORMATION_SCHEMA", "CATALOGS", tables);
     verifyTable("INFORMATION_SCHEMA", "COLUMNS", tables);
@@ -158,6 +158,7 @@ public class TestMetadataProvider extends BaseTestQuery {
     verifyTable("INFORMATION_SCHEMA", "VIEWS", tables);
     verifyTable("sys", "boot", tables);
     verifyTable("sys", "drillbits", tables);
+    verifyTable("sys", "enrichment_caches", tables);
     verifyTable("sys", "memory", tables);
     verifyTable("sys", SystemTable.OPTION.getTableName(), tables);
     verifyTable("sys", SystemTable.OPTION_VAL.getTableName(), tables);
@@ -186,7 +187,7 @@ public class TestMetadataProvider extends BaseTestQuery {
 
     assertEquals(RequestStatus.OK, resp.getStatus());
     List<TableMetadata> tables = resp.getTablesList();
-    assertEquals(14, tables.size());
+    assertEquals(15, tables.size());
 
     verifyTable("INFORMATION_SCHEMA", "CATALOGS", tables);
     verifyTable("INFORMATION_SCHEMA", "COLUMNS", tables);
@@ -195,6 +196,7 @@ public class TestMetadataProvider extends BaseTestQuery {
     verifyTable("INFORMATION_SCHEMA", "VIEWS", tables);
     verifyTable("sys", "boot", tables);
     verifyTable("sys", "drillbits", tables);
+    verifyTable("sys", "enrichment_caches", tables);
     verifyTable("sys", "memory", tables);
     verifyTable("sys", SystemTable.OPTION.getTableName(), tables);
     verifyTable("sys", SystemTable.OPTION_VAL.getTableName(), tables);
@@ -248,7 +250,7 @@ public class TestMetadataProvider extends BaseTestQuery {
 
     assertEquals(RequestStatus.OK, resp.getStatus());
     List<ColumnMetadata> columns = resp.getColumnsList();
-    assertEquals(93, columns.size());
+    assertEquals(108, columns.size());
     // too many records to verify the output.
   }
 
@@ -261,11 +263,12 @@ public class TestMetadataProvider extends BaseTestQuery {
 
     assertEquals(RequestStatus.OK, resp.getStatus());
     List<ColumnMetadata> columns = resp.getColumnsList();
-    assertEquals(5, columns.size());
+    assertEquals(6, columns.size());
 
     verifyColumn("sys", "drillbits", "user_port", columns);
     verifyColumn("sys", "drillbits", "control_port", columns);
     verifyColumn("sys", "drillbits", "data_port", columns);
+    verifyColumn("sys", "enrichment_caches", "user_port", columns);
     verifyColumn("sys", "memory", "user_port", columns);
     verifyColumn("sys", "threads", "user_port", columns);
   }